@@ -39,6 +39,7 @@ import org.thingsboard.script.api.js.JsInvokeService;
 import org.thingsboard.script.api.tbel.TbelInvokeService;
 import org.thingsboard.server.actors.service.ActorService;
 import org.thingsboard.server.actors.tenant.DebugTbRateLimits;
+import org.thingsboard.server.cache.payload.TbMsgPayloadStore;
 import org.thingsboard.server.cluster.TbClusterService;
 import org.thingsboard.server.common.data.event.ErrorEvent;
 import org.thingsboard.server.common.data.event.LifecycleEvent;
@@ -92,6 +93,8 @@ import org.thingsboard.server.dao.timeseries.TimeseriesService;
 import org.thingsboard.server.dao.user.UserService;
 import org.thingsboard.server.dao.widget.WidgetTypeService;
 import org.thingsboard.server.dao.widget.WidgetsBundleService;
+import org.thingsboard.server.queue.TbQueueCallback;
+import org.thingsboard.server.queue.TbQueueMsgMetadata;
 import org.thingsboard.server.queue.discovery.DiscoveryService;
 import org.thingsboard.server.queue.discovery.PartitionService;
 import org.thingsboard.server.queue.discovery.TbServiceInfoProvider;
@@ -123,6 +126,7 @@ import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
@@ -384,6 +388,10 @@ public class ActorSystemContext {
     @Getter
     private SlackService slackService;
 
+    @Autowired
+    @Getter
+    private TbMsgPayloadStore payloadStore;
+
     @Lazy
     @Autowired(required = false)
     @Getter
@@ -623,6 +631,33 @@ public class ActorSystemContext {
         return partitionService.resolve(serviceType, queueName, tenantId, entityId);
     }
 
+    /**
+     * 转发到队列的消息各自持有一份大数据引用, 原消息提交释放引用后它仍可读取; 入队失败时归还
+     */
+    public TbQueueCallback retainPayloads(TbMsg tbMsg, TbQueueCallback callback) {
+        List<String> refs = payloadStore.findRefs(tbMsg.getData());
+        if (refs.isEmpty()) {
+            return callback;
+        }
+        refs.forEach(payloadStore::retain);
+        return new TbQueueCallback() {
+            @Override
+            public void onSuccess(TbQueueMsgMetadata metadata) {
+                if (callback != null) {
+                    callback.onSuccess(metadata);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                refs.forEach(payloadStore::release);
+                if (callback != null) {
+                    callback.onFailure(t);
+                }
+            }
+        };
+    }
+
     public String getServiceId() {
         return serviceInfoProvider.getServiceId();
     }
@@ -213,7 +213,7 @@ class DefaultTbContext implements TbContext {
         if (nodeCtx.getSelf().isDebugMode()) {
             mainCtx.persistDebugOutput(nodeCtx.getTenantId(), nodeCtx.getSelf().getId(), tbMsg, "To Root Rule Chain");
         }
-        mainCtx.getClusterService().pushMsgToRuleEngine(tpi, tbMsg.getId(), msg, new SimpleTbQueueCallback(onSuccess, onFailure));
+        mainCtx.getClusterService().pushMsgToRuleEngine(tpi, tbMsg.getId(), msg, mainCtx.retainPayloads(tbMsg, new SimpleTbQueueCallback(onSuccess, onFailure)));
     }
 
     @Override
@@ -293,7 +293,7 @@ class DefaultTbContext implements TbContext {
             relationTypes.forEach(relationType ->
                     mainCtx.persistDebugOutput(nodeCtx.getTenantId(), nodeCtx.getSelf().getId(), tbMsg, relationType, null, failureMessage));
         }
-        mainCtx.getClusterService().pushMsgToRuleEngine(tpi, tbMsg.getId(), msg.build(), new SimpleTbQueueCallback(onSuccess, onFailure));
+        mainCtx.getClusterService().pushMsgToRuleEngine(tpi, tbMsg.getId(), msg.build(), mainCtx.retainPayloads(tbMsg, new SimpleTbQueueCallback(onSuccess, onFailure)));
     }
 
     @Override
@@ -353,6 +353,11 @@ class DefaultTbContext implements TbContext {
         return TbMsg.transformMsg(origMsg, type, originator, metaData, data);
     }
 
+    @Override
+    public String inlinePayloads(String data) {
+        return mainCtx.getPayloadStore().inline(data);
+    }
+
     public TbMsg customerCreatedMsg(Customer customer, RuleNodeId ruleNodeId) {
         return entityActionMsg(customer, customer.getId(), ruleNodeId, DataConstants.ENTITY_CREATED);
     }
@@ -372,7 +372,7 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
                 .setTenantIdLSB(tenantId.getId().getLeastSignificantBits())
                 .setTbMsg(TbMsg.toByteString(newMsg))
                 .build();
-        clusterService.pushMsgToRuleEngine(tpi, newMsg.getId(), toQueueMsg, callbackWrapper);
+        clusterService.pushMsgToRuleEngine(tpi, newMsg.getId(), toQueueMsg, systemContext.retainPayloads(newMsg, callbackWrapper));
     }
 
     private boolean contains(Set<String> relationTypes, String type) {
@@ -127,6 +127,7 @@ public class RuleNodeActorMessageProcessor extends ComponentMsgProcessor<RuleNod
                 systemContext.persistDebugInput(tenantId, entityId, msg.getMsg(), "Self");
             }
             try {
+                inlinePayloads(tbMsg);
                 tbNode.onMsg(defaultCtx, msg.getMsg());
             } catch (Exception e) {
                 defaultCtx.tellFailure(msg.getMsg(), e);
@@ -151,6 +152,7 @@ public class RuleNodeActorMessageProcessor extends ComponentMsgProcessor<RuleNod
                     systemContext.persistDebugInput(tenantId, entityId, msg.getMsg(), msg.getFromRelationType());
                 }
                 try {
+                    inlinePayloads(tbMsg);
                     tbNode.onMsg(msg.getCtx(), msg.getMsg());
                 } catch (Exception e) {
                     msg.getCtx().tellFailure(msg.getMsg(), e);
@@ -161,6 +163,20 @@ public class RuleNodeActorMessageProcessor extends ComponentMsgProcessor<RuleNod
         }
     }
 
+    /**
+     * 只在需要读取原始数据的节点前换回, 路由类节点与遥测保存等节点直接拿到引用
+     */
+    private void inlinePayloads(TbMsg tbMsg) {
+        if (tbNode.acceptsPayloadRefs()) {
+            return;
+        }
+        String data = tbMsg.getData();
+        String inlined = systemContext.getPayloadStore().inline(data);
+        if (inlined != data) {
+            tbMsg.setData(inlined);
+        }
+    }
+
     @Override
     public String getComponentName() {
         return ruleNode.getName();
@@ -200,7 +216,7 @@ public class RuleNodeActorMessageProcessor extends ComponentMsgProcessor<RuleNod
                 .setTenantIdLSB(tenantId.getId().getLeastSignificantBits())
                 .setTbMsg(TbMsg.toByteString(tbMsg))
                 .build();
-        systemContext.getClusterService().pushMsgToRuleEngine(tpi, tbMsg.getId(), toQueueMsg, null);
+        systemContext.getClusterService().pushMsgToRuleEngine(tpi, tbMsg.getId(), toQueueMsg, systemContext.retainPayloads(tbMsg, null));
         defaultCtx.ack(source);
     }
 }
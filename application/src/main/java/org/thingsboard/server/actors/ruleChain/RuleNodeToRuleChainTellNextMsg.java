@@ -57,8 +57,7 @@ class RuleNodeToRuleChainTellNextMsg extends TbRuleEngineActorMsg implements Ser
 
     @Override
     public void onTbActorStopped(TbActorStopReason reason) {
-        String message = reason == TbActorStopReason.STOPPED ? String.format("Rule chain [%s] stopped", ruleChainId.getId()) : String.format("Failed to initialize rule chain [%s]!", ruleChainId.getId());
-        msg.getCallback().onFailure(new RuleEngineException(message));
+        msg.getCallback().onFailure(new RuleEngineException(getStopMessage(reason, String.format("rule chain [%s]", ruleChainId.getId()))));
     }
 
     @Override
@@ -45,7 +45,6 @@ public abstract class TbToRuleChainActorMsg extends TbRuleEngineActorMsg impleme
 
     @Override
     public void onTbActorStopped(TbActorStopReason reason) {
-        String message = reason == TbActorStopReason.STOPPED ? String.format("Rule chain [%s] stopped", target.getId()) : String.format("Failed to initialize rule chain [%s]!", target.getId());
-        msg.getCallback().onFailure(new RuleEngineException(message));
+        msg.getCallback().onFailure(new RuleEngineException(getStopMessage(reason, String.format("rule chain [%s]", target.getId()))));
     }
 }
@@ -20,26 +20,35 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.thingsboard.common.util.ThingsBoardExecutors;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.actors.DefaultTbActorSystem;
+import org.thingsboard.server.actors.MailboxOverflowPolicy;
+import org.thingsboard.server.actors.TbActorMailboxSettings;
 import org.thingsboard.server.actors.TbActorRef;
 import org.thingsboard.server.actors.TbActorSystem;
 import org.thingsboard.server.actors.TbActorSystemSettings;
+import org.thingsboard.server.actors.TbActorTypeStats;
 import org.thingsboard.server.actors.app.AppActor;
 import org.thingsboard.server.actors.app.AppInitMsg;
 import org.thingsboard.server.actors.stats.StatsActor;
 import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.queue.discovery.TbApplicationEventListener;
 import org.thingsboard.server.queue.discovery.event.PartitionChangeEvent;
 import org.thingsboard.server.queue.util.AfterStartUp;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
@@ -50,9 +59,14 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
     public static final String DEVICE_DISPATCHER_NAME = "device-dispatcher";
     public static final String RULE_DISPATCHER_NAME = "rule-dispatcher";
 
+    private static final String ACTOR_MAILBOX_STATS_KEY = "actors.mailbox";
+
     @Autowired
     private ActorSystemContext actorContext;
 
+    @Autowired
+    private StatsFactory statsFactory;
+
     private TbActorSystem system;
 
     private TbActorRef appActor;
@@ -78,6 +92,35 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
     @Value("${actors.system.rule_dispatcher_pool_size:4}")
     private int ruleDispatcherSize;
 
+    @Value("${actors.system.tenant_dispatcher_type:FIXED}")
+    private DispatcherType tenantDispatcherType;
+
+    @Value("${actors.system.device_dispatcher_type:FIXED}")
+    private DispatcherType deviceDispatcherType;
+
+    @Value("${actors.system.rule_dispatcher_type:FIXED}")
+    private DispatcherType ruleDispatcherType;
+
+    @Value("${actors.system.mailbox.device_max_size:0}")
+    private int deviceMailboxMaxSize;
+
+    @Value("${actors.system.mailbox.device_overflow_policy:DROP_OLDEST}")
+    private MailboxOverflowPolicy deviceMailboxOverflowPolicy;
+
+    @Value("${actors.system.mailbox.rule_max_size:0}")
+    private int ruleMailboxMaxSize;
+
+    @Value("${actors.system.mailbox.rule_overflow_policy:REJECT}")
+    private MailboxOverflowPolicy ruleMailboxOverflowPolicy;
+
+    @Value("${actors.system.mailbox.block_timeout_ms:1000}")
+    private long mailboxBlockTimeoutMs;
+
+    @Value("${actors.statistics.enabled:true}")
+    private boolean statisticsEnabled;
+
+    private final Map<String, MailboxGauges> mailboxGauges = new ConcurrentHashMap<>();
+
     @PostConstruct
     public void initActorSystem() {
         log.info("Initializing actor system.");
@@ -86,9 +129,11 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
         system = new DefaultTbActorSystem(settings);
 
         system.createDispatcher(APP_DISPATCHER_NAME, initDispatcherExecutor(APP_DISPATCHER_NAME, appDispatcherSize));
-        system.createDispatcher(TENANT_DISPATCHER_NAME, initDispatcherExecutor(TENANT_DISPATCHER_NAME, tenantDispatcherSize));
-        system.createDispatcher(DEVICE_DISPATCHER_NAME, initDispatcherExecutor(DEVICE_DISPATCHER_NAME, deviceDispatcherSize));
-        system.createDispatcher(RULE_DISPATCHER_NAME, initDispatcherExecutor(RULE_DISPATCHER_NAME, ruleDispatcherSize));
+        system.createDispatcher(TENANT_DISPATCHER_NAME, initDispatcherExecutor(TENANT_DISPATCHER_NAME, tenantDispatcherType, tenantDispatcherSize));
+        system.createDispatcher(DEVICE_DISPATCHER_NAME, initDispatcherExecutor(DEVICE_DISPATCHER_NAME, deviceDispatcherType, deviceDispatcherSize),
+                new TbActorMailboxSettings(deviceMailboxMaxSize, deviceMailboxOverflowPolicy, mailboxBlockTimeoutMs));
+        system.createDispatcher(RULE_DISPATCHER_NAME, initDispatcherExecutor(RULE_DISPATCHER_NAME, ruleDispatcherType, ruleDispatcherSize),
+                new TbActorMailboxSettings(ruleMailboxMaxSize, ruleMailboxOverflowPolicy, mailboxBlockTimeoutMs));
 
         actorContext.setActorSystem(system);
 
@@ -101,6 +146,18 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
         log.info("Actor system initialized.");
     }
 
+    private ExecutorService initDispatcherExecutor(String dispatcherName, DispatcherType type, int poolSize) {
+        if (type == DispatcherType.VIRTUAL) {
+            if (ThingsBoardExecutors.isVirtualThreadSupported()) {
+                log.info("[{}] Using virtual thread per task dispatcher", dispatcherName);
+            } else {
+                log.warn("[{}] Virtual threads are not supported by current JVM, falling back to cached platform thread pool", dispatcherName);
+            }
+            return ThingsBoardExecutors.newVirtualThreadPerTaskExecutor(dispatcherName);
+        }
+        return initDispatcherExecutor(dispatcherName, poolSize);
+    }
+
     private ExecutorService initDispatcherExecutor(String dispatcherName, int poolSize) {
         if (poolSize == 0) {
             int cores = Runtime.getRuntime().availableProcessors();
@@ -125,6 +182,68 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
         this.appActor.tellWithHighPriority(new PartitionChangeMsg(event.getQueueKey().getType(), event.getPartitions()));
     }
 
+    @Scheduled(fixedDelayString = "${actors.statistics.mailbox_print_interval_ms:10000}")
+    public void printMailboxStats() {
+        if (!statisticsEnabled || system == null) {
+            return;
+        }
+        for (TbActorTypeStats stats : system.getActorTypeStats()) {
+            MailboxGauges gauges = mailboxGauges.computeIfAbsent(stats.getActorType(), type -> new MailboxGauges(statsFactory, stats));
+            gauges.update(stats);
+            if (gauges.lastProcessed > 0 || stats.getQueueDepth().get() > 0 || gauges.dropped.get() > 0) {
+                log.info("[{}] Actor mailbox stats: depth [{}] processed [{}] avgProcessingTime [{}us] throughputRatio [{}%] dropped [{}]",
+                        stats.getActorType(), stats.getQueueDepth().get(), gauges.lastProcessed, gauges.avgProcessingTimeUs.get(),
+                        gauges.throughputRatio.get(), gauges.dropped.get());
+            }
+        }
+    }
+
+    /**
+     * FIXED: 固定大小线程池(pool_size 生效); VIRTUAL: 每个任务一个虚拟线程, 适合包含阻塞调用的规则节点
+     */
+    enum DispatcherType {
+        FIXED, VIRTUAL
+    }
+
+    /**
+     * 每种 actor 类型的 Micrometer gauge, 队列深度为实时值, 其余为上一个统计周期内的值
+     */
+    private static class MailboxGauges {
+        private final AtomicLong avgProcessingTimeUs;
+        private final AtomicLong throughputRatio;
+        private final AtomicLong dropped;
+        private long prevEnqueued;
+        private long prevProcessed;
+        private long prevProcessingNanos;
+        private long prevDropped;
+        private long lastProcessed;
+
+        MailboxGauges(StatsFactory statsFactory, TbActorTypeStats stats) {
+            String actorType = stats.getActorType();
+            statsFactory.createGauge(ACTOR_MAILBOX_STATS_KEY, stats.getQueueDepth(), "actorType", actorType, "statsName", "queueDepth");
+            this.avgProcessingTimeUs = statsFactory.createGauge(ACTOR_MAILBOX_STATS_KEY, new AtomicLong(), "actorType", actorType, "statsName", "avgProcessingTimeUs");
+            this.throughputRatio = statsFactory.createGauge(ACTOR_MAILBOX_STATS_KEY, new AtomicLong(), "actorType", actorType, "statsName", "throughputRatio");
+            this.dropped = statsFactory.createGauge(ACTOR_MAILBOX_STATS_KEY, new AtomicLong(), "actorType", actorType, "statsName", "dropped");
+        }
+
+        void update(TbActorTypeStats stats) {
+            long enqueued = stats.getEnqueued();
+            long processed = stats.getProcessed();
+            long processingNanos = stats.getProcessingNanos();
+            long droppedTotal = stats.getDropped();
+            long enqueuedDelta = enqueued - prevEnqueued;
+            lastProcessed = processed - prevProcessed;
+            avgProcessingTimeUs.set(lastProcessed > 0 ? TimeUnit.NANOSECONDS.toMicros(processingNanos - prevProcessingNanos) / lastProcessed : 0);
+            // 处理量/入队量, 持续低于 100 说明该类型 actor 处理不过来
+            throughputRatio.set(enqueuedDelta > 0 ? lastProcessed * 100 / enqueuedDelta : 100);
+            dropped.set(droppedTotal - prevDropped);
+            prevEnqueued = enqueued;
+            prevProcessed = processed;
+            prevProcessingNanos = processingNanos;
+            prevDropped = droppedTotal;
+        }
+    }
+
     @PreDestroy
     public void stopActorSystem() {
         if (system != null) {
@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.thingsboard.server.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.thingsboard.common.util.IngestionTrace;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.StringUtils;
+import org.thingsboard.server.common.data.exception.ThingsboardErrorCode;
+import org.thingsboard.server.common.data.exception.ThingsboardException;
+import org.thingsboard.server.queue.util.TbCoreComponent;
+import springfox.documentation.annotations.ApiIgnore;
+
+import javax.annotation.PostConstruct;
+import java.util.UUID;
+
+/**
+ * 遥测接入链路追踪开关, 只作用于当前节点
+ */
+@ApiIgnore
+@RestController
+@TbCoreComponent
+@RequestMapping("/api/ingestionTrace")
+@Slf4j
+public class IngestionTraceController extends BaseController {
+
+    @Value("${ingestion_trace.sample_rate:0}")
+    private double sampleRate;
+
+    @Value("${ingestion_trace.max_lines_per_second:100}")
+    private int maxLinesPerSecond;
+
+    @Value("${ingestion_trace.entities:}")
+    private String entities;
+
+    @PostConstruct
+    public void init() {
+        IngestionTrace.setSampleRate(sampleRate);
+        IngestionTrace.setMaxLinesPerSecond(maxLinesPerSecond);
+        if (StringUtils.isNotBlank(entities)) {
+            for (String id : entities.split(",")) {
+                IngestionTrace.enable(UUID.fromString(id.trim()));
+            }
+        }
+    }
+
+    @PreAuthorize("hasAuthority('SYS_ADMIN')")
+    @RequestMapping(method = RequestMethod.GET)
+    @ResponseBody
+    public JsonNode getIngestionTrace() {
+        ObjectNode result = JacksonUtil.newObjectNode();
+        result.put("sampleRate", IngestionTrace.getSampleRate());
+        result.put("maxLinesPerSecond", IngestionTrace.getMaxLinesPerSecond());
+        IngestionTrace.getTargets().forEach(id -> result.withArray("entities").add(id.toString()));
+        return result;
+    }
+
+    /**
+     * 开启/关闭租户或设备的追踪
+     */
+    @PreAuthorize("hasAuthority('SYS_ADMIN')")
+    @RequestMapping(value = "/{entityId}", method = RequestMethod.POST)
+    @ResponseBody
+    public JsonNode setEntityTrace(@PathVariable("entityId") String strEntityId,
+                                   @RequestParam(defaultValue = "true") boolean enabled) throws ThingsboardException {
+        UUID entityId = toUUID(strEntityId);
+        if (enabled) {
+            IngestionTrace.enable(entityId);
+        } else {
+            IngestionTrace.disable(entityId);
+        }
+        return getIngestionTrace();
+    }
+
+    @PreAuthorize("hasAuthority('SYS_ADMIN')")
+    @RequestMapping(value = "/sampleRate", method = RequestMethod.POST)
+    @ResponseBody
+    public JsonNode setSampleRate(@RequestParam double rate) throws ThingsboardException {
+        if (rate < 0 || rate > 1) {
+            throw new ThingsboardException("Sample rate must be between 0 and 1", ThingsboardErrorCode.BAD_REQUEST_PARAMS);
+        }
+        IngestionTrace.setSampleRate(rate);
+        return getIngestionTrace();
+    }
+
+}
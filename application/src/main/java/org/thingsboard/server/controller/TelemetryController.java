@@ -32,12 +32,15 @@ import io.swagger.annotations.ApiResponses;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -50,6 +53,7 @@ import org.thingsboard.rule.engine.api.msg.DeviceAttributesEventNotificationMsg;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.StringUtils;
+import org.thingsboard.server.common.data.TelemetryConstants;
 import org.thingsboard.server.common.data.TenantProfile;
 import org.thingsboard.server.common.data.audit.ActionType;
 import org.thingsboard.server.common.data.exception.ThingsboardException;
@@ -79,6 +83,7 @@ import org.thingsboard.server.common.data.page.PageLink;
 import org.thingsboard.server.common.data.recognition.TelemetryRecognition;
 import org.thingsboard.server.common.data.tenant.profile.DefaultTenantProfileConfiguration;
 import org.thingsboard.server.common.transport.adaptor.JsonConverter;
+import org.thingsboard.server.dao.image.ImageBlobService;
 import org.thingsboard.server.dao.timeseries.TelemetryRecognitionService;
 import org.thingsboard.server.dao.timeseries.TimeseriesService;
 import org.thingsboard.server.exception.InvalidParametersException;
@@ -89,6 +94,7 @@ import org.thingsboard.server.service.security.model.SecurityUser;
 import org.thingsboard.server.service.security.permission.Operation;
 import org.thingsboard.server.service.telemetry.AttributeData;
 import org.thingsboard.server.service.telemetry.TsData;
+import org.thingsboard.server.utils.ByteBufferResource;
 
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
@@ -151,6 +157,8 @@ import static org.thingsboard.server.controller.ControllerConstants.TS_STRICT_DA
 @Slf4j
 public class TelemetryController extends BaseController {
 
+    private static final long IMAGE_MAX_AGE_DAYS = 1;
+
     @Autowired
     private TimeseriesService tsService;
     @Autowired
@@ -159,6 +167,9 @@ public class TelemetryController extends BaseController {
     @Autowired
     private AccessValidator accessValidator;
 
+    @Autowired
+    private ImageBlobService imageBlobService;
+
     @Value("${transport.json.max_string_value_length:0}")
     private int maxStringValueLength;
 
@@ -630,6 +641,23 @@ public class TelemetryController extends BaseController {
     }
 
 
+    @ApiOperation(value = "获取遥测图片原始数据",
+            notes = "Returns the raw image bytes (image/jpeg) of the device at the given upload time. " +
+                    "Supports conditional requests with 'If-None-Match' and partial requests with 'Range'.")
+    @PreAuthorize("hasAnyAuthority('TENANT_ADMIN')")
+    @RequestMapping(value = "/{entityType}/{entityId}/values/image/{ts}", method = RequestMethod.GET, produces = MediaType.IMAGE_JPEG_VALUE)
+    @ResponseBody
+    public DeferredResult<ResponseEntity> getValuesImageRaw(
+            @ApiParam(value = ENTITY_TYPE_PARAM_DESCRIPTION, required = true, defaultValue = "DEVICE") @PathVariable("entityType") String entityType,
+            @ApiParam(value = ENTITY_ID_PARAM_DESCRIPTION, required = true) @PathVariable("entityId") String entityIdStr,
+            @ApiParam("上传遥测数据时间") @PathVariable("ts") long ts,
+            @ApiParam("设备能力(上传的遥测数据key)")
+            @RequestParam(value = "ability", required = false, defaultValue = TelemetryConstants.IMAGE) String ability,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws ThingsboardException {
+        return accessValidator.validateEntityAndCallback(getCurrentUser(), Operation.READ_TELEMETRY, entityType, entityIdStr,
+                (result, tenantId, entityId) -> getImageCallback(result, tenantId, entityId, ts, ability, ifNoneMatch));
+    }
+
     @ApiOperation("遥测数据人工识别")
     @PreAuthorize("hasAnyAuthority('TENANT_ADMIN')")
     @RequestMapping(value = "/recognition", method = RequestMethod.POST)
@@ -762,6 +790,53 @@ public class TelemetryController extends BaseController {
         Futures.addCallback(future, getTsKvListCallback(result, useStrictDataTypes), MoreExecutors.directExecutor());
     }
 
+    private void getImageCallback(DeferredResult<ResponseEntity> result, TenantId tenantId, EntityId entityId, long ts, String key, String ifNoneMatch) {
+        ListenableFuture<ResponseEntity> future = Futures.transformAsync(tsService.findTelemetryImageValue(tenantId, entityId, ts, key), value -> {
+            if (value.isEmpty() || StringUtils.isEmpty(value.get())) {
+                return Futures.immediateFuture(ResponseEntity.notFound().build());
+            }
+            String eTag = imageBlobService.toETag(value.get());
+            if (isETagMatched(ifNoneMatch, eTag)) {
+                return Futures.immediateFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build());
+            }
+            return Futures.transform(imageBlobService.findBytes(tenantId, value.get()), bytes -> bytes
+                    .<ResponseEntity>map(buffer -> ResponseEntity.ok()
+                            .eTag(eTag)
+                            .cacheControl(CacheControl.maxAge(IMAGE_MAX_AGE_DAYS, TimeUnit.DAYS).cachePrivate())
+                            .contentType(MediaType.IMAGE_JPEG)
+                            .body(new ByteBufferResource(buffer)))
+                    .orElseGet(() -> ResponseEntity.notFound().build()), MoreExecutors.directExecutor());
+        }, MoreExecutors.directExecutor());
+        Futures.addCallback(future, new FutureCallback<>() {
+            @Override
+            public void onSuccess(ResponseEntity response) {
+                result.setResult(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                log.error("[{}][{}] Failed to fetch image {}", entityId, ts, key, e);
+                AccessValidator.handleError(e, result, HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private static boolean isETagMatched(String ifNoneMatch, String eTag) {
+        if (StringUtils.isEmpty(ifNoneMatch)) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String value = tag.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if ("*".equals(value) || value.equals("\"" + eTag + "\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void getAttributeValuesCallback(@Nullable DeferredResult<ResponseEntity> result, SecurityUser user, EntityId entityId, String scope, String keys) {
         List<String> keyList = toKeysList(keys);
         FutureCallback<List<AttributeKvEntry>> callback = getAttributeValuesToResponseCallback(result, user, scope, entityId, keyList);
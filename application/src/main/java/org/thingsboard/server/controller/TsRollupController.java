@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.exception.ThingsboardErrorCode;
+import org.thingsboard.server.common.data.exception.ThingsboardException;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.EntityIdFactory;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.queue.util.TbCoreComponent;
+import org.thingsboard.server.service.system.TsRollupBackfillService;
+import springfox.documentation.annotations.ApiIgnore;
+
+import java.util.List;
+
+/**
+ * 时序预聚合运维接口
+ */
+@ApiIgnore
+@RestController
+@TbCoreComponent
+@RequiredArgsConstructor
+@RequestMapping("/api/tsRollup")
+public class TsRollupController extends BaseController {
+
+    private final TsRollupBackfillService backfillService;
+
+    /**
+     * 异步回填 startTs 所在天之后、预聚合覆盖起点之前的数据
+     */
+    @PreAuthorize("hasAuthority('SYS_ADMIN')")
+    @RequestMapping(value = "/backfill/{entityType}/{entityId}", method = RequestMethod.POST)
+    @ResponseBody
+    public JsonNode backfill(@PathVariable("entityType") String entityType,
+                             @PathVariable("entityId") String strEntityId,
+                             @RequestParam(name = "keys") List<String> keys,
+                             @RequestParam(name = "startTs") long startTs) throws ThingsboardException {
+        if (!backfillService.isEnabled()) {
+            throw new ThingsboardException("Timeseries rollups are disabled", ThingsboardErrorCode.BAD_REQUEST_PARAMS);
+        }
+        checkParameter("entityId", strEntityId);
+        EntityId entityId = EntityIdFactory.getByTypeAndId(entityType, strEntityId);
+        backfillService.submit(TenantId.SYS_TENANT_ID, entityId, keys, startTs);
+        ObjectNode result = JacksonUtil.newObjectNode();
+        result.put("submitted", keys.size());
+        return result;
+    }
+
+}
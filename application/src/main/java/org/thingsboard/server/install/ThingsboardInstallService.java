@@ -184,6 +184,9 @@ public class ThingsboardInstallService {
             case "1.0.1.1-r3":
                 nextVersion = "1.0.1.1-r4";
                 log.info("Upgrading MSAIoTSensingPlatform from version {} to {} ...", currentVersion, nextVersion);
+                if (databaseTsUpgradeService != null) {
+                    databaseTsUpgradeService.upgradeDatabase("1.0.1.1-r3");
+                }
                 break;
             default:
                 throw new RuntimeException("Unable to upgrade MSAIoTSensingPlatform, unsupported fromVersion: " + upgradeFromVersion);
@@ -67,7 +67,11 @@ public abstract class CassandraAbstractDatabaseSchemaService implements Database
 
     private void loadCql(Path cql) throws Exception {
         List<String> statements = new CQLStatementsParser(cql).getStatements();
-        statements.forEach(statement -> cluster.getSession().execute(getCassandraKeyspaceName(statement)));
+        statements.forEach(this::execute);
+    }
+
+    protected void execute(String statement) {
+        cluster.getSession().execute(getCassandraKeyspaceName(statement));
     }
 
     private String getCassandraKeyspaceName(String statement) {
@@ -16,6 +16,7 @@
  */
 package org.thingsboard.server.service.install;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import org.thingsboard.server.dao.util.NoSqlTsDao;
@@ -25,7 +26,18 @@ import org.thingsboard.server.dao.util.NoSqlTsDao;
 @Profile("install")
 public class CassandraTsDatabaseSchemaService extends CassandraAbstractDatabaseSchemaService
         implements TsDatabaseSchemaService {
+
+    @Value("${cassandra.query.ts_key_value_ttl:0}")
+    private long tsTtl;
+
     public CassandraTsDatabaseSchemaService() {
         super("schema-ts.cql");
     }
+
+    @Override
+    public void createDatabaseSchema(boolean createIndexes) throws Exception {
+        super.createDatabaseSchema(createIndexes);
+        // 图片与引用它的时序数据同时过期
+        execute("ALTER TABLE msaiotsensingplatform.image_blob_cf WITH default_time_to_live = " + tsTtl);
+    }
 }
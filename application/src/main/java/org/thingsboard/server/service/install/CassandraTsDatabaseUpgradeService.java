@@ -18,16 +18,38 @@ package org.thingsboard.server.service.install;
 
 import com.datastax.oss.driver.api.core.servererrors.InvalidQueryException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import org.thingsboard.server.dao.util.NoSqlTsDao;
 
+import java.util.List;
+
 @Service
 @NoSqlTsDao
 @Profile("install")
 @Slf4j
 public class CassandraTsDatabaseUpgradeService extends AbstractCassandraDatabaseUpgradeService implements DatabaseTsUpgradeService {
 
+    private static final String CREATE_IMAGE_BLOB_TABLE = "CREATE TABLE IF NOT EXISTS image_blob_cf (" +
+            "bucket bigint, shard int, hash text, data blob, PRIMARY KEY (( bucket, shard ), hash)" +
+            ") WITH compaction = { 'class' : 'TimeWindowCompactionStrategy', 'compaction_window_unit' : 'DAYS', 'compaction_window_size' : 1 }";
+
+    private static final String CREATE_TS_KV_ROLLUP_TABLE = "CREATE TABLE IF NOT EXISTS ts_kv_rollup_cf (" +
+            "entity_type text, entity_id timeuuid, key text, granularity text, partition bigint, bucket_ts bigint, writer_id timeuuid, " +
+            "long_cnt bigint, long_sum bigint, long_min bigint, long_max bigint, " +
+            "dbl_cnt bigint, dbl_sum double, dbl_min double, dbl_max double, last_ts bigint, " +
+            "PRIMARY KEY (( entity_type, entity_id, key, granularity, partition ), bucket_ts, writer_id)" +
+            ") WITH compaction = { 'class' : 'LeveledCompactionStrategy' }";
+
+    private static final String CREATE_TS_KV_ROLLUP_COVERAGE_TABLE = "CREATE TABLE IF NOT EXISTS ts_kv_rollup_coverage_cf (" +
+            "entity_type text, entity_id timeuuid, key text, since_ts bigint, run_id timeuuid, " +
+            "PRIMARY KEY (( entity_type, entity_id, key ))" +
+            ")";
+
+    @Value("${cassandra.query.ts_key_value_ttl:0}")
+    private long tsTtl;
+
     @Override
     public void upgradeDatabase(String fromVersion) throws Exception {
         switch (fromVersion) {
@@ -54,6 +76,16 @@ public class CassandraTsDatabaseUpgradeService extends AbstractCassandraDatabase
             case "3.2.1":
             case "3.2.2":
                 break;
+            case "1.0.1.1-r3":
+                log.info("Updating schema ...");
+                for (String stmt : List.of(CREATE_IMAGE_BLOB_TABLE, CREATE_TS_KV_ROLLUP_TABLE, CREATE_TS_KV_ROLLUP_COVERAGE_TABLE)) {
+                    cluster.getSession().execute(stmt);
+                    Thread.sleep(2500);
+                }
+                // 图片与引用它的时序数据同时过期
+                cluster.getSession().execute("ALTER TABLE image_blob_cf WITH default_time_to_live = " + tsTtl);
+                log.info("Schema updated.");
+                break;
             default:
                 throw new RuntimeException("Unable to upgrade Cassandra database, unsupported fromVersion: " + fromVersion);
         }
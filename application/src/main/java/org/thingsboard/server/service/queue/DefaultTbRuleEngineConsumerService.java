@@ -27,6 +27,7 @@ import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.common.data.id.QueueId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.queue.Queue;
+import org.thingsboard.server.common.data.queue.SubmitStrategyType;
 import org.thingsboard.server.common.data.rpc.RpcError;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.queue.QueueToRuleEngineMsg;
@@ -56,6 +57,7 @@ import org.thingsboard.server.service.apiusage.TbApiUsageStateService;
 import org.thingsboard.server.service.profile.TbAssetProfileCache;
 import org.thingsboard.server.service.profile.TbDeviceProfileCache;
 import org.thingsboard.server.service.queue.processing.AbstractConsumerService;
+import org.thingsboard.server.service.queue.processing.AdaptiveSubmitController;
 import org.thingsboard.server.service.queue.processing.TbRuleEngineProcessingDecision;
 import org.thingsboard.server.service.queue.processing.TbRuleEngineProcessingResult;
 import org.thingsboard.server.service.queue.processing.TbRuleEngineProcessingStrategy;
@@ -77,10 +79,13 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
 
 @Service
@@ -92,6 +97,7 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
     public static final String SUCCESSFUL_STATUS = "successful";
     public static final String FAILED_STATUS = "failed";
     public static final String THREAD_TOPIC_SEPARATOR = " | ";
+    private static final int DEFAULT_ADAPTIVE_WINDOW = 1000;
     @Value("${queue.rule-engine.poll-interval}")
     private long pollDuration;
     @Value("${queue.rule-engine.pack-processing-timeout}")
@@ -100,6 +106,10 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
     private boolean statsEnabled;
     @Value("${queue.rule-engine.prometheus-stats.enabled:false}")
     boolean prometheusStatsEnabled;
+    @Value("${queue.rule-engine.adaptive-submit.target-pack-latency-ms:1000}")
+    private long adaptiveTargetPackLatencyMs;
+    @Value("${queue.rule-engine.adaptive-submit.max-in-flight-packs:2}")
+    private int adaptiveMaxInFlightPacks;
 
     private final StatsFactory statsFactory;
     private final TbRuleEngineSubmitStrategyFactory submitStrategyFactory;
@@ -119,6 +129,7 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
      * 规则链消费队列
      */
     final ExecutorService submitExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("tb-rule-engine-consumer-submit"));
+    final ExecutorService adaptivePackExecutor = Executors.newCachedThreadPool(ThingsBoardThreadFactory.forName("tb-rule-engine-adaptive-pack"));
     final ScheduledExecutorService repartitionExecutor = Executors.newScheduledThreadPool(1, ThingsBoardThreadFactory.forName("tb-rule-engine-consumer-repartition"));
 
     public DefaultTbRuleEngineConsumerService(TbRuleEngineProcessingStrategyFactory processingStrategyFactory,
@@ -170,6 +181,7 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
     public void stop() {
         super.destroy();
         submitExecutor.shutdownNow();
+        adaptivePackExecutor.shutdownNow();
         repartitionExecutor.shutdownNow();
     }
 
@@ -270,49 +282,23 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
 
     void consumerLoop(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, org.thingsboard.server.common.data.queue.Queue configuration, TbRuleEngineConsumerStats stats, String threadSuffix) {
         updateCurrentThreadName(threadSuffix);
+        AdaptiveSubmitController adaptiveController = SubmitStrategyType.ADAPTIVE.equals(configuration.getSubmitStrategy().getType()) ?
+                newAdaptiveController(configuration) : null;
+        List<InFlightPack> inFlightPacks = new ArrayList<>();
         while (!stopped && !consumer.isStopped()) {
             try {
                 // 拉取消息消费 隔pollDuration拉取一批
                 List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs = consumer.poll(pollDuration);
                 if (msgs.isEmpty()) {
+                    commitProcessedPacks(consumer, inFlightPacks);
                     continue;
                 }
-                final TbRuleEngineSubmitStrategy submitStrategy = getSubmitStrategy(configuration);
-                final TbRuleEngineProcessingStrategy ackStrategy = getAckStrategy(configuration);
-                submitStrategy.init(msgs);
-                while (!stopped && !consumer.isStopped()) {
-                    TbMsgPackProcessingContext ctx = new TbMsgPackProcessingContext(configuration.getName(), submitStrategy, ackStrategy.isSkipTimeoutMsgs());
-                    // 提交策略
-                    submitStrategy.submitAttempt((id, msg) -> submitExecutor.submit(() -> submitMessage(configuration, stats, ctx, id, msg)));
-
-                    final boolean timeout = !ctx.await(configuration.getPackProcessingTimeout(), TimeUnit.MILLISECONDS);
-
-                    TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(configuration.getName(), timeout, ctx);
-                    if (timeout) {
-                        // 节点回调超时
-                        printFirstOrAll(configuration, ctx, ctx.getPendingMap(), "Timeout");
-                    }
-                    if (!ctx.getFailedMap().isEmpty()) {
-                        // 失败
-                        printFirstOrAll(configuration, ctx, ctx.getFailedMap(), "Failed");
-                    }
-                    ctx.printProfilerStats();
-
-                    TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
-                    if (statsEnabled) {
-                        stats.log(result, decision.isCommit());
-                    }
-
-                    ctx.cleanup();
-
-                    if (decision.isCommit()) {
-                        submitStrategy.stop();
-                        break;
-                    } else {
-                        submitStrategy.update(decision.getReprocessMap());
-                    }
+                if (adaptiveController != null) {
+                    submitAdaptivePack(consumer, configuration, stats, adaptiveController, inFlightPacks, msgs);
+                } else {
+                    processPack(configuration, stats, msgs, null);
+                    consumer.commit();
                 }
-                consumer.commit();
             } catch (Exception e) {
                 if (!stopped) {
                     log.warn("Failed to process messages from queue.", e);
@@ -327,6 +313,133 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
         log.info("TB Rule Engine Consumer stopped.");
     }
 
+    /**
+     * 处理一个消息包直到确认策略决定提交(可能经过多轮重试), 不负责提交偏移量
+     */
+    private void processPack(Queue configuration, TbRuleEngineConsumerStats stats, List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs,
+                             AdaptiveSubmitController adaptiveController) throws InterruptedException {
+        long startTs = System.currentTimeMillis();
+        boolean anyTimeout = false;
+        final TbRuleEngineSubmitStrategy submitStrategy = getSubmitStrategy(configuration, adaptiveController);
+        final TbRuleEngineProcessingStrategy ackStrategy = getAckStrategy(configuration);
+        submitStrategy.init(msgs);
+        Map<UUID, List<String>> payloadRefs = new ConcurrentHashMap<>();
+        while (!stopped) {
+            TbMsgPackProcessingContext ctx = new TbMsgPackProcessingContext(configuration.getName(), submitStrategy, ackStrategy.isSkipTimeoutMsgs());
+            // 提交策略
+            submitStrategy.submitAttempt((id, msg) -> submitExecutor.submit(() -> submitMessage(configuration, stats, ctx, id, msg, payloadRefs)));
+
+            final boolean timeout = !ctx.await(configuration.getPackProcessingTimeout(), TimeUnit.MILLISECONDS);
+            anyTimeout |= timeout;
+
+            TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(configuration.getName(), timeout, ctx);
+            if (timeout) {
+                // 节点回调超时
+                printFirstOrAll(configuration, ctx, ctx.getPendingMap(), "Timeout");
+            }
+            if (!ctx.getFailedMap().isEmpty()) {
+                // 失败
+                printFirstOrAll(configuration, ctx, ctx.getFailedMap(), "Failed");
+            }
+            ctx.printProfilerStats();
+
+            TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
+            if (statsEnabled) {
+                stats.log(result, decision.isCommit());
+            }
+            if (decision.isCommit()) {
+                releasePayloads(payloadRefs, ctx.getPendingMap().keySet());
+            }
+
+            ctx.cleanup();
+
+            if (decision.isCommit()) {
+                submitStrategy.stop();
+                break;
+            } else {
+                submitStrategy.update(decision.getReprocessMap());
+            }
+        }
+        if (adaptiveController != null) {
+            adaptiveController.onPackProcessed(System.currentTimeMillis() - startTs, anyTimeout);
+        }
+    }
+
+    /**
+     * ADAPTIVE: 包在独立线程中处理, 消费线程只等待自适应的时长; 若仍有慢发起者未完成则先拉取下一个包,
+     * 新包中同一发起者的消息由 {@link AdaptiveSubmitController} 排在其后. 按拉取顺序提交已连续完成的包,
+     * 在途包数达到上限时阻塞等待最早的包.
+     */
+    private void submitAdaptivePack(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue configuration, TbRuleEngineConsumerStats stats,
+                                    AdaptiveSubmitController adaptiveController, List<InFlightPack> inFlightPacks,
+                                    List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs) throws InterruptedException {
+        Future<?> future = adaptivePackExecutor.submit(() -> {
+            try {
+                processPack(configuration, stats, msgs, adaptiveController);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("[{}] Failed to process messages from queue.", configuration.getName(), e);
+            }
+        });
+        inFlightPacks.add(new InFlightPack(future, consumer.getPollPosition()));
+        awaitPacks(inFlightPacks, adaptiveController.getStragglerWaitMs());
+        commitProcessedPacks(consumer, inFlightPacks);
+        while (inFlightPacks.size() >= adaptiveMaxInFlightPacks) {
+            awaitPacks(inFlightPacks.subList(0, 1), Long.MAX_VALUE);
+            commitProcessedPacks(consumer, inFlightPacks);
+        }
+    }
+
+    private void awaitPacks(List<InFlightPack> inFlightPacks, long waitMs) throws InterruptedException {
+        long deadline = waitMs == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + waitMs;
+        for (InFlightPack pack : inFlightPacks) {
+            try {
+                if (deadline == Long.MAX_VALUE) {
+                    pack.future.get();
+                } else {
+                    pack.future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                }
+            } catch (TimeoutException e) {
+                return;
+            } catch (ExecutionException e) {
+                log.warn("Failed to process messages pack.", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * 提交从最早的在途包开始连续已完成的部分; 全部完成时整体提交, 否则提交到最后一个已完成包拉取时的位置.
+     * 队列不支持部分提交时只能等全部完成
+     */
+    private void commitProcessedPacks(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, List<InFlightPack> inFlightPacks) {
+        int done = 0;
+        while (done < inFlightPacks.size() && inFlightPacks.get(done).future.isDone()) {
+            done++;
+        }
+        if (done == 0) {
+            return;
+        }
+        if (done == inFlightPacks.size()) {
+            consumer.commit();
+        } else {
+            Object position = inFlightPacks.get(done - 1).position;
+            if (position == null) {
+                return;
+            }
+            consumer.commit(position);
+        }
+        inFlightPacks.subList(0, done).clear();
+    }
+
+    private AdaptiveSubmitController newAdaptiveController(Queue configuration) {
+        int batchSize = configuration.getSubmitStrategy().getBatchSize();
+        int initialWindow = batchSize > 0 ? batchSize : DEFAULT_ADAPTIVE_WINDOW;
+        // 窗口跨在途包计数, 多个包同时在途时可以超过单个包的大小
+        return new AdaptiveSubmitController(configuration.getName(), initialWindow, initialWindow * Math.max(1, adaptiveMaxInFlightPacks),
+                adaptiveTargetPackLatencyMs, configuration.getPackProcessingTimeout());
+    }
+
     void updateCurrentThreadName(String threadSuffix) {
         String name = Thread.currentThread().getName();
         int spliteratorIndex = name.indexOf(THREAD_TOPIC_SEPARATOR);
@@ -341,11 +454,23 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
         return processingStrategyFactory.newInstance(configuration.getName(), configuration.getProcessingStrategy());
     }
 
-    TbRuleEngineSubmitStrategy getSubmitStrategy(Queue configuration) {
-        return submitStrategyFactory.newInstance(configuration.getName(), configuration.getSubmitStrategy());
+    TbRuleEngineSubmitStrategy getSubmitStrategy(Queue configuration, AdaptiveSubmitController adaptiveController) {
+        return submitStrategyFactory.newInstance(configuration.getName(), configuration.getSubmitStrategy(), adaptiveController);
+    }
+
+    /**
+     * 消息包提交后释放消息携带的大数据引用; 超时但仍在处理中的消息可能还会读取引用, 不释放
+     */
+    private void releasePayloads(Map<UUID, List<String>> payloadRefs, Set<UUID> pendingIds) {
+        payloadRefs.forEach((id, refs) -> {
+            if (!pendingIds.contains(id)) {
+                refs.forEach(actorContext.getPayloadStore()::release);
+            }
+        });
     }
 
-    void submitMessage(Queue configuration, TbRuleEngineConsumerStats stats, TbMsgPackProcessingContext ctx, UUID id, TbProtoQueueMsg<ToRuleEngineMsg> msg) {
+    void submitMessage(Queue configuration, TbRuleEngineConsumerStats stats, TbMsgPackProcessingContext ctx, UUID id, TbProtoQueueMsg<ToRuleEngineMsg> msg,
+                       Map<UUID, List<String>> payloadRefs) {
         log.trace("[{}] Creating callback for topic {} message: {}", id, configuration.getName(), msg.getValue());
         ToRuleEngineMsg toRuleEngineMsg = msg.getValue();
         TenantId tenantId = TenantId.fromUUID(new UUID(toRuleEngineMsg.getTenantIdMSB(), toRuleEngineMsg.getTenantIdLSB()));
@@ -354,7 +479,7 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                 new TbMsgPackCallback(id, tenantId, ctx);
         try {
             if (!toRuleEngineMsg.getTbMsg().isEmpty()) {
-                forwardToRuleEngineActor(configuration.getName(), tenantId, toRuleEngineMsg, callback);
+                forwardToRuleEngineActor(configuration.getName(), tenantId, toRuleEngineMsg, callback, id, payloadRefs);
             } else {
                 callback.onSuccess();
             }
@@ -477,8 +602,13 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
         partitionService.removeQueue(queueDeleteMsg);
     }
 
-    private void forwardToRuleEngineActor(String queueName, TenantId tenantId, ToRuleEngineMsg toRuleEngineMsg, TbMsgCallback callback) {
+    private void forwardToRuleEngineActor(String queueName, TenantId tenantId, ToRuleEngineMsg toRuleEngineMsg, TbMsgCallback callback,
+                                          UUID id, Map<UUID, List<String>> payloadRefs) {
         TbMsg tbMsg = TbMsg.fromBytes(queueName, toRuleEngineMsg.getTbMsg().toByteArray(), callback);
+        List<String> refs = actorContext.getPayloadStore().findRefs(tbMsg.getData());
+        if (!refs.isEmpty()) {
+            payloadRefs.put(id, refs);
+        }
         QueueToRuleEngineMsg msg;
         ProtocolStringList relationTypesList = toRuleEngineMsg.getRelationTypesList();
         Set<String> relationTypes;
@@ -503,4 +633,15 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
         }
     }
 
+    private static class InFlightPack {
+        private final Future<?> future;
+        // 拉取该包后的消费位置, 用于部分提交
+        private final Object position;
+
+        InFlightPack(Future<?> future, Object position) {
+            this.future = future;
+            this.position = position;
+        }
+    }
+
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.service.queue.processing;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * ADAPTIVE 提交策略在单个消费者内共享的状态, 跨多个消息包生效:
+ * <ul>
+ *     <li>按发起者(originator)分道, 同一发起者的消息严格按顺序逐条提交, 后一个包的消息排在前一个包未完成的消息之后;</li>
+ *     <li>同时在处理中的消息数(窗口, 跨所有在途包计数)按包处理耗时做 AIMD 调整: 从初始窗口起步, 低于目标耗时加性增长(最多到 maxWindow),
+ *     超时或超过目标耗时减半;</li>
+ *     <li>根据平均包耗时给出等待慢消息的时长, 超过后消费者可以先拉取下一个包.</li>
+ * </ul>
+ */
+@Slf4j
+public class AdaptiveSubmitController {
+
+    private static final long MIN_STRAGGLER_WAIT_MS = 10;
+
+    private final String queueName;
+    private final int minWindow;
+    private final int maxWindow;
+    private final int windowStep;
+    private final long targetPackLatencyMs;
+    private final long maxStragglerWaitMs;
+
+    private final Map<Object, ArrayDeque<Task>> lanes = new HashMap<>();
+    private final Map<UUID, Task> tasks = new HashMap<>();
+    private final Map<UUID, Task> running = new HashMap<>();
+    private final ArrayDeque<Task> ready = new ArrayDeque<>();
+
+    private volatile int window;
+    private volatile long avgPackLatencyMs = -1;
+
+    public AdaptiveSubmitController(String queueName, int initialWindow, int maxWindow, long targetPackLatencyMs, long maxStragglerWaitMs) {
+        this.queueName = queueName;
+        int initial = Math.max(1, initialWindow);
+        this.maxWindow = Math.max(initial, maxWindow);
+        this.minWindow = Math.max(1, initial / 20);
+        this.windowStep = Math.max(1, initial / 20);
+        this.targetPackLatencyMs = targetPackLatencyMs;
+        this.maxStragglerWaitMs = maxStragglerWaitMs;
+        this.window = initial;
+    }
+
+    void submit(List<Task> newTasks) {
+        List<Runnable> toRun;
+        synchronized (this) {
+            for (Task task : newTasks) {
+                tasks.put(task.id, task);
+                ArrayDeque<Task> lane = lanes.computeIfAbsent(task.laneKey, key -> new ArrayDeque<>());
+                lane.add(task);
+                if (lane.size() == 1) {
+                    ready.add(task);
+                }
+            }
+            toRun = drainReady();
+        }
+        toRun.forEach(Runnable::run);
+    }
+
+    void complete(UUID id) {
+        List<Runnable> toRun;
+        synchronized (this) {
+            Task task = running.remove(id);
+            if (task == null) {
+                return;
+            }
+            tasks.remove(id);
+            ArrayDeque<Task> lane = lanes.get(task.laneKey);
+            lane.poll();
+            promoteNext(task.laneKey, lane);
+            toRun = drainReady();
+        }
+        toRun.forEach(Runnable::run);
+    }
+
+    /**
+     * 释放包内尚未成功的消息(包已提交或需要重试), 让同一发起者后续的消息继续
+     */
+    void cancel(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Runnable> toRun;
+        synchronized (this) {
+            for (UUID id : ids) {
+                Task task = tasks.remove(id);
+                if (task == null) {
+                    continue;
+                }
+                running.remove(id);
+                ready.remove(task);
+                ArrayDeque<Task> lane = lanes.get(task.laneKey);
+                boolean head = lane.peek() == task;
+                lane.remove(task);
+                if (head) {
+                    promoteNext(task.laneKey, lane);
+                } else if (lane.isEmpty()) {
+                    lanes.remove(task.laneKey);
+                }
+            }
+            toRun = drainReady();
+        }
+        toRun.forEach(Runnable::run);
+    }
+
+    /**
+     * 由各包的处理线程并发调用, 窗口与平均耗时的更新在锁内完成
+     */
+    public void onPackProcessed(long latencyMs, boolean timeout) {
+        List<Runnable> toRun;
+        synchronized (this) {
+            long avg = avgPackLatencyMs;
+            avgPackLatencyMs = avg < 0 ? latencyMs : (avg * 7 + latencyMs) / 8;
+            int current = window;
+            int updated;
+            if (timeout || latencyMs > targetPackLatencyMs) {
+                updated = Math.max(minWindow, current / 2);
+            } else {
+                updated = Math.min(maxWindow, current + windowStep);
+            }
+            if (updated == current) {
+                return;
+            }
+            log.debug("[{}] Adaptive submit window changed {} -> {}, pack latency {}ms", queueName, current, updated, latencyMs);
+            window = updated;
+            toRun = updated > current ? drainReady() : Collections.emptyList();
+        }
+        toRun.forEach(Runnable::run);
+    }
+
+    /**
+     * 等待当前包的时长, 超过后消费者不再等慢发起者, 直接拉取下一个包
+     */
+    public long getStragglerWaitMs() {
+        long avg = avgPackLatencyMs;
+        if (avg < 0) {
+            return maxStragglerWaitMs;
+        }
+        return Math.min(maxStragglerWaitMs, Math.max(MIN_STRAGGLER_WAIT_MS, avg * 2));
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    synchronized int getInFlightCount() {
+        return running.size();
+    }
+
+    private void promoteNext(Object laneKey, ArrayDeque<Task> lane) {
+        Task next = lane.peek();
+        if (next != null) {
+            ready.add(next);
+        } else {
+            lanes.remove(laneKey);
+        }
+    }
+
+    private List<Runnable> drainReady() {
+        if (ready.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Runnable> toRun = new ArrayList<>();
+        while (running.size() < window && !ready.isEmpty()) {
+            Task task = ready.poll();
+            running.put(task.id, task);
+            toRun.add(task.action);
+        }
+        return toRun;
+    }
+
+    static class Task {
+        final UUID id;
+        final Object laneKey;
+        final Runnable action;
+
+        Task(UUID id, Object laneKey, Runnable action) {
+            this.id = id;
+            this.laneKey = laneKey;
+            this.action = action;
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.service.queue.processing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.gen.transport.TransportProtos;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * 按发起者保序, 但顺序由消费者级别的 {@link AdaptiveSubmitController} 维护, 因此慢发起者不会阻塞下一个包的其它发起者
+ */
+@Slf4j
+public class AdaptiveTbRuleEngineSubmitStrategy extends AbstractTbRuleEngineSubmitStrategy {
+
+    private final AdaptiveSubmitController controller;
+    private final Set<UUID> submittedIds = ConcurrentHashMap.newKeySet();
+
+    public AdaptiveTbRuleEngineSubmitStrategy(String queueName, AdaptiveSubmitController controller) {
+        super(queueName);
+        this.controller = controller;
+    }
+
+    @Override
+    public void submitAttempt(BiConsumer<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> msgConsumer) {
+        List<AdaptiveSubmitController.Task> tasks = new ArrayList<>(orderedMsgList.size());
+        for (IdMsgPair<TransportProtos.ToRuleEngineMsg> pair : orderedMsgList) {
+            EntityId originatorId = SequentialByOriginatorIdTbRuleEngineSubmitStrategy.getOriginatorId(queueName, pair.msg.getValue());
+            submittedIds.add(pair.uuid);
+            tasks.add(new AdaptiveSubmitController.Task(pair.uuid, originatorId != null ? originatorId : pair.uuid,
+                    () -> msgConsumer.accept(pair.uuid, pair.msg)));
+        }
+        controller.submit(tasks);
+    }
+
+    @Override
+    public void update(ConcurrentMap<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> reprocessMap) {
+        releaseSubmitted();
+        super.update(reprocessMap);
+    }
+
+    @Override
+    protected void doOnSuccess(UUID id) {
+        if (submittedIds.remove(id)) {
+            controller.complete(id);
+        }
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        releaseSubmitted();
+    }
+
+    private void releaseSubmitted() {
+        List<UUID> ids = new ArrayList<>(submittedIds);
+        submittedIds.removeAll(ids);
+        controller.cancel(ids);
+    }
+
+}
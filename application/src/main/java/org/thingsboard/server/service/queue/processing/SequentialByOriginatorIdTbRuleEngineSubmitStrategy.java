@@ -34,6 +34,10 @@ public class SequentialByOriginatorIdTbRuleEngineSubmitStrategy extends Sequenti
 
     @Override
     protected EntityId getEntityId(TransportProtos.ToRuleEngineMsg msg) {
+        return getOriginatorId(queueName, msg);
+    }
+
+    static EntityId getOriginatorId(String queueName, TransportProtos.ToRuleEngineMsg msg) {
         try {
             MsgProtos.TbMsgProto proto = MsgProtos.TbMsgProto.parseFrom(msg.getTbMsg());
             return EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB()));
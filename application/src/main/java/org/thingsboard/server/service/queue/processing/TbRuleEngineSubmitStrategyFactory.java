@@ -25,6 +25,13 @@ import org.thingsboard.server.common.data.queue.SubmitStrategy;
 public class TbRuleEngineSubmitStrategyFactory {
 
     public TbRuleEngineSubmitStrategy newInstance(String name, SubmitStrategy submitStrategy) {
+        return newInstance(name, submitStrategy, null);
+    }
+
+    /**
+     * @param adaptiveController 消费者级别共享的状态, 仅 ADAPTIVE 策略需要
+     */
+    public TbRuleEngineSubmitStrategy newInstance(String name, SubmitStrategy submitStrategy, AdaptiveSubmitController adaptiveController) {
         switch (submitStrategy.getType()) {
             case BURST:
                 return new BurstTbRuleEngineSubmitStrategy(name);
@@ -36,6 +43,11 @@ public class TbRuleEngineSubmitStrategyFactory {
                 return new SequentialByTenantIdTbRuleEngineSubmitStrategy(name);
             case SEQUENTIAL:
                 return new SequentialTbRuleEngineSubmitStrategy(name);
+            case ADAPTIVE:
+                if (adaptiveController == null) {
+                    throw new RuntimeException("TbRuleEngineSubmitStrategy with type ADAPTIVE requires consumer adaptive controller!");
+                }
+                return new AdaptiveTbRuleEngineSubmitStrategy(name, adaptiveController);
             default:
                 throw new RuntimeException("TbRuleEngineProcessingStrategy with type " + submitStrategy.getType() + " is not supported!");
         }
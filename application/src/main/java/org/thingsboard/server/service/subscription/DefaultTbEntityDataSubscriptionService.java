@@ -130,6 +130,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private DbCallbackExecutorService dbCallbackExecutor;
 
     private ScheduledExecutorService scheduler;
+    private TbDynamicQueryRefresher dynamicQueryRefresher;
 
     @Value("${database.ts.type}")
     private String databaseTsType;
@@ -137,6 +138,8 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private long dynamicPageLinkRefreshInterval;
     @Value("${server.ws.dynamic_page_link.refresh_pool_size:1}")
     private int dynamicPageLinkRefreshPoolSize;
+    @Value("${server.ws.dynamic_page_link.shared_refresh:true}")
+    private boolean dynamicPageLinkSharedRefresh;
     @Value("${server.ws.max_entities_per_data_subscription:1000}")
     private int maxEntitiesPerDataSubscription;
     @Value("${server.ws.max_entities_per_alarm_subscription:1000}")
@@ -162,6 +165,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         } else {
             scheduler = Executors.newScheduledThreadPool(dynamicPageLinkRefreshPoolSize, tbThreadFactory);
         }
+        dynamicQueryRefresher = new TbDynamicQueryRefresher(scheduler, dynamicPageLinkRefreshInterval, stats, this::validate);
     }
 
     @PreDestroy
@@ -184,11 +188,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
             long end = System.currentTimeMillis();
             stats.getRegularQueryInvocationCnt().incrementAndGet();
             stats.getRegularQueryTimeSpent().addAndGet(end - start);
-            MsAlarmDataSubCtx finalCtx = ctx;
-            ScheduledFuture<?> task = scheduler.scheduleWithFixedDelay(
-                    () -> refreshDynamicQuery(finalCtx),
-                    dynamicPageLinkRefreshInterval, dynamicPageLinkRefreshInterval, TimeUnit.SECONDS);
-            finalCtx.setRefreshTask(task);
+            scheduleDynamicRefresh(ctx);
         } else {
             // 重置 查询条件
             ctx.setQuery(cmd.getQuery());
@@ -207,11 +207,6 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
             long end = System.currentTimeMillis();
             stats.getRegularQueryInvocationCnt().incrementAndGet();
             stats.getRegularQueryTimeSpent().addAndGet(end - start);
-            MsSnapshotPreviewSubCtx finalCtx = ctx;
-            ScheduledFuture<?> task = scheduler.scheduleWithFixedDelay(
-                    () -> refreshDynamicQuery(finalCtx),
-                    dynamicPageLinkRefreshInterval, dynamicPageLinkRefreshInterval, TimeUnit.SECONDS);
-            finalCtx.setRefreshTask(task);
         } else {
             log.debug("[{}][{}] Received duplicate command: {}", session.getSessionId(), cmd.getCmdId(), cmd);
         }
@@ -256,11 +251,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
             ctx.cancelTasks();
             if (ctx.getQuery().getPageLink().isDynamic()) {
                 // TODO: validate number of dynamic page links against rate limits. Ignore dynamic flag if limit is reached.
-                TbEntityDataSubCtx finalCtx = ctx;
-                ScheduledFuture<?> task = scheduler.scheduleWithFixedDelay(
-                        () -> refreshDynamicQuery(finalCtx),
-                        dynamicPageLinkRefreshInterval, dynamicPageLinkRefreshInterval, TimeUnit.SECONDS);
-                finalCtx.setRefreshTask(task);
+                scheduleDynamicRefresh(ctx);
             }
         }
 
@@ -418,11 +409,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
             long end = System.currentTimeMillis();
             stats.getRegularQueryInvocationCnt().incrementAndGet();
             stats.getRegularQueryTimeSpent().addAndGet(end - start);
-            TbEntityCountSubCtx finalCtx = ctx;
-            ScheduledFuture<?> task = scheduler.scheduleWithFixedDelay(
-                    () -> refreshDynamicQuery(finalCtx),
-                    dynamicPageLinkRefreshInterval, dynamicPageLinkRefreshInterval, TimeUnit.SECONDS);
-            finalCtx.setRefreshTask(task);
+            scheduleDynamicRefresh(ctx);
         } else {
             log.debug("[{}][{}] Received duplicate command: {}", session.getSessionId(), cmd.getCmdId(), cmd);
         }
@@ -470,11 +457,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
             long end = System.currentTimeMillis();
             stats.getAlarmQueryInvocationCnt().incrementAndGet();
             stats.getAlarmQueryTimeSpent().addAndGet(end - start);
-            TbAlarmCountSubCtx finalCtx = ctx;
-            ScheduledFuture<?> task = scheduler.scheduleWithFixedDelay(
-                    () -> refreshDynamicQuery(finalCtx),
-                    dynamicPageLinkRefreshInterval, dynamicPageLinkRefreshInterval, TimeUnit.SECONDS);
-            finalCtx.setRefreshTask(task);
+            scheduleDynamicRefresh(ctx);
         } else {
             log.debug("[{}][{}] Received duplicate command: {}", session.getSessionId(), cmd.getCmdId(), cmd);
         }
@@ -496,6 +479,20 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         return true;
     }
 
+    /**
+     * 开启共享刷新时, 相同查询的订阅合并为一个刷新任务, 否则每个订阅单独定时刷新
+     */
+    private <C extends TbAbstractSubCtx<?> & TbSharedRefreshSubCtx<?>> void scheduleDynamicRefresh(C ctx) {
+        if (dynamicPageLinkSharedRefresh) {
+            dynamicQueryRefresher.join(ctx);
+        } else {
+            ScheduledFuture<?> task = scheduler.scheduleWithFixedDelay(
+                    () -> refreshDynamicQuery(ctx),
+                    dynamicPageLinkRefreshInterval, dynamicPageLinkRefreshInterval, TimeUnit.SECONDS);
+            ctx.setRefreshTask(task);
+        }
+    }
+
     private void refreshDynamicQuery(TbAbstractSubCtx<?> finalCtx) {
         try {
             if (validate(finalCtx)) {
@@ -528,14 +525,17 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         int regularQueryInvocationCntValue = stats.getRegularQueryInvocationCnt().getAndSet(0);
         long regularQueryInvocationTimeValue = stats.getRegularQueryTimeSpent().getAndSet(0);
         int dynamicQueryInvocationCntValue = stats.getDynamicQueryInvocationCnt().getAndSet(0);
+        int dynamicQuerySharedCntValue = stats.getDynamicQuerySharedCnt().getAndSet(0);
         long dynamicQueryInvocationTimeValue = stats.getDynamicQueryTimeSpent().getAndSet(0);
         long dynamicQueryCnt = subscriptionsBySessionId.values().stream().mapToLong(m -> m.values().stream().filter(TbAbstractSubCtx::isDynamic).count()).sum();
         if (regularQueryInvocationCntValue > 0 || dynamicQueryInvocationCntValue > 0 || dynamicQueryCnt > 0 || alarmQueryInvocationCntValue > 0) {
             log.info("Stats: regularQueryInvocationCnt = [{}], regularQueryInvocationTime = [{}], " +
                             "dynamicQueryCnt = [{}] dynamicQueryInvocationCnt = [{}], dynamicQueryInvocationTime = [{}], " +
+                            "dynamicQuerySharedCnt = [{}], dynamicQueryGroupCnt = [{}], " +
                             "alarmQueryInvocationCnt = [{}], alarmQueryInvocationTime = [{}]",
                     regularQueryInvocationCntValue, regularQueryInvocationTimeValue,
                     dynamicQueryCnt, dynamicQueryInvocationCntValue, dynamicQueryInvocationTimeValue,
+                    dynamicQuerySharedCntValue, dynamicQueryRefresher.getGroupCount(),
                     alarmQueryInvocationCntValue, alarmQueryInvocationTimeValue);
         }
     }
@@ -18,6 +18,7 @@ package org.thingsboard.server.service.subscription;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.kv.Aggregation;
 import org.thingsboard.server.common.data.page.PageData;
@@ -45,7 +46,8 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
-public abstract class TbAbstractDataSubCtx<T extends AbstractDataQuery<? extends EntityDataPageLink>> extends TbAbstractSubCtx<T> {
+public abstract class TbAbstractDataSubCtx<T extends AbstractDataQuery<? extends EntityDataPageLink>> extends TbAbstractSubCtx<T>
+        implements TbSharedRefreshSubCtx<PageData<EntityData>> {
 
     protected final Map<Integer, EntityId> subToEntityIdMap;
     @Getter
@@ -81,22 +83,66 @@ public abstract class TbAbstractDataSubCtx<T extends AbstractDataQuery<? extends
 
     @Override
     protected synchronized void update() {
-        PageData<EntityData> newData = findEntityData();
+        applyUpdate(findEntityData(), false);
+    }
+
+    @Override
+    public Key getSharedRefreshKey() {
+        return new Key(getClass(), getTenantId(), getCustomerId(), JacksonUtil.toString(buildEntityDataQuery()));
+    }
+
+    @Override
+    public PageData<EntityData> fetchSharedRefresh() {
+        return findEntityData();
+    }
+
+    @Override
+    public synchronized void applySharedRefresh(PageData<EntityData> result) {
+        applyUpdate(result, true);
+    }
+
+    private void applyUpdate(PageData<EntityData> newData, boolean shared) {
         Map<EntityId, EntityData> oldDataMap;
         if (data != null && !data.getData().isEmpty()) {
-            oldDataMap = data.getData().stream().collect(Collectors.toMap(EntityData::getEntityId, Function.identity(), (a, b) -> a));
+            oldDataMap = toDataMap(data);
         } else {
             oldDataMap = Collections.emptyMap();
         }
-        Map<EntityId, EntityData> newDataMap = newData.getData().stream().collect(Collectors.toMap(EntityData::getEntityId, Function.identity(), (a, b) -> a));
+        Map<EntityId, EntityData> newDataMap = toDataMap(newData);
         if (oldDataMap.size() == newDataMap.size() && oldDataMap.keySet().equals(newDataMap.keySet())) {
             log.trace("[{}][{}] No updates to entity data found", sessionRef.getSessionId(), cmdId);
         } else {
+            if (shared) {
+                // 共享结果会被订阅更新最新值, 每个订阅持有自己的副本
+                newData = copyOf(newData);
+                newDataMap = toDataMap(newData);
+            }
             this.data = newData;
             doUpdate(newDataMap);
         }
     }
 
+    private static Map<EntityId, EntityData> toDataMap(PageData<EntityData> pageData) {
+        return pageData.getData().stream().collect(Collectors.toMap(EntityData::getEntityId, Function.identity(), (a, b) -> a));
+    }
+
+    private static PageData<EntityData> copyOf(PageData<EntityData> pageData) {
+        List<EntityData> copy = new ArrayList<>(pageData.getData().size());
+        for (EntityData entityData : pageData.getData()) {
+            Map<EntityKeyType, Map<String, TsValue>> latest = null;
+            if (entityData.getLatest() != null) {
+                latest = new HashMap<>();
+                for (Map.Entry<EntityKeyType, Map<String, TsValue>> entry : entityData.getLatest().entrySet()) {
+                    latest.put(entry.getKey(), entry.getValue() != null ? new HashMap<>(entry.getValue()) : null);
+                }
+            }
+            copy.add(new EntityData(entityData.getEntityId(), latest,
+                    entityData.getTimeseries() != null ? new HashMap<>(entityData.getTimeseries()) : null,
+                    entityData.getAggLatest() != null ? new HashMap<>(entityData.getAggLatest()) : null));
+        }
+        return new PageData<>(copy, pageData.getTotalPages(), pageData.getTotalElements(), pageData.hasNext());
+    }
+
     protected abstract void doUpdate(Map<EntityId, EntityData> newDataMap);
 
     protected abstract EntityDataQuery buildEntityDataQuery();
@@ -78,6 +78,11 @@ public abstract class TbAbstractSubCtx<T extends EntityCountQuery> {
     protected T query;
     @Setter
     protected volatile ScheduledFuture<?> refreshTask;
+    /**
+     * 退出共享刷新组, 参见 {@link TbDynamicQueryRefresher}
+     */
+    @Setter
+    protected volatile Runnable sharedRefreshRelease;
     protected volatile boolean stopped;
 
     public TbAbstractSubCtx(String serviceId, WebSocketService wsService,
@@ -318,6 +323,12 @@ public abstract class TbAbstractSubCtx<T extends EntityCountQuery> {
             log.trace("[{}][{}] Canceling old refresh task", sessionRef.getSessionId(), cmdId);
             this.refreshTask.cancel(true);
         }
+        Runnable release = this.sharedRefreshRelease;
+        if (release != null) {
+            log.trace("[{}][{}] Leaving shared refresh group", sessionRef.getSessionId(), cmdId);
+            this.sharedRefreshRelease = null;
+            release.run();
+        }
     }
 
     @Data
@@ -20,6 +20,7 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.server.common.data.query.AlarmCountQuery;
 import org.thingsboard.server.dao.alarm.AlarmService;
 import org.thingsboard.server.dao.attributes.AttributesService;
@@ -30,7 +31,7 @@ import org.thingsboard.server.service.ws.telemetry.cmd.v2.AlarmCountUpdate;
 
 @Slf4j
 @ToString(callSuper = true)
-public class TbAlarmCountSubCtx extends TbAbstractSubCtx<AlarmCountQuery> {
+public class TbAlarmCountSubCtx extends TbAbstractSubCtx<AlarmCountQuery> implements TbSharedRefreshSubCtx<Long> {
 
     private final AlarmService alarmService;
 
@@ -54,7 +55,22 @@ public class TbAlarmCountSubCtx extends TbAbstractSubCtx<AlarmCountQuery> {
 
     @Override
     protected void update() {
-        int newCount = (int) alarmService.countAlarmsByQuery(getTenantId(), getCustomerId(), query);
+        applySharedRefresh(fetchSharedRefresh());
+    }
+
+    @Override
+    public Key getSharedRefreshKey() {
+        return new Key(getClass(), getTenantId(), getCustomerId(), JacksonUtil.toString(query));
+    }
+
+    @Override
+    public Long fetchSharedRefresh() {
+        return alarmService.countAlarmsByQuery(getTenantId(), getCustomerId(), query);
+    }
+
+    @Override
+    public void applySharedRefresh(Long count) {
+        int newCount = count.intValue();
         if (newCount != result) {
             result = newCount;
             sendWsMsg(new AlarmCountUpdate(cmdId, result));
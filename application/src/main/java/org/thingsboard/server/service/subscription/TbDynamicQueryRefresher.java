@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.service.subscription;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * 动态查询合并刷新: 查询条件相同的订阅共用一个定时任务, 每个周期只查询一次, 结果分发给组内所有订阅.
+ * 数据库压力随不同查询的数量增长, 而不是随打开的页面数量增长.
+ */
+@Slf4j
+class TbDynamicQueryRefresher {
+
+    private final ScheduledExecutorService scheduler;
+    private final long refreshIntervalSec;
+    private final SubscriptionServiceStatistics stats;
+    private final Predicate<TbAbstractSubCtx<?>> validator;
+    private final ConcurrentMap<TbSharedRefreshSubCtx.Key, RefreshGroup> groups = new ConcurrentHashMap<>();
+
+    TbDynamicQueryRefresher(ScheduledExecutorService scheduler, long refreshIntervalSec,
+                            SubscriptionServiceStatistics stats, Predicate<TbAbstractSubCtx<?>> validator) {
+        this.scheduler = scheduler;
+        this.refreshIntervalSec = refreshIntervalSec;
+        this.stats = stats;
+        this.validator = validator;
+    }
+
+    /**
+     * 将订阅加入与其当前查询对应的刷新组, 已加入的其他组会先退出
+     */
+    <C extends TbAbstractSubCtx<?> & TbSharedRefreshSubCtx<?>> void join(C ctx) {
+        ctx.cancelTasks();
+        TbSharedRefreshSubCtx.Key key = ctx.getSharedRefreshKey();
+        groups.compute(key, (k, group) -> {
+            if (group == null) {
+                group = new RefreshGroup(k);
+                RefreshGroup newGroup = group;
+                group.task = scheduler.scheduleWithFixedDelay(() -> refresh(newGroup), refreshIntervalSec, refreshIntervalSec, TimeUnit.SECONDS);
+            }
+            group.members.add(ctx);
+            return group;
+        });
+        ctx.setSharedRefreshRelease(() -> leave(key, ctx));
+        if (ctx.isStopped()) {
+            ctx.cancelTasks();
+        }
+    }
+
+    private void leave(TbSharedRefreshSubCtx.Key key, TbAbstractSubCtx<?> ctx) {
+        groups.computeIfPresent(key, (k, group) -> {
+            group.members.removeIf(member -> member == ctx);
+            if (group.members.isEmpty()) {
+                log.trace("[{}] Last subscription left, cancel shared refresh", k.getTenantId());
+                group.task.cancel(false);
+                return null;
+            }
+            return group;
+        });
+    }
+
+    int getGroupCount() {
+        return groups.size();
+    }
+
+    int getMemberCount() {
+        return groups.values().stream().mapToInt(group -> group.members.size()).sum();
+    }
+
+    private void refresh(RefreshGroup group) {
+        List<TbAbstractSubCtx<?>> active = new ArrayList<>(group.members.size());
+        for (TbAbstractSubCtx<?> member : group.members) {
+            if (!validator.test(member)) {
+                member.stop();
+            } else if (!group.key.equals(((TbSharedRefreshSubCtx<?>) member).getSharedRefreshKey())) {
+                // 查询条件已变化, 转移到新的刷新组
+                join((TbAbstractSubCtx<?> & TbSharedRefreshSubCtx<?>) member);
+            } else {
+                active.add(member);
+            }
+        }
+        if (!active.isEmpty()) {
+            refresh(group.key, active);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> void refresh(TbSharedRefreshSubCtx.Key key, List<TbAbstractSubCtx<?>> members) {
+        TbAbstractSubCtx<?> leader = members.get(0);
+        R result;
+        try {
+            long start = System.currentTimeMillis();
+            result = ((TbSharedRefreshSubCtx<R>) leader).fetchSharedRefresh();
+            long end = System.currentTimeMillis();
+            log.trace("[{}][{}] Executing shared query for {} subscriptions: {}", leader.getSessionId(), leader.getCmdId(), members.size(), key.getQuery());
+            stats.getDynamicQueryInvocationCnt().incrementAndGet();
+            stats.getDynamicQueryTimeSpent().addAndGet(end - start);
+            stats.getDynamicQuerySharedCnt().addAndGet(members.size() - 1);
+        } catch (Exception e) {
+            log.warn("[{}][{}] Failed to refresh query", leader.getSessionId(), leader.getCmdId(), e);
+            return;
+        }
+        for (TbAbstractSubCtx<?> member : members) {
+            try {
+                ((TbSharedRefreshSubCtx<R>) member).applySharedRefresh(result);
+            } catch (Exception e) {
+                log.warn("[{}][{}] Failed to apply refreshed query", member.getSessionId(), member.getCmdId(), e);
+            }
+        }
+    }
+
+    private static class RefreshGroup {
+        private final TbSharedRefreshSubCtx.Key key;
+        // 上下文的 equals 基于全部字段, 这里按引用管理成员
+        private final List<TbAbstractSubCtx<?>> members = new CopyOnWriteArrayList<>();
+        private volatile ScheduledFuture<?> task;
+
+        RefreshGroup(TbSharedRefreshSubCtx.Key key) {
+            this.key = key;
+        }
+    }
+
+}
@@ -17,6 +17,7 @@
 package org.thingsboard.server.service.subscription;
 
 import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.server.common.data.query.EntityCountQuery;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.entity.EntityService;
@@ -25,7 +26,7 @@ import org.thingsboard.server.service.ws.WebSocketSessionRef;
 import org.thingsboard.server.service.ws.telemetry.cmd.v2.EntityCountUpdate;
 
 @Slf4j
-public class TbEntityCountSubCtx extends TbAbstractSubCtx<EntityCountQuery> {
+public class TbEntityCountSubCtx extends TbAbstractSubCtx<EntityCountQuery> implements TbSharedRefreshSubCtx<Long> {
 
     private volatile int result;
 
@@ -43,7 +44,22 @@ public class TbEntityCountSubCtx extends TbAbstractSubCtx<EntityCountQuery> {
 
     @Override
     protected void update() {
-        int newCount = (int) entityService.countEntitiesByQuery(getTenantId(), getCustomerId(), query);
+        applySharedRefresh(fetchSharedRefresh());
+    }
+
+    @Override
+    public Key getSharedRefreshKey() {
+        return new Key(getClass(), getTenantId(), getCustomerId(), JacksonUtil.toString(query));
+    }
+
+    @Override
+    public Long fetchSharedRefresh() {
+        return entityService.countEntitiesByQuery(getTenantId(), getCustomerId(), query);
+    }
+
+    @Override
+    public void applySharedRefresh(Long count) {
+        int newCount = count.intValue();
         if (newCount != result) {
             result = newCount;
             sendWsMsg(new EntityCountUpdate(cmdId, result));
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.service.subscription;
+
+import lombok.Data;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.TenantId;
+
+/**
+ * 可共享动态刷新的订阅上下文: 相同 {@link Key} 的订阅只执行一次查询, 结果分发给每个订阅各自比对后推送
+ *
+ * @param <R> 查询结果类型
+ */
+public interface TbSharedRefreshSubCtx<R> {
+
+    /**
+     * 当前查询对应的共享 key, 查询变化后 key 随之变化
+     */
+    Key getSharedRefreshKey();
+
+    /**
+     * 执行一次查询, 结果会被同组的所有订阅共用, 实现方不能修改该结果
+     */
+    R fetchSharedRefresh();
+
+    /**
+     * 用共享的查询结果更新本订阅, 只推送与本订阅上次结果的差异
+     */
+    void applySharedRefresh(R result);
+
+    @Data
+    class Key {
+        private final Class<?> type;
+        private final TenantId tenantId;
+        private final CustomerId customerId;
+        /**
+         * 序列化后的查询条件
+         */
+        private final String query;
+    }
+
+}
@@ -18,6 +18,7 @@ package org.thingsboard.server.service.subscription.ms;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.CollectionUtils;
+import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.server.common.data.DashboardRuleDevices;
 import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.query.EntityCountQuery;
@@ -28,6 +29,7 @@ import org.thingsboard.server.dao.entity.EntityService;
 import org.thingsboard.server.service.subscription.SubscriptionServiceStatistics;
 import org.thingsboard.server.service.subscription.TbAbstractSubCtx;
 import org.thingsboard.server.service.subscription.TbLocalSubscriptionService;
+import org.thingsboard.server.service.subscription.TbSharedRefreshSubCtx;
 import org.thingsboard.server.service.ws.WebSocketService;
 import org.thingsboard.server.service.ws.WebSocketSessionRef;
 import org.thingsboard.server.service.ws.telemetry.ms.MsAlarmDataUpdate;
@@ -39,7 +41,8 @@ import java.util.Optional;
  * @author Luohh
  */
 @Slf4j
-public class MsAlarmDataSubCtx extends TbAbstractSubCtx<EntityCountQuery> {
+public class MsAlarmDataSubCtx extends TbAbstractSubCtx<EntityCountQuery>
+        implements TbSharedRefreshSubCtx<Optional<PageData<DashboardRuleDevices>>> {
 
     private final DashboardWebSocketService service;
     private final Long startTime;
@@ -70,8 +73,24 @@ public class MsAlarmDataSubCtx extends TbAbstractSubCtx<EntityCountQuery> {
 
     @Override
     protected void update() {
-        MsAlarmDataQuery dataQuery = (MsAlarmDataQuery) query;
-        Optional<PageData<DashboardRuleDevices>> optional = service.sendWsMsAlarmDataMessage(dataQuery, getTenantId());
+        applySharedRefresh(fetchSharedRefresh());
+    }
+
+    /**
+     * 查询只与租户和查询条件相关, 同租户相同条件的订阅共享刷新
+     */
+    @Override
+    public Key getSharedRefreshKey() {
+        return new Key(getClass(), getTenantId(), null, JacksonUtil.toString(query));
+    }
+
+    @Override
+    public Optional<PageData<DashboardRuleDevices>> fetchSharedRefresh() {
+        return service.sendWsMsAlarmDataMessage((MsAlarmDataQuery) query, getTenantId());
+    }
+
+    @Override
+    public void applySharedRefresh(Optional<PageData<DashboardRuleDevices>> optional) {
         if (optional.isPresent() && !CollectionUtils.isEmpty(optional.get().getData())) {
             sendWsMsg(new MsAlarmDataUpdate(cmdId, optional.get()));
         }
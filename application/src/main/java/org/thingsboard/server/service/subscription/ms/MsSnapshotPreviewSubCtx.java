@@ -19,7 +19,10 @@ package org.thingsboard.server.service.subscription.ms;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.data.DeviceAbility;
 import org.thingsboard.server.common.data.SensingObject;
+import org.thingsboard.server.common.data.TelemetryConstants;
 import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 import org.thingsboard.server.common.data.query.EntityCountQuery;
 import org.thingsboard.server.common.data.query.ms.MsSnapshotPreviewQuery;
@@ -30,22 +33,30 @@ import org.thingsboard.server.service.subscription.SubscriptionErrorCode;
 import org.thingsboard.server.service.subscription.SubscriptionServiceStatistics;
 import org.thingsboard.server.service.subscription.TbAbstractSubCtx;
 import org.thingsboard.server.service.subscription.TbLocalSubscriptionService;
+import org.thingsboard.server.service.subscription.TbTimeseriesSubscription;
 import org.thingsboard.server.service.ws.WebSocketService;
 import org.thingsboard.server.service.ws.WebSocketSessionRef;
 import org.thingsboard.server.service.ws.telemetry.ms.MsSnapshotPreviewUpdate;
+import org.thingsboard.server.service.ws.telemetry.sub.TelemetrySubscriptionUpdate;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 /**
+ * 图片预览订阅: 首次查询最新图片, 之后订阅设备的 image 遥测, 仅在新图片到达时推送.
+ *
  * @author Luohh
  */
 @Slf4j
 public class MsSnapshotPreviewSubCtx extends TbAbstractSubCtx<EntityCountQuery> {
 
     private final DashboardWebSocketService dashboardWebSocketService;
-    private int errorTimes;
-    private static final int ERROR_TIMES_LIMIT = 3;
+    private DeviceId deviceId;
+    private DeviceAbility ability;
+    private SensingObject sensingObject;
+    private volatile Integer imageSubId;
 
     public MsSnapshotPreviewSubCtx(DashboardWebSocketService dashboardWebSocketService,
                                    String serviceId, WebSocketService wsService, EntityService entityService,
@@ -53,46 +64,102 @@ public class MsSnapshotPreviewSubCtx extends TbAbstractSubCtx<EntityCountQuery>
                                    SubscriptionServiceStatistics stats, WebSocketSessionRef sessionRef, int cmdId) {
         super(serviceId, wsService, entityService, localSubscriptionService, attributesService, stats, sessionRef, cmdId);
         this.dashboardWebSocketService = dashboardWebSocketService;
-        this.errorTimes = 0;
     }
 
     @Override
     public void fetchData() {
-        getData(true);
+        if (!resolveQuery()) {
+            return;
+        }
+        sendLatest();
+        subscribeToImage();
     }
 
-
     @Override
     protected void update() {
-        getData(false);
+        if (sensingObject != null) {
+            sendLatest();
+        }
     }
 
     @Override
     public boolean isDynamic() {
-        return true;
+        return false;
     }
 
-    private void getData(boolean isGet) {
-        if (errorTimes == ERROR_TIMES_LIMIT) {
-            return;
+    @Override
+    public void clearSubscriptions() {
+        super.clearSubscriptions();
+        Integer subId = imageSubId;
+        if (subId != null) {
+            localSubscriptionService.cancelSubscription(getSessionId(), subId);
+            imageSubId = null;
         }
+    }
+
+    private boolean resolveQuery() {
         MsSnapshotPreviewQuery previewQuery = (MsSnapshotPreviewQuery) query;
-        String sensingObjectId = previewQuery.getSensingObjectId();
-        Optional<SensingObject> sensingObjectById = dashboardWebSocketService.getSensingObjectById(sensingObjectId);
+        Optional<SensingObject> sensingObjectById = dashboardWebSocketService.getSensingObjectById(previewQuery.getSensingObjectId());
         if (sensingObjectById.isEmpty()) {
             sendWsMsg(new MsSnapshotPreviewUpdate(cmdId, SubscriptionErrorCode.NO_ERROR.getCode(), "ROI is not exist!"));
-            this.errorTimes++;
-            return;
+            return false;
         }
-        DeviceId deviceId = new DeviceId(UUID.fromString(previewQuery.getDeviceId()));
-        Optional<DeviceAbility> ability = dashboardWebSocketService.getRoiAbility(previewQuery.getAbilityId());
-        if (ability.isEmpty()) {
+        Optional<DeviceAbility> roiAbility = dashboardWebSocketService.getRoiAbility(previewQuery.getAbilityId());
+        if (roiAbility.isEmpty()) {
             sendWsMsg(new MsSnapshotPreviewUpdate(cmdId, SubscriptionErrorCode.NO_ERROR.getCode(), "ROI is not exist!"));
-            this.errorTimes++;
+            return false;
+        }
+        this.deviceId = new DeviceId(UUID.fromString(previewQuery.getDeviceId()));
+        this.ability = roiAbility.get();
+        this.sensingObject = sensingObjectById.get();
+        return true;
+    }
+
+    private void sendLatest() {
+        Integer size = ((MsSnapshotPreviewQuery) query).getSize();
+        dashboardWebSocketService.sendWsSnapshotPreviewMessage(getTenantId(), deviceId, size)
+                .ifPresent(this::sendPreview);
+    }
+
+    private void subscribeToImage() {
+        int subIdx = sessionRef.getSessionSubIdSeq().incrementAndGet();
+        TbTimeseriesSubscription sub = TbTimeseriesSubscription.builder()
+                .serviceId(serviceId)
+                .sessionId(sessionRef.getSessionId())
+                .subscriptionId(subIdx)
+                .tenantId(getTenantId())
+                .entityId(deviceId)
+                .updateProcessor((subscription, subscriptionUpdate) -> onImageArrived(subscriptionUpdate))
+                .allKeys(false)
+                .keyStates(Collections.singletonMap(TelemetryConstants.IMAGE, 0L))
+                .latestValues(true)
+                .build();
+        imageSubId = subIdx;
+        localSubscriptionService.addSubscription(sub);
+    }
+
+    private void onImageArrived(TelemetrySubscriptionUpdate subscriptionUpdate) {
+        if (stopped || subscriptionUpdate.getData() == null) {
+            return;
+        }
+        List<Object> values = subscriptionUpdate.getData().get(TelemetryConstants.IMAGE);
+        if (values == null || values.isEmpty()) {
             return;
         }
-        this.errorTimes = 0;
-        Optional<TsKvEntry> tsKvEntry = dashboardWebSocketService.sendWsSnapshotPreviewMessage(isGet, getTenantId(), deviceId);
-        tsKvEntry.ifPresent(kvEntry -> sendWsMsg(new MsSnapshotPreviewUpdate(cmdId, kvEntry, ability.get(), sensingObjectById.get())));
+        Object[] latest = null;
+        for (Object value : values) {
+            Object[] tsValue = (Object[]) value;
+            if (latest == null || (Long) tsValue[0] > (Long) latest[0]) {
+                latest = tsValue;
+            }
+        }
+        TsKvEntry image = new BasicTsKvEntry((Long) latest[0], new StringDataEntry(TelemetryConstants.IMAGE, (String) latest[1]));
+        Integer size = ((MsSnapshotPreviewQuery) query).getSize();
+        dashboardWebSocketService.sendWsSnapshotPreviewMessage(getTenantId(), deviceId, image, size)
+                .ifPresent(this::sendPreview);
+    }
+
+    private void sendPreview(TsKvEntry kvEntry) {
+        sendWsMsg(new MsSnapshotPreviewUpdate(cmdId, kvEntry, ability, sensingObject));
     }
 }
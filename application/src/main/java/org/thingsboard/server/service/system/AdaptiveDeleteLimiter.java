@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.service.system;
+
+/**
+ * 清理磁盘时控制Cassandra删除压力: 按单条删除的耗时做加性增/乘性减(AIMD)
+ * 耗时低于目标值时每轮多并发一个设备、停顿减半; 超过目标值或失败时并发减半、停顿翻倍(不超过最大停顿)
+ */
+class AdaptiveDeleteLimiter {
+
+    private final long targetLatencyMs;
+    private final int maxConcurrency;
+    private final long maxPauseMs;
+
+    private int concurrency = 1;
+    private long pauseMs;
+
+    AdaptiveDeleteLimiter(long targetLatencyMs, int maxConcurrency, long maxPauseMs) {
+        this.targetLatencyMs = Math.max(1, targetLatencyMs);
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.maxPauseMs = Math.max(0, maxPauseMs);
+    }
+
+    int getConcurrency() {
+        return concurrency;
+    }
+
+    long getPauseMs() {
+        return pauseMs;
+    }
+
+    /**
+     * @param latencyMs 本轮单条删除语句的平均耗时
+     * @param failed    本轮是否有删除失败或超时
+     */
+    void onWave(long latencyMs, boolean failed) {
+        if (failed || latencyMs > targetLatencyMs) {
+            concurrency = Math.max(1, concurrency / 2);
+            pauseMs = Math.min(maxPauseMs, Math.max(1, pauseMs * 2));
+        } else {
+            concurrency = Math.min(maxConcurrency, concurrency + 1);
+            pauseMs = pauseMs / 2;
+        }
+    }
+
+    void pause() {
+        if (pauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -17,33 +17,55 @@
 
 package org.thingsboard.server.service.system;
 
-import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.JacksonUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StopWatch;
+import org.thingsboard.server.common.data.AdminSettings;
 import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.TelemetryConstants;
+import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.BaseDeleteTsKvQuery;
 import org.thingsboard.server.common.data.kv.DeleteTsKvQuery;
+import org.thingsboard.server.common.data.kv.TsKvLatestRemovingResult;
 import org.thingsboard.server.common.data.monitorDisk.GlobalSingletonParam;
 import org.thingsboard.server.common.data.monitorDisk.GroupEntity;
 import org.thingsboard.server.common.enume.MsAppContent;
+import org.thingsboard.server.dao.settings.AdminSettingsService;
+import org.thingsboard.server.dao.image.ImageBlobKey;
+import org.thingsboard.server.dao.image.ImageBlobService;
+import org.thingsboard.server.dao.image.ImageStorageLedger;
 import org.thingsboard.server.dao.model.sql.TelemetryRecognitionEntity;
 import org.thingsboard.server.dao.timeseries.QueryCursor;
 import org.thingsboard.server.dao.timeseries.SimpleListenableFuture;
 import org.thingsboard.server.dao.timeseries.TelemetryRecognitionDao;
 import org.thingsboard.server.dao.timeseries.TimeseriesDao;
+import org.thingsboard.server.dao.timeseries.TimeseriesLatestDao;
+import org.thingsboard.server.dao.util.TaskPriority;
 import org.thingsboard.server.queue.util.TbCoreComponent;
 import org.thingsboard.server.utils.ExecuteCommandUtil;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
 
 import static org.thingsboard.common.util.SystemUtil.getCassandraSpaceAvailable;
 import static org.thingsboard.common.util.SystemUtil.getCassandraSpaceTotal;
@@ -57,10 +79,31 @@ import static org.thingsboard.common.util.SystemUtil.getCassandraSpaceTotal;
 @Slf4j
 public class DiskRecycleService {
 
+    private static final int TOP_DEVICES_LOG_LIMIT = 10;
+    /**
+     * 已删除图片桶的水位(该时间之前的桶都已删除), 删除失败的桶下次从水位开始重试
+     */
+    private static final String IMAGE_BUCKET_WATERMARK_KEY = "imageBucketWatermark";
+    private static final String DROPPED_BEFORE_TS = "droppedBeforeTs";
+
     @Value("${cassandra.compressed_directory}")
     private String compressedDirectory;
+    /**
+     * 删除限流的最大停顿时间 单位：MS
+     */
     @Value("${cassandra.delete_sleep_time}")
     private int sleepTime;
+    @Value("${cassandra.delete_target_latency_ms:50}")
+    private long deleteTargetLatencyMs;
+    @Value("${cassandra.delete_max_concurrency:16}")
+    private int deleteMaxConcurrency;
+    @Value("${cassandra.delete_timeout_ms:60000}")
+    private long deleteTimeoutMs;
+    /**
+     * 优先删除图片数量最多的N个设备, 0表示始终按时间顺序删除
+     */
+    @Value("${cassandra.delete_top_devices_first:10}")
+    private int deleteTopDevicesFirst;
     @Value("${cassandra.disk_alarm_space}")
     private long diskAlarmSpace;
     @Value("${cassandra.ms_min_free_space_in_mb}")
@@ -88,6 +131,14 @@ public class DiskRecycleService {
     private TelemetryRecognitionDao telemetryRecognitionDao;
     @Autowired
     private TimeseriesDao timeseriesDao;
+    @Autowired
+    private TimeseriesLatestDao timeseriesLatestDao;
+    @Autowired
+    private ImageBlobService imageBlobService;
+    @Autowired
+    private ImageStorageLedger imageStorageLedger;
+    @Autowired
+    private AdminSettingsService adminSettingsService;
 
     /**
      * 是否正在进行
@@ -121,6 +172,8 @@ public class DiskRecycleService {
                 log.warn("cassandra cassandraSpaceUsage = {}GB ,cassandraSpaceTotal = {}GB, lastRemainDisk={}GB, alarmSpace = {}GB , diskAlarmSpace={}%",
                         cassandraSpaceUsage, cassandraSpaceTotal, lastRemainDisk, alarmSpace, diskAlarmSpace);
                 log.warn("addCountNum = {} , maximumNumberOfDeletions = {}", addCountNum, limitNum * strategyRound);
+                log.warn("Image storage: {} images, ~{}MB, top devices: {}", imageStorageLedger.getImageCount(),
+                        imageStorageLedger.getBytes() / (1024 * 1024), imageStorageLedger.getTopDevices(TOP_DEVICES_LOG_LIMIT));
                 // 初始化
                 GlobalSingletonParam.getInstance().deleteAddNum(cassandraSpaceUsage);
                 // 删除执行最后一次已使用磁盘大小
@@ -139,13 +192,17 @@ public class DiskRecycleService {
     private void requiresTheRemovalOfTurns(GlobalSingletonParam param) {
         if (MsAppContent.ROUND.equals(deletePattern)) {
             param.setNumberOfTimesNeedsToBeDeleted(deleteNumberThreshold);
+        } else if (!imageStorageLedger.isInitialized()) {
+            // 台账未加载完成时按ROUND模式处理
+            log.warn("Image storage ledger is not loaded yet, delete {} times", deleteNumberThreshold);
+            param.setNumberOfTimesNeedsToBeDeleted(deleteNumberThreshold);
         } else {
-            int imageTotal = telemetryRecognitionDao.countImageTotal();
+            long imageTotal = imageStorageLedger.getImageCount();
             if (imageTotal <= 0) {
                 param.setNumberOfTimesNeedsToBeDeleted(0);
             } else {
-                int needDeleteNum = imageTotal * deletePercentage / 100;
-                int numberOfTimesNeedsToBeDeleted = needDeleteNum / (limitNum * strategyRound);
+                long needDeleteNum = imageTotal * deletePercentage / 100;
+                int numberOfTimesNeedsToBeDeleted = (int) (needDeleteNum / ((long) limitNum * strategyRound));
                 param.setNumberOfTimesNeedsToBeDeleted(numberOfTimesNeedsToBeDeleted);
             }
         }
@@ -179,27 +236,19 @@ public class DiskRecycleService {
         return param;
     }
 
-    private void sleep(int time) {
-        // 休眠时间为0不等待
-        if (sleepTime == 0) {
-            return;
-        }
-        try {
-            Thread.sleep(time);
-        } catch (InterruptedException ignored) {
-        }
-    }
-
     /**
      * 执行释放磁盘空间操作
      */
     public void cleanCassandraSpace() {
         try {
             isRunning = true;
-            // 删除Cassandra数据库ts_kv和 postgresql的telemetry_recognition表数据
-            deleteHistoryData();
-            // 执行删除N次后执行 nodetool garbagecollect msaiotsensingplatform ts_kv_cf这个表 回收墓碑
-            nodetoolGarbagecollect();
+            // 删除Cassandra数据库ts_kv和 postgresql的telemetry_recognition表数据, 走后台通道不阻塞仪表板查询
+            AtomicInteger deleted = new AtomicInteger();
+            TaskPriority.runAs(TaskPriority.BACKGROUND, () -> deleted.set(deleteHistoryData()));
+            // 执行删除N次后执行 nodetool garbagecollect msaiotsensingplatform ts_kv_cf这个表 回收墓碑, 没有删除数据的不计次数
+            if (deleted.get() > 0) {
+                nodetoolGarbagecollect();
+            }
         } catch (Exception e) {
             log.error("cleanCassandraSpace error ", e);
         } finally {
@@ -231,77 +280,254 @@ public class DiskRecycleService {
         }
     }
 
-    public void deleteHistoryData() {
+    /**
+     * @return 删除的感知数据条数
+     */
+    public int deleteHistoryData() {
         StopWatch stopWatch = new StopWatch();
         stopWatch.start("cleanCassandraSpace");
-        final SimpleListenableFuture<Void> resultFuture = new SimpleListenableFuture<>();
         // 最小ts
         Long oldestTs = telemetryRecognitionDao.findMinTs();
         if (oldestTs == null) {
             log.warn("there is no data, skipping!");
-            return;
+            return 0;
         }
-        boolean nextGroup = true;
-        GroupEntity groupEntity = new GroupEntity(oldestTs, new AtomicInteger(), TenantId.SYS_TENANT_ID);
-        while (nextGroup) {
-            GroupEntity resultEntity = removeData(resultFuture, groupEntity);
-            if (resultEntity != null) {
-                nextGroup = resultEntity.getNextGroup();
-                groupEntity = resultEntity;
-            }
+        AdaptiveDeleteLimiter limiter = new AdaptiveDeleteLimiter(deleteTargetLatencyMs, deleteMaxConcurrency, sleepTime);
+        DeletePass pass = new DeletePass();
+        AtomicInteger rounds = new AtomicInteger();
+        Long maxTs = null;
+        // 先删除台账中图片最多的设备, 这些设备删完后剩余轮次按时间顺序删除
+        List<UUID> topDevices = findTopDevicesToPurge();
+        if (!topDevices.isEmpty()) {
+            log.info("Purge images of top devices first: {}", topDevices);
+            maxTs = removeGroups(limiter, new GroupEntity(oldestTs, rounds, TenantId.SYS_TENANT_ID), pass,
+                    startTs -> telemetryRecognitionDao.findOldTelemetryRecognitionByDevices(topDevices, startTs, limitNum));
         }
+        if (rounds.get() < strategyRound) {
+            Long oldestMaxTs = removeGroups(limiter, new GroupEntity(oldestTs, rounds, TenantId.SYS_TENANT_ID), pass,
+                    startTs -> telemetryRecognitionDao.findOldTelemetryRecognition(startTs, limitNum));
+            maxTs = oldestMaxTs != null ? oldestMaxTs : maxTs;
+        }
+        // 删除失败的图片感知数据保留, 下次从这些数据开始; 图片桶只删除到剩余感知数据最小ts所在的天之前
+        deleteImageBuckets(oldestTs, maxTs, pass.devices);
 
-        int deleteCount = groupEntity.getAtomicInteger().get();
+        int deleteCount = pass.deleted;
         GlobalSingletonParam.getInstance().getDeleteNum().addAndGet(deleteCount);
         stopWatch.stop();
         log.warn("Cassandra delete {} time ,data number: {} , use time {} seconds"
                 , GlobalSingletonParam.getInstance().getNumberOfDeletionExecutions().get(), deleteCount, stopWatch.getTotalTimeSeconds());
+        return deleteCount;
+    }
+
+    /**
+     * 按轮次删除 finder 查出的数据, 直到达到轮次上限或没有更多数据
+     *
+     * @return 最后删除的一组的最大ts, 没有删除数据时为 null
+     */
+    private Long removeGroups(AdaptiveDeleteLimiter limiter, GroupEntity groupEntity, DeletePass pass,
+                              LongFunction<List<TelemetryRecognitionEntity>> finder) {
+        boolean nextGroup = true;
+        while (nextGroup) {
+            GroupEntity resultEntity = removeData(limiter, groupEntity, pass, finder);
+            if (resultEntity == null) {
+                break;
+            }
+            nextGroup = resultEntity.getNextGroup();
+            groupEntity = resultEntity;
+        }
+        return groupEntity.getMaxTs();
     }
 
-    public GroupEntity removeData(SimpleListenableFuture<Void> resultFuture, GroupEntity groupEntity) {
-        List<ListenableFuture<Void>> futures = Lists.newArrayListWithExpectedSize(limitNum);
+    private GroupEntity removeData(AdaptiveDeleteLimiter limiter, GroupEntity groupEntity, DeletePass pass,
+                                   LongFunction<List<TelemetryRecognitionEntity>> finder) {
         long oldestTs = groupEntity.getMinTs();
-        // 计算条数
-        AtomicInteger atomicInteger = groupEntity.getAtomicInteger();
-        atomicInteger.addAndGet(1);
         TenantId tenantId = groupEntity.getTenantId();
         // 查找要删除数据
-        List<TelemetryRecognitionEntity> result = telemetryRecognitionDao.findOldTelemetryRecognition(oldestTs, limitNum);
-        // 多删除一轮
-        boolean nextGroup = strategyRound != atomicInteger.get() && result.size() >= limitNum;
+        List<TelemetryRecognitionEntity> result = finder.apply(oldestTs);
         int resultSize = result.size();
+        if (resultSize == 0) {
+            return null;
+        }
+        // 计算轮次, 没有数据的查询不计
+        AtomicInteger atomicInteger = groupEntity.getAtomicInteger();
+        atomicInteger.addAndGet(1);
+        // 多删除一轮
+        boolean nextGroup = strategyRound != atomicInteger.get() && resultSize >= limitNum;
 
         long lastTs = result.get(resultSize - 1).getTs();
-        // 删除数据
-        circularDbDelete(result, groupEntity.getTenantId(), futures, resultFuture);
-        if (!nextGroup) {
-            atomicInteger.set((atomicInteger.get() - 1) * limitNum + resultSize);
-        }
+        // 删除数据, 按实际删除的条数计数
+        pass.deleted += bulkDelete(result, tenantId, limiter, pass);
         // 本组最大ts作为下一组最小ts
-        oldestTs = lastTs;
-        return new GroupEntity(oldestTs, lastTs, nextGroup, atomicInteger, tenantId);
+        return new GroupEntity(lastTs, lastTs, nextGroup, atomicInteger, tenantId);
     }
 
     /**
-     * 循环删除
+     * 按设备分组删除: 每个设备只下发其涉及分区的范围删除, 设备间并发度和停顿由 {@link AdaptiveDeleteLimiter} 根据删除耗时调整,
+     * 最后一条语句删除图片已删除成功的设备的感知数据, 失败设备的感知数据保留到下次重试
      *
-     * @param result       遥测数据实体
-     * @param tenantId     租户ID
-     * @param futures      异步
-     * @param resultFuture 当前队列
+     * @param result   遥测数据实体, 按ts升序
+     * @param tenantId 租户ID
+     * @param limiter  删除限流
+     * @param pass     本次删除的统计
+     * @return 删除成功的感知数据条数
      */
-    private void circularDbDelete(List<TelemetryRecognitionEntity> result, TenantId tenantId, List<ListenableFuture<Void>> futures, SimpleListenableFuture<Void> resultFuture) {
+    private int bulkDelete(List<TelemetryRecognitionEntity> result, TenantId tenantId, AdaptiveDeleteLimiter limiter, DeletePass pass) {
+        Map<UUID, TreeSet<Long>> tsByDevice = new LinkedHashMap<>();
         for (TelemetryRecognitionEntity entity : result) {
-            long ts = entity.getTs();
-            DeleteTsKvQuery query = new BaseDeleteTsKvQuery(TelemetryConstants.IMAGE, ts, (ts + 1L), false);
-            long partition = timeseriesDao.toPartitionTs(ts);
-            QueryCursor cursor = new QueryCursor(EntityType.DEVICE.toString(), entity.getDeviceId(), query, List.of(partition));
-            // 停顿一会，减轻Cassandra压力
-            sleep(sleepTime);
-            futures.add(timeseriesDao.deleteByAsync(tenantId, cursor, resultFuture));
-            // 删除telemetryRecognition感知数据
-            telemetryRecognitionDao.deleteByTsAndDeviceId(ts, entity.getDeviceId());
+            tsByDevice.computeIfAbsent(entity.getDeviceId(), id -> new TreeSet<>()).add(entity.getTs());
         }
+        Set<UUID> succeeded = new HashSet<>();
+        List<QueryCursor> cursors = new ArrayList<>(tsByDevice.size());
+        List<Integer> partitionCounts = new ArrayList<>(tsByDevice.size());
+        List<UUID> cursorDevices = new ArrayList<>(tsByDevice.size());
+        tsByDevice.forEach((deviceId, tsSet) -> {
+            long startTs = tsSet.first();
+            long endTs = tsSet.last() + 1L;
+            List<Long> partitions = tsSet.stream().map(timeseriesDao::toPartitionTs).distinct().collect(Collectors.toList());
+            DeleteTsKvQuery query = new BaseDeleteTsKvQuery(TelemetryConstants.IMAGE, startTs, endTs, false);
+            cursors.add(new QueryCursor(EntityType.DEVICE.toString(), deviceId, query, partitions));
+            cursorDevices.add(deviceId);
+            partitionCounts.add(partitions.size());
+            pass.devices.add(deviceId);
+        });
+
+        int from = 0;
+        while (from < cursors.size()) {
+            limiter.pause();
+            int to = Math.min(cursors.size(), from + limiter.getConcurrency());
+            List<ListenableFuture<Void>> futures = new ArrayList<>(to - from);
+            int statements = 0;
+            for (int i = from; i < to; i++) {
+                statements = Math.max(statements, partitionCounts.get(i));
+                futures.add(timeseriesDao.deleteByAsync(tenantId, cursors.get(i), new SimpleListenableFuture<>()));
+            }
+            long startNs = System.nanoTime();
+            boolean failed = false;
+            try {
+                Futures.allAsList(futures).get(deleteTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed = true;
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("Failed to delete images of {} devices in {} ms", to - from, deleteTimeoutMs, e);
+                failed = true;
+            }
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs) / Math.max(1, statements);
+            limiter.onWave(latencyMs, failed);
+            // 只扣减删除成功的设备
+            for (int i = from; i < to; i++) {
+                if (isSucceeded(futures.get(i - from))) {
+                    UUID deviceId = cursorDevices.get(i);
+                    succeeded.add(deviceId);
+                    imageStorageLedger.onImagesDeleted(deviceId, tsByDevice.get(deviceId).size());
+                }
+            }
+            log.debug("Deleted images of {} devices, latency {} ms per partition, next concurrency {} pause {} ms",
+                    to - from, latencyMs, limiter.getConcurrency(), limiter.getPauseMs());
+            from = to;
+        }
+        // 删除telemetryRecognition感知数据
+        List<UUID> deviceIds = new ArrayList<>(result.size());
+        List<Long> tsList = new ArrayList<>(result.size());
+        for (TelemetryRecognitionEntity entity : result) {
+            if (succeeded.contains(entity.getDeviceId())) {
+                deviceIds.add(entity.getDeviceId());
+                tsList.add(entity.getTs());
+            }
+        }
+        if (tsList.isEmpty()) {
+            return 0;
+        }
+        telemetryRecognitionDao.deleteImages(tsList.get(0), tsList.get(tsList.size() - 1), deviceIds, tsList);
+        return tsList.size();
+    }
+
+    /**
+     * 台账中图片最多的设备. 图片按天分桶存储时只有整天删除才释放空间, 优先删除个别设备腾不出空间, 此时不返回
+     */
+    private List<UUID> findTopDevicesToPurge() {
+        if (deleteTopDevicesFirst <= 0 || imageBlobService.isEnabled() || !imageStorageLedger.isInitialized()) {
+            return List.of();
+        }
+        return new ArrayList<>(imageStorageLedger.getTopDevices(deleteTopDevicesFirst).keySet());
+    }
+
+    private static boolean isSucceeded(ListenableFuture<?> future) {
+        if (!future.isDone() || future.isCancelled()) {
+            return false;
+        }
+        try {
+            Futures.getDone(future);
+            return true;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 图片按天分桶存储时, 直接删除已被清理完的整天.
+     * telemetry_recognition 剩余数据都不早于 endTs, 不会引用被删除的桶; 最新值表中仍指向被删除桶的图片先清除.
+     * 从已保存的水位开始删除, 之前失败或跳过的桶在之后的回收中重试
+     */
+    private void deleteImageBuckets(long oldestTs, Long lastTs, Set<UUID> devices) {
+        if (!imageBlobService.isEnabled() || lastTs == null) {
+            return;
+        }
+        Long minTs = telemetryRecognitionDao.findMinTs();
+        long endTs = minTs != null ? minTs : lastTs + 1L;
+        long startTs = Math.min(oldestTs, findBucketWatermark().orElse(oldestTs));
+        if (ImageBlobKey.toBucket(startTs) >= ImageBlobKey.toBucket(endTs)) {
+            return;
+        }
+        DeleteTsKvQuery latestQuery = new BaseDeleteTsKvQuery(TelemetryConstants.IMAGE, startTs, ImageBlobKey.toBucket(endTs), false);
+        try {
+            List<ListenableFuture<TsKvLatestRemovingResult>> futures = new ArrayList<>(devices.size());
+            for (UUID deviceId : devices) {
+                futures.add(timeseriesLatestDao.removeLatest(TenantId.SYS_TENANT_ID, new DeviceId(deviceId), latestQuery));
+            }
+            Futures.allAsList(futures).get(deleteTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Failed to clear latest images older than {}, keep image buckets until the next run", endTs, e);
+            return;
+        }
+        try {
+            imageBlobService.deleteBuckets(startTs, endTs).get(deleteTimeoutMs, TimeUnit.MILLISECONDS);
+            saveBucketWatermark(ImageBlobKey.toBucket(endTs));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Failed to delete image buckets in [{}, {}), retry on the next run", startTs, endTs, e);
+        }
+    }
+
+    private Optional<Long> findBucketWatermark() {
+        AdminSettings settings = adminSettingsService.findAdminSettingsByKey(TenantId.SYS_TENANT_ID, IMAGE_BUCKET_WATERMARK_KEY);
+        if (settings == null || settings.getJsonValue() == null || !settings.getJsonValue().has(DROPPED_BEFORE_TS)) {
+            return Optional.empty();
+        }
+        return Optional.of(settings.getJsonValue().get(DROPPED_BEFORE_TS).asLong());
+    }
+
+    private void saveBucketWatermark(long droppedBeforeTs) {
+        AdminSettings settings = adminSettingsService.findAdminSettingsByKey(TenantId.SYS_TENANT_ID, IMAGE_BUCKET_WATERMARK_KEY);
+        if (settings == null) {
+            settings = new AdminSettings();
+            settings.setTenantId(TenantId.SYS_TENANT_ID);
+            settings.setKey(IMAGE_BUCKET_WATERMARK_KEY);
+        }
+        settings.setJsonValue(JacksonUtil.newObjectNode().put(DROPPED_BEFORE_TS, droppedBeforeTs));
+        adminSettingsService.saveAdminSettings(TenantId.SYS_TENANT_ID, settings);
+    }
+
+    /**
+     * 一次磁盘回收的删除统计
+     */
+    private static class DeletePass {
+        private int deleted;
+        private final Set<UUID> devices = new HashSet<>();
     }
 
 }
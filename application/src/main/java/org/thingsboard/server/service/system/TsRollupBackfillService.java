@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.service.system;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.dao.timeseries.CassandraTsRollupDao;
+import org.thingsboard.server.dao.util.TaskPriority;
+import org.thingsboard.server.queue.util.TbCoreComponent;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 从原始时序数据回填预聚合, 单线程依次执行, 查询走后台优先级通道
+ */
+@TbCoreComponent
+@Service
+@Slf4j
+public class TsRollupBackfillService {
+
+    @Autowired(required = false)
+    private CassandraTsRollupDao rollupDao;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("ts-rollup-backfill"));
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return rollupDao != null;
+    }
+
+    public void submit(TenantId tenantId, EntityId entityId, List<String> keys, long startTs) {
+        executor.submit(() -> TaskPriority.runAs(TaskPriority.BACKGROUND, () -> {
+            for (String key : keys) {
+                try {
+                    rollupDao.backfill(tenantId, entityId, key, startTs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    log.warn("[{}][{}] Failed to backfill rollups for key {}", entityId.getEntityType(), entityId.getId(), key, e);
+                }
+            }
+        }));
+    }
+
+}
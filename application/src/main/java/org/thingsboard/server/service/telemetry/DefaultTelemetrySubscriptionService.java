@@ -25,6 +25,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.cache.payload.TbMsgPayloadStore;
 import org.thingsboard.server.common.data.ApiUsageRecordKey;
 import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.EntityView;
@@ -33,6 +34,7 @@ import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.AttributeKvEntry;
 import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
 import org.thingsboard.server.common.data.kv.BooleanDataEntry;
 import org.thingsboard.server.common.data.kv.DeleteTsKvQuery;
 import org.thingsboard.server.common.data.kv.DoubleDataEntry;
@@ -77,6 +79,7 @@ public class DefaultTelemetrySubscriptionService extends AbstractSubscriptionSer
     private final TbEntityViewService tbEntityViewService;
     private final TbApiUsageReportClient apiUsageClient;
     private final TbApiUsageStateService apiUsageStateService;
+    private final TbMsgPayloadStore payloadStore;
 
     private ExecutorService tsCallBackExecutor;
 
@@ -84,12 +87,14 @@ public class DefaultTelemetrySubscriptionService extends AbstractSubscriptionSer
                                                TimeseriesService tsService,
                                                @Lazy TbEntityViewService tbEntityViewService,
                                                TbApiUsageReportClient apiUsageClient,
-                                               TbApiUsageStateService apiUsageStateService) {
+                                               TbApiUsageStateService apiUsageStateService,
+                                               TbMsgPayloadStore payloadStore) {
         this.attrService = attrService;
         this.tsService = tsService;
         this.tbEntityViewService = tbEntityViewService;
         this.apiUsageClient = apiUsageClient;
         this.apiUsageStateService = apiUsageStateService;
+        this.payloadStore = payloadStore;
     }
 
     @PostConstruct
@@ -132,6 +137,12 @@ public class DefaultTelemetrySubscriptionService extends AbstractSubscriptionSer
         checkInternalEntity(entityId);
         boolean sysTenant = TenantId.SYS_TENANT_ID.equals(tenantId) || tenantId == null;
         if (sysTenant || apiUsageStateService.getApiUsageState(tenantId).isDbStorageEnabled()) {
+            try {
+                ts = resolvePayloads(ts);
+            } catch (IllegalStateException e) {
+                callback.onFailure(e);
+                return;
+            }
             KvUtils.validate(ts);
             if (saveLatest) {
                 saveAndNotifyInternal(tenantId, entityId, ts, ttl, getCallback(tenantId, customerId, sysTenant, callback));
@@ -169,6 +180,12 @@ public class DefaultTelemetrySubscriptionService extends AbstractSubscriptionSer
         checkInternalEntity(msg.getOriginator());
         boolean sysTenant = TenantId.SYS_TENANT_ID.equals(tenantId) || tenantId == null;
         if (sysTenant || apiUsageStateService.getApiUsageState(tenantId).isDbStorageEnabled()) {
+            try {
+                ts = resolvePayloads(ts);
+            } catch (IllegalStateException e) {
+                callback.onFailure(e);
+                return;
+            }
             KvUtils.validate(ts);
             if (saveLatest) {
                 saveAndNotifyInternalMs(tenantId, msg, ts, ttl, getCallback(tenantId, msg.getCustomerId(), sysTenant, callback));
@@ -180,6 +197,27 @@ public class DefaultTelemetrySubscriptionService extends AbstractSubscriptionSer
         }
     }
 
+    /**
+     * 大数据(如图片)在传输层被替换成引用, 入库前换回原始数据
+     */
+    private List<TsKvEntry> resolvePayloads(List<TsKvEntry> ts) {
+        if (ts.stream().noneMatch(entry -> TbMsgPayloadStore.isRef(entry.getStrValue().orElse(null)))) {
+            return ts;
+        }
+        List<TsKvEntry> result = new ArrayList<>(ts.size());
+        for (TsKvEntry entry : ts) {
+            String value = entry.getStrValue().orElse(null);
+            if (TbMsgPayloadStore.isRef(value)) {
+                String payload = payloadStore.resolve(value)
+                        .orElseThrow(() -> new IllegalStateException("Payload [" + value + "] of key [" + entry.getKey() + "] is already released"));
+                result.add(new BasicTsKvEntry(entry.getTs(), new StringDataEntry(entry.getKey(), payload)));
+            } else {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
     private FutureCallback<Integer> getCallback(TenantId tenantId, CustomerId customerId, boolean sysTenant, FutureCallback<Void> callback) {
         return new FutureCallback<>() {
             @Override
@@ -19,17 +19,22 @@ package org.thingsboard.server.service.telemetry;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.cache.payload.TbMsgPayloadStore;
 import org.thingsboard.server.cluster.TbClusterService;
+import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.Device;
 import org.thingsboard.server.common.data.DeviceAbility;
-import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.StringUtils;
 import org.thingsboard.server.common.data.exception.ThingsboardErrorCode;
 import org.thingsboard.server.common.data.exception.ThingsboardException;
@@ -46,6 +51,8 @@ import org.thingsboard.server.common.msg.session.SessionMsgType;
 import org.thingsboard.server.dao.BaseDaoServiceImpl;
 import org.thingsboard.server.dao.device.DeviceAbilityService;
 import org.thingsboard.server.dao.device.DeviceService;
+import org.thingsboard.server.dao.image.ImageBlobService;
+import org.thingsboard.server.dao.image.ImageStorageLedger;
 import org.thingsboard.server.dao.rule.RuleChainAssociateService;
 import org.thingsboard.server.dao.timeseries.TelemetryRecognitionDao;
 import org.thingsboard.server.dao.timeseries.TelemetryRecognitionService;
@@ -55,6 +62,7 @@ import org.thingsboard.server.queue.TbQueueMsgMetadata;
 import org.thingsboard.server.queue.util.TbCoreComponent;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -62,6 +70,8 @@ import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * 感知数据 - 服务实现
@@ -80,6 +90,12 @@ public class TelemetryRecognitionServiceImpl extends BaseDaoServiceImpl<Telemetr
     @Autowired
     private DeviceService deviceService;
     @Autowired
+    private ImageStorageLedger imageStorageLedger;
+    @Autowired
+    private ImageBlobService imageBlobService;
+    @Autowired
+    private TbMsgPayloadStore payloadStore;
+    @Autowired
     private TimeseriesService timeseriesService;
     @Autowired
     protected TbClusterService tbClusterService;
@@ -102,6 +118,7 @@ public class TelemetryRecognitionServiceImpl extends BaseDaoServiceImpl<Telemetr
     @Override
     public void deleteByDeviceId(UUID deviceId) {
         baseDao.deleteByDeviceId(deviceId);
+        imageStorageLedger.onDeviceDeleted(deviceId);
     }
 
     @Override
@@ -111,8 +128,7 @@ public class TelemetryRecognitionServiceImpl extends BaseDaoServiceImpl<Telemetr
         return checkTheParametersAndSave(telemetryRecognitionList);
     }
 
-    private Boolean checkTheParametersAndSave(List<TelemetryRecognitionReceipt> telemetryRecognitionList)
-            throws ThingsboardException, ExecutionException, InterruptedException {
+    private Boolean checkTheParametersAndSave(List<TelemetryRecognitionReceipt> telemetryRecognitionList) throws ThingsboardException {
         if (CollectionUtils.isEmpty(telemetryRecognitionList)) {
             log.error("Invalid parameters telemetryRecognitionList can not null ");
             throw new ThingsboardException("Invalid parameters telemetryRecognitionList can not null ", ThingsboardErrorCode.BAD_REQUEST_PARAMS);
@@ -156,12 +172,15 @@ public class TelemetryRecognitionServiceImpl extends BaseDaoServiceImpl<Telemetr
             }
         });
 
-        // TODO 发送到第三方
+        // 发送到第三方
         sendToThirdParty(telemetryRecognitions, deviceUUID, ts);
         return true;
     }
 
-    private void sendToThirdParty(List<TelemetryRecognition> telemetryRecognitionList, AtomicReference<UUID> deviceUUID, AtomicReference<Long> ts) throws ExecutionException, InterruptedException {
+    private void sendToThirdParty(List<TelemetryRecognition> telemetryRecognitionList, AtomicReference<UUID> deviceUUID, AtomicReference<Long> ts) {
+        if (telemetryRecognitionList.isEmpty()) {
+            return;
+        }
         // 校验是否roi通道
         DeviceId deviceId = new DeviceId(deviceUUID.get());
         Device deviceById = deviceService.findDeviceById(TenantId.SYS_TENANT_ID, deviceId);
@@ -171,68 +190,104 @@ public class TelemetryRecognitionServiceImpl extends BaseDaoServiceImpl<Telemetr
             return;
         }
         TenantId tenantId = deviceById.getTenantId();
-        // 查找第三方数据
-        ListenableFuture<List<TsKvEntry>> latest = timeseriesService.findLatest(tenantId, deviceId, List.of("devName", "devMac"));
-        String imageBase64 = timeseriesService.findTelemetryImage(deviceUUID.toString(), tsLong, "image", EntityType.DEVICE.name(), tenantId);
-        if (StringUtils.isBlank(imageBase64)) {
-            log.error("Send to third party fail,image is not find! deviceName = {},ts = {}", deviceById.getName(), tsLong);
+        // 一次查出设备的全部ROI及其接收方
+        ArrayNode recognitions = initRecognitions(deviceById, telemetryRecognitionList);
+        if (recognitions.isEmpty()) {
+            log.debug("No recipients for recognitions, deviceName = {}, ts = {}", deviceById.getName(), tsLong);
             return;
         }
-        List<TsKvEntry> tsKvEntries = latest.get();
+        // 查找第三方数据
+        ListenableFuture<List<TsKvEntry>> latest = timeseriesService.findLatest(tenantId, deviceId, List.of("devName", "devMac"));
+        ListenableFuture<String> image = Futures.transformAsync(timeseriesService.findTelemetryImageValue(tenantId, deviceId, tsLong, "image"),
+                value -> value.isPresent() ? imageBlobService.findBase64(tenantId, value.get()) : Futures.immediateFuture(""),
+                MoreExecutors.directExecutor());
+        Futures.addCallback(Futures.allAsList(latest, image), new FutureCallback<>() {
+            @Override
+            public void onSuccess(List<Object> result) {
+                String imageBase64 = Futures.getUnchecked(image);
+                if (StringUtils.isBlank(imageBase64)) {
+                    log.error("Send to third party fail,image is not find! deviceName = {},ts = {}", deviceById.getName(), tsLong);
+                    return;
+                }
+                sendToRoiRuleEngine(tenantId, deviceById, imageBase64, Futures.getUnchecked(latest), recognitions);
+            }
 
-        telemetryRecognitionList.forEach(recognition -> initAndSendRuleEngine(tenantId, recognition, imageBase64, deviceById, tsKvEntries));
+            @Override
+            public void onFailure(Throwable t) {
+                log.error("Send to third party fail, deviceName = {},ts = {}", deviceById.getName(), tsLong, t);
+            }
+        }, MoreExecutors.directExecutor());
     }
 
-    private void initAndSendRuleEngine(TenantId tenantId, TelemetryRecognition recognition, String imageBase64, Device device, List<TsKvEntry> tsKvEntries) {
-        DeviceId deviceId = device.getId();
-
+    private ArrayNode initRecognitions(Device device, List<TelemetryRecognition> telemetryRecognitionList) {
+        // 获取ROI信息
+        Map<String, DeviceAbility> abilities = deviceAbilityService.findByDeviceId(device.getId().getId()).stream()
+                .collect(Collectors.toMap(DeviceAbility::getAbility, Function.identity(), (a, b) -> a));
+        List<UUID> abilityIds = telemetryRecognitionList.stream()
+                .map(recognition -> abilities.get(recognition.getAbility()))
+                .filter(Objects::nonNull)
+                .map(DeviceAbility::getId)
+                .distinct()
+                .collect(Collectors.toList());
         // 查找需要发送的第三方
+        Map<UUID, List<String>> recipientsByAbility = ruleChainAssociateService.findRecipientsByRoiIn(abilityIds);
+
+        ArrayNode recognitions = JacksonUtil.OBJECT_MAPPER.createArrayNode();
+        telemetryRecognitionList.forEach(recognition -> {
+            String ability = recognition.getAbility();
+            DeviceAbility deviceAbility = abilities.get(ability);
+            if (deviceAbility == null) {
+                log.error("DeviceAbility is not found deviceName = {}, ability = {}", device.getName(), ability);
+                return;
+            }
+            List<String> recipientsIds = recipientsByAbility.getOrDefault(deviceAbility.getId(), Collections.emptyList());
+            if (recipientsIds.isEmpty()) {
+                return;
+            }
+            ObjectNode objectNode = recognitions.addObject();
+            objectNode.put("roiId", recognition.getId().toString());
+            objectNode.put("ts", recognition.getTs());
+            objectNode.put("value", recognition.getValue());
+            objectNode.put("ability", ability);
+            objectNode.put("coordinate", deviceAbility.getExtraInfo());
+            recipientsIds.forEach(objectNode.putArray(DataConstants.ROI_RECIPIENTS_IDS)::add);
+        });
+        return recognitions;
+    }
+
+    /**
+     * 一帧只发送一条消息, 图片只暂存一份; 由规则链中的 roi message type switch 节点按接收方展开
+     */
+    private void sendToRoiRuleEngine(TenantId tenantId, Device device, String imageBase64, List<TsKvEntry> tsKvEntries, ArrayNode recognitions) {
+        DeviceId deviceId = device.getId();
         ObjectNode objectNode = JacksonUtil.newObjectNode();
-        objectNode.put("image", imageBase64);
+        String image = payloadStore.offload(imageBase64);
+        objectNode.put("image", image);
         objectNode.put("deviceName", device.getName());
         objectNode.put("deviceType", device.getType());
-        objectNode.put("roiId", recognition.getId().toString());
-        objectNode.put("ts", recognition.getTs());
-        objectNode.put("value", recognition.getValue());
-        String ability = recognition.getAbility();
-        // 获取ROI信息
-        DeviceAbility deviceAbility = deviceAbilityService.findDeviceAbilityByDeviceIdAndAbility(deviceId.getId(), ability);
-        if (deviceAbility == null) {
-            log.error("DeviceAbility is not found deviceName = {}, ability = {}", device.getName(), ability);
-            return;
-        }
-        objectNode.put("ability", ability);
-        objectNode.put("coordinate", deviceAbility.getExtraInfo());
-
         tsKvEntries.forEach(tsKvEntry -> objectNode.put(tsKvEntry.getKey(), tsKvEntry.getValue().toString()));
+        objectNode.set(DataConstants.ROI_RECOGNITIONS, recognitions);
 
         TbMsgMetaData metaData = new TbMsgMetaData();
         metaData.putValue("deviceName", device.getName());
         metaData.putValue("deviceType", device.getType());
         metaData.putValue("ts", String.valueOf(System.currentTimeMillis()));
-        List<String> recipientsIds = ruleChainAssociateService.findRecipientsByRoi(deviceAbility.getId());
-        // 查找需要发送的第三方
-        recipientsIds.forEach(recipientsId -> {
-            metaData.putValue("recipientsId", recipientsId);
-            sendToRoiRuleEngine(tenantId, recognition, device, deviceId, objectNode, metaData);
-        });
-    }
-
-    private void sendToRoiRuleEngine(TenantId tenantId, TelemetryRecognition recognition, Device device, DeviceId deviceId, ObjectNode objectNode, TbMsgMetaData metaData) {
-
         TbMsg tbMsg = TbMsg.newMsg(SessionMsgType.MS_ROI_PASSAGE.name(), deviceId, metaData, objectNode.toString());
 
         // 发送到规则链。自定义网络节点
         tbClusterService.pushMsgToRuleEngine(tenantId, deviceId, tbMsg, new TbQueueCallback() {
             @Override
             public void onSuccess(TbQueueMsgMetadata metadata) {
-                log.info("send to roi rule engine success roi = {} , deviceName = {}", recognition.getAbility(), device.getName());
+                log.debug("send to roi rule engine success recognitions = {} , deviceName = {}", recognitions.size(), device.getName());
             }
 
             @Override
             public void onFailure(Throwable t) {
-                log.error("send to roi rule engine fail roi = {} , deviceName = {}", recognition.getAbility(), device.getName());
-                log.error("send to roi rule engine fail :", t);
+                log.error("send to roi rule engine fail recognitions = {} , deviceName = {}", recognitions.size(), device.getName(), t);
+                // 消息未入队, 不会被消费确认, 直接释放暂存的图片
+                if (TbMsgPayloadStore.isRef(image)) {
+                    payloadStore.release(image);
+                }
             }
         });
     }
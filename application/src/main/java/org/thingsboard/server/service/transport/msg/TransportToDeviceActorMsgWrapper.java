@@ -21,6 +21,7 @@ import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.msg.MsgType;
 import org.thingsboard.server.common.msg.TbActorMsg;
+import org.thingsboard.server.common.msg.TbActorStopReason;
 import org.thingsboard.server.common.msg.aware.DeviceAwareMsg;
 import org.thingsboard.server.common.msg.aware.TenantAwareMsg;
 import org.thingsboard.server.common.msg.queue.TbCallback;
@@ -53,4 +54,17 @@ public class TransportToDeviceActorMsgWrapper implements TbActorMsg, DeviceAware
     public MsgType getMsgType() {
         return MsgType.TRANSPORT_TO_DEVICE_ACTOR_MSG;
     }
+
+    /**
+     * 遥测/属性上报只通过上行通知进入设备 actor, 丢弃后仅影响活跃时间, 可由下一次上报补上
+     */
+    @Override
+    public boolean isDroppableOnOverflow() {
+        return msg.hasUplinkNotificationMsg();
+    }
+
+    @Override
+    public void onTbActorStopped(TbActorStopReason reason) {
+        callback.onFailure(new RuntimeException(getStopMessage(reason, "device actor")));
+    }
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.service.ttl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.dao.dashboard.DashboardRuleDevicesService;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.util.TbCoreComponent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 仪表板规则触发记录过期清理
+ */
+@TbCoreComponent
+@Service
+@ConditionalOnExpression("${sql.ttl.dashboard_rule_devices.enabled:true} && ${sql.ttl.dashboard_rule_devices.ttl:0} > 0")
+@Slf4j
+public class DashboardRuleDevicesCleanUpService extends AbstractCleanUpService {
+
+    private final DashboardRuleDevicesService dashboardRuleDevicesService;
+
+    @Value("${sql.ttl.dashboard_rule_devices.ttl:0}")
+    private long ttlInSec;
+
+    public DashboardRuleDevicesCleanUpService(PartitionService partitionService, DashboardRuleDevicesService dashboardRuleDevicesService) {
+        super(partitionService);
+        this.dashboardRuleDevicesService = dashboardRuleDevicesService;
+    }
+
+    @Scheduled(initialDelayString = "#{T(org.apache.commons.lang3.RandomUtils).nextLong(0, ${sql.ttl.dashboard_rule_devices.checking_interval_ms:86400000})}",
+            fixedDelayString = "${sql.ttl.dashboard_rule_devices.checking_interval_ms:86400000}")
+    public void cleanUp() {
+        if (isSystemTenantPartitionMine()) {
+            long expTime = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(ttlInSec);
+            dashboardRuleDevicesService.cleanUp(expTime);
+        }
+    }
+
+}
@@ -31,7 +31,6 @@ import org.springframework.web.socket.CloseStatus;
 import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.common.util.ThingsBoardExecutors;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
-import org.thingsboard.server.cache.ms.MsDeviceLastUpdateCache;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.StringUtils;
 import org.thingsboard.server.common.data.TenantProfile;
@@ -152,7 +151,6 @@ public class DefaultWebSocketService implements WebSocketService {
     private ExecutorService executor;
     private ScheduledExecutorService pingExecutor;
     private String serviceId;
-    private final MsDeviceLastUpdateCache deviceLastUpdateCache;
 
     private List<WsCmdListHandler<TelemetryPluginCmdsWrapper, ?>> telemetryCmdsHandlers;
     private List<WsCmdHandler<NotificationCmdsWrapper, ? extends WsCmd>> notificationCmdsHandlers;
@@ -215,7 +213,6 @@ public class DefaultWebSocketService implements WebSocketService {
                 break;
             case CLOSED:
                 wsSessionsMap.remove(sessionId);
-                msClearCache();
                 oldSubService.cancelAllSessionSubscriptions(sessionId);
                 entityDataSubService.cancelAllSessionSubscriptions(sessionId);
                 processSessionClose(sessionRef);
@@ -223,12 +220,6 @@ public class DefaultWebSocketService implements WebSocketService {
         }
     }
 
-    private void msClearCache() {
-        if (wsSessionsMap.isEmpty()) {
-            deviceLastUpdateCache.clear();
-        }
-    }
-
     @Override
     public void handleWebSocketMsg(WebSocketSessionRef sessionRef, String msg) {
         if (log.isTraceEnabled()) {
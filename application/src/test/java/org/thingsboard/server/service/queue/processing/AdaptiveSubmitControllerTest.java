@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.service.queue.processing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveSubmitControllerTest {
+
+    private final List<UUID> started = new CopyOnWriteArrayList<>();
+
+    @Test
+    void keepsOriginatorOrderAcrossPacks() {
+        AdaptiveSubmitController controller = new AdaptiveSubmitController("test", 100, 100, 1000, 1000);
+        AdaptiveSubmitController.Task a1 = task("x");
+        AdaptiveSubmitController.Task a2 = task("y");
+        controller.submit(List.of(a1, a2));
+        AdaptiveSubmitController.Task b1 = task("x");
+        AdaptiveSubmitController.Task b2 = task("z");
+        controller.submit(List.of(b1, b2));
+
+        // y 已完成不影响 x, 下一个包中的 x 要等上一个包的 x 完成
+        controller.complete(a2.id);
+        assertThat(started).containsExactly(a1.id, a2.id, b2.id);
+
+        controller.complete(a1.id);
+        assertThat(started).containsExactly(a1.id, a2.id, b2.id, b1.id);
+    }
+
+    @Test
+    void limitsInFlightToWindow() {
+        AdaptiveSubmitController controller = new AdaptiveSubmitController("test", 2, 2, 1000, 1000);
+        AdaptiveSubmitController.Task t1 = task("a");
+        AdaptiveSubmitController.Task t2 = task("b");
+        AdaptiveSubmitController.Task t3 = task("c");
+        controller.submit(List.of(t1, t2, t3));
+        assertThat(started).containsExactly(t1.id, t2.id);
+
+        controller.complete(t2.id);
+        assertThat(started).containsExactly(t1.id, t2.id, t3.id);
+        assertThat(controller.getInFlightCount()).isEqualTo(2);
+    }
+
+    @Test
+    void cancelReleasesLane() {
+        AdaptiveSubmitController controller = new AdaptiveSubmitController("test", 100, 100, 1000, 1000);
+        AdaptiveSubmitController.Task slow = task("x");
+        controller.submit(List.of(slow));
+        AdaptiveSubmitController.Task next = task("x");
+        controller.submit(List.of(next));
+        assertThat(started).containsExactly(slow.id);
+
+        controller.cancel(Collections.singletonList(slow.id));
+        assertThat(started).containsExactly(slow.id, next.id);
+        // 迟到的成功回调被忽略
+        controller.complete(slow.id);
+        assertThat(controller.getInFlightCount()).isEqualTo(1);
+    }
+
+    @Test
+    void adaptsWindowAndStragglerWaitToPackLatency() {
+        AdaptiveSubmitController controller = new AdaptiveSubmitController("test", 100, 200, 500, 2000);
+        assertThat(controller.getWindow()).isEqualTo(100);
+        assertThat(controller.getStragglerWaitMs()).isEqualTo(2000);
+
+        controller.onPackProcessed(1500, false);
+        assertThat(controller.getWindow()).isEqualTo(50);
+        controller.onPackProcessed(100, true);
+        assertThat(controller.getWindow()).isEqualTo(25);
+        for (int i = 0; i < 100; i++) {
+            controller.onPackProcessed(50, false);
+        }
+        assertThat(controller.getWindow()).isEqualTo(200);
+        assertThat(controller.getStragglerWaitMs()).isLessThan(2000).isGreaterThanOrEqualTo(10);
+    }
+
+    @Test
+    void grownWindowStartsQueuedTasksFromOtherPacks() {
+        AdaptiveSubmitController controller = new AdaptiveSubmitController("test", 2, 4, 500, 2000);
+        AdaptiveSubmitController.Task t1 = task("a");
+        AdaptiveSubmitController.Task t2 = task("b");
+        AdaptiveSubmitController.Task t3 = task("c");
+        controller.submit(List.of(t1, t2));
+        controller.submit(List.of(t3));
+        assertThat(started).containsExactly(t1.id, t2.id);
+
+        // 窗口可以超过单个包的大小, 放大后立即启动排队中的消息
+        controller.onPackProcessed(50, false);
+        assertThat(controller.getWindow()).isEqualTo(3);
+        assertThat(started).containsExactly(t1.id, t2.id, t3.id);
+    }
+
+    private AdaptiveSubmitController.Task task(String originator) {
+        UUID id = UUID.randomUUID();
+        return new AdaptiveSubmitController.Task(id, originator, () -> started.add(id));
+    }
+
+}
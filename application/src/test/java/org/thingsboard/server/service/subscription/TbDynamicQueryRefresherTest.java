@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.service.subscription;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.query.EntityCountQuery;
+import org.thingsboard.server.common.data.query.SingleEntityFilter;
+import org.thingsboard.server.dao.attributes.AttributesService;
+import org.thingsboard.server.dao.entity.EntityService;
+import org.thingsboard.server.service.security.model.SecurityUser;
+import org.thingsboard.server.service.ws.WebSocketService;
+import org.thingsboard.server.service.ws.WebSocketSessionRef;
+import org.thingsboard.server.service.ws.telemetry.cmd.v2.EntityCountUpdate;
+
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TbDynamicQueryRefresherTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final SubscriptionServiceStatistics stats = new SubscriptionServiceStatistics();
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> future;
+    private EntityService entityService;
+    private WebSocketService wsService;
+    private TbDynamicQueryRefresher refresher;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = mock(ScheduledExecutorService.class);
+        future = mock(ScheduledFuture.class);
+        doReturn(future).when(scheduler).scheduleWithFixedDelay(any(Runnable.class), anyLong(), anyLong(), any(TimeUnit.class));
+        entityService = mock(EntityService.class);
+        wsService = mock(WebSocketService.class);
+        refresher = new TbDynamicQueryRefresher(scheduler, 60, stats, ctx -> !ctx.isStopped());
+    }
+
+    @Test
+    void identicalQueriesShareOneExecution() {
+        EntityCountQuery query = query(UUID.randomUUID());
+        TbEntityCountSubCtx first = ctx("s1", tenantId, query);
+        TbEntityCountSubCtx second = ctx("s2", tenantId, query);
+        refresher.join(first);
+        refresher.join(second);
+
+        assertThat(refresher.getGroupCount()).isEqualTo(1);
+        assertThat(refresher.getMemberCount()).isEqualTo(2);
+        verify(scheduler, times(1)).scheduleWithFixedDelay(any(Runnable.class), eq(60L), eq(60L), eq(TimeUnit.SECONDS));
+
+        when(entityService.countEntitiesByQuery(any(), any(), any())).thenReturn(5L);
+        lastScheduledTask().run();
+
+        verify(entityService, times(1)).countEntitiesByQuery(any(), any(), any());
+        verify(wsService).sendWsMsg(eq("s1"), any(EntityCountUpdate.class));
+        verify(wsService).sendWsMsg(eq("s2"), any(EntityCountUpdate.class));
+        assertThat(stats.getDynamicQueryInvocationCnt().get()).isEqualTo(1);
+        assertThat(stats.getDynamicQuerySharedCnt().get()).isEqualTo(1);
+    }
+
+    @Test
+    void differentTenantsDoNotShare() {
+        EntityCountQuery query = query(UUID.randomUUID());
+        refresher.join(ctx("s1", tenantId, query));
+        refresher.join(ctx("s2", TenantId.fromUUID(UUID.randomUUID()), query));
+
+        assertThat(refresher.getGroupCount()).isEqualTo(2);
+    }
+
+    @Test
+    void lastMemberLeavingCancelsTask() {
+        EntityCountQuery query = query(UUID.randomUUID());
+        TbEntityCountSubCtx first = ctx("s1", tenantId, query);
+        TbEntityCountSubCtx second = ctx("s2", tenantId, query);
+        refresher.join(first);
+        refresher.join(second);
+
+        first.stop();
+        assertThat(refresher.getMemberCount()).isEqualTo(1);
+        verify(future, times(0)).cancel(false);
+
+        second.stop();
+        assertThat(refresher.getGroupCount()).isZero();
+        verify(future).cancel(false);
+    }
+
+    @Test
+    void changedQueryMovesToNewGroup() {
+        EntityCountQuery query = query(UUID.randomUUID());
+        TbEntityCountSubCtx first = ctx("s1", tenantId, query);
+        TbEntityCountSubCtx second = ctx("s2", tenantId, query);
+        refresher.join(first);
+        refresher.join(second);
+        Runnable sharedTask = lastScheduledTask();
+
+        second.setQuery(query(UUID.randomUUID()));
+        sharedTask.run();
+
+        assertThat(refresher.getGroupCount()).isEqualTo(2);
+        assertThat(refresher.getMemberCount()).isEqualTo(2);
+        verify(wsService, times(0)).sendWsMsg(eq("s2"), any(EntityCountUpdate.class));
+    }
+
+    private Runnable lastScheduledTask() {
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler, atLeastOnce()).scheduleWithFixedDelay(captor.capture(), anyLong(), anyLong(), any(TimeUnit.class));
+        return captor.getValue();
+    }
+
+    private TbEntityCountSubCtx ctx(String sessionId, TenantId tenantId, EntityCountQuery query) {
+        SecurityUser user = new SecurityUser();
+        user.setTenantId(tenantId);
+        WebSocketSessionRef sessionRef = WebSocketSessionRef.builder().sessionId(sessionId).securityCtx(user).build();
+        TbEntityCountSubCtx ctx = new TbEntityCountSubCtx("test", wsService, entityService, mock(TbLocalSubscriptionService.class),
+                mock(AttributesService.class), stats, sessionRef, 1);
+        ctx.setQuery(query);
+        return ctx;
+    }
+
+    private static EntityCountQuery query(UUID deviceId) {
+        SingleEntityFilter filter = new SingleEntityFilter();
+        filter.setSingleEntity(new DeviceId(deviceId));
+        return new EntityCountQuery(filter);
+    }
+
+}
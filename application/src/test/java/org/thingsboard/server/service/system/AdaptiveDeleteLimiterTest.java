@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.service.system;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveDeleteLimiterTest {
+
+    @Test
+    void growsWhileFastAndBacksOffWhenSlow() {
+        AdaptiveDeleteLimiter limiter = new AdaptiveDeleteLimiter(50, 4, 100);
+        for (int i = 0; i < 10; i++) {
+            limiter.onWave(10, false);
+        }
+        assertThat(limiter.getConcurrency()).isEqualTo(4);
+        assertThat(limiter.getPauseMs()).isZero();
+
+        limiter.onWave(200, false);
+        assertThat(limiter.getConcurrency()).isEqualTo(2);
+        assertThat(limiter.getPauseMs()).isEqualTo(1);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.onWave(10, true);
+        }
+        assertThat(limiter.getConcurrency()).isEqualTo(1);
+        assertThat(limiter.getPauseMs()).isEqualTo(100);
+
+        limiter.onWave(10, false);
+        assertThat(limiter.getConcurrency()).isEqualTo(2);
+        assertThat(limiter.getPauseMs()).isEqualTo(50);
+    }
+
+}
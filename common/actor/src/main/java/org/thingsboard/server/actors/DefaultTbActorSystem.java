@@ -22,6 +22,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.msg.TbActorMsg;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -44,6 +45,7 @@ public class DefaultTbActorSystem implements TbActorSystem {
     private final ConcurrentMap<TbActorId, TbActorMailbox> actors = new ConcurrentHashMap<>();
     private final ConcurrentMap<TbActorId, ReentrantLock> actorCreationLocks = new ConcurrentHashMap<>();
     private final ConcurrentMap<TbActorId, Set<TbActorId>> parentChildMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TbActorTypeStats> actorTypeStatsMap = new ConcurrentHashMap<>();
 
     @Getter
     private final TbActorSystemSettings settings;
@@ -57,7 +59,12 @@ public class DefaultTbActorSystem implements TbActorSystem {
 
     @Override
     public void createDispatcher(String dispatcherId, ExecutorService executor) {
-        Dispatcher current = dispatchers.putIfAbsent(dispatcherId, new Dispatcher(dispatcherId, executor));
+        createDispatcher(dispatcherId, executor, TbActorMailboxSettings.UNBOUNDED);
+    }
+
+    @Override
+    public void createDispatcher(String dispatcherId, ExecutorService executor, TbActorMailboxSettings mailboxSettings) {
+        Dispatcher current = dispatchers.putIfAbsent(dispatcherId, new Dispatcher(dispatcherId, executor, mailboxSettings));
         if (current != null) {
             throw new RuntimeException("Dispatcher with id [" + dispatcherId + "] is already registered!");
         }
@@ -114,7 +121,8 @@ public class DefaultTbActorSystem implements TbActorSystem {
                             throw new TbActorNotRegisteredException(parent, "Parent Actor with id [" + parent + "] is not registered!");
                         }
                     }
-                    TbActorMailbox mailbox = new TbActorMailbox(this, settings, actorId, parentRef, actor, dispatcher);
+                    TbActorTypeStats stats = actorTypeStatsMap.computeIfAbsent(actor.getClass().getSimpleName(), TbActorTypeStats::new);
+                    TbActorMailbox mailbox = new TbActorMailbox(this, settings, actorId, parentRef, actor, dispatcher, stats);
                     actors.put(actorId, mailbox);
                     mailbox.initActor();
                     actorMailbox = mailbox;
@@ -178,6 +186,11 @@ public class DefaultTbActorSystem implements TbActorSystem {
         }
     }
 
+    @Override
+    public Collection<TbActorTypeStats> getActorTypeStats() {
+        return actorTypeStatsMap.values();
+    }
+
     @Override
     public void stop(TbActorRef actorRef) {
         stop(actorRef.getActorId());
@@ -25,5 +25,6 @@ class Dispatcher {
 
     private final String dispatcherId;
     private final ExecutorService executor;
+    private final TbActorMailboxSettings mailboxSettings;
 
 }
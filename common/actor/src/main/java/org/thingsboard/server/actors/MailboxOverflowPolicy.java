@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.actors;
+
+/**
+ * 有界邮箱普通优先级队列满时的处理策略.
+ * 只有 {@link org.thingsboard.server.common.msg.TbActorMsg#isDroppableOnOverflow()} 的消息会被拒绝或丢弃,
+ * 其余消息在任何策略下都按 BLOCK 处理.
+ */
+public enum MailboxOverflowPolicy {
+
+    /**
+     * 拒绝新消息, 通过 {@link org.thingsboard.server.common.msg.TbActorMsg#onTbActorStopped} 回调通知发送方
+     */
+    REJECT,
+    /**
+     * 丢弃队列中最旧的可丢弃消息以接纳新消息, 适用于只关心最新值的遥测
+     */
+    DROP_OLDEST,
+    /**
+     * 阻塞生产者直到有空位, 超过 block_timeout_ms 后按 REJECT 处理
+     */
+    BLOCK
+
+}
@@ -27,6 +27,8 @@ import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -42,14 +44,18 @@ public final class TbActorMailbox implements TbActorCtx {
     private static final boolean NOT_READY = false;
     private static final boolean READY = true;
 
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
     private final TbActorSystem system;
     private final TbActorSystemSettings settings;
     private final TbActorId selfId;
     private final TbActorRef parentRef;
     private final TbActor actor;
     private final Dispatcher dispatcher;
+    private final TbActorTypeStats stats;
     private final ConcurrentLinkedQueue<TbActorMsg> highPriorityMsgs = new ConcurrentLinkedQueue<>();
     private final ConcurrentLinkedQueue<TbActorMsg> normalPriorityMsgs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger normalPrioritySize = new AtomicInteger();
     private final AtomicBoolean busy = new AtomicBoolean(FREE);
     private final AtomicBoolean ready = new AtomicBoolean(NOT_READY);
     private final AtomicBoolean destroyInProgress = new AtomicBoolean();
@@ -92,8 +98,15 @@ public final class TbActorMailbox implements TbActorCtx {
     private void enqueue(TbActorMsg msg, boolean highPriority) {
         if (!destroyInProgress.get()) {
             if (highPriority) {
+                stats.onEnqueued();
                 highPriorityMsgs.add(msg);
+            } else if (!reserveNormalPrioritySlot(msg)) {
+                log.debug("[{}] Mailbox is full, rejecting message: {}", selfId, msg);
+                stats.onDropped();
+                msg.onTbActorStopped(TbActorStopReason.MAILBOX_OVERFLOW);
+                return;
             } else {
+                stats.onEnqueued();
                 normalPriorityMsgs.add(msg);
             }
             tryProcessQueue(true);
@@ -114,6 +127,89 @@ public final class TbActorMailbox implements TbActorCtx {
         }
     }
 
+    /**
+     * 为普通优先级消息占一个位置, 队列满时按调度器配置的策略处理; 返回 false 表示消息需要被拒绝.
+     * 只有 {@link TbActorMsg#isDroppableOnOverflow()} 的消息会被丢弃或直接拒绝, 其余消息只做有限等待.
+     */
+    private boolean reserveNormalPrioritySlot(TbActorMsg msg) {
+        TbActorMailboxSettings mailboxSettings = dispatcher.getMailboxSettings();
+        if (!mailboxSettings.isBounded()) {
+            normalPrioritySize.incrementAndGet();
+            return true;
+        }
+        int maxSize = mailboxSettings.getMaxSize();
+        if (tryReserve(maxSize)) {
+            return true;
+        }
+        MailboxOverflowPolicy policy = mailboxSettings.getOverflowPolicy();
+        if (policy == MailboxOverflowPolicy.DROP_OLDEST) {
+            while (true) {
+                TbActorMsg oldest = pollOldestDroppable();
+                if (oldest != null) {
+                    // 被丢弃消息的位置直接转给新消息, 计数不变
+                    stats.onDequeued();
+                    stats.onDropped();
+                    log.debug("[{}] Mailbox is full, dropping oldest message: {}", selfId, oldest);
+                    oldest.onTbActorStopped(TbActorStopReason.MAILBOX_OVERFLOW);
+                    return true;
+                }
+                if (tryReserve(maxSize)) {
+                    return true;
+                }
+                if (!hasDroppable()) {
+                    break;
+                }
+            }
+        }
+        if (policy == MailboxOverflowPolicy.BLOCK || !msg.isDroppableOnOverflow()) {
+            return awaitFreeSlot(maxSize, mailboxSettings.getBlockTimeoutMs());
+        }
+        return false;
+    }
+
+    private TbActorMsg pollOldestDroppable() {
+        for (TbActorMsg candidate : normalPriorityMsgs) {
+            if (candidate.isDroppableOnOverflow() && normalPriorityMsgs.remove(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private boolean hasDroppable() {
+        for (TbActorMsg candidate : normalPriorityMsgs) {
+            if (candidate.isDroppableOnOverflow()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean awaitFreeSlot(int maxSize, long blockTimeoutMs) {
+        // 生产者与消费者共用单线程调度器时无法等到空位, 因此只等待有限时间
+        tryProcessQueue(false);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+        while (!destroyInProgress.get() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            if (tryReserve(maxSize)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean tryReserve(int maxSize) {
+        while (true) {
+            int size = normalPrioritySize.get();
+            if (size >= maxSize) {
+                return false;
+            }
+            if (normalPrioritySize.compareAndSet(size, size + 1)) {
+                return true;
+            }
+        }
+    }
+
     private void tryProcessQueue(boolean newMsg) {
         if (ready.get() == READY) {
             if (newMsg || !highPriorityMsgs.isEmpty() || !normalPriorityMsgs.isEmpty()) {
@@ -136,8 +232,13 @@ public final class TbActorMailbox implements TbActorCtx {
             TbActorMsg msg = highPriorityMsgs.poll();
             if (msg == null) {
                 msg = normalPriorityMsgs.poll();
+                if (msg != null) {
+                    normalPrioritySize.decrementAndGet();
+                }
             }
             if (msg != null) {
+                stats.onDequeued();
+                long startNanos = System.nanoTime();
                 try {
                     log.debug("[{}] Going to process message: {}", selfId, msg);
                     actor.process(msg);
@@ -150,6 +251,8 @@ public final class TbActorMailbox implements TbActorCtx {
                     if (strategy.isStop()) {
                         system.stop(selfId);
                     }
+                } finally {
+                    stats.onProcessed(System.nanoTime() - startNanos);
                 }
             } else {
                 noMoreElements = true;
@@ -218,14 +321,26 @@ public final class TbActorMailbox implements TbActorCtx {
             try {
                 ready.set(NOT_READY);
                 actor.destroy(stopReason, cause);
-                highPriorityMsgs.forEach(msg -> msg.onTbActorStopped(stopReason));
-                normalPriorityMsgs.forEach(msg -> msg.onTbActorStopped(stopReason));
+                drain(highPriorityMsgs);
+                drain(normalPriorityMsgs);
             } catch (Throwable t) {
                 log.warn("[{}] Failed to destroy actor: {}", selfId, t);
             }
         });
     }
 
+    private void drain(ConcurrentLinkedQueue<TbActorMsg> queue) {
+        TbActorMsg msg;
+        while ((msg = queue.poll()) != null) {
+            if (queue == normalPriorityMsgs) {
+                // 初始化失败后可能重新初始化, 计数必须与队列一致
+                normalPrioritySize.decrementAndGet();
+            }
+            stats.onDequeued();
+            msg.onTbActorStopped(stopReason);
+        }
+    }
+
     @Override
     public TbActorId getActorId() {
         return selfId;
@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.actors;
+
+import lombok.Data;
+
+/**
+ * 调度器级别的邮箱配置, 仅约束普通优先级队列, 高优先级(生命周期/控制)消息不受限制
+ */
+@Data
+public class TbActorMailboxSettings {
+
+    public static final TbActorMailboxSettings UNBOUNDED = new TbActorMailboxSettings(0, MailboxOverflowPolicy.REJECT, 0);
+
+    /**
+     * 单个 actor 普通优先级队列的最大长度, 0 表示不限制
+     */
+    private final int maxSize;
+    private final MailboxOverflowPolicy overflowPolicy;
+    private final long blockTimeoutMs;
+
+    public boolean isBounded() {
+        return maxSize > 0;
+    }
+
+}
@@ -18,6 +18,7 @@ package org.thingsboard.server.actors;
 
 import org.thingsboard.server.common.msg.TbActorMsg;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
@@ -29,6 +30,8 @@ public interface TbActorSystem {
 
     void createDispatcher(String dispatcherId, ExecutorService executor);
 
+    void createDispatcher(String dispatcherId, ExecutorService executor, TbActorMailboxSettings mailboxSettings);
+
     void destroyDispatcher(String dispatcherId);
 
     TbActorRef getActor(TbActorId actorId);
@@ -52,4 +55,6 @@ public interface TbActorSystem {
     void broadcastToChildren(TbActorId parent, Predicate<TbActorId> childFilter, TbActorMsg msg);
 
     List<TbActorId> filterChildren(TbActorId parent, Predicate<TbActorId> childFilter);
+
+    Collection<TbActorTypeStats> getActorTypeStats();
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.actors;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按 actor 类型聚合的邮箱统计, 计数均为累计值, 由上层按周期求差值发布
+ */
+public class TbActorTypeStats {
+
+    @Getter
+    private final String actorType;
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder processingNanos = new LongAdder();
+
+    public TbActorTypeStats(String actorType) {
+        this.actorType = actorType;
+    }
+
+    void onEnqueued() {
+        enqueued.increment();
+        queueDepth.incrementAndGet();
+    }
+
+    void onDequeued() {
+        queueDepth.decrementAndGet();
+    }
+
+    void onProcessed(long nanos) {
+        processed.increment();
+        processingNanos.add(nanos);
+    }
+
+    void onDropped() {
+        dropped.increment();
+    }
+
+    /**
+     * 该类型所有 actor 邮箱中待处理消息总数, 可直接注册为 gauge
+     */
+    public AtomicLong getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getEnqueued() {
+        return enqueued.sum();
+    }
+
+    public long getProcessed() {
+        return processed.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getProcessingNanos() {
+        return processingNanos.sum();
+    }
+
+}
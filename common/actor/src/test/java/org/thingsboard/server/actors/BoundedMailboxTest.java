@@ -0,0 +1,287 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.actors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.msg.MsgType;
+import org.thingsboard.server.common.msg.TbActorMsg;
+import org.thingsboard.server.common.msg.TbActorStopReason;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.awaitility.Awaitility.await;
+
+public class BoundedMailboxTest {
+
+    private static final String DISPATCHER = "bounded-dispatcher";
+
+    private TbActorSystem actorSystem;
+    private ExecutorService executor;
+    private CountDownLatch started;
+    private CountDownLatch gate;
+    private List<Integer> processed;
+    private Map<Integer, TbActorStopReason> stopped;
+
+    @Before
+    public void init() {
+        actorSystem = new DefaultTbActorSystem(new TbActorSystemSettings(5, 1, 42));
+        executor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName(getClass().getSimpleName()));
+        started = new CountDownLatch(1);
+        gate = new CountDownLatch(1);
+        processed = new CopyOnWriteArrayList<>();
+        stopped = new ConcurrentHashMap<>();
+    }
+
+    @After
+    public void shutdown() {
+        gate.countDown();
+        actorSystem.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testRejectWhenFull() throws InterruptedException {
+        TbActorRef actor = createActor(new TbActorMailboxSettings(2, MailboxOverflowPolicy.REJECT, 0));
+        fillMailbox(actor);
+        actor.tell(new RecordingMsg(3));
+        actor.tell(new RecordingMsg(4));
+
+        Assert.assertEquals(TbActorStopReason.MAILBOX_OVERFLOW, stopped.get(3));
+        Assert.assertEquals(TbActorStopReason.MAILBOX_OVERFLOW, stopped.get(4));
+        gate.countDown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 3);
+        Assert.assertEquals(Arrays.asList(0, 1, 2), processed);
+
+        TbActorTypeStats stats = actorSystem.getActorTypeStats().iterator().next();
+        Assert.assertEquals(GatedActor.class.getSimpleName(), stats.getActorType());
+        Assert.assertEquals(2, stats.getDropped());
+        Assert.assertEquals(3, stats.getEnqueued());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> stats.getProcessed() == 3);
+        Assert.assertEquals(0, stats.getQueueDepth().get());
+    }
+
+    @Test
+    public void testDropOldestWhenFull() throws InterruptedException {
+        TbActorRef actor = createActor(new TbActorMailboxSettings(2, MailboxOverflowPolicy.DROP_OLDEST, 0));
+        fillMailbox(actor);
+        actor.tell(new RecordingMsg(3));
+        actor.tell(new RecordingMsg(4));
+
+        Assert.assertEquals(TbActorStopReason.MAILBOX_OVERFLOW, stopped.get(1));
+        Assert.assertEquals(TbActorStopReason.MAILBOX_OVERFLOW, stopped.get(2));
+        gate.countDown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 3);
+        Assert.assertEquals(Arrays.asList(0, 3, 4), processed);
+    }
+
+    @Test
+    public void testDropOldestSkipsNonDroppable() throws InterruptedException {
+        TbActorRef actor = createActor(new TbActorMailboxSettings(2, MailboxOverflowPolicy.DROP_OLDEST, 0));
+        actor.tell(new RecordingMsg(0));
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        actor.tell(new RecordingMsg(1, false));
+        actor.tell(new RecordingMsg(2));
+        actor.tell(new RecordingMsg(3));
+        actor.tell(new RecordingMsg(4));
+
+        Assert.assertEquals(TbActorStopReason.MAILBOX_OVERFLOW, stopped.get(2));
+        Assert.assertEquals(TbActorStopReason.MAILBOX_OVERFLOW, stopped.get(3));
+        Assert.assertFalse(stopped.containsKey(1));
+        gate.countDown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 3);
+        Assert.assertEquals(Arrays.asList(0, 1, 4), processed);
+    }
+
+    @Test
+    public void testNonDroppableWaitsForFreeSlot() throws InterruptedException {
+        TbActorRef actor = createActor(new TbActorMailboxSettings(2, MailboxOverflowPolicy.REJECT, 5000));
+        fillMailbox(actor);
+        actorSystem.getScheduler().schedule(gate::countDown, 100, TimeUnit.MILLISECONDS);
+        actor.tell(new RecordingMsg(3, false));
+
+        Assert.assertTrue(stopped.isEmpty());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 4);
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), processed);
+    }
+
+    @Test
+    public void testBlockRejectsAfterTimeout() throws InterruptedException {
+        TbActorRef actor = createActor(new TbActorMailboxSettings(2, MailboxOverflowPolicy.BLOCK, 100));
+        fillMailbox(actor);
+        long start = System.currentTimeMillis();
+        actor.tell(new RecordingMsg(3));
+
+        Assert.assertTrue(System.currentTimeMillis() - start >= 100);
+        Assert.assertEquals(TbActorStopReason.MAILBOX_OVERFLOW, stopped.get(3));
+    }
+
+    @Test
+    public void testBlockWaitsForFreeSlot() throws InterruptedException {
+        TbActorRef actor = createActor(new TbActorMailboxSettings(2, MailboxOverflowPolicy.BLOCK, 5000));
+        fillMailbox(actor);
+        actorSystem.getScheduler().schedule(gate::countDown, 100, TimeUnit.MILLISECONDS);
+        actor.tell(new RecordingMsg(3));
+
+        Assert.assertTrue(stopped.isEmpty());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 4);
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), processed);
+    }
+
+    @Test
+    public void testHighPriorityIsNotBounded() throws InterruptedException {
+        TbActorRef actor = createActor(new TbActorMailboxSettings(2, MailboxOverflowPolicy.REJECT, 0));
+        fillMailbox(actor);
+        actor.tellWithHighPriority(new RecordingMsg(3));
+
+        Assert.assertTrue(stopped.isEmpty());
+        gate.countDown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 4);
+        Assert.assertEquals(Arrays.asList(0, 3, 1, 2), processed);
+    }
+
+    @Test
+    public void testReinitAfterInitFailureStartsWithEmptyMailbox() throws InterruptedException {
+        CountDownLatch initGate = new CountDownLatch(1);
+        AtomicInteger initAttempts = new AtomicInteger();
+        TbActorRef actor = createActor(new TbActorMailboxSettings(2, MailboxOverflowPolicy.REJECT, 0), () -> new GatedActor() {
+            @Override
+            public void init(TbActorCtx ctx) throws TbActorException {
+                super.init(ctx);
+                if (initAttempts.incrementAndGet() == 1) {
+                    try {
+                        initGate.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new TbActorException("Init failed", null);
+                }
+            }
+
+            @Override
+            public InitFailureStrategy onInitFailure(int attempt, Throwable t) {
+                return InitFailureStrategy.stop();
+            }
+        });
+        // 初始化完成前进入邮箱的消息在初始化失败时被丢弃
+        actor.tell(new RecordingMsg(1));
+        actor.tell(new RecordingMsg(2));
+        initGate.countDown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> stopped.size() == 2);
+        Assert.assertEquals(TbActorStopReason.INIT_FAILED, stopped.get(1));
+
+        gate.countDown();
+        actor.tellWithHighPriority(() -> MsgType.RULE_NODE_UPDATED_MSG);
+        actor.tell(new RecordingMsg(3));
+        actor.tell(new RecordingMsg(4));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 2);
+        Assert.assertEquals(Arrays.asList(3, 4), processed);
+        Assert.assertEquals(2, stopped.size());
+    }
+
+    private TbActorRef createActor(TbActorMailboxSettings mailboxSettings) {
+        return createActor(mailboxSettings, GatedActor::new);
+    }
+
+    private TbActorRef createActor(TbActorMailboxSettings mailboxSettings, Supplier<TbActor> actorFactory) {
+        actorSystem.createDispatcher(DISPATCHER, executor, mailboxSettings);
+        TbActorId actorId = new TbEntityActorId(new DeviceId(UUID.randomUUID()));
+        return actorSystem.createRootActor(DISPATCHER, new TbActorCreator() {
+            @Override
+            public TbActorId createActorId() {
+                return actorId;
+            }
+
+            @Override
+            public TbActor createActor() {
+                return actorFactory.get();
+            }
+        });
+    }
+
+    /**
+     * 第一条消息进入处理并阻塞在 gate 上, 随后两条消息占满容量为 2 的邮箱
+     */
+    private void fillMailbox(TbActorRef actor) throws InterruptedException {
+        actor.tell(new RecordingMsg(0));
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        actor.tell(new RecordingMsg(1));
+        actor.tell(new RecordingMsg(2));
+    }
+
+    private class GatedActor extends AbstractTbActor {
+
+        @Override
+        public boolean process(TbActorMsg msg) {
+            started.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            processed.add(((RecordingMsg) msg).value);
+            return true;
+        }
+    }
+
+    private class RecordingMsg implements TbActorMsg {
+
+        private final int value;
+        private final boolean droppable;
+
+        RecordingMsg(int value) {
+            this(value, true);
+        }
+
+        RecordingMsg(int value, boolean droppable) {
+            this.value = value;
+            this.droppable = droppable;
+        }
+
+        @Override
+        public boolean isDroppableOnOverflow() {
+            return droppable;
+        }
+
+        @Override
+        public MsgType getMsgType() {
+            return MsgType.QUEUE_TO_RULE_ENGINE_MSG;
+        }
+
+        @Override
+        public void onTbActorStopped(TbActorStopReason reason) {
+            stopped.put(value, reason);
+        }
+    }
+
+}
@@ -17,48 +17,61 @@
 
 package org.thingsboard.server.cache.ms;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.util.concurrent.TimeUnit;
 
 /**
+ * 本地TTL缓存, 基于Caffeine实现: 并发安全, 按条目设置过期时间(System.nanoTime), 超过容量时按访问频率淘汰.
+ * 命中/未命中/淘汰次数通过 {@link StatsFactory} 导出, 标签为子类名.
+ *
  * @author Luohh
  */
 public abstract class MsAbstractCache<K, V> {
-    private final int maxSize;
-    private final Map<K, CacheEntry<V>> cache;
+    private static final String STATS_NAME = "ms.cache";
+
+    private final Cache<K, CacheEntry<V>> cache;
+    private final MsCacheStatsCounter statsCounter;
 
     public MsAbstractCache(int maxSize) {
-        this.maxSize = maxSize;
-        this.cache = new LinkedHashMap<>() {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
-                return size() > MsAbstractCache.this.maxSize;
-            }
-        };
+        this(maxSize, Ticker.systemTicker());
+    }
+
+    MsAbstractCache(int maxSize, Ticker ticker) {
+        this.statsCounter = new MsCacheStatsCounter();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new CacheEntryExpiry<K, V>())
+                .ticker(ticker)
+                .recordStats(() -> statsCounter)
+                .build();
+    }
+
+    @Autowired(required = false)
+    public void setStatsFactory(StatsFactory statsFactory) {
+        statsCounter.init(statsFactory, STATS_NAME, "cache", getClass().getSimpleName());
     }
 
     public void put(K key, V value, long timeToLiveInSeconds) {
-        LocalDateTime expirationTime = LocalDateTime.now().plus(timeToLiveInSeconds, ChronoUnit.SECONDS);
-        cache.put(key, new CacheEntry<>(value, expirationTime));
+        cache.put(key, new CacheEntry<>(value, TimeUnit.SECONDS.toNanos(timeToLiveInSeconds)));
     }
 
     public V get(K key) {
-        CacheEntry<V> entry = cache.get(key);
-        if (entry != null && entry.hasExpired()) {
-            cache.remove(key);
-            entry = null;
-        }
+        CacheEntry<V> entry = cache.getIfPresent(key);
         return (entry != null) ? entry.getValue() : null;
     }
 
     public void clear() {
-        cache.clear();
+        cache.invalidateAll();
     }
 
     public void remove(K key) {
-        cache.remove(key);
+        cache.invalidate(key);
     }
 
     public boolean containsKey(K key) {
@@ -66,24 +79,42 @@ public abstract class MsAbstractCache<K, V> {
     }
 
     public int size() {
-        return cache.size();
+        cache.cleanUp();
+        return (int) cache.estimatedSize();
+    }
+
+    MsCacheStatsCounter getStatsCounter() {
+        return statsCounter;
     }
 
     private static class CacheEntry<V> {
         private final V value;
-        private final LocalDateTime expirationTime;
+        private final long timeToLiveNanos;
 
-        public CacheEntry(V value, LocalDateTime expirationTime) {
+        public CacheEntry(V value, long timeToLiveNanos) {
             this.value = value;
-            this.expirationTime = expirationTime;
-        }
-
-        public boolean hasExpired() {
-            return expirationTime.isBefore(LocalDateTime.now());
+            this.timeToLiveNanos = timeToLiveNanos;
         }
 
         public V getValue() {
             return value;
         }
     }
+
+    private static class CacheEntryExpiry<K, V> implements Expiry<K, CacheEntry<V>> {
+        @Override
+        public long expireAfterCreate(K key, CacheEntry<V> entry, long currentTime) {
+            return entry.timeToLiveNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(K key, CacheEntry<V> entry, long currentTime, long currentDuration) {
+            return entry.timeToLiveNanos;
+        }
+
+        @Override
+        public long expireAfterRead(K key, CacheEntry<V> entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.thingsboard.server.cache.ms;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+/**
+ * Caffeine统计计数器, 同时转发到 {@link StatsFactory} 创建的计数器.
+ * 缓存在Spring注入之前即可使用, 注入前只做本地统计.
+ */
+class MsCacheStatsCounter implements StatsCounter {
+    private final ConcurrentStatsCounter local = new ConcurrentStatsCounter();
+    private volatile DefaultCounter hitCounter;
+    private volatile DefaultCounter missCounter;
+    private volatile DefaultCounter evictionCounter;
+
+    void init(StatsFactory statsFactory, String statsName, String... tags) {
+        this.hitCounter = statsFactory.createDefaultCounter(statsName, withResult(tags, "hit"));
+        this.missCounter = statsFactory.createDefaultCounter(statsName, withResult(tags, "miss"));
+        this.evictionCounter = statsFactory.createDefaultCounter(statsName, withResult(tags, "eviction"));
+    }
+
+    @Override
+    public void recordHits(int count) {
+        local.recordHits(count);
+        add(hitCounter, count);
+    }
+
+    @Override
+    public void recordMisses(int count) {
+        local.recordMisses(count);
+        add(missCounter, count);
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+        local.recordLoadSuccess(loadTime);
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTime) {
+        local.recordLoadFailure(loadTime);
+    }
+
+    @Override
+    public void recordEviction() {
+        local.recordEviction();
+        add(evictionCounter, 1);
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        return local.snapshot();
+    }
+
+    private static void add(DefaultCounter counter, int count) {
+        if (counter != null) {
+            counter.add(count);
+        }
+    }
+
+    private static String[] withResult(String[] tags, String result) {
+        String[] all = new String[tags.length + 2];
+        System.arraycopy(tags, 0, all, 0, tags.length);
+        all[tags.length] = "result";
+        all[tags.length + 1] = result;
+        return all;
+    }
+}
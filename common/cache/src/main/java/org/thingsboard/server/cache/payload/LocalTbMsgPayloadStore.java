@@ -0,0 +1,249 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.cache.payload;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps offloaded payloads in the local heap until they are released, bounded by total size.
+ * When the budget is used up new payloads stay inline in the message instead of evicting payloads that are still in flight.
+ * Payloads whose messages are never committed (e.g. timed out packs or failed pushes) are swept after the TTL.
+ * References can only be resolved inside the same JVM, so it is meant for monolith deployments.
+ */
+@Slf4j
+@Component
+public class LocalTbMsgPayloadStore implements TbMsgPayloadStore {
+
+    private static final String STATS_NAME = "payloadStore";
+    private static final long MAX_SWEEP_INTERVAL_SEC = 60;
+
+    private static final Pattern REF_PATTERN = Pattern.compile(Pattern.quote(REF_PREFIX) + "[0-9a-f\\-]{36}");
+
+    @Value("${queue.payload_offload.enabled:false}")
+    private boolean enabled;
+    @Value("${queue.payload_offload.threshold_bytes:65536}")
+    private int thresholdBytes;
+    @Value("${queue.payload_offload.max_size_bytes:268435456}")
+    private long maxSizeBytes;
+    @Value("${queue.payload_offload.ttl_sec:3600}")
+    private long ttlSec;
+
+    @Autowired(required = false)
+    private StatsFactory statsFactory;
+
+    private final ConcurrentMap<String, Payload> payloads = new ConcurrentHashMap<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private DefaultCounter expiredCounter;
+    private ScheduledExecutorService sweepExecutor;
+
+    public LocalTbMsgPayloadStore() {
+    }
+
+    LocalTbMsgPayloadStore(boolean enabled, int thresholdBytes, long maxSizeBytes) {
+        this(enabled, thresholdBytes, maxSizeBytes, 0);
+    }
+
+    LocalTbMsgPayloadStore(boolean enabled, int thresholdBytes, long maxSizeBytes, long ttlSec) {
+        this.enabled = enabled;
+        this.thresholdBytes = thresholdBytes;
+        this.maxSizeBytes = maxSizeBytes;
+        this.ttlSec = ttlSec;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled || ttlSec <= 0) {
+            return;
+        }
+        if (statsFactory != null) {
+            expiredCounter = statsFactory.createDefaultCounter(STATS_NAME, "result", "expired");
+        }
+        long sweepIntervalSec = Math.min(ttlSec, MAX_SWEEP_INTERVAL_SEC);
+        sweepExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tb-payload-store-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweepExecutor.scheduleWithFixedDelay(() -> sweep(System.currentTimeMillis()), sweepIntervalSec, sweepIntervalSec, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (sweepExecutor != null) {
+            sweepExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public String offload(String value) {
+        if (!enabled || value == null || value.length() < thresholdBytes) {
+            return value;
+        }
+        if (!tryReserve(value.length())) {
+            log.debug("Payload store is full, keeping payload of {} bytes inline", value.length());
+            return value;
+        }
+        String ref = REF_PREFIX + UUID.randomUUID();
+        payloads.put(ref, new Payload(value, System.currentTimeMillis()));
+        return ref;
+    }
+
+    @Override
+    public Optional<String> resolve(String value) {
+        if (!TbMsgPayloadStore.isRef(value)) {
+            return Optional.ofNullable(value);
+        }
+        Payload payload = payloads.get(value);
+        if (payload == null) {
+            log.warn("[{}] Payload is already released", value);
+            return Optional.empty();
+        }
+        return Optional.of(payload.value);
+    }
+
+    @Override
+    public String inline(String data) {
+        if (data == null || !data.contains(REF_PREFIX)) {
+            return data;
+        }
+        Matcher matcher = REF_PATTERN.matcher(data);
+        StringBuilder result = new StringBuilder(data.length());
+        int last = 0;
+        while (matcher.find()) {
+            Payload payload = payloads.get(matcher.group());
+            if (payload == null) {
+                log.warn("[{}] Payload is already released", matcher.group());
+                continue;
+            }
+            result.append(data, last, matcher.start()).append(payload.value);
+            last = matcher.end();
+        }
+        return result.append(data, last, data.length()).toString();
+    }
+
+    @Override
+    public List<String> findRefs(String data) {
+        if (data == null || !data.contains(REF_PREFIX)) {
+            return Collections.emptyList();
+        }
+        List<String> refs = new ArrayList<>();
+        Matcher matcher = REF_PATTERN.matcher(data);
+        while (matcher.find()) {
+            refs.add(matcher.group());
+        }
+        return refs;
+    }
+
+    @Override
+    public void retain(String ref) {
+        if (payloads.computeIfPresent(ref, (key, payload) -> {
+            payload.refCount++;
+            return payload;
+        }) == null) {
+            log.warn("[{}] Payload is already released, forwarded msg carries a dangling reference", ref);
+        }
+    }
+
+    @Override
+    public void release(String ref) {
+        payloads.computeIfPresent(ref, (key, payload) -> {
+            if (--payload.refCount > 0) {
+                return payload;
+            }
+            usedBytes.addAndGet(-payload.value.length());
+            return null;
+        });
+    }
+
+    /**
+     * 清理超过TTL仍未释放的数据, 如处理超时未提交的消息或入队失败的消息
+     */
+    void sweep(long now) {
+        long expireBeforeTs = now - TimeUnit.SECONDS.toMillis(ttlSec);
+        int expired = 0;
+        for (Map.Entry<String, Payload> entry : payloads.entrySet()) {
+            Payload payload = entry.getValue();
+            if (payload.createdTs < expireBeforeTs && payloads.remove(entry.getKey(), payload)) {
+                usedBytes.addAndGet(-payload.value.length());
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            expiredCount.addAndGet(expired);
+            if (expiredCounter != null) {
+                expiredCounter.add(expired);
+            }
+            log.warn("Expired {} payloads that were not released within {} sec", expired, ttlSec);
+        }
+    }
+
+    long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    private boolean tryReserve(long size) {
+        while (true) {
+            long used = usedBytes.get();
+            if (used + size > maxSizeBytes) {
+                return false;
+            }
+            if (usedBytes.compareAndSet(used, used + size)) {
+                return true;
+            }
+        }
+    }
+
+    private static class Payload {
+        private final String value;
+        private final long createdTs;
+        // 只在 ConcurrentHashMap.compute 内修改
+        private int refCount = 1;
+
+        private Payload(String value, long createdTs) {
+            this.value = value;
+            this.createdTs = createdTs;
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.cache.payload;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Side channel for large message payloads (e.g. base64 images).
+ * The payload is parked once and rule engine messages carry a short reference which is resolved only where the bytes are needed.
+ * Parked payloads are reference counted: every queued message that carries a reference holds one count,
+ * which is released once that message is committed. Payloads that are never released expire after a TTL.
+ */
+public interface TbMsgPayloadStore {
+
+    String REF_PREFIX = "tbpayload:";
+
+    static boolean isRef(String value) {
+        return value != null && value.startsWith(REF_PREFIX);
+    }
+
+    /**
+     * The returned reference holds one count, which is handed over to the first message pushed with it.
+     *
+     * @return a reference to the parked payload, or the value itself if it is too small, offloading is disabled or the store is full
+     */
+    String offload(String value);
+
+    /**
+     * @return the payload for a reference, the value itself if it is not a reference, or empty if the payload is already released
+     */
+    Optional<String> resolve(String value);
+
+    /**
+     * Replaces payload references inside serialized message data with the payloads.
+     * Released references are left as is.
+     */
+    String inline(String data);
+
+    /**
+     * @return payload references found inside serialized message data
+     */
+    List<String> findRefs(String data);
+
+    /**
+     * Adds a count for one more queued message that carries the reference, e.g. a msg forwarded to another queue.
+     */
+    void retain(String ref);
+
+    /**
+     * Drops one count of a reference, the payload is removed when no message carries it anymore.
+     */
+    void release(String ref);
+
+}
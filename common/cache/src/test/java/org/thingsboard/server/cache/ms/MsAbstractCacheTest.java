@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.cache.ms;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MsAbstractCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    public void givenEntry_whenTtlElapsed_thenExpired() {
+        TestCache cache = new TestCache(10);
+        cache.put("a", 1, 60);
+        cache.put("b", 2, 120);
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+
+        assertThat(cache.containsKey("a")).isFalse();
+        assertThat(cache.get("b")).isEqualTo(2);
+        assertThat(cache.getStatsCounter().snapshot().hitCount()).isEqualTo(1);
+        assertThat(cache.getStatsCounter().snapshot().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenPutOverExisting_whenTtlElapsed_thenTtlRestarted() {
+        TestCache cache = new TestCache(10);
+        cache.put("a", 1, 60);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(50));
+        cache.put("a", 2, 60);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(50));
+
+        assertThat(cache.get("a")).isEqualTo(2);
+    }
+
+    @Test
+    public void givenMaxSize_whenOverflow_thenEvicted() {
+        TestCache cache = new TestCache(100);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, i, 60);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(100);
+        assertThat(cache.getStatsCounter().snapshot().evictionCount()).isGreaterThanOrEqualTo(900);
+    }
+
+    private class TestCache extends MsAbstractCache<String, Integer> {
+        TestCache(int maxSize) {
+            super(maxSize, nanos::get);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.cache.payload;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalTbMsgPayloadStoreTest {
+
+    @Test
+    void offloadsOnlyLargeValues() {
+        LocalTbMsgPayloadStore store = new LocalTbMsgPayloadStore(true, 8, 1024);
+        assertThat(store.offload("small")).isEqualTo("small");
+
+        String image = "QUJDREVGR0hJSktM";
+        String ref = store.offload(image);
+        assertThat(TbMsgPayloadStore.isRef(ref)).isTrue();
+        assertThat(store.resolve(ref)).contains(image);
+        assertThat(store.resolve("plain")).contains("plain");
+        assertThat(store.resolve(TbMsgPayloadStore.REF_PREFIX + "00000000-0000-0000-0000-000000000000")).isEqualTo(Optional.empty());
+    }
+
+    @Test
+    void inlinesReferencesInMsgData() {
+        LocalTbMsgPayloadStore store = new LocalTbMsgPayloadStore(true, 8, 1024);
+        String image = "QUJDREVGR0hJSktM";
+        String ref = store.offload(image);
+        String missing = TbMsgPayloadStore.REF_PREFIX + "00000000-0000-0000-0000-000000000000";
+
+        String data = "{\"image\":\"" + ref + "\",\"other\":\"" + missing + "\",\"copy\":\"" + ref + "\"}";
+        assertThat(store.inline(data))
+                .isEqualTo("{\"image\":\"" + image + "\",\"other\":\"" + missing + "\",\"copy\":\"" + image + "\"}");
+        assertThat(store.inline("{\"a\":1}")).isEqualTo("{\"a\":1}");
+    }
+
+    @Test
+    void keepsValuesInlineWhenFullUntilReleased() {
+        LocalTbMsgPayloadStore store = new LocalTbMsgPayloadStore(true, 8, 20);
+        String image = "QUJDREVGR0hJSktM";
+        String ref = store.offload(image);
+        assertThat(TbMsgPayloadStore.isRef(ref)).isTrue();
+        assertThat(store.offload(image)).isEqualTo(image);
+        assertThat(store.resolve(ref)).contains(image);
+
+        assertThat(store.findRefs("{\"image\":\"" + ref + "\"}")).containsExactly(ref);
+        store.release(ref);
+        assertThat(store.getUsedBytes()).isZero();
+        assertThat(store.resolve(ref)).isEmpty();
+        assertThat(TbMsgPayloadStore.isRef(store.offload(image))).isTrue();
+    }
+
+    @Test
+    void keepsPayloadUntilEveryRetainedRefIsReleased() {
+        LocalTbMsgPayloadStore store = new LocalTbMsgPayloadStore(true, 8, 1024);
+        String image = "QUJDREVGR0hJSktM";
+        String ref = store.offload(image);
+        store.retain(ref);
+        store.retain(ref);
+
+        store.release(ref);
+        store.release(ref);
+        assertThat(store.resolve(ref)).contains(image);
+
+        store.release(ref);
+        assertThat(store.resolve(ref)).isEmpty();
+        assertThat(store.getUsedBytes()).isZero();
+        store.retain(ref);
+        assertThat(store.resolve(ref)).isEmpty();
+    }
+
+    @Test
+    void sweepsPayloadsNotReleasedWithinTtl() {
+        LocalTbMsgPayloadStore store = new LocalTbMsgPayloadStore(true, 8, 1024, 60);
+        String image = "QUJDREVGR0hJSktM";
+        String ref = store.offload(image);
+        store.retain(ref);
+
+        store.sweep(System.currentTimeMillis());
+        assertThat(store.resolve(ref)).contains(image);
+        assertThat(store.getExpiredCount()).isZero();
+
+        store.sweep(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(61));
+        assertThat(store.resolve(ref)).isEmpty();
+        assertThat(store.getUsedBytes()).isZero();
+        assertThat(store.getExpiredCount()).isEqualTo(1);
+        store.release(ref);
+        assertThat(store.getUsedBytes()).isZero();
+    }
+
+    @Test
+    void keepsValuesInlineWhenDisabled() {
+        LocalTbMsgPayloadStore store = new LocalTbMsgPayloadStore(false, 8, 1024);
+        assertThat(store.offload("QUJDREVGR0hJSktM")).isEqualTo("QUJDREVGR0hJSktM");
+    }
+
+}
@@ -35,6 +35,20 @@ public interface TbQueueConsumer<T extends TbQueueMsg> {
 
     void commit();
 
+    /**
+     * 最近一次 poll 之后的消费位置, 可稍后传给 {@link #commit(Object)} 只提交到该位置; 不支持部分提交时返回 null
+     */
+    default Object getPollPosition() {
+        return null;
+    }
+
+    /**
+     * 只提交到 {@link #getPollPosition()} 返回的位置, 之后拉取的消息不提交
+     */
+    default void commit(Object position) {
+        throw new UnsupportedOperationException("Partial commit is not supported by " + getClass().getSimpleName());
+    }
+
     boolean isStopped();
 
 }
@@ -64,4 +64,19 @@ public interface DashboardRuleDevicesService {
      * @throws IOException e
      */
     CompletableFuture<Void> syncSaveDashboardRuleDevices(DashboardRuleDevices dashboardRuleDevices) throws IOException;
+
+    /**
+     * 写入最近事件缓冲并加入批量写入队列, 不阻塞调用线程
+     *
+     * @param dashboardRuleDevices 仪表板告警
+     * @return 写入数据库完成的 future
+     */
+    ListenableFuture<Void> saveDashboardRuleDevicesAsync(DashboardRuleDevices dashboardRuleDevices);
+
+    /**
+     * 删除创建时间早于 expTime 的数据
+     *
+     * @param expTime 过期时间戳
+     */
+    void cleanUp(long expTime);
 }
@@ -47,14 +47,25 @@ public interface DashboardWebSocketService {
     Optional<PageData<DashboardRuleDevices>> sendWsMsAlarmDataMessage(MsAlarmDataQuery query, TenantId tenantId);
 
     /**
-     * 发送SnapshotPreview仪表板消息
+     * 发送SnapshotPreview仪表板消息(订阅时的首帧,读取最新图片)
      *
-     * @param isGet    是否强制获取
      * @param tenantId 租户ID
      * @param deviceId 设备ID
+     * @param size     图片宽度,为空时返回原图
      * @return {@link TsKvEntry}
      */
-    Optional<TsKvEntry> sendWsSnapshotPreviewMessage(boolean isGet, TenantId tenantId, DeviceId deviceId);
+    Optional<TsKvEntry> sendWsSnapshotPreviewMessage(TenantId tenantId, DeviceId deviceId, Integer size);
+
+    /**
+     * 发送SnapshotPreview仪表板消息(新图片推送,不查询数据库)
+     *
+     * @param tenantId 租户ID
+     * @param deviceId 设备ID
+     * @param image    推送的图片遥测
+     * @param size     图片宽度,为空时返回原图
+     * @return {@link TsKvEntry}
+     */
+    Optional<TsKvEntry> sendWsSnapshotPreviewMessage(TenantId tenantId, DeviceId deviceId, TsKvEntry image, Integer size);
 
     /**
      * 获取能力
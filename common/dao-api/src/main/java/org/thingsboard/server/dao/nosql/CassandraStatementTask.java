@@ -20,10 +20,12 @@ import com.datastax.oss.driver.api.core.cql.Statement;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.dao.cassandra.guava.GuavaSession;
 import org.thingsboard.server.dao.util.AsyncTask;
+import org.thingsboard.server.dao.util.TaskPriority;
 
 import java.util.function.Function;
 
@@ -31,11 +33,17 @@ import java.util.function.Function;
  * Created by ashvayka on 24.10.18.
  */
 @Data
+@AllArgsConstructor
 public class CassandraStatementTask implements AsyncTask {
 
     private final TenantId tenantId;
     private final GuavaSession session;
     private final Statement statement;
+    private final TaskPriority priority;
+
+    public CassandraStatementTask(TenantId tenantId, GuavaSession session, Statement statement) {
+        this(tenantId, session, statement, null);
+    }
 
     public ListenableFuture<TbResultSet> executeAsync(Function<Statement, TbResultSetFuture> executeAsyncFunction) {
         return Futures.transform(session.executeAsync(statement),
@@ -24,6 +24,7 @@ import org.thingsboard.server.common.data.rule.RuleChainAssociate;
 import org.thingsboard.server.common.data.rule.RuleNodeAssociate;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -90,4 +91,12 @@ public interface RuleChainAssociateService {
      * @return 接收方Id数组
      */
     List<String> findRecipientsByRoi(UUID abilityId);
+
+    /**
+     * 批量查找接收方
+     *
+     * @param abilityIds 能力ID
+     * @return 能力ID - 接收方Id数组
+     */
+    Map<UUID, List<String>> findRecipientsByRoiIn(List<UUID> abilityIds);
 }
@@ -32,7 +32,7 @@ import java.util.concurrent.ExecutionException;
 public interface SensingObjectService {
     PageData<SensingObject> findByTenantId(TenantId tenantId, PageLink pageLink) throws ExecutionException, InterruptedException;
 
-    TsKvEntry getTsKvEnTry(TenantId tenantId, DeviceId deviceId);
+    TsKvEntry getTsKvEnTry(TenantId tenantId, DeviceId deviceId, Integer size);
 
     TsKvEntry findTsKvEnTry(TenantId tenantId, DeviceId deviceId) throws ExecutionException, InterruptedException;
 
@@ -39,6 +39,8 @@ public interface TimeseriesService {
 
     String findTelemetryImage(String deviceId, long ts, String ability, String entityType, TenantId tenantId) throws ExecutionException, InterruptedException;
 
+    ListenableFuture<Optional<String>> findTelemetryImageValue(TenantId tenantId, EntityId entityId, long ts, String key);
+
     ListenableFuture<List<ReadTsKvQueryResult>> findAllByQueries(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries);
 
     ListenableFuture<List<TsKvEntry>> findAll(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries);
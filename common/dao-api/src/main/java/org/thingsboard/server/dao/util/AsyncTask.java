@@ -25,4 +25,11 @@ public interface AsyncTask {
 
     TenantId getTenantId();
 
+    /**
+     * @return 任务所在的优先级通道, null 表示使用执行器的默认通道
+     */
+    default TaskPriority getPriority() {
+        return null;
+    }
+
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.util;
+
+/**
+ * 缓冲执行器中的优先级通道: 交互式读取、数据接入写入、后台维护(清理/导出)各自排队并按权重出队,
+ * 避免大批量后台任务把仪表板查询堵在队尾
+ */
+public enum TaskPriority {
+
+    INTERACTIVE,
+    INGESTION,
+    BACKGROUND;
+
+    private static final ThreadLocal<TaskPriority> CURRENT = new ThreadLocal<>();
+
+    /**
+     * @return 当前线程通过 {@link #runAs} 指定的优先级, 未指定时为 null
+     */
+    public static TaskPriority current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 在当前线程内以指定优先级提交任务, 例如磁盘回收和历史导出以 {@link #BACKGROUND} 执行
+     */
+    public static void runAs(TaskPriority priority, Runnable action) {
+        TaskPriority previous = CURRENT.get();
+        CURRENT.set(priority);
+        try {
+            action.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+}
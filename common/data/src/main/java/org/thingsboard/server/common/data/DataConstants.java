@@ -131,4 +131,10 @@ public class DataConstants {
     public static final String SQ_QUEUE_NAME = "SequentialByOriginator";
     public static final String SQ_QUEUE_TOPIC = "tb_rule_engine.sq";
 
+    /**
+     * ROI 推送信封: 一帧图片的全部识别结果及各自的接收方, 由 roi message type switch 节点展开
+     */
+    public static final String ROI_RECOGNITIONS = "recognitions";
+    public static final String ROI_RECIPIENTS_IDS = "recipientsIds";
+
 }
@@ -49,4 +49,8 @@ public class MsSnapshotPreviewQuery extends EntityCountQuery {
      * 感知通道ID
      */
     private String sensingObjectId;
+    /**
+     * 图片宽度(像素),为空时返回原图
+     */
+    private Integer size;
 }
@@ -17,5 +17,5 @@
 package org.thingsboard.server.common.data.queue;
 
 public enum SubmitStrategyType {
-    BURST, BATCH, SEQUENTIAL_BY_ORIGINATOR, SEQUENTIAL_BY_TENANT, SEQUENTIAL
+    BURST, BATCH, SEQUENTIAL_BY_ORIGINATOR, SEQUENTIAL_BY_TENANT, SEQUENTIAL, ADAPTIVE
 }
\ No newline at end of file
@@ -31,4 +31,29 @@ public interface TbActorMsg {
     default void onTbActorStopped(TbActorStopReason reason) {
     }
 
+    /**
+     * 按停止原因生成回调失败时的描述
+     *
+     * @param target 目标 actor 的描述, 小写开头, 例如 "rule chain [id]"
+     */
+    default String getStopMessage(TbActorStopReason reason, String target) {
+        String capitalized = Character.toUpperCase(target.charAt(0)) + target.substring(1);
+        switch (reason) {
+            case MAILBOX_OVERFLOW:
+                return capitalized + " mailbox is full";
+            case STOPPED:
+                return capitalized + " stopped";
+            default:
+                return "Failed to initialize " + target + "!";
+        }
+    }
+
+    /**
+     * 有界邮箱溢出时是否允许丢弃该消息 (DROP_OLDEST / REJECT).
+     * 默认不允许, 不可丢弃的消息在溢出时只会有限等待空位, 超时后才被拒绝.
+     */
+    default boolean isDroppableOnOverflow() {
+        return false;
+    }
+
 }
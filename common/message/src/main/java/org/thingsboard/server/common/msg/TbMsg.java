@@ -17,11 +17,15 @@
 package org.thingsboard.server.common.msg;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.StringUtils;
@@ -33,6 +37,8 @@ import org.thingsboard.server.common.data.id.RuleNodeId;
 import org.thingsboard.server.common.msg.gen.MsgProtos;
 import org.thingsboard.server.common.msg.queue.TbMsgCallback;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.UUID;
 
@@ -43,6 +49,8 @@ import java.util.UUID;
 @Slf4j
 public final class TbMsg implements Serializable {
 
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
     private final String queueName;
     private final UUID id;
     private final long ts;
@@ -54,8 +62,25 @@ public final class TbMsg implements Serializable {
     /**
      * 规则链传输数据
      * 2023-4-14 13:57:12 去掉 final 需要修改节点数据
+     * 消息会在多个规则节点线程间共享, data/dataJson/dataStale 均为 volatile, 且只通过局部变量一次性赋值
+     */
+    private volatile String data;
+    /**
+     * data 的解析结果, 每条消息最多解析一次, 复制消息时共享. 只读, 修改时用 {@link #copyDataJson()} 拷贝后再 {@link #setDataJson(JsonNode)}
      */
-    private String data;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @JsonIgnore
+    private transient volatile JsonNode dataJson;
+    /**
+     * dataJson 已修改, data 需要重新序列化
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @JsonIgnore
+    private transient volatile boolean dataStale;
     private final RuleChainId ruleChainId;
     private final RuleNodeId ruleNodeId;
     @Getter(value = AccessLevel.NONE)
@@ -126,6 +151,16 @@ public final class TbMsg implements Serializable {
                 data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.callback);
     }
 
+    /**
+     * Same as {@link #transformMsg(TbMsg, String, EntityId, TbMsgMetaData, String)}, the data is serialized only when it is read as a string.
+     */
+    public static TbMsg transformMsg(TbMsg tbMsg, String type, EntityId originator, TbMsgMetaData metaData, JsonNode data) {
+        TbMsg msg = new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, type, originator, tbMsg.customerId, metaData.copy(), tbMsg.dataType,
+                null, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.callback);
+        msg.setDataJson(data);
+        return msg;
+    }
+
     public static TbMsg transformMsgData(TbMsg tbMsg, String data) {
         return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
                 data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
@@ -133,33 +168,33 @@ public final class TbMsg implements Serializable {
 
     public static TbMsg transformMsg(TbMsg tbMsg, TbMsgMetaData metadata) {
         return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, metadata.copy(), tbMsg.dataType,
-                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback()).shareDataJson(tbMsg);
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, CustomerId customerId) {
         return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback()).shareDataJson(tbMsg);
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, RuleChainId ruleChainId) {
         return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback()).shareDataJson(tbMsg);
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, String queueName) {
         return new TbMsg(queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, tbMsg.getRuleChainId(), null, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, tbMsg.getRuleChainId(), null, tbMsg.ctx.copy(), tbMsg.getCallback()).shareDataJson(tbMsg);
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, RuleChainId ruleChainId, String queueName) {
         return new TbMsg(queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback()).shareDataJson(tbMsg);
     }
 
     // used for enqueueForTellNext
     public static TbMsg newMsg(TbMsg tbMsg, String queueName, RuleChainId ruleChainId, RuleNodeId ruleNodeId) {
         return new TbMsg(queueName, UUID.randomUUID(), tbMsg.getTs(), tbMsg.getType(), tbMsg.getOriginator(), tbMsg.customerId, tbMsg.getMetaData().copy(),
-                tbMsg.getDataType(), tbMsg.getData(), ruleChainId, ruleNodeId, tbMsg.ctx.copy(), TbMsgCallback.EMPTY);
+                tbMsg.getDataType(), tbMsg.data, ruleChainId, ruleNodeId, tbMsg.ctx.copy(), TbMsgCallback.EMPTY).shareDataJson(tbMsg);
     }
 
     private TbMsg(String queueName, UUID id, long ts, String type, EntityId originator, CustomerId customerId, TbMsgMetaData metaData, TbMsgDataType dataType, String data,
@@ -274,12 +309,77 @@ public final class TbMsg implements Serializable {
 
     public TbMsg copyWithRuleChainId(RuleChainId ruleChainId, UUID msgId) {
         return new TbMsg(this.queueName, msgId, this.ts, this.type, this.originator, this.customerId,
-                this.metaData, this.dataType, this.data, ruleChainId, null, this.ctx, callback);
+                this.metaData, this.dataType, this.data, ruleChainId, null, this.ctx, callback).shareDataJson(this);
     }
 
     public TbMsg copyWithRuleNodeId(RuleChainId ruleChainId, RuleNodeId ruleNodeId, UUID msgId) {
         return new TbMsg(this.queueName, msgId, this.ts, this.type, this.originator, this.customerId,
-                this.metaData, this.dataType, this.data, ruleChainId, ruleNodeId, this.ctx, callback);
+                this.metaData, this.dataType, this.data, ruleChainId, ruleNodeId, this.ctx, callback).shareDataJson(this);
+    }
+
+    public String getData() {
+        if (dataStale) {
+            JsonNode json = dataJson;
+            String serialized = json != null ? json.toString() : null;
+            data = serialized;
+            dataStale = false;
+            return serialized;
+        }
+        return data;
+    }
+
+    public void setData(String data) {
+        this.dataStale = false;
+        this.dataJson = null;
+        this.data = data;
+    }
+
+    /**
+     * @return the parsed data, parsed at most once per message. Must not be modified, see {@link #copyDataJson()}
+     * @throws IllegalArgumentException if the data is not a valid JSON
+     */
+    @JsonIgnore
+    public JsonNode getDataJson() {
+        JsonNode json = dataJson;
+        if (json == null) {
+            String raw = data;
+            if (raw != null) {
+                try {
+                    json = JSON_MAPPER.readTree(raw);
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("The given string value: " + raw + " cannot be transformed to Json object", e);
+                }
+                dataJson = json;
+            }
+        }
+        return json;
+    }
+
+    /**
+     * @return a modifiable copy of the parsed data
+     */
+    public JsonNode copyDataJson() {
+        JsonNode json = getDataJson();
+        return json != null ? json.deepCopy() : null;
+    }
+
+    /**
+     * Replaces the data, it is serialized only when the data is read as a string (e.g. when the message is pushed to a queue).
+     */
+    public void setDataJson(JsonNode dataJson) {
+        this.dataJson = dataJson;
+        this.dataStale = true;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getData();
+        out.defaultWriteObject();
+    }
+
+    private TbMsg shareDataJson(TbMsg source) {
+        this.dataJson = source.dataJson;
+        this.dataStale = source.dataStale;
+        return this;
     }
 
     public TbMsgCallback getCallback() {
@@ -19,6 +19,7 @@ package org.thingsboard.server.common.msg;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
+import org.thingsboard.server.common.msg.session.SessionMsgType;
 
 @ToString
 @EqualsAndHashCode
@@ -30,4 +31,13 @@ public abstract class TbRuleEngineActorMsg implements TbActorMsg {
     public TbRuleEngineActorMsg(TbMsg msg) {
         this.msg = msg;
     }
+
+    /**
+     * 只有遥测和属性上报允许在规则引擎邮箱溢出时被拒绝, 失败回调会交给队列的重试策略处理
+     */
+    @Override
+    public boolean isDroppableOnOverflow() {
+        String type = msg.getType();
+        return SessionMsgType.POST_TELEMETRY_REQUEST.name().equals(type) || SessionMsgType.POST_ATTRIBUTES_REQUEST.name().equals(type);
+    }
 }
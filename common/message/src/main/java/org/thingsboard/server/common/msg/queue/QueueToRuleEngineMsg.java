@@ -55,15 +55,8 @@ public final class QueueToRuleEngineMsg extends TbRuleEngineActorMsg {
 
     @Override
     public void onTbActorStopped(TbActorStopReason reason) {
-        String message;
-        if (msg.getRuleChainId() != null) {
-            message = reason == TbActorStopReason.STOPPED ?
-                    String.format("Rule chain [%s] stopped", msg.getRuleChainId().getId()) :
-                    String.format("Failed to initialize rule chain [%s]!", msg.getRuleChainId().getId());
-        } else {
-            message = reason == TbActorStopReason.STOPPED ? "Rule chain stopped" : "Failed to initialize rule chain!";
-        }
-        msg.getCallback().onFailure(new RuleEngineException(message));
+        String target = msg.getRuleChainId() != null ? String.format("rule chain [%s]", msg.getRuleChainId().getId()) : "rule chain";
+        msg.getCallback().onFailure(new RuleEngineException(getStopMessage(reason, target)));
     }
 
     public boolean isTellNext() {
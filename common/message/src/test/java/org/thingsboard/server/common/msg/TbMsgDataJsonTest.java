@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.common.msg;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TbMsgDataJsonTest {
+
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+    @Test
+    public void testDataIsParsedOnceAndSharedByCopies() {
+        TbMsg msg = TbMsg.newMsg("POST_TELEMETRY_REQUEST", deviceId, new TbMsgMetaData(), "{\"temperature\":22}");
+        JsonNode json = msg.getDataJson();
+        assertSame(json, msg.getDataJson());
+
+        TbMsg copy = msg.copyWithRuleChainId(new RuleChainId(UUID.randomUUID()));
+        assertSame(json, copy.getDataJson());
+    }
+
+    @Test
+    public void testModifiedJsonIsSerializedLazily() {
+        TbMsg msg = TbMsg.newMsg("POST_TELEMETRY_REQUEST", deviceId, new TbMsgMetaData(), "{\"temperature\":22}");
+        ObjectNode json = (ObjectNode) msg.copyDataJson();
+        assertNotSame(json, msg.getDataJson());
+        json.put("humidity", 50);
+        assertEquals("{\"temperature\":22}", msg.getData());
+
+        msg.setDataJson(json);
+        TbMsg copy = msg.copyWithRuleChainId(new RuleChainId(UUID.randomUUID()));
+        assertEquals("{\"temperature\":22,\"humidity\":50}", msg.getData());
+        assertEquals("{\"temperature\":22,\"humidity\":50}", copy.getData());
+
+        TbMsg restored = TbMsg.fromBytes(null, TbMsg.toByteArray(copy), TbMsgCallback.EMPTY);
+        assertEquals(copy.getData(), restored.getData());
+
+        msg.setData("{\"a\":1}");
+        assertEquals(1, msg.getDataJson().get("a").asInt());
+    }
+
+    @Test
+    public void testTransformWithJsonData() {
+        TbMsg msg = TbMsg.newMsg("POST_TELEMETRY_REQUEST", deviceId, new TbMsgMetaData(), "{\"temperature\":22}");
+        ObjectNode json = (ObjectNode) msg.copyDataJson();
+        json.remove("temperature");
+        TbMsg transformed = TbMsg.transformMsg(msg, msg.getType(), msg.getOriginator(), msg.getMetaData(), json);
+        assertSame(json, transformed.getDataJson());
+        assertEquals("{}", transformed.getData());
+    }
+
+}
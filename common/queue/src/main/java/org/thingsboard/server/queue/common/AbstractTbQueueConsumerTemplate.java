@@ -161,6 +161,16 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
         }
     }
 
+    @Override
+    public void commit(Object position) {
+        consumerLock.lock();
+        try {
+            doCommit(position);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
     @Override
     public void unsubscribe() {
         log.info("unsubscribe topic and stop consumer {}", getTopic());
@@ -186,6 +196,10 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
 
     abstract protected void doCommit();
 
+    protected void doCommit(Object position) {
+        throw new UnsupportedOperationException("Partial commit is not supported by " + getClass().getSimpleName());
+    }
+
     abstract protected void doUnsubscribe();
 
 }
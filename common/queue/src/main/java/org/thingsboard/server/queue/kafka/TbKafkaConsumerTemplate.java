@@ -22,6 +22,8 @@ import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.util.StopWatch;
 import org.thingsboard.server.queue.TbQueueAdmin;
 import org.thingsboard.server.queue.TbQueueMsg;
@@ -31,7 +33,9 @@ import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -46,6 +50,8 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
 
     private final TbKafkaConsumerStatsService statsService;
     private final String groupId;
+    // 已拉取消息的下一个偏移量, 每次 poll 后生成新的快照作为部分提交的位置
+    private volatile Map<TopicPartition, OffsetAndMetadata> pollPosition = Collections.emptyMap();
 
     @Builder
     private TbKafkaConsumerTemplate(TbKafkaSettings settings, TbKafkaDecoder<T> decoder,
@@ -76,6 +82,7 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
             topicNames.forEach(admin::createTopicIfNotExists);
             log.info("subscribe topics {}", topicNames);
             consumer.subscribe(topicNames);
+            pollPosition = Collections.emptyMap();
         } else {
             log.info("unsubscribe due to empty topic list");
             consumer.unsubscribe();
@@ -98,7 +105,12 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
             return Collections.emptyList();
         } else {
             List<ConsumerRecord<String, byte[]>> recordList = new ArrayList<>(256);
-            records.forEach(recordList::add);
+            Map<TopicPartition, OffsetAndMetadata> position = new HashMap<>(pollPosition);
+            records.forEach(record -> {
+                recordList.add(record);
+                position.put(new TopicPartition(record.topic(), record.partition()), new OffsetAndMetadata(record.offset() + 1));
+            });
+            pollPosition = position;
             return recordList;
         }
     }
@@ -113,6 +125,22 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         consumer.commitSync();
     }
 
+    @Override
+    public Object getPollPosition() {
+        return pollPosition;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void doCommit(Object position) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>((Map<TopicPartition, OffsetAndMetadata>) position);
+        // 再均衡后已不属于本消费者的分区不再提交
+        offsets.keySet().retainAll(consumer.assignment());
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+        }
+    }
+
     @Override
     protected void doUnsubscribe() {
         log.info("unsubscribe topic and close consumer for topic {}", getTopic());
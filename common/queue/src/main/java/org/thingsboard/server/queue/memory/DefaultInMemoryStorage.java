@@ -17,27 +17,48 @@
 package org.thingsboard.server.queue.memory;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * 单机部署使用的内存队列. 每个 topic(分区)一个无锁队列, 生产者之间、生产者与消费者之间不共享锁;
+ * 每个 topic 维护消息数与字节数计数, lag 统计为 O(1).
+ */
 @Component
 @Slf4j
 public final class DefaultInMemoryStorage implements InMemoryStorage {
-    private final ConcurrentHashMap<String, BlockingQueue<TbQueueMsg>> storage = new ConcurrentHashMap<>();
+
+    private static final int DEFAULT_MAX_POLL_MESSAGES = 1000;
+
+    @Value("${queue.in_memory.max_poll_messages:1000}")
+    private int maxPollMessages = DEFAULT_MAX_POLL_MESSAGES;
+    @Value("${queue.in_memory.max_topic_messages:0}")
+    private int maxTopicMessages;
+    @Value("${queue.in_memory.max_topic_bytes:0}")
+    private long maxTopicBytes;
+
+    private final ConcurrentHashMap<String, TopicQueue> storage = new ConcurrentHashMap<>();
+    private final LongAdder lagTotal = new LongAdder();
 
     @Override
     public void printStats() {
         if (log.isDebugEnabled()) {
             storage.forEach((topic, queue) -> {
-                if (queue.size() > 0) {
-                    log.debug("[{}] Queue Size [{}]", topic, queue.size());
+                int size = queue.size.get();
+                if (size > 0) {
+                    log.debug("[{}] Queue Size [{}]", topic, size);
                 }
             });
         }
@@ -45,32 +66,104 @@ public final class DefaultInMemoryStorage implements InMemoryStorage {
 
     @Override
     public int getLagTotal() {
-        return storage.values().stream().map(BlockingQueue::size).reduce(0, Integer::sum);
+        return (int) lagTotal.sum();
     }
 
     @Override
     public boolean put(String topic, TbQueueMsg msg) {
-        return storage.computeIfAbsent(topic, (t) -> new LinkedBlockingQueue<>()).add(msg);
+        TopicQueue queue = storage.get(topic);
+        if (queue == null) {
+            queue = storage.computeIfAbsent(topic, t -> new TopicQueue());
+        }
+        if (!queue.offer(msg)) {
+            log.debug("[{}] Queue is full, size [{}] bytes [{}]", topic, queue.size.get(), queue.bytes.get());
+            return false;
+        }
+        lagTotal.increment();
+        return true;
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public <T extends TbQueueMsg> List<T> get(String topic) throws InterruptedException {
-        final BlockingQueue<TbQueueMsg> queue = storage.get(topic);
-        if (queue != null) {
-            final TbQueueMsg firstMsg = queue.poll();
-            if (firstMsg != null) {
-                final int queueSize = queue.size();
-                if (queueSize > 0) {
-                    final List<TbQueueMsg> entities = new ArrayList<>(Math.min(queueSize, 999) + 1);
-                    entities.add(firstMsg);
-                    queue.drainTo(entities, 999);
-                    return (List<T>) entities;
+        TopicQueue queue = storage.get(topic);
+        if (queue == null) {
+            return Collections.emptyList();
+        }
+        List<T> msgs = (List<T>) queue.drain(maxPollMessages);
+        if (!msgs.isEmpty()) {
+            lagTotal.add(-msgs.size());
+        }
+        return msgs;
+    }
+
+    void setLimits(int maxPollMessages, int maxTopicMessages, long maxTopicBytes) {
+        this.maxPollMessages = maxPollMessages;
+        this.maxTopicMessages = maxTopicMessages;
+        this.maxTopicBytes = maxTopicBytes;
+    }
+
+    private static long sizeOf(TbQueueMsg msg) {
+        if (msg instanceof TbProtoQueueMsg) {
+            // protobuf 会缓存序列化长度, 避免 getData() 的整包序列化
+            return ((TbProtoQueueMsg<?>) msg).getValue().getSerializedSize();
+        }
+        byte[] data = msg.getData();
+        return data != null ? data.length : 0;
+    }
+
+    private final class TopicQueue {
+
+        private final Queue<TbQueueMsg> msgs = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+
+        boolean offer(TbQueueMsg msg) {
+            int newSize = size.incrementAndGet();
+            if (maxTopicMessages > 0 && newSize > maxTopicMessages) {
+                size.decrementAndGet();
+                return false;
+            }
+            if (maxTopicBytes > 0) {
+                long msgBytes = sizeOf(msg);
+                // 空队列总是接受一条消息, 避免超大消息永远无法入队
+                if (bytes.addAndGet(msgBytes) > maxTopicBytes && newSize > 1) {
+                    bytes.addAndGet(-msgBytes);
+                    size.decrementAndGet();
+                    return false;
+                }
+            }
+            msgs.offer(msg);
+            return true;
+        }
+
+        List<TbQueueMsg> drain(int maxMsgs) {
+            TbQueueMsg first = msgs.poll();
+            if (first == null) {
+                return Collections.emptyList();
+            }
+            List<TbQueueMsg> result;
+            TbQueueMsg msg = maxMsgs > 1 ? msgs.poll() : null;
+            if (msg == null) {
+                result = Collections.singletonList(first);
+            } else {
+                result = new ArrayList<>(Math.min(size.get(), maxMsgs));
+                result.add(first);
+                do {
+                    result.add(msg);
+                } while (result.size() < maxMsgs && (msg = msgs.poll()) != null);
+            }
+            size.addAndGet(-result.size());
+            if (maxTopicBytes > 0) {
+                long drainedBytes = 0;
+                for (TbQueueMsg drained : result) {
+                    drainedBytes += sizeOf(drained);
                 }
-                return Collections.singletonList((T) firstMsg);
+                bytes.addAndGet(-drainedBytes);
             }
+            return result;
         }
-        return Collections.emptyList();
+
     }
 
 }
@@ -25,9 +25,13 @@ import org.thingsboard.server.queue.common.DefaultTbQueueMsg;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @Slf4j
 public class DefaultInMemoryStorageTest {
@@ -113,4 +117,65 @@ public class DefaultInMemoryStorageTest {
         testPollOnce(10);
     }
 
+    @Test
+    public void givenMaxTopicMessages_whenPut_thenRejectOverflow() throws InterruptedException {
+        DefaultInMemoryStorage bounded = new DefaultInMemoryStorage();
+        bounded.setLimits(MAX_POLL_SIZE, 2, 0);
+
+        assertThat(bounded.put(topic, mock(TbQueueMsg.class))).isTrue();
+        assertThat(bounded.put(topic, mock(TbQueueMsg.class))).isTrue();
+        assertThat(bounded.put(topic, mock(TbQueueMsg.class))).isFalse();
+        assertThat(bounded.put("other", mock(TbQueueMsg.class))).as("limit is per topic").isTrue();
+        assertThat(bounded.getLagTotal()).isEqualTo(3);
+
+        assertThat(bounded.get(topic)).hasSize(2);
+        assertThat(bounded.put(topic, mock(TbQueueMsg.class))).isTrue();
+    }
+
+    @Test
+    public void givenMaxTopicBytes_whenPut_thenRejectOverflow() throws InterruptedException {
+        DefaultInMemoryStorage bounded = new DefaultInMemoryStorage();
+        bounded.setLimits(MAX_POLL_SIZE, 0, 100);
+
+        assertThat(bounded.put(topic, newMsg(150))).as("first message is always accepted").isTrue();
+        assertThat(bounded.put(topic, newMsg(10))).isFalse();
+        assertThat(bounded.get(topic)).hasSize(1);
+        assertThat(bounded.put(topic, newMsg(60))).isTrue();
+        assertThat(bounded.put(topic, newMsg(40))).isTrue();
+        assertThat(bounded.put(topic, newMsg(1))).isFalse();
+    }
+
+    @Test
+    public void givenConcurrentProducers_whenPoll_thenNoMessagesLost() throws Exception {
+        int producers = 4;
+        int msgsPerProducer = 10000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            for (int i = 0; i < producers; i++) {
+                executor.submit(() -> {
+                    for (int j = 0; j < msgsPerProducer; j++) {
+                        storage.put(topic, mock(TbQueueMsg.class));
+                    }
+                });
+            }
+            int polled = 0;
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            while (polled < producers * msgsPerProducer && System.currentTimeMillis() < deadline) {
+                List<TbQueueMsg> msgs = storage.get(topic);
+                assertThat(msgs.size()).isLessThanOrEqualTo(MAX_POLL_SIZE);
+                polled += msgs.size();
+            }
+            assertThat(polled).isEqualTo(producers * msgsPerProducer);
+            assertThat(storage.getLagTotal()).isEqualTo(0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static TbQueueMsg newMsg(int size) {
+        TbQueueMsg msg = mock(TbQueueMsg.class);
+        when(msg.getData()).thenReturn(new byte[size]);
+        return msg;
+    }
+
 }
@@ -20,7 +20,9 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import com.google.protobuf.ByteString;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -29,9 +31,10 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StopWatch;
+import org.thingsboard.common.util.IngestionTrace;
 import org.thingsboard.common.util.ThingsBoardExecutors;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.cache.payload.TbMsgPayloadStore;
 import org.thingsboard.server.common.data.ApiUsageRecordKey;
 import org.thingsboard.server.common.data.ApiUsageState;
 import org.thingsboard.server.common.data.DataConstants;
@@ -165,6 +168,8 @@ public class DefaultTransportService implements TransportService {
     @Autowired
     @Lazy
     private TbApiUsageReportClient apiUsageClient;
+    @Autowired(required = false)
+    private TbMsgPayloadStore payloadStore;
     private final Map<String, Number> statsMap = new LinkedHashMap<>();
 
     private final Gson gson = new Gson();
@@ -576,7 +581,10 @@ public class DefaultTransportService implements TransportService {
             reportActivityInternal(sessionInfo);
             TenantId tenantId = getTenantId(sessionInfo);
             DeviceId deviceId = new DeviceId(new UUID(sessionInfo.getDeviceIdMSB(), sessionInfo.getDeviceIdLSB()));
-            log.info("publish, deviceName:{}, deviceId:{}", sessionInfo.getDeviceName(), deviceId);
+            if (IngestionTrace.isEnabled(tenantId.getId(), deviceId.getId())) {
+                IngestionTrace.trace("transport", tenantId.getId(), deviceId.getId(), "deviceName={} tsKvLists={} dataPoints={}",
+                        sessionInfo.getDeviceName(), msg.getTsKvListCount(), dataPoints);
+            }
             CustomerId customerId = getCustomerId(sessionInfo);
             MsgPackCallback packCallback = new MsgPackCallback(msg.getTsKvListCount(), new ApiStatsProxyCallback<>(tenantId, customerId, dataPoints, callback));
             for (TransportProtos.TsKvListProto tsKv : msg.getTsKvListList()) {
@@ -586,11 +594,30 @@ public class DefaultTransportService implements TransportService {
                 metaData.putValue("ts", tsKv.getTs() + "");
 
                 JsonObject json = JsonUtils.getJsonObject(tsKv.getKvList());
+                offloadPayloads(json);
                 sendToRuleEngine(tenantId, deviceId, customerId, sessionInfo, json, metaData, SessionMsgType.POST_TELEMETRY_REQUEST, packCallback);
             }
         }
     }
 
+    /**
+     * Replaces large string values (e.g. base64 images) with payload references, so they are not copied through the rule engine queue.
+     */
+    private void offloadPayloads(JsonObject json) {
+        if (payloadStore == null) {
+            return;
+        }
+        for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+            JsonElement value = entry.getValue();
+            if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()) {
+                String ref = payloadStore.offload(value.getAsString());
+                if (TbMsgPayloadStore.isRef(ref)) {
+                    entry.setValue(new JsonPrimitive(ref));
+                }
+            }
+        }
+    }
+
     @Override
     public void process(TransportProtos.SessionInfoProto sessionInfo, TransportProtos.PostAttributeMsg msg, TransportServiceCallback<Void> callback) {
         if (checkLimits(sessionInfo, msg, callback, msg.getKvCount())) {
@@ -1183,14 +1210,8 @@ public class DefaultTransportService implements TransportService {
             queueName = deviceProfile.getDefaultQueueName();
         }
 
-        StopWatch stopWatch = new StopWatch("send to rule engine");
-        stopWatch.start("send to rule engine");
-
         TbMsg tbMsg = TbMsg.newMsg(queueName, sessionMsgType.name(), deviceId, customerId, metaData, gson.toJson(json), ruleChainId, null);
         sendToRuleEngine(tenantId, tbMsg, callback);
-
-        stopWatch.stop();
-        log.debug("{} timeConsuming: {} ms", stopWatch.getLastTaskName(), stopWatch.getLastTaskTimeMillis());
     }
 
     private class TransportTbQueueCallback implements TbQueueCallback {
@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.common.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 遥测接入链路的追踪日志(传输层 -> 规则引擎 -> 入库), 替代逐条消息的 INFO 日志.
+ * <p>
+ * 默认关闭; 运行时可按租户/设备ID开启, 或按比例随机采样, 输出行数受每秒上限限制.
+ * 调用方先调用 {@link #isEnabled} 再组装参数, 关闭时只有一次 volatile 读:
+ * <pre>
+ * if (IngestionTrace.isEnabled(tenantId, deviceId)) {
+ *     IngestionTrace.trace("transport", tenantId, deviceId, "keys={}", keys);
+ * }
+ * </pre>
+ * 输出到 logger {@code org.thingsboard.ingestion.trace}, 格式为 {@code stage=.. tenantId=.. entityId=.. 详情}.
+ */
+@Slf4j(topic = "org.thingsboard.ingestion.trace")
+public final class IngestionTrace {
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final Set<UUID> targets = ConcurrentHashMap.newKeySet();
+    private static final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private static final AtomicInteger windowCount = new AtomicInteger();
+
+    private static volatile boolean active;
+    private static volatile double sampleRate;
+    private static volatile int maxLinesPerSecond = 100;
+
+    private IngestionTrace() {
+    }
+
+    /**
+     * 是否追踪该消息; 返回 true 时占用一次每秒输出额度, 同一条消息在同一阶段只应调用一次
+     */
+    public static boolean isEnabled(UUID tenantId, UUID entityId) {
+        if (!active) {
+            return false;
+        }
+        boolean hit = (tenantId != null && targets.contains(tenantId))
+                || (entityId != null && targets.contains(entityId))
+                || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+        return hit && tryAcquire();
+    }
+
+    public static void trace(String stage, UUID tenantId, UUID entityId, String format, Object... args) {
+        log.info("stage={} tenantId={} entityId={} {}", stage, tenantId, entityId, MessageFormatter.arrayFormat(format, args).getMessage());
+    }
+
+    /**
+     * 开启租户或设备的追踪
+     */
+    public static void enable(UUID id) {
+        targets.add(id);
+        updateActive();
+    }
+
+    public static void disable(UUID id) {
+        targets.remove(id);
+        updateActive();
+    }
+
+    public static Set<UUID> getTargets() {
+        return Collections.unmodifiableSet(targets);
+    }
+
+    public static double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @param rate 随机采样比例 0 ~ 1, 0 表示只追踪开启的租户/设备
+     */
+    public static void setSampleRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + rate);
+        }
+        sampleRate = rate;
+        updateActive();
+    }
+
+    public static int getMaxLinesPerSecond() {
+        return maxLinesPerSecond;
+    }
+
+    public static void setMaxLinesPerSecond(int maxLines) {
+        maxLinesPerSecond = maxLines;
+    }
+
+    public static void reset() {
+        targets.clear();
+        sampleRate = 0;
+        updateActive();
+    }
+
+    private static void updateActive() {
+        active = !targets.isEmpty() || sampleRate > 0;
+    }
+
+    private static boolean tryAcquire() {
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            windowCount.set(0);
+        }
+        return windowCount.incrementAndGet() <= maxLinesPerSecond;
+    }
+
+}
@@ -17,7 +17,9 @@
 package org.thingsboard.common.util;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
 
 public class ThingsBoardExecutors {
 
@@ -49,4 +51,40 @@ public class ThingsBoardExecutors {
         return newWorkStealingPool(parallelism, clazz.getSimpleName());
     }
 
+    /**
+     * 每个任务一个虚拟线程的执行器, 适合会阻塞线程的任务(同步 DB/网络调用).
+     * 项目按 Java 11 编译, 因此通过反射调用 JDK 21+ 的 API; 运行时不支持虚拟线程时
+     * 退化为按需创建平台线程的缓存线程池, 阻塞任务同样不会占满固定大小的线程池.
+     *
+     * @param namePrefix used to define thread name
+     * @return the newly created executor
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        ThreadFactory virtualThreadFactory = newVirtualThreadFactory(namePrefix);
+        if (virtualThreadFactory != null) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                        .invoke(null, virtualThreadFactory);
+            } catch (ReflectiveOperationException e) {
+                // fall through to platform threads
+            }
+        }
+        return Executors.newCachedThreadPool(ThingsBoardThreadFactory.forName(namePrefix));
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return newVirtualThreadFactory("probe") != null;
+    }
+
+    private static ThreadFactory newVirtualThreadFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix + "-virtual-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            return null;
+        }
+    }
+
 }
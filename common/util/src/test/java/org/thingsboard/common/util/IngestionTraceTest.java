@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.common.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IngestionTraceTest {
+
+    @After
+    public void tearDown() {
+        IngestionTrace.reset();
+        IngestionTrace.setMaxLinesPerSecond(100);
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        assertFalse(IngestionTrace.isEnabled(UUID.randomUUID(), UUID.randomUUID()));
+    }
+
+    @Test
+    public void testEnabledPerTenantOrDevice() {
+        UUID tenantId = UUID.randomUUID();
+        UUID deviceId = UUID.randomUUID();
+        IngestionTrace.enable(tenantId);
+        IngestionTrace.enable(deviceId);
+
+        assertTrue(IngestionTrace.isEnabled(tenantId, UUID.randomUUID()));
+        assertTrue(IngestionTrace.isEnabled(UUID.randomUUID(), deviceId));
+        assertFalse(IngestionTrace.isEnabled(UUID.randomUUID(), UUID.randomUUID()));
+
+        IngestionTrace.disable(tenantId);
+        IngestionTrace.disable(deviceId);
+        assertFalse(IngestionTrace.isEnabled(tenantId, deviceId));
+    }
+
+    @Test
+    public void testSampleRate() {
+        IngestionTrace.setSampleRate(1);
+        assertTrue(IngestionTrace.isEnabled(UUID.randomUUID(), UUID.randomUUID()));
+    }
+
+    @Test
+    public void testLinesPerSecondLimit() {
+        UUID deviceId = UUID.randomUUID();
+        IngestionTrace.enable(deviceId);
+        IngestionTrace.setMaxLinesPerSecond(3);
+
+        int traced = 0;
+        for (int i = 0; i < 10; i++) {
+            if (IngestionTrace.isEnabled(null, deviceId)) {
+                traced++;
+            }
+        }
+        assertTrue(traced <= 3);
+        assertTrue(traced > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSampleRate() {
+        IngestionTrace.setSampleRate(2);
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.common.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class ThingsBoardExecutorsTest {
+
+    @Test
+    public void virtualThreadPerTaskExecutorDoesNotStarveOnBlockingTasks() throws InterruptedException {
+        ExecutorService executor = ThingsBoardExecutors.newVirtualThreadPerTaskExecutor("test");
+        try {
+            int tasks = 64;
+            CountDownLatch allStarted = new CountDownLatch(tasks);
+            CountDownLatch release = new CountDownLatch(1);
+            for (int i = 0; i < tasks; i++) {
+                executor.execute(() -> {
+                    allStarted.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            // 所有任务都阻塞时仍能全部开始执行, 说明不受固定线程数限制
+            assertTrue(allStarted.await(10, TimeUnit.SECONDS));
+            release.countDown();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+}
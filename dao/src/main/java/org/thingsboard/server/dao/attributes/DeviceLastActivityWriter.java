@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.attributes;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 设备最后活跃时间(lastActivityTime)合并写入: 每个设备只保留最新时间, 按周期通过属性批量队列写入.
+ */
+@Slf4j
+@Component
+public class DeviceLastActivityWriter {
+
+    public static final String LAST_ACTIVITY_TIME = "lastActivityTime";
+
+    @Value("${sql.attributes.last_activity_flush_interval_ms:1000}")
+    private long flushIntervalMs;
+
+    @Autowired
+    private AttributesDao attributesDao;
+
+    private final ConcurrentMap<UUID, Long> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flushExecutor;
+
+    @PostConstruct
+    public void init() {
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("last-activity-writer"));
+        flushExecutor.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+        }
+        flush();
+    }
+
+    public void onActivity(UUID deviceId, long ts) {
+        pending.merge(deviceId, ts, Math::max);
+    }
+
+    void flush() {
+        try {
+            for (UUID deviceId : pending.keySet()) {
+                Long ts = pending.remove(deviceId);
+                if (ts != null) {
+                    LongDataEntry longDataEntry = new LongDataEntry(LAST_ACTIVITY_TIME, ts);
+                    BaseAttributeKvEntry lastActivityTime = new BaseAttributeKvEntry(longDataEntry, System.currentTimeMillis());
+                    attributesDao.save(null, new DeviceId(deviceId), DataConstants.SERVER_SCOPE, lastActivityTime);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to flush device last activity time", e);
+        }
+    }
+
+    int getPendingCount() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.dashboard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.DashboardRuleDevices;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.page.PageLink;
+import org.thingsboard.server.common.data.page.SortOrder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 仪表板规则触发事件的内存环形缓冲, 每个租户保留最近的事件.
+ * 本节点启动后产生的事件都会先进入缓冲, 查询的开始时间在缓冲覆盖范围内时直接由缓冲返回, 否则回退到数据库.
+ * 本节点未见过某租户的事件时不能确定该租户没有事件 (可能由其他节点处理), 同样回退到数据库.
+ * 只适用于规则引擎与查询在同一节点的单体部署, 默认关闭.
+ */
+@Slf4j
+@Component
+public class DashboardRuleDevicesBuffer {
+
+    private static final String CREATED_TIME_PROPERTY = "createdTime";
+
+    @Value("${sql.dashboard_rule_devices.buffer_enabled:false}")
+    private boolean enabled;
+
+    @Value("${sql.dashboard_rule_devices.buffer_size:1000}")
+    private int bufferSize;
+
+    private final long startTs = System.currentTimeMillis();
+    private final ConcurrentMap<TenantId, TenantBuffer> buffers = new ConcurrentHashMap<>();
+
+    public void add(DashboardRuleDevices event) {
+        if (enabled && bufferSize > 0) {
+            buffers.computeIfAbsent(event.getTenantId(), id -> new TenantBuffer(bufferSize, startTs)).add(event);
+        }
+    }
+
+    /**
+     * 查询租户在开始时间之后的事件
+     *
+     * @return 缓冲不能完整覆盖该查询时返回 empty, 调用方需要查询数据库
+     */
+    public Optional<PageData<DashboardRuleDevices>> find(TenantId tenantId, Long startTime, PageLink pageLink) {
+        if (!enabled || bufferSize <= 0 || startTime == null || startTime < startTs) {
+            return Optional.empty();
+        }
+        SortOrder sortOrder = pageLink.getSortOrder();
+        if (sortOrder != null && !CREATED_TIME_PROPERTY.equals(sortOrder.getProperty())) {
+            return Optional.empty();
+        }
+        TenantBuffer buffer = buffers.get(tenantId);
+        if (buffer == null) {
+            return Optional.empty();
+        }
+        List<DashboardRuleDevices> events = buffer.findSince(startTime);
+        if (events == null) {
+            return Optional.empty();
+        }
+        Comparator<DashboardRuleDevices> comparator = Comparator.comparingLong(DashboardRuleDevices::getCreatedTime);
+        if (sortOrder == null || sortOrder.getDirection() == SortOrder.Direction.DESC) {
+            comparator = comparator.reversed();
+        }
+        events.sort(comparator);
+        return Optional.of(toPage(events, pageLink));
+    }
+
+    int size(TenantId tenantId) {
+        TenantBuffer buffer = buffers.get(tenantId);
+        return buffer != null ? buffer.size() : 0;
+    }
+
+    private static PageData<DashboardRuleDevices> toPage(List<DashboardRuleDevices> events, PageLink pageLink) {
+        int pageSize = pageLink.getPageSize();
+        int total = events.size();
+        int from = Math.min(pageLink.getPage() * pageSize, total);
+        int to = Math.min(from + pageSize, total);
+        int totalPages = pageSize > 0 ? (total + pageSize - 1) / pageSize : 0;
+        return new PageData<>(new ArrayList<>(events.subList(from, to)), totalPages, total, to < total);
+    }
+
+    private static class TenantBuffer {
+        private final DashboardRuleDevices[] ring;
+        private int head;
+        private int size;
+        /**
+         * 该时间之后的事件都在缓冲中
+         */
+        private long coveredSince;
+
+        TenantBuffer(int capacity, long coveredSince) {
+            this.ring = new DashboardRuleDevices[capacity];
+            this.coveredSince = coveredSince;
+        }
+
+        synchronized void add(DashboardRuleDevices event) {
+            int tail = (head + size) % ring.length;
+            if (size == ring.length) {
+                // 覆盖最旧的事件, 此后只能保证比它新的事件完整
+                coveredSince = Math.max(coveredSince, ring[head].getCreatedTime() + 1);
+                ring[head] = event;
+                head = (head + 1) % ring.length;
+            } else {
+                ring[tail] = event;
+                size++;
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized List<DashboardRuleDevices> findSince(long startTime) {
+            if (startTime < coveredSince) {
+                return null;
+            }
+            List<DashboardRuleDevices> result = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                DashboardRuleDevices event = ring[(head + i) % ring.length];
+                if (event.getCreatedTime() >= startTime) {
+                    result.add(event);
+                }
+            }
+            return result;
+        }
+    }
+
+}
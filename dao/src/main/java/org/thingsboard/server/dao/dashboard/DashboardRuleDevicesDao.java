@@ -17,6 +17,7 @@
 
 package org.thingsboard.server.dao.dashboard;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import org.thingsboard.server.common.data.DashboardRuleDevices;
 import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.page.PageLink;
@@ -38,4 +39,20 @@ public interface DashboardRuleDevicesDao extends Dao<DashboardRuleDevices> {
      * @return the list of DashboardRuleDevices objects
      */
     PageData<DashboardRuleDevices> findDashboardRuleDevicesByTenantIdAndCreatedTime(UUID tenantId, Long time, PageLink pageLink);
+
+    /**
+     * 加入批量写入队列, 异步保存
+     *
+     * @param dashboardRuleDevices 仪表板告警, id 和创建时间需已设置
+     * @return 写入完成的 future
+     */
+    ListenableFuture<Void> saveAsync(DashboardRuleDevices dashboardRuleDevices);
+
+    /**
+     * 删除创建时间早于 expTime 的数据
+     *
+     * @param expTime 过期时间戳
+     * @return 删除的行数
+     */
+    int cleanUp(long expTime);
 }
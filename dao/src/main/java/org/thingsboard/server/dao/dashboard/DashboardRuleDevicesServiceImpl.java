@@ -18,6 +18,7 @@
 package org.thingsboard.server.dao.dashboard;
 
 
+import com.datastax.oss.driver.api.core.uuid.Uuids;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,6 +33,7 @@ import org.thingsboard.server.dao.entity.AbstractEntityService;
 import org.thingsboard.server.dao.service.Validator;
 
 import java.io.IOException;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 import static org.thingsboard.server.dao.service.Validator.validateId;
@@ -46,6 +48,8 @@ public class DashboardRuleDevicesServiceImpl extends AbstractEntityService imple
     private DashboardRuleDevicesDao dashboardRuleDevicesDao;
     @Autowired
     private MsAlarmLastUpdateCache msAlarmLastUpdateCache;
+    @Autowired
+    private DashboardRuleDevicesBuffer dashboardRuleDevicesBuffer;
 
     @Override
     public DashboardRuleDevices findDashboardRuleDevicesById(TenantId tenantId, DashboardRuleDevicesId dashboardRuleDevicesId) {
@@ -91,6 +95,8 @@ public class DashboardRuleDevicesServiceImpl extends AbstractEntityService imple
                 dashboardRuleDevices.setCreatedTime(createdTime);
             }
             DashboardRuleDevices save = dashboardRuleDevicesDao.save(dashboardRuleDevices.getTenantId(), dashboardRuleDevices);
+            save.setSource(dashboardRuleDevices.getSource());
+            dashboardRuleDevicesBuffer.add(save);
             // 更新状态
             TenantId tenantId = dashboardRuleDevices.getTenantId();
             msAlarmLastUpdateCache.put(tenantId);
@@ -101,4 +107,30 @@ public class DashboardRuleDevicesServiceImpl extends AbstractEntityService imple
         }
     }
 
+    @Override
+    public ListenableFuture<Void> saveDashboardRuleDevicesAsync(DashboardRuleDevices dashboardRuleDevices) {
+        log.trace("Executing saveDashboardRuleDevicesAsync [{}]", dashboardRuleDevices);
+        Validator.validateId(dashboardRuleDevices.getTenantId(), INCORRECT_TENANT_ID + dashboardRuleDevices.getTenantId());
+        Validator.validateId(dashboardRuleDevices.getDeviceId(), "Incorrect deviceId " + dashboardRuleDevices.getDeviceId());
+        if (dashboardRuleDevices.getId() == null) {
+            UUID uuid = Uuids.timeBased();
+            dashboardRuleDevices.setId(new DashboardRuleDevicesId(uuid));
+            if (dashboardRuleDevices.getCreatedTime() == 0) {
+                dashboardRuleDevices.setCreatedTime(Uuids.unixTimestamp(uuid));
+            }
+        } else if (dashboardRuleDevices.getCreatedTime() == 0) {
+            dashboardRuleDevices.setCreatedTime(System.currentTimeMillis());
+        }
+        // 先进入缓冲, 订阅方不必等待数据库写入
+        dashboardRuleDevicesBuffer.add(dashboardRuleDevices);
+        msAlarmLastUpdateCache.put(dashboardRuleDevices.getTenantId());
+        return dashboardRuleDevicesDao.saveAsync(dashboardRuleDevices);
+    }
+
+    @Override
+    public void cleanUp(long expTime) {
+        int removed = dashboardRuleDevicesDao.cleanUp(expTime);
+        log.debug("Removed {} outdated dashboard rule devices", removed);
+    }
+
 }
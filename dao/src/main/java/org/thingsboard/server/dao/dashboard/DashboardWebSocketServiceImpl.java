@@ -22,7 +22,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.thingsboard.server.cache.ms.MsAlarmLastUpdateCache;
-import org.thingsboard.server.cache.ms.MsDeviceLastUpdateCache;
 import org.thingsboard.server.common.data.DashboardRuleDevices;
 import org.thingsboard.server.common.data.Device;
 import org.thingsboard.server.common.data.DeviceAbility;
@@ -35,9 +34,11 @@ import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.query.ms.MsAlarmDataQuery;
 import org.thingsboard.server.dao.device.DeviceAbilityService;
 import org.thingsboard.server.dao.device.DeviceService;
+import org.thingsboard.server.dao.image.ImageThumbnailService;
 import org.thingsboard.server.dao.sensing.SensingObjectService;
 
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -48,18 +49,20 @@ import java.util.UUID;
 @Service
 @Slf4j
 public class DashboardWebSocketServiceImpl implements DashboardWebSocketService {
-    @Autowired
-    private MsDeviceLastUpdateCache deviceLastUpdateCache;
     @Autowired
     private MsAlarmLastUpdateCache msAlarmLastUpdateCache;
     @Autowired
     private DashboardRuleDevicesService dashboardRuleDevicesService;
     @Autowired
+    private DashboardRuleDevicesBuffer dashboardRuleDevicesBuffer;
+    @Autowired
     private DeviceService deviceService;
     @Autowired
     private DeviceAbilityService deviceAbilityService;
     @Autowired
     private SensingObjectService sensingObjectService;
+    @Autowired
+    private ImageThumbnailService imageThumbnailService;
 
     @Override
     public Optional<PageData<DashboardRuleDevices>> sendWsMsAlarmDataMessage(MsAlarmDataQuery query, TenantId tenantId) {
@@ -67,33 +70,40 @@ public class DashboardWebSocketServiceImpl implements DashboardWebSocketService
         if (!isContainsKey) {
             return Optional.empty();
         }
-        PageData<DashboardRuleDevices> pageData = dashboardRuleDevicesService.
-                findDashboardRuleDevicesByTenantIdAndCreatedTime(tenantId, query.getStartTime(), query.getPageLink());
-        List<DashboardRuleDevices> dashboardRuleDevices = pageData.getData();
-        dashboardRuleDevices.forEach(obj -> {
-            Device device = deviceService.findDeviceById(tenantId, obj.getDeviceId());
-            obj.setSource(device.getName());
-        });
+        // 优先从最近事件缓冲读取, 缓冲不能覆盖查询开始时间时再查询数据库
+        PageData<DashboardRuleDevices> pageData = dashboardRuleDevicesBuffer.find(tenantId, query.getStartTime(), query.getPageLink())
+                .orElseGet(() -> dashboardRuleDevicesService.findDashboardRuleDevicesByTenantIdAndCreatedTime(tenantId, query.getStartTime(), query.getPageLink()));
+        Map<DeviceId, String> deviceNames = new HashMap<>();
+        for (DashboardRuleDevices obj : pageData.getData()) {
+            if (obj.getSource() == null) {
+                obj.setSource(deviceNames.computeIfAbsent(obj.getDeviceId(), id -> {
+                    Device device = deviceService.findDeviceById(tenantId, id);
+                    return device != null ? device.getName() : null;
+                }));
+            }
+        }
         return Optional.of(pageData);
     }
 
     @Override
-    public Optional<TsKvEntry> sendWsSnapshotPreviewMessage(boolean isGet, TenantId tenantId, DeviceId deviceId) {
-        if (!isGet) {
-            boolean isContainsKey = deviceLastUpdateCache.containsKey(deviceId.getId().toString());
-            Device deviceById = deviceService.findDeviceById(tenantId, deviceId);
-            if (deviceById == null || !isContainsKey) {
-                return Optional.empty();
-            }
-        }
-        // UUID需要装换成String类型判断
-        TsKvEntry tsKvEnTry = sensingObjectService.getTsKvEnTry(tenantId, deviceId);
+    public Optional<TsKvEntry> sendWsSnapshotPreviewMessage(TenantId tenantId, DeviceId deviceId, Integer size) {
+        TsKvEntry tsKvEnTry = sensingObjectService.getTsKvEnTry(tenantId, deviceId, size);
         if (tsKvEnTry == null) {
             return Optional.empty();
         }
         return Optional.of(tsKvEnTry);
     }
 
+    @Override
+    public Optional<TsKvEntry> sendWsSnapshotPreviewMessage(TenantId tenantId, DeviceId deviceId, TsKvEntry image, Integer size) {
+        try {
+            return Optional.of(imageThumbnailService.getRendition(tenantId, deviceId, image, size));
+        } catch (Exception e) {
+            log.debug("[{}] Failed to render pushed image", deviceId, e);
+            return Optional.empty();
+        }
+    }
+
     @Override
     public Optional<DeviceAbility> getRoiAbility(String abilityId) {
         if (StringUtils.isBlank(abilityId)) {
@@ -59,6 +59,8 @@ public class DeviceAbilityServiceImpl
     private DeviceAbilityDao deviceAbilityDao;
     @Autowired
     private RuleChainAssociateService ruleChainAssociateService;
+    @Autowired
+    private DeviceSnapshotCache deviceSnapshotCache;
 
     @Override
     @TransactionalEventListener(classes = DeviceAbilityEvictEvent.class)
@@ -70,6 +72,7 @@ public class DeviceAbilityServiceImpl
         if (event.getDeviceId() != null && event.getAbility() != null) {
             DeviceAbilityCacheKey key = DeviceAbilityCacheKey.fromDeviceIdAbility(event.getDeviceId(), event.getAbility());
             keys.add(key);
+            deviceSnapshotCache.evict(event.getDeviceId().getId());
         }
         cache.evict(keys);
     }
@@ -167,6 +170,7 @@ public class DeviceAbilityServiceImpl
     @Override
     public void saveAllSync(List<DeviceAbility> newDeviceAbilities) {
         deviceAbilityDao.saveAll(newDeviceAbilities);
+        evictSnapshots(newDeviceAbilities);
     }
 
     @Override
@@ -197,6 +201,11 @@ public class DeviceAbilityServiceImpl
             return;
         }
         deviceAbilityDao.saveAll(deviceAbilities);
+        evictSnapshots(deviceAbilities);
+    }
+
+    private void evictSnapshots(List<DeviceAbility> deviceAbilities) {
+        deviceAbilities.stream().map(DeviceAbility::getDeviceId).distinct().forEach(deviceSnapshotCache::evict);
     }
 
     @Override
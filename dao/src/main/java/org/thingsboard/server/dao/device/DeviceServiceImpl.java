@@ -112,6 +112,9 @@ public class DeviceServiceImpl extends AbstractCachedEntityService<DeviceCacheKe
     @Autowired
     private DeviceDao deviceDao;
 
+    @Autowired
+    private DeviceSnapshotCache deviceSnapshotCache;
+
     @Autowired
     private DeviceCredentialsService deviceCredentialsService;
 
@@ -308,6 +311,9 @@ public class DeviceServiceImpl extends AbstractCachedEntityService<DeviceCacheKe
             keys.add(new DeviceCacheKey(event.getTenantId(), event.getOldName()));
         }
         cache.evict(keys);
+        if (event.getDeviceId() != null) {
+            deviceSnapshotCache.evict(event.getDeviceId().getId());
+        }
     }
 
     private DeviceData syncDeviceData(DeviceProfile deviceProfile, DeviceData deviceData) {
@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.device;
+
+import lombok.Getter;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.DeviceAbility;
+import org.thingsboard.server.common.enume.device.AbilityTypeEnum;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 设备快照: 遥测保存路径所需的设备及其按类型拆分的能力, 只读.
+ */
+@Getter
+public class DeviceSnapshot {
+
+    private final Device device;
+    private final List<DeviceAbility> imageAbilities;
+    private final Map<String, DeviceAbility> strAbilities;
+
+    public DeviceSnapshot(Device device, List<DeviceAbility> abilities) {
+        this.device = device;
+        List<DeviceAbility> images = new ArrayList<>();
+        Map<String, DeviceAbility> strings = new HashMap<>();
+        for (DeviceAbility ability : abilities) {
+            if (AbilityTypeEnum.IMAGE.eq(ability.getAbilityType())) {
+                images.add(ability);
+            } else {
+                strings.putIfAbsent(ability.getAbility(), ability);
+            }
+        }
+        this.imageAbilities = Collections.unmodifiableList(images);
+        this.strAbilities = Collections.unmodifiableMap(strings);
+    }
+}
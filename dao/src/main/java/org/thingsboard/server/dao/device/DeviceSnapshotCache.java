@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.device;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import javax.annotation.PostConstruct;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 遥测保存路径的设备快照缓存, 避免每条消息查询设备和设备能力.
+ * 由设备/设备能力的驱逐事件失效, TTL兜底其他节点上的修改.
+ */
+@Slf4j
+@Component
+public class DeviceSnapshotCache {
+
+    @Value("${cache.simple.device_snapshot_max_size:10000}")
+    private long maxSize;
+
+    @Value("${cache.simple.device_snapshot_ttl_minutes:60}")
+    private long ttlMinutes;
+
+    @Autowired
+    private DeviceDao deviceDao;
+
+    @Autowired
+    private DeviceAbilityDao deviceAbilityDao;
+
+    private Cache<UUID, DeviceSnapshot> snapshots;
+
+    @PostConstruct
+    public void init() {
+        snapshots = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * @return 设备快照, 设备不存在时返回null
+     */
+    public DeviceSnapshot get(TenantId tenantId, UUID deviceId) {
+        return snapshots.get(deviceId, id -> load(tenantId, id));
+    }
+
+    public void evict(UUID deviceId) {
+        if (deviceId != null) {
+            snapshots.invalidate(deviceId);
+        }
+    }
+
+    private DeviceSnapshot load(TenantId tenantId, UUID deviceId) {
+        Device device = deviceDao.findById(tenantId, deviceId);
+        if (device == null) {
+            log.debug("[{}] Device not found, snapshot is not cached", deviceId);
+            return null;
+        }
+        return new DeviceSnapshot(device, deviceAbilityDao.findByDeviceId(deviceId));
+    }
+}
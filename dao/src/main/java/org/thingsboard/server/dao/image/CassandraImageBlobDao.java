@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.image;
+
+import com.datastax.oss.driver.api.core.cql.BoundStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.dao.model.ModelConstants;
+import org.thingsboard.server.dao.nosql.CassandraAbstractAsyncDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores images as blobs in a dedicated table partitioned by day bucket and hash shard,
+ * so image cells no longer take part in the compaction of {@code ts_kv_cf}.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "database.image_blob", value = "type", havingValue = "cassandra")
+public class CassandraImageBlobDao extends CassandraAbstractAsyncDao implements ImageBlobDao {
+
+    private PreparedStatement saveStmt;
+    private PreparedStatement findStmt;
+    private PreparedStatement deleteBucketStmt;
+
+    @PostConstruct
+    public void init() {
+        super.startExecutor();
+    }
+
+    @PreDestroy
+    public void stop() {
+        super.stopExecutor();
+    }
+
+    @Override
+    public ListenableFuture<Void> save(TenantId tenantId, ImageBlobKey key, byte[] data) {
+        BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getSaveStmt().bind());
+        stmtBuilder.setLong(0, key.getBucket())
+                .setInt(1, key.getShard())
+                .setString(2, key.getHash())
+                .setByteBuffer(3, ByteBuffer.wrap(data));
+        return getFuture(executeAsyncWrite(tenantId, stmtBuilder.build()), rs -> null);
+    }
+
+    @Override
+    public ListenableFuture<Optional<ByteBuffer>> find(TenantId tenantId, ImageBlobKey key) {
+        BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getFindStmt().bind());
+        stmtBuilder.setLong(0, key.getBucket())
+                .setInt(1, key.getShard())
+                .setString(2, key.getHash());
+        return getFuture(executeAsyncRead(tenantId, stmtBuilder.build()), rs -> {
+            Row row = rs.one();
+            return row != null ? Optional.ofNullable(row.getByteBuffer(0)) : Optional.empty();
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> deleteBucket(long bucket) {
+        List<ListenableFuture<Void>> futures = new ArrayList<>(ImageBlobKey.SHARDS);
+        for (int shard = 0; shard < ImageBlobKey.SHARDS; shard++) {
+            BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getDeleteBucketStmt().bind());
+            stmtBuilder.setLong(0, bucket)
+                    .setInt(1, shard);
+            futures.add(getFuture(executeAsyncWrite(TenantId.SYS_TENANT_ID, stmtBuilder.build()), rs -> null));
+        }
+        return Futures.transform(Futures.allAsList(futures), result -> null, MoreExecutors.directExecutor());
+    }
+
+    private PreparedStatement getSaveStmt() {
+        if (saveStmt == null) {
+            saveStmt = prepare("INSERT INTO " + ModelConstants.IMAGE_BLOB_CF +
+                    "(" + ModelConstants.IMAGE_BLOB_BUCKET_COLUMN +
+                    "," + ModelConstants.IMAGE_BLOB_SHARD_COLUMN +
+                    "," + ModelConstants.IMAGE_BLOB_HASH_COLUMN +
+                    "," + ModelConstants.IMAGE_BLOB_DATA_COLUMN + ")" +
+                    " VALUES(?, ?, ?, ?)");
+        }
+        return saveStmt;
+    }
+
+    private PreparedStatement getFindStmt() {
+        if (findStmt == null) {
+            findStmt = prepare("SELECT " + ModelConstants.IMAGE_BLOB_DATA_COLUMN +
+                    " FROM " + ModelConstants.IMAGE_BLOB_CF +
+                    " WHERE " + ModelConstants.IMAGE_BLOB_BUCKET_COLUMN + " = ?" +
+                    " AND " + ModelConstants.IMAGE_BLOB_SHARD_COLUMN + " = ?" +
+                    " AND " + ModelConstants.IMAGE_BLOB_HASH_COLUMN + " = ?");
+        }
+        return findStmt;
+    }
+
+    private PreparedStatement getDeleteBucketStmt() {
+        if (deleteBucketStmt == null) {
+            deleteBucketStmt = prepare("DELETE FROM " + ModelConstants.IMAGE_BLOB_CF +
+                    " WHERE " + ModelConstants.IMAGE_BLOB_BUCKET_COLUMN + " = ?" +
+                    " AND " + ModelConstants.IMAGE_BLOB_SHARD_COLUMN + " = ?");
+        }
+        return deleteBucketStmt;
+    }
+
+}
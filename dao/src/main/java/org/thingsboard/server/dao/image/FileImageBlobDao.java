@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.image;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardExecutors;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Stores images as plain files: {@code <directory>/<bucket>/<hash[0..2]>/<hash>}.
+ * Reads are memory mapped so the bytes are served from the page cache without copying them to the heap.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "database.image_blob", value = "type", havingValue = "file")
+public class FileImageBlobDao implements ImageBlobDao {
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    @Value("${database.image_blob.file.directory:/data/images}")
+    private String directory;
+
+    @Value("${database.image_blob.file.io_threads:4}")
+    private int ioThreads;
+
+    private Path root;
+    private ListeningExecutorService ioExecutor;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Files.createDirectories(Paths.get(directory));
+        ioExecutor = MoreExecutors.listeningDecorator(ThingsBoardExecutors.newWorkStealingPool(ioThreads, "image-blob-io"));
+        log.info("Image blob storage directory: {}", root.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (ioExecutor != null) {
+            ioExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public ListenableFuture<Void> save(TenantId tenantId, ImageBlobKey key, byte[] data) {
+        return ioExecutor.submit(() -> {
+            Path file = toPath(key);
+            if (Files.exists(file)) {
+                return null;
+            }
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + TMP_SUFFIX + Thread.currentThread().getId());
+            Files.write(tmp, data);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return null;
+        });
+    }
+
+    @Override
+    public ListenableFuture<Optional<ByteBuffer>> find(TenantId tenantId, ImageBlobKey key) {
+        return ioExecutor.submit(() -> {
+            try (FileChannel channel = FileChannel.open(toPath(key), StandardOpenOption.READ)) {
+                return Optional.of(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } catch (NoSuchFileException e) {
+                log.debug("[{}] Image blob not found", key.toReference());
+                return Optional.empty();
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> deleteBucket(long bucket) {
+        return ioExecutor.submit(() -> {
+            Path dir = root.resolve(Long.toString(bucket));
+            if (!Files.exists(dir)) {
+                return null;
+            }
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException e) {
+                        log.warn("[{}] Failed to delete image blob file", path, e);
+                    }
+                });
+            }
+            return null;
+        });
+    }
+
+    Path toPath(ImageBlobKey key) {
+        String hash = key.getHash();
+        return root.resolve(Long.toString(key.getBucket())).resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+}
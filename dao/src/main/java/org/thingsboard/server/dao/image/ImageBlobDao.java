@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.image;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * Binary storage for device images, keeps raw image bytes out of the timeseries tables.
+ */
+public interface ImageBlobDao {
+
+    ListenableFuture<Void> save(TenantId tenantId, ImageBlobKey key, byte[] data);
+
+    ListenableFuture<Optional<ByteBuffer>> find(TenantId tenantId, ImageBlobKey key);
+
+    /**
+     * Drops every image of the given day bucket at once.
+     * Buckets are shared by all tenants since identical images are stored once, so the bucket is dropped for every tenant.
+     */
+    ListenableFuture<Void> deleteBucket(long bucket);
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.image;
+
+import com.google.common.hash.Hashing;
+import lombok.Data;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Address of a binary image in the {@link ImageBlobDao}.
+ * Images are grouped into daily buckets and addressed by the SHA-256 of their content inside a bucket,
+ * so identical frames of the same day are stored once and a whole day can be purged at once.
+ * Each bucket is split into {@link #SHARDS} shards by the hash prefix to keep partitions small.
+ */
+@Data
+public class ImageBlobKey {
+
+    public static final String REFERENCE_PREFIX = "blob:";
+    private static final String SEPARATOR = ":";
+    static final long BUCKET_MS = TimeUnit.DAYS.toMillis(1);
+    static final int SHARDS = 64;
+
+    private final long bucket;
+    private final String hash;
+
+    public static ImageBlobKey of(long ts, byte[] data) {
+        return new ImageBlobKey(toBucket(ts), Hashing.sha256().hashBytes(data).toString());
+    }
+
+    public static long toBucket(long ts) {
+        return ts - Math.floorMod(ts, BUCKET_MS);
+    }
+
+    public static boolean isReference(String value) {
+        return value != null && value.startsWith(REFERENCE_PREFIX);
+    }
+
+    public static Optional<ImageBlobKey> parse(String value) {
+        if (!isReference(value)) {
+            return Optional.empty();
+        }
+        String[] parts = value.substring(REFERENCE_PREFIX.length()).split(SEPARATOR);
+        if (parts.length != 2) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new ImageBlobKey(Long.parseLong(parts[0]), parts[1]));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    public int getShard() {
+        return Integer.parseInt(hash.substring(0, 2), 16) % SHARDS;
+    }
+
+    public String toReference() {
+        return REFERENCE_PREFIX + bucket + SEPARATOR + hash;
+    }
+
+}
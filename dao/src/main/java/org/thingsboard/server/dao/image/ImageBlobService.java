@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.image;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Translates between base64 image telemetry and references to the {@link ImageBlobDao}.
+ * When no blob storage is configured ({@code database.image_blob.type: none}) images stay in the timeseries tables as is.
+ */
+@Service
+@Slf4j
+public class ImageBlobService {
+
+    @Autowired(required = false)
+    private ImageBlobDao imageBlobDao;
+
+    public boolean isEnabled() {
+        return imageBlobDao != null;
+    }
+
+    /**
+     * Saves the image of the entry to the blob storage, the write future is added to {@code futures}.
+     *
+     * @return the entry to store in the timeseries tables instead of the image, or the same entry if the value is not a plain base64 image
+     */
+    public TsKvEntry save(TenantId tenantId, TsKvEntry tsKvEntry, List<ListenableFuture<Integer>> futures) {
+        Optional<String> value = tsKvEntry.getStrValue();
+        if (!isEnabled() || value.isEmpty() || ImageBlobKey.isReference(value.get())) {
+            return tsKvEntry;
+        }
+        byte[] data;
+        try {
+            data = Base64.getDecoder().decode(value.get());
+        } catch (IllegalArgumentException e) {
+            log.debug("[{}] Image is not a plain base64 string, keep it in the timeseries table", tsKvEntry.getTs());
+            return tsKvEntry;
+        }
+        ImageBlobKey key = ImageBlobKey.of(tsKvEntry.getTs(), data);
+        futures.add(Futures.transform(imageBlobDao.save(tenantId, key, data), v -> 0, MoreExecutors.directExecutor()));
+        return new BasicTsKvEntry(tsKvEntry.getTs(), new StringDataEntry(tsKvEntry.getKey(), key.toReference()));
+    }
+
+    /**
+     * Returns raw image bytes for a stored value which is either a blob reference or a legacy base64 string.
+     */
+    public ListenableFuture<Optional<ByteBuffer>> findBytes(TenantId tenantId, String value) {
+        Optional<ImageBlobKey> key = ImageBlobKey.parse(value);
+        if (key.isPresent()) {
+            if (!isEnabled()) {
+                log.warn("[{}] Image blob storage is disabled, can't resolve reference", value);
+                return Futures.immediateFuture(Optional.empty());
+            }
+            return imageBlobDao.find(tenantId, key.get());
+        }
+        if (value == null || value.isEmpty()) {
+            return Futures.immediateFuture(Optional.empty());
+        }
+        try {
+            return Futures.immediateFuture(Optional.of(ByteBuffer.wrap(Base64.getDecoder().decode(value))));
+        } catch (IllegalArgumentException e) {
+            log.debug("Image is not a plain base64 string", e);
+            return Futures.immediateFuture(Optional.empty());
+        }
+    }
+
+    /**
+     * Returns the base64 image for a stored value, legacy base64 values are returned as is.
+     */
+    public ListenableFuture<String> findBase64(TenantId tenantId, String value) {
+        if (!ImageBlobKey.isReference(value)) {
+            return Futures.immediateFuture(value);
+        }
+        return Futures.transform(findBytes(tenantId, value),
+                bytes -> bytes.map(buffer -> Base64.getEncoder().encode(buffer.duplicate()))
+                        .map(encoded -> new String(encoded.array(), encoded.arrayOffset(), encoded.remaining()))
+                        .orElse(""),
+                MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Returns an entity tag of the image, blob references already carry the content hash.
+     */
+    public String toETag(String value) {
+        return ImageBlobKey.parse(value)
+                .map(ImageBlobKey::getHash)
+                .orElseGet(() -> Hashing.murmur3_128().hashString(value, StandardCharsets.UTF_8).toString());
+    }
+
+    /**
+     * Drops the day buckets of images older than {@code endTs}, starting from the bucket of {@code startTs}.
+     * The bucket of {@code endTs} itself is kept because it may still hold images newer than {@code endTs}.
+     * Buckets are shared by all tenants, so the images of every tenant in the range are dropped.
+     */
+    public ListenableFuture<List<Void>> deleteBuckets(long startTs, long endTs) {
+        if (!isEnabled()) {
+            return Futures.immediateFuture(Collections.emptyList());
+        }
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        long lastBucket = ImageBlobKey.toBucket(endTs);
+        for (long bucket = ImageBlobKey.toBucket(startTs); bucket < lastBucket; bucket += ImageBlobKey.BUCKET_MS) {
+            futures.add(imageBlobDao.deleteBucket(bucket));
+        }
+        return Futures.allAsList(futures);
+    }
+
+    public ListenableFuture<TsKvEntry> resolve(TenantId tenantId, TsKvEntry tsKvEntry) {
+        Optional<String> value = tsKvEntry.getStrValue();
+        if (value.isEmpty() || !ImageBlobKey.isReference(value.get())) {
+            return Futures.immediateFuture(tsKvEntry);
+        }
+        return Futures.transform(findBase64(tenantId, value.get()),
+                base64 -> new BasicTsKvEntry(tsKvEntry.getTs(), new StringDataEntry(tsKvEntry.getKey(), base64)),
+                MoreExecutors.directExecutor());
+    }
+
+}
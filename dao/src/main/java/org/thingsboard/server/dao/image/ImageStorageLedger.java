@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.image;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.recognition.DeviceImageCount;
+import org.thingsboard.server.dao.timeseries.TelemetryRecognitionDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 图片存储用量台账: 按租户、设备累计图片数量和字节数, 保存图片时增加, 清理磁盘或删除设备时扣减.
+ * 启动时异步按设备统计一次已有图片数量作为初始值, 之后的用量查询都不再扫表.
+ * 历史图片的字节数未知, 扣减时按该设备已记录的平均大小估算.
+ * 统计期间保存的图片先缓存, 统计完成后合并: 统计查询开始前保存的图片已包含在统计结果中, 只累计字节数.
+ */
+@Slf4j
+@Component
+public class ImageStorageLedger {
+
+    @Value("${cassandra.storage_ledger.init_on_startup:true}")
+    private boolean initOnStartup;
+
+    @Autowired
+    private TelemetryRecognitionDao telemetryRecognitionDao;
+
+    private final Usage total = new Usage();
+    private final ConcurrentMap<UUID, Usage> tenants = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, Usage> devices = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, UUID> deviceTenants = new ConcurrentHashMap<>();
+
+    private final Object seedLock = new Object();
+    private List<PendingSave> pendingSaves = new ArrayList<>();
+    private volatile boolean seeding = true;
+
+    private ExecutorService initExecutor;
+    @Getter
+    private volatile boolean initialized;
+
+    @PostConstruct
+    public void init() {
+        if (!initOnStartup) {
+            finishSeed(List.of(), Long.MIN_VALUE);
+            initialized = true;
+            return;
+        }
+        initExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("image-storage-ledger"));
+        initExecutor.submit(this::load);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (initExecutor != null) {
+            initExecutor.shutdownNow();
+        }
+    }
+
+    void load() {
+        long snapshotTs = System.currentTimeMillis();
+        try {
+            List<DeviceImageCount> counts = telemetryRecognitionDao.countImagesByDevice();
+            finishSeed(counts, snapshotTs);
+            initialized = true;
+            log.info("Image storage ledger loaded, {} devices, {} images", counts.size(), total.getImages());
+        } catch (Exception e) {
+            // 统计失败时缓存的增量全部计入, 避免丢失
+            finishSeed(List.of(), Long.MIN_VALUE);
+            log.error("Failed to load image storage ledger", e);
+        }
+    }
+
+    private void finishSeed(List<DeviceImageCount> counts, long snapshotTs) {
+        synchronized (seedLock) {
+            counts.forEach(count -> add(count.getTenantId(), count.getDeviceId(), count.getCount(), 0));
+            for (PendingSave save : pendingSaves) {
+                add(save.tenantId, save.deviceId, save.savedTs >= snapshotTs ? 1 : 0, save.bytes);
+            }
+            pendingSaves = null;
+            seeding = false;
+        }
+    }
+
+    /**
+     * @param image base64 图片, 字节数按 base64 长度的 3/4 估算
+     */
+    public void onImageSaved(TenantId tenantId, UUID deviceId, String image) {
+        long bytes = image != null ? (long) image.length() * 3 / 4 : 0;
+        if (seeding) {
+            synchronized (seedLock) {
+                if (seeding) {
+                    pendingSaves.add(new PendingSave(tenantId.getId(), deviceId, bytes, System.currentTimeMillis()));
+                    return;
+                }
+            }
+        }
+        add(tenantId.getId(), deviceId, 1, bytes);
+    }
+
+    public void onImagesDeleted(UUID deviceId, long images) {
+        Usage device = devices.get(deviceId);
+        if (device == null || images <= 0) {
+            return;
+        }
+        long deleted = Math.min(images, device.getImages());
+        long bytes = device.getImages() > 0 ? device.getBytes() * deleted / device.getImages() : 0;
+        add(deviceTenants.get(deviceId), deviceId, -deleted, -bytes);
+    }
+
+    public void onDeviceDeleted(UUID deviceId) {
+        Usage device = devices.remove(deviceId);
+        UUID tenantId = deviceTenants.remove(deviceId);
+        if (device == null) {
+            return;
+        }
+        long images = device.getImages();
+        long bytes = device.getBytes();
+        total.add(-images, -bytes);
+        if (tenantId != null) {
+            Usage tenant = tenants.get(tenantId);
+            if (tenant != null) {
+                tenant.add(-images, -bytes);
+            }
+        }
+    }
+
+    public long getImageCount() {
+        return total.getImages();
+    }
+
+    public long getBytes() {
+        return total.getBytes();
+    }
+
+    public Usage getTenantUsage(TenantId tenantId) {
+        return tenants.getOrDefault(tenantId.getId(), new Usage());
+    }
+
+    public Usage getDeviceUsage(UUID deviceId) {
+        return devices.getOrDefault(deviceId, new Usage());
+    }
+
+    /**
+     * @return 图片数量最多的设备, 按数量降序
+     */
+    public Map<UUID, Long> getTopDevices(int limit) {
+        return devices.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue().getImages()))
+                .sorted(Map.Entry.<UUID, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(limit)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    private void add(UUID tenantId, UUID deviceId, long images, long bytes) {
+        total.add(images, bytes);
+        devices.computeIfAbsent(deviceId, id -> new Usage()).add(images, bytes);
+        if (tenantId != null) {
+            deviceTenants.putIfAbsent(deviceId, tenantId);
+            tenants.computeIfAbsent(tenantId, id -> new Usage()).add(images, bytes);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class PendingSave {
+        private final UUID tenantId;
+        private final UUID deviceId;
+        private final long bytes;
+        private final long savedTs;
+    }
+
+    public static class Usage {
+
+        private final LongAdder images = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        void add(long imageDelta, long bytesDelta) {
+            images.add(imageDelta);
+            bytes.add(bytesDelta);
+        }
+
+        public long getImages() {
+            return images.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+    }
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.image;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.ThingsBoardExecutors;
+import org.thingsboard.server.common.data.StringUtils;
+import org.thingsboard.server.common.data.TelemetryConstants;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Downscaled renditions of device images for the snapshot preview widgets.
+ * <p>
+ * Requested widths are rounded up to one of the configured sizes, so all widgets share a few renditions.
+ * Once a device has been previewed in some size, each new image of the device is rendered in that size when it is saved,
+ * and the preview is served from the cache without touching the full image.
+ */
+@Service
+@Slf4j
+public class ImageThumbnailService {
+
+    private static final float JPEG_QUALITY = 0.8f;
+
+    @Value("${database.image_blob.thumbnail.sizes:200,400,800}")
+    private String sizesStr;
+
+    @Value("${database.image_blob.thumbnail.cache_max_weight_bytes:67108864}")
+    private long cacheMaxWeight;
+
+    @Value("${database.image_blob.thumbnail.cache_ttl_sec:3600}")
+    private long cacheTtlSec;
+
+    @Value("${database.image_blob.thumbnail.threads:1}")
+    private int threads;
+
+    @Autowired
+    private ImageBlobService imageBlobService;
+
+    private int[] sizes;
+    private Cache<ImageRenditionKey, String> renditions;
+    /**
+     * 设备被预览过的尺寸及最后一次预览时间; 只由预览刷新, 新图片入库时读取不延长有效期
+     */
+    private Cache<UUID, Map<Integer, Long>> previewedSizes;
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        sizes = Arrays.stream(sizesStr.split(StringUtils.COMMA))
+                .map(String::trim)
+                .filter(StringUtils::isNotEmpty)
+                .mapToInt(Integer::parseInt)
+                .filter(size -> size > 0)
+                .sorted()
+                .distinct()
+                .toArray();
+        renditions = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxWeight)
+                .weigher((ImageRenditionKey key, String value) -> value.length())
+                .expireAfterAccess(cacheTtlSec, TimeUnit.SECONDS)
+                .build();
+        previewedSizes = Caffeine.newBuilder()
+                .expireAfterWrite(cacheTtlSec, TimeUnit.SECONDS)
+                .build();
+        executor = ThingsBoardExecutors.newWorkStealingPool(threads, "image-thumbnail");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Renders the new image of the device in all sizes the device is previewed in. Rendering is done asynchronously.
+     */
+    public void onImageSaved(TenantId tenantId, UUID deviceId, TsKvEntry tsKvEntry) {
+        Set<Integer> deviceSizes = getPreviewedSizes(deviceId);
+        Optional<String> value = tsKvEntry.getStrValue();
+        if (deviceSizes == null || deviceSizes.isEmpty() || value.isEmpty()) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                Optional<ByteBuffer> image = imageBlobService.findBytes(tenantId, value.get()).get();
+                if (image.isPresent()) {
+                    BufferedImage source = read(image.get());
+                    for (Integer size : deviceSizes) {
+                        renditions.put(new ImageRenditionKey(deviceId, tsKvEntry.getTs(), size), render(source, image.get(), size));
+                    }
+                }
+            } catch (Exception e) {
+                log.debug("[{}][{}] Failed to render image thumbnails", deviceId, tsKvEntry.getTs(), e);
+            }
+        });
+    }
+
+    Set<Integer> getPreviewedSizes(UUID deviceId) {
+        Map<Integer, Long> previews = previewedSizes.asMap().get(deviceId);
+        if (previews == null) {
+            return null;
+        }
+        long expiredTs = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(cacheTtlSec);
+        return previews.entrySet().stream()
+                .filter(preview -> preview.getValue() > expiredTs)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Returns the image of the entry downscaled to fit the requested width, or the entry itself if no downscale is needed.
+     *
+     * @param tsKvEntry stored image entry, either a blob reference or a base64 image
+     */
+    public TsKvEntry getRendition(TenantId tenantId, DeviceId deviceId, TsKvEntry tsKvEntry, Integer requestedSize) throws Exception {
+        int size = toRenditionSize(requestedSize);
+        Optional<String> value = tsKvEntry.getStrValue();
+        if (size <= 0 || value.isEmpty()) {
+            return imageBlobService.resolve(tenantId, tsKvEntry).get();
+        }
+        long now = System.currentTimeMillis();
+        previewedSizes.asMap().compute(deviceId.getId(), (id, previews) -> {
+            Map<Integer, Long> result = previews != null ? previews : new ConcurrentHashMap<>();
+            result.put(size, now);
+            return result;
+        });
+        ImageRenditionKey key = new ImageRenditionKey(deviceId.getId(), tsKvEntry.getTs(), size);
+        String rendition = renditions.getIfPresent(key);
+        if (rendition == null) {
+            Optional<ByteBuffer> image = imageBlobService.findBytes(tenantId, value.get()).get();
+            if (image.isEmpty()) {
+                return tsKvEntry;
+            }
+            rendition = render(read(image.get()), image.get(), size);
+            renditions.put(key, rendition);
+        }
+        return new BasicTsKvEntry(tsKvEntry.getTs(), new StringDataEntry(TelemetryConstants.IMAGE, rendition));
+    }
+
+    int toRenditionSize(Integer requestedSize) {
+        if (requestedSize == null || requestedSize <= 0) {
+            return 0;
+        }
+        for (int size : sizes) {
+            if (size >= requestedSize) {
+                return size;
+            }
+        }
+        return 0;
+    }
+
+    private static BufferedImage read(ByteBuffer image) throws IOException {
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(toArray(image)));
+        if (source == null) {
+            throw new IOException("Unsupported image format");
+        }
+        return source;
+    }
+
+    static String render(BufferedImage source, ByteBuffer original, int size) throws IOException {
+        if (source.getWidth() <= size) {
+            return Base64.getEncoder().encodeToString(toArray(original));
+        }
+        int height = Math.max(1, (int) ((long) source.getHeight() * size / source.getWidth()));
+        BufferedImage target = new BufferedImage(size, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(source, 0, 0, size, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(target, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        ByteBuffer duplicate = buffer.duplicate();
+        byte[] bytes = new byte[duplicate.remaining()];
+        duplicate.get(bytes);
+        return bytes;
+    }
+
+}
@@ -662,11 +662,32 @@ public class ModelConstants {
     public static final String TS_KV_CF = "ts_kv_cf";
     public static final String TS_KV_PARTITIONS_CF = "ts_kv_partitions_cf";
     public static final String TS_KV_LATEST_CF = "ts_kv_latest_cf";
+    public static final String IMAGE_BLOB_CF = "image_blob_cf";
 
     public static final String PARTITION_COLUMN = "partition";
     public static final String KEY_COLUMN = "key";
     public static final String KEY_ID_COLUMN = "key_id";
     public static final String TS_COLUMN = "ts";
+    public static final String IMAGE_BLOB_BUCKET_COLUMN = "bucket";
+    public static final String IMAGE_BLOB_SHARD_COLUMN = "shard";
+    public static final String IMAGE_BLOB_HASH_COLUMN = "hash";
+    public static final String IMAGE_BLOB_DATA_COLUMN = "data";
+    public static final String TS_KV_ROLLUP_CF = "ts_kv_rollup_cf";
+    public static final String TS_KV_ROLLUP_COVERAGE_CF = "ts_kv_rollup_coverage_cf";
+    public static final String ROLLUP_GRANULARITY_COLUMN = "granularity";
+    public static final String ROLLUP_BUCKET_TS_COLUMN = "bucket_ts";
+    public static final String ROLLUP_WRITER_ID_COLUMN = "writer_id";
+    public static final String ROLLUP_LONG_CNT_COLUMN = "long_cnt";
+    public static final String ROLLUP_LONG_SUM_COLUMN = "long_sum";
+    public static final String ROLLUP_LONG_MIN_COLUMN = "long_min";
+    public static final String ROLLUP_LONG_MAX_COLUMN = "long_max";
+    public static final String ROLLUP_DBL_CNT_COLUMN = "dbl_cnt";
+    public static final String ROLLUP_DBL_SUM_COLUMN = "dbl_sum";
+    public static final String ROLLUP_DBL_MIN_COLUMN = "dbl_min";
+    public static final String ROLLUP_DBL_MAX_COLUMN = "dbl_max";
+    public static final String ROLLUP_LAST_TS_COLUMN = "last_ts";
+    public static final String ROLLUP_SINCE_TS_COLUMN = "since_ts";
+    public static final String ROLLUP_RUN_ID_COLUMN = "run_id";
 
     /**
      * Main names of cassandra key-value columns storage.
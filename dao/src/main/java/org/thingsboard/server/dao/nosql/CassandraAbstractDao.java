@@ -28,6 +28,7 @@ import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.dao.cassandra.CassandraCluster;
 import org.thingsboard.server.dao.cassandra.guava.GuavaSession;
 import org.thingsboard.server.dao.util.BufferedRateExecutor;
+import org.thingsboard.server.dao.util.TaskPriority;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -97,7 +98,8 @@ public abstract class CassandraAbstractDao {
         if (statement.getConsistencyLevel() == null) {
             statement = statement.setConsistencyLevel(level);
         }
-        return rateExecutor.submit(new CassandraStatementTask(tenantId, getSession(), statement));
+        // 只有在 TaskPriority.runAs 中提交的语句(磁盘回收、预聚合回填等后台任务)才指定通道, 其余使用执行器默认通道
+        return rateExecutor.submit(new CassandraStatementTask(tenantId, getSession(), statement, TaskPriority.current()));
     }
 
     private static String statementToString(Statement statement) {
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.nosql;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.dao.util.BufferedRateExecutorParams;
+import org.thingsboard.server.dao.util.NoSqlAnyDao;
+import org.thingsboard.server.dao.util.TaskPriority;
+
+/**
+ * 读/写缓冲执行器共用的自适应并发与优先级通道配置
+ */
+@Component
+@NoSqlAnyDao
+public class CassandraBufferedRateExecutorSettings {
+
+    @Value("${cassandra.query.adaptive_concurrency.enabled:false}")
+    private boolean adaptiveConcurrencyEnabled;
+    @Value("${cassandra.query.adaptive_concurrency.min_limit:16}")
+    private int minConcurrencyLimit;
+    @Value("${cassandra.query.adaptive_concurrency.max_limit:2000}")
+    private int maxConcurrencyLimit;
+    @Value("${cassandra.query.adaptive_concurrency.window_size:200}")
+    private int latencyWindowSize;
+    @Value("${cassandra.query.adaptive_concurrency.latency_tolerance:2.0}")
+    private double latencyTolerance;
+    @Value("${cassandra.query.adaptive_concurrency.latency_backoff_ratio:0.9}")
+    private double latencyBackoffRatio;
+    @Value("${cassandra.query.adaptive_concurrency.timeout_backoff_ratio:0.5}")
+    private double timeoutBackoffRatio;
+    @Value("${cassandra.socket.read_timeout:20000}")
+    private long driverTimeoutMs;
+    @Value("${cassandra.query.priority_lanes.interactive_weight:8}")
+    private int interactiveWeight;
+    @Value("${cassandra.query.priority_lanes.ingestion_weight:4}")
+    private int ingestionWeight;
+    @Value("${cassandra.query.priority_lanes.background_weight:1}")
+    private int backgroundWeight;
+
+    BufferedRateExecutorParams toParams(TaskPriority defaultPriority) {
+        return BufferedRateExecutorParams.builder()
+                .adaptiveConcurrencyEnabled(adaptiveConcurrencyEnabled)
+                .minConcurrencyLimit(minConcurrencyLimit)
+                .maxConcurrencyLimit(maxConcurrencyLimit)
+                .latencyWindowSize(latencyWindowSize)
+                .latencyTolerance(latencyTolerance)
+                .latencyBackoffRatio(latencyBackoffRatio)
+                .timeoutBackoffRatio(timeoutBackoffRatio)
+                .driverTimeoutMs(driverTimeoutMs)
+                .defaultPriority(defaultPriority)
+                .interactiveWeight(interactiveWeight)
+                .ingestionWeight(ingestionWeight)
+                .backgroundWeight(backgroundWeight)
+                .build();
+    }
+
+}
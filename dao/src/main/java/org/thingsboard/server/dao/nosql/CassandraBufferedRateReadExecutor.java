@@ -29,6 +29,7 @@ import org.thingsboard.server.dao.tenant.TbTenantProfileCache;
 import org.thingsboard.server.dao.util.AbstractBufferedRateExecutor;
 import org.thingsboard.server.dao.util.AsyncTaskContext;
 import org.thingsboard.server.dao.util.NoSqlAnyDao;
+import org.thingsboard.server.dao.util.TaskPriority;
 
 import javax.annotation.PreDestroy;
 
@@ -53,9 +54,10 @@ public class CassandraBufferedRateReadExecutor extends AbstractBufferedRateExecu
             @Value("${cassandra.query.print_queries_freq:0}") int printQueriesFreq,
             @Autowired StatsFactory statsFactory,
             @Autowired EntityService entityService,
-            @Autowired TbTenantProfileCache tenantProfileCache) {
+            @Autowired TbTenantProfileCache tenantProfileCache,
+            @Autowired CassandraBufferedRateExecutorSettings settings) {
         super(queueLimit, concurrencyLimit, maxWaitTime, dispatcherThreads, callbackThreads, pollMs, printQueriesFreq, statsFactory,
-                entityService, tenantProfileCache, printTenantNames);
+                entityService, tenantProfileCache, printTenantNames, settings.toParams(TaskPriority.INTERACTIVE));
     }
 
     @Scheduled(fixedDelayString = "${cassandra.query.rate_limit_print_interval_ms}")
@@ -89,7 +91,7 @@ public class CassandraBufferedRateReadExecutor extends AbstractBufferedRateExecu
         CassandraStatementTask task = taskCtx.getTask();
         return task.executeAsync(
                 statement ->
-                        this.submit(new CassandraStatementTask(task.getTenantId(), task.getSession(), statement))
+                        this.submit(new CassandraStatementTask(task.getTenantId(), task.getSession(), statement, task.getPriority()))
         );
     }
 
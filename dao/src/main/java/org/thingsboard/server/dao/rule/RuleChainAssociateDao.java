@@ -23,6 +23,7 @@ import org.thingsboard.server.common.data.rule.RuleNodeAssociate;
 import org.thingsboard.server.dao.Dao;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -94,5 +95,13 @@ public interface RuleChainAssociateDao extends Dao<RuleChainAssociate> {
      * @return 接收方Id数组
      */
     List<String> findRecipientsByRoi(UUID abilityId);
+
+    /**
+     * 批量查找接收方
+     *
+     * @param abilityIds 能力ID
+     * @return 能力ID - 接收方Id数组
+     */
+    Map<UUID, List<String>> findRecipientsByRoiIn(List<UUID> abilityIds);
 }
 
@@ -33,6 +33,7 @@ import org.thingsboard.server.dao.DaoUtil;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -124,4 +125,12 @@ public class RuleChainAssociateServiceImpl extends BaseDaoServiceImpl<RuleChainA
         return recipientsByRoi;
     }
 
+    @Override
+    public Map<UUID, List<String>> findRecipientsByRoiIn(List<UUID> abilityIds) {
+        if (CollectionUtils.isEmpty(abilityIds)) {
+            return Collections.emptyMap();
+        }
+        return baseDao.findRecipientsByRoiIn(abilityIds);
+    }
+
 }
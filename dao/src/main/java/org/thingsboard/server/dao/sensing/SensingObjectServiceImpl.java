@@ -42,6 +42,8 @@ import org.thingsboard.server.common.enume.device.AbilityTypeEnum;
 import org.thingsboard.server.dao.device.DeviceAbilityService;
 import org.thingsboard.server.dao.device.DeviceService;
 import org.thingsboard.server.dao.entity.AbstractCachedEntityService;
+import org.thingsboard.server.dao.image.ImageBlobService;
+import org.thingsboard.server.dao.image.ImageThumbnailService;
 import org.thingsboard.server.dao.timeseries.TimeseriesLatestDao;
 
 import javax.annotation.Resource;
@@ -78,6 +80,12 @@ public class SensingObjectServiceImpl extends AbstractCachedEntityService<String
     @Resource
     private TimeseriesLatestDao timeseriesLatestDao;
 
+    @Autowired
+    private ImageBlobService imageBlobService;
+
+    @Autowired
+    private ImageThumbnailService imageThumbnailService;
+
     private final static String IMAGE_ABILITY = "image";
 
     @TransactionalEventListener(value = SensingObjectEvictEvent.class)
@@ -133,11 +141,13 @@ public class SensingObjectServiceImpl extends AbstractCachedEntityService<String
     }
 
     @Override
-    public TsKvEntry getTsKvEnTry(TenantId tenantId, DeviceId deviceId) {
+    public TsKvEntry getTsKvEnTry(TenantId tenantId, DeviceId deviceId, Integer size) {
         TsKvEntry tsKvEnTry;
         try {
-            tsKvEnTry = findTsKvEnTry(tenantId, deviceId);
-        } catch (ExecutionException | InterruptedException e) {
+            TsKvEntry tsKvEntry = timeseriesLatestDao.findLatest(tenantId, deviceId, TelemetryConstants.IMAGE).get();
+            tsKvEnTry = imageThumbnailService.getRendition(tenantId, deviceId, tsKvEntry, size);
+        } catch (Exception e) {
+            log.debug("[{}] Failed to get latest image", deviceId, e);
             return null;
         }
         return tsKvEnTry;
@@ -145,7 +155,8 @@ public class SensingObjectServiceImpl extends AbstractCachedEntityService<String
 
     @Override
     public TsKvEntry findTsKvEnTry(TenantId tenantId, DeviceId deviceId) throws ExecutionException, InterruptedException {
-        return timeseriesLatestDao.findLatest(tenantId, deviceId, TelemetryConstants.IMAGE).get();
+        TsKvEntry tsKvEntry = timeseriesLatestDao.findLatest(tenantId, deviceId, TelemetryConstants.IMAGE).get();
+        return imageBlobService.resolve(tenantId, tsKvEntry).get();
     }
 
     @Override
@@ -20,8 +20,10 @@ package org.thingsboard.server.dao.sql.dashboard;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import org.thingsboard.server.dao.model.sql.DashboardRuleDevicesEntity;
 
 import java.util.UUID;
@@ -45,4 +47,15 @@ public interface DashboardRuleDevicesRepository extends JpaRepository<DashboardR
             + " AND di.createdTime >= :createdTime")
     Page<DashboardRuleDevicesEntity> findByTenantIdAndTime(@Param("tenantId") UUID tenantId, @Param("createdTime") Long createdTime,
                                                            Pageable pageable);
+
+    /**
+     * 删除过期的 MS Dashboard 列表数据
+     *
+     * @param expTime 过期时间戳
+     * @return 删除的行数
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM DashboardRuleDevicesEntity di WHERE di.createdTime < :expTime")
+    int deleteByCreatedTimeLessThan(@Param("expTime") long expTime);
 }
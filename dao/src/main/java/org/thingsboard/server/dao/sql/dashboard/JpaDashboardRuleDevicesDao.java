@@ -17,20 +17,36 @@
 
 package org.thingsboard.server.dao.sql.dashboard;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.thingsboard.server.common.data.DashboardRuleDevices;
 import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.page.PageLink;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.dao.DaoUtil;
 import org.thingsboard.server.dao.dashboard.DashboardRuleDevicesDao;
 import org.thingsboard.server.dao.model.sql.DashboardRuleDevicesEntity;
 import org.thingsboard.server.dao.sql.JpaAbstractDao;
+import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
 import org.thingsboard.server.dao.util.SqlDao;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Comparator;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Function;
 
 /**
  * @author zhangzy
@@ -41,8 +57,53 @@ import java.util.UUID;
 @SqlDao
 public class JpaDashboardRuleDevicesDao extends JpaAbstractDao<DashboardRuleDevicesEntity, DashboardRuleDevices> implements DashboardRuleDevicesDao {
 
+    private static final String BATCH_INSERT = "INSERT INTO dashboard_rule_devices(id, created_time, type, value, device_id, rule_name, rule_chain_id, tenant_id)"
+            + " VALUES (?,?,?,?,?,?,?,?) ON CONFLICT (id) DO NOTHING;";
+
     @Autowired
     DashboardRuleDevicesRepository repository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ScheduledLogExecutorComponent logExecutor;
+    @Autowired
+    private StatsFactory statsFactory;
+
+    @Value("${sql.dashboard_rule_devices.batch_size:1000}")
+    private int batchSize;
+
+    @Value("${sql.dashboard_rule_devices.batch_max_delay:100}")
+    private long maxDelay;
+
+    @Value("${sql.dashboard_rule_devices.stats_print_interval_ms:10000}")
+    private long statsPrintIntervalMs;
+
+    @Value("${sql.dashboard_rule_devices.batch_threads:1}")
+    private int batchThreads;
+
+    private TbSqlBlockingQueueWrapper<DashboardRuleDevices> queue;
+
+    @PostConstruct
+    private void init() {
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("DashboardRuleDevices")
+                .batchSize(batchSize)
+                .maxDelay(maxDelay)
+                .statsPrintIntervalMs(statsPrintIntervalMs)
+                .statsNamePrefix("dashboardRuleDevices")
+                .batchSortEnabled(false)
+                .build();
+        Function<DashboardRuleDevices, Integer> hashcodeFunction = event -> event.getTenantId().hashCode();
+        queue = new TbSqlBlockingQueueWrapper<>(params, hashcodeFunction, batchThreads, statsFactory);
+        queue.init(logExecutor, this::batchInsert, Comparator.comparingLong(DashboardRuleDevices::getCreatedTime));
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (queue != null) {
+            queue.destroy();
+        }
+    }
 
     @Override
     protected Class<DashboardRuleDevicesEntity> getEntityClass() {
@@ -59,4 +120,40 @@ public class JpaDashboardRuleDevicesDao extends JpaAbstractDao<DashboardRuleDevi
         return DaoUtil.toPageData(repository.findByTenantIdAndTime(tenantId, time, DaoUtil.toPageable(pageLink)));
     }
 
+    @Override
+    public ListenableFuture<Void> saveAsync(DashboardRuleDevices dashboardRuleDevices) {
+        return queue.add(dashboardRuleDevices);
+    }
+
+    @Override
+    public int cleanUp(long expTime) {
+        return repository.deleteByCreatedTimeLessThan(expTime);
+    }
+
+    private void batchInsert(List<DashboardRuleDevices> events) {
+        jdbcTemplate.batchUpdate(BATCH_INSERT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                DashboardRuleDevices event = events.get(i);
+                ps.setObject(1, event.getId().getId());
+                ps.setLong(2, event.getCreatedTime());
+                ps.setString(3, event.getType());
+                ps.setString(4, event.getValue());
+                ps.setObject(5, event.getDeviceId().getId());
+                ps.setString(6, event.getRuleName());
+                if (event.getRuleChainId() != null) {
+                    ps.setObject(7, event.getRuleChainId().getId());
+                } else {
+                    ps.setNull(7, Types.OTHER);
+                }
+                ps.setObject(8, event.getTenantId().getId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return events.size();
+            }
+        });
+    }
+
 }
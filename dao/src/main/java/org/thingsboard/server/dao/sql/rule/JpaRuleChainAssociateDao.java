@@ -28,7 +28,10 @@ import org.thingsboard.server.dao.rule.RuleChainAssociateDao;
 import org.thingsboard.server.dao.sql.JpaAbstractDao;
 
 import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -100,4 +103,13 @@ public class JpaRuleChainAssociateDao extends JpaAbstractDao<RuleChainAssociateE
         return repository.findRecipientsByRoi(abilityId);
     }
 
+    @Override
+    public Map<UUID, List<String>> findRecipientsByRoiIn(List<UUID> abilityIds) {
+        Map<UUID, List<String>> result = new HashMap<>();
+        for (Object[] row : repository.findRecipientsByRoiIn(abilityIds)) {
+            result.computeIfAbsent((UUID) row[0], id -> new ArrayList<>()).add(row[1].toString());
+        }
+        return result;
+    }
+
 }
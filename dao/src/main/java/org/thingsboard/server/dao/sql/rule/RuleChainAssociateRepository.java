@@ -106,4 +106,16 @@ public interface RuleChainAssociateRepository extends JpaRepository<RuleChainAss
             + "WHERE rc.associateId = :abilityId and rc.type = 'ROI_RULE_CHAIN_OWN'")
     List<String> findRecipientsByRoi(@Param("abilityId") UUID abilityId);
 
+    /**
+     * 批量查找接收方
+     *
+     * @param abilityIds 能力ID
+     * @return [能力ID, 接收方ID]
+     */
+    @Query("SELECT DISTINCT rc.associateId, rca.associateId "
+            + "FROM RuleChainAssociateEntity rc "
+            + "INNER JOIN RuleChainAssociateEntity rca on rc.ruleId = rca.ruleId and rca.type = 'RECIPIENTS_RULE_CHAIN_OWN' "
+            + "WHERE rc.associateId IN :abilityIds and rc.type = 'ROI_RULE_CHAIN_OWN'")
+    List<Object[]> findRecipientsByRoiIn(@Param("abilityIds") List<UUID> abilityIds);
+
 }
\ No newline at end of file
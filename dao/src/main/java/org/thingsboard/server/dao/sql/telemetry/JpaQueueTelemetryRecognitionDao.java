@@ -19,10 +19,14 @@ package org.thingsboard.server.dao.sql.telemetry;
 
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.MoreExecutors;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.TransactionStatus;
@@ -38,10 +42,13 @@ import org.thingsboard.server.dao.util.SqlDao;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
@@ -76,10 +83,20 @@ public class JpaQueueTelemetryRecognitionDao extends JpaAbstractDaoListeningExec
     @Value("${sql.batch_sort:false}")
     private boolean batchSortEnabled;
 
+    /**
+     * batch: 逐行 INSERT ... ON CONFLICT 批量执行; copy: 二进制COPY到临时表后一次合并
+     */
+    @Value("${sql.tr.write_mode:batch}")
+    private String writeMode;
+
     private TbSqlBlockingQueueWrapper<TelemetryRecognition> queue;
+    private boolean copyMode;
+    private Timer batchTimer;
 
     @PostConstruct
     private void init() {
+        copyMode = WRITE_MODE_COPY.equalsIgnoreCase(writeMode);
+        batchTimer = statsFactory.createTimer("telemetryRecognition.batch", "mode", copyMode ? WRITE_MODE_COPY : WRITE_MODE_BATCH);
         TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
                 .logName("TelemetryRecognition")
                 .batchSize(batchSize)
@@ -112,10 +129,13 @@ public class JpaQueueTelemetryRecognitionDao extends JpaAbstractDaoListeningExec
         Futures.transform(queue.add(entity), v -> null, MoreExecutors.directExecutor());
     }
 
+    private static final String WRITE_MODE_BATCH = "batch";
+    private static final String WRITE_MODE_COPY = "copy";
+
     private static final String BATCH_INSERT = "INSERT INTO telemetry_recognition(id, created_time, updated_time, device_id, ts, ability, ability_type, value, extra_info)"
-            + " VALUES (?::uuid,?,?,?::uuid,?,?,?,?,?) "
+            + " VALUES (?,?,?,?,?,?,?,?,?) "
             + " ON CONFLICT (device_id, ts, ability) "
-            + " DO UPDATE SET created_time = ?, updated_time = ?, ability_type = ?, value = ?, extra_info = ?, id = ?::uuid;";
+            + " DO UPDATE SET created_time = ?, updated_time = ?, ability_type = ?, value = ?, extra_info = ?, id = ?;";
 
     @Autowired
     protected JdbcTemplate jdbcTemplate;
@@ -123,7 +143,53 @@ public class JpaQueueTelemetryRecognitionDao extends JpaAbstractDaoListeningExec
     @Autowired
     private TransactionTemplate transactionTemplate;
 
+    private static final String CREATE_STAGE_TABLE = "CREATE TEMP TABLE IF NOT EXISTS telemetry_recognition_stage"
+            + " (id uuid, created_time bigint, updated_time bigint, device_id uuid, ts bigint,"
+            + " ability varchar(64), ability_type bigint, value varchar, extra_info varchar) ON COMMIT DELETE ROWS;";
+
+    private static final String COPY_STAGE = "COPY telemetry_recognition_stage (" + TelemetryRecognitionCopyEncoder.COLUMNS + ")"
+            + " FROM STDIN (FORMAT BINARY)";
+
+    // 同一批次内相同 (device_id, ts, ability) 只保留最后更新的一条, 否则 ON CONFLICT 无法在一条语句内重复更新同一行
+    private static final String MERGE_STAGE = "INSERT INTO telemetry_recognition(" + TelemetryRecognitionCopyEncoder.COLUMNS + ")"
+            + " SELECT DISTINCT ON (device_id, ts, ability) " + TelemetryRecognitionCopyEncoder.COLUMNS
+            + " FROM telemetry_recognition_stage ORDER BY device_id, ts, ability, updated_time DESC"
+            + " ON CONFLICT (device_id, ts, ability)"
+            + " DO UPDATE SET created_time = EXCLUDED.created_time, updated_time = EXCLUDED.updated_time,"
+            + " ability_type = EXCLUDED.ability_type, value = EXCLUDED.value, extra_info = EXCLUDED.extra_info, id = EXCLUDED.id;";
+
     public void saveOrUpdate(List<TelemetryRecognition> entities) {
+        long startTs = System.nanoTime();
+        try {
+            if (copyMode) {
+                copyAndMerge(entities);
+            } else {
+                batchInsert(entities);
+            }
+        } finally {
+            batchTimer.record(System.nanoTime() - startTs, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void copyAndMerge(List<TelemetryRecognition> entities) {
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                jdbcTemplate.execute(CREATE_STAGE_TABLE);
+                jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                    try {
+                        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                        return copyManager.copyIn(COPY_STAGE, new ByteArrayInputStream(TelemetryRecognitionCopyEncoder.encode(entities)));
+                    } catch (IOException e) {
+                        throw new SQLException("Failed to copy telemetry recognition batch", e);
+                    }
+                });
+                jdbcTemplate.update(MERGE_STAGE);
+            }
+        });
+    }
+
+    private void batchInsert(List<TelemetryRecognition> entities) {
         transactionTemplate.execute(new TransactionCallbackWithoutResult() {
             @Override
             protected void doInTransactionWithoutResult(TransactionStatus status) {
@@ -131,11 +197,11 @@ public class JpaQueueTelemetryRecognitionDao extends JpaAbstractDaoListeningExec
                     @Override
                     public void setValues(PreparedStatement ps, int i) throws SQLException {
                         TelemetryRecognition recognition = entities.get(i);
-                        ps.setString(1, recognition.getId().toString());
+                        ps.setObject(1, recognition.getId());
 
                         ps.setLong(2, recognition.getCreatedTime());
                         ps.setLong(3, recognition.getUpdatedTime());
-                        ps.setString(4, recognition.getDeviceId().toString());
+                        ps.setObject(4, recognition.getDeviceId());
                         ps.setLong(5, recognition.getTs());
                         ps.setString(6, recognition.getAbility());
                         ps.setShort(7, recognition.getAbilityType());
@@ -148,7 +214,7 @@ public class JpaQueueTelemetryRecognitionDao extends JpaAbstractDaoListeningExec
                         ps.setShort(12, recognition.getAbilityType());
                         ps.setString(13, recognition.getValue());
                         ps.setString(14, recognition.getExtraInfo());
-                        ps.setString(15, recognition.getId().toString());
+                        ps.setObject(15, recognition.getId());
                     }
 
                     @Override
@@ -20,15 +20,18 @@ package org.thingsboard.server.dao.sql.telemetry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.page.PageLink;
+import org.thingsboard.server.common.data.recognition.DeviceImageCount;
 import org.thingsboard.server.common.data.recognition.TelemetryRecognition;
 import org.thingsboard.server.dao.DaoUtil;
 import org.thingsboard.server.dao.model.sql.TelemetryRecognitionEntity;
 import org.thingsboard.server.dao.sql.JpaAbstractDao;
 import org.thingsboard.server.dao.timeseries.TelemetryRecognitionDao;
 
+import java.sql.PreparedStatement;
 import java.util.List;
 import java.util.UUID;
 
@@ -39,9 +42,20 @@ import java.util.UUID;
 @Component
 public class JpaTelemetryRecognitionDao extends JpaAbstractDao<TelemetryRecognitionEntity, TelemetryRecognition> implements TelemetryRecognitionDao {
 
+    private static final String DELETE_IMAGES = "DELETE FROM telemetry_recognition tr"
+            + " USING unnest(?::uuid[], ?::bigint[]) AS img(device_id, ts)"
+            + " WHERE tr.ts >= ? AND tr.ts <= ? AND tr.device_id = img.device_id AND tr.ts = img.ts";
+
+    private static final String COUNT_IMAGES_BY_DEVICE = "SELECT d.tenant_id, tr.device_id, count(*) FROM telemetry_recognition tr"
+            + " JOIN device d ON d.id = tr.device_id"
+            + " WHERE tr.ability = 'image' AND tr.ability_type = 2 GROUP BY d.tenant_id, tr.device_id";
+
     @Autowired
     private TelemetryRecognitionRepository telemetryRecognitionRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Override
     public List<TelemetryRecognitionEntity> findOldTelemetryRecognition(long startTs, int limit) {
         return telemetryRecognitionRepository.findOldTelemetryRecognition(startTs, limit);
@@ -52,6 +66,11 @@ public class JpaTelemetryRecognitionDao extends JpaAbstractDao<TelemetryRecognit
         return telemetryRecognitionRepository.findOldTelemetryRecognitionByTs(startTs, endTs, limit);
     }
 
+    @Override
+    public List<TelemetryRecognitionEntity> findOldTelemetryRecognitionByDevices(List<UUID> deviceIds, long startTs, int limit) {
+        return telemetryRecognitionRepository.findOldTelemetryRecognitionByDevices(deviceIds, startTs, limit);
+    }
+
     @Override
     public Long findMinTs() {
         return telemetryRecognitionRepository.findMinTs();
@@ -61,6 +80,21 @@ public class JpaTelemetryRecognitionDao extends JpaAbstractDao<TelemetryRecognit
         telemetryRecognitionRepository.deleteByTsAndDeviceId(ts, deviceId);
     }
 
+    @Override
+    public int deleteImages(long startTs, long endTs, List<UUID> deviceIds, List<Long> tsList) {
+        if (deviceIds.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(DELETE_IMAGES);
+            ps.setArray(1, connection.createArrayOf("uuid", deviceIds.toArray()));
+            ps.setArray(2, connection.createArrayOf("bigint", tsList.toArray()));
+            ps.setLong(3, startTs);
+            ps.setLong(4, endTs);
+            return ps;
+        });
+    }
+
     @Override
     public PageData<TelemetryRecognition> findTelemetryRecognition(UUID deviceId, String ability, long startTs, long endTs, PageLink pageLink) {
         return DaoUtil.toPageData(
@@ -69,8 +103,9 @@ public class JpaTelemetryRecognitionDao extends JpaAbstractDao<TelemetryRecognit
     }
 
     @Override
-    public int countImageTotal() {
-        return telemetryRecognitionRepository.countImageTotal();
+    public List<DeviceImageCount> countImagesByDevice() {
+        return jdbcTemplate.query(COUNT_IMAGES_BY_DEVICE, (rs, rowNum) ->
+                new DeviceImageCount(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class), rs.getLong(3)));
     }
 
     @Override
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.thingsboard.server.dao.sql.telemetry;
+
+import org.thingsboard.server.common.data.recognition.TelemetryRecognition;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 将感知数据编码为PostgreSQL二进制COPY格式, 列顺序与 {@link #COLUMNS} 一致.
+ */
+final class TelemetryRecognitionCopyEncoder {
+
+    static final String COLUMNS = "id, created_time, updated_time, device_id, ts, ability, ability_type, value, extra_info";
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final short FIELD_COUNT = 9;
+
+    private TelemetryRecognitionCopyEncoder() {
+    }
+
+    static byte[] encode(List<TelemetryRecognition> entities) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entities.size() * 256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(SIGNATURE);
+        // flags + header extension length
+        out.writeInt(0);
+        out.writeInt(0);
+        for (TelemetryRecognition recognition : entities) {
+            out.writeShort(FIELD_COUNT);
+            writeUuid(out, recognition.getId());
+            writeLong(out, recognition.getCreatedTime());
+            writeLong(out, recognition.getUpdatedTime());
+            writeUuid(out, recognition.getDeviceId());
+            writeLong(out, recognition.getTs());
+            writeString(out, recognition.getAbility());
+            // ability_type 列为 bigint
+            writeLong(out, recognition.getAbilityType());
+            writeString(out, recognition.getValue());
+            writeString(out, recognition.getExtraInfo());
+        }
+        out.writeShort(-1);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        if (uuid == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(16);
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static void writeLong(DataOutputStream out, long value) throws IOException {
+        out.writeInt(8);
+        out.writeLong(value);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+}
@@ -49,6 +49,12 @@ public interface TelemetryRecognitionRepository extends JpaRepository<TelemetryR
                                                                      @Param("endTs") long endTs,
                                                                      @Param("limitNum") int limitNum);
 
+    @Query(value = "select * from telemetry_recognition tr where tr.ability = 'image' and ability_type=2 " +
+            "and tr.device_id in (:deviceIds) and ts >= :startTs order by tr.ts asc limit :limitNum", nativeQuery = true)
+    List<TelemetryRecognitionEntity> findOldTelemetryRecognitionByDevices(@Param("deviceIds") List<UUID> deviceIds,
+                                                                          @Param("startTs") long startTs,
+                                                                          @Param("limitNum") int limitNum);
+
     @Query(value = "select min(ts) from telemetry_recognition", nativeQuery = true)
     Long findMinTs();
 
@@ -63,12 +69,4 @@ public interface TelemetryRecognitionRepository extends JpaRepository<TelemetryR
      */
     @Transactional
     void deleteByTsAndDeviceId(long ts, UUID deviceId);
-
-    /**
-     * 获取图片数据总数
-     *
-     * @return 图片数据总数
-     */
-    @Query(value = "select count(*) from telemetry_recognition tr where tr.ability = 'image' and ability_type = 2 ", nativeQuery = true)
-    int countImageTotal();
-}
\ No newline at end of file
+}
@@ -45,14 +45,14 @@ import java.util.stream.Collectors;
 @Slf4j
 public class AggregatePartitionsFunction implements com.google.common.util.concurrent.AsyncFunction<List<TbResultSet>, Optional<TsKvEntryAggWrapper>> {
 
-    private static final int LONG_CNT_POS = 0;
-    private static final int DOUBLE_CNT_POS = 1;
+    static final int LONG_CNT_POS = 0;
+    static final int DOUBLE_CNT_POS = 1;
     private static final int BOOL_CNT_POS = 2;
     private static final int STR_CNT_POS = 3;
     private static final int JSON_CNT_POS = 4;
-    private static final int MAX_TS_POS = 5;
-    private static final int LONG_POS = 6;
-    private static final int DOUBLE_POS = 7;
+    static final int MAX_TS_POS = 5;
+    static final int LONG_POS = 6;
+    static final int DOUBLE_POS = 7;
     private static final int BOOL_POS = 8;
     private static final int STR_POS = 9;
     private static final int JSON_POS = 10;
@@ -30,28 +30,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
-import org.springframework.util.StopWatch;
+import org.thingsboard.common.util.IngestionTrace;
 import org.thingsboard.common.util.JacksonUtil;
-import org.thingsboard.server.cache.ms.MsDeviceLastUpdateCache;
-import org.thingsboard.server.common.data.DataConstants;
-import org.thingsboard.server.common.data.Device;
 import org.thingsboard.server.common.data.DeviceAbility;
 import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.EntityView;
 import org.thingsboard.server.common.data.StringUtils;
 import org.thingsboard.server.common.data.TelemetryConstants;
-import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.id.DeviceProfileId;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.EntityIdFactory;
 import org.thingsboard.server.common.data.id.EntityViewId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.Aggregation;
-import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
 import org.thingsboard.server.common.data.kv.BaseDeleteTsKvQuery;
 import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.DeleteTsKvQuery;
-import org.thingsboard.server.common.data.kv.LongDataEntry;
 import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
@@ -61,13 +55,16 @@ import org.thingsboard.server.common.data.recognition.TelemetryExtData;
 import org.thingsboard.server.common.data.recognition.TelemetryRecognition;
 import org.thingsboard.server.common.data.recognition.TelemetryRecognitionThird;
 import org.thingsboard.server.common.data.util.CollectionsUtil;
-import org.thingsboard.server.common.enume.device.AbilityTypeEnum;
 import org.thingsboard.server.common.msg.TbMsg;
-import org.thingsboard.server.dao.attributes.AttributesDao;
+import org.thingsboard.server.dao.attributes.DeviceLastActivityWriter;
 import org.thingsboard.server.dao.device.DeviceAbilityService;
-import org.thingsboard.server.dao.device.DeviceService;
+import org.thingsboard.server.dao.device.DeviceSnapshot;
+import org.thingsboard.server.dao.device.DeviceSnapshotCache;
 import org.thingsboard.server.dao.entityview.EntityViewService;
 import org.thingsboard.server.dao.exception.IncorrectParameterException;
+import org.thingsboard.server.dao.image.ImageBlobService;
+import org.thingsboard.server.dao.image.ImageStorageLedger;
+import org.thingsboard.server.dao.image.ImageThumbnailService;
 import org.thingsboard.server.dao.service.Validator;
 import org.thingsboard.server.dao.sql.telemetry.JpaQueueTelemetryRecognitionDao;
 
@@ -82,6 +79,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.thingsboard.server.common.data.StringUtils.isBlank;
@@ -125,18 +123,25 @@ public class BaseTimeseriesService implements TimeseriesService {
     private JpaQueueTelemetryRecognitionDao jpaQueueTelemetryRecognitionDao;
 
     @Autowired
-    private AttributesDao attributesDao;
+    private DeviceAbilityService deviceAbilityService;
 
     @Autowired
-    private DeviceAbilityService deviceAbilityService;
+    private EntityViewService entityViewService;
+
     @Autowired
-    private DeviceService deviceService;
+    private DeviceSnapshotCache deviceSnapshotCache;
 
     @Autowired
-    private EntityViewService entityViewService;
+    private DeviceLastActivityWriter deviceLastActivityWriter;
+
+    @Autowired
+    private ImageBlobService imageBlobService;
+
+    @Autowired
+    private ImageStorageLedger imageStorageLedger;
 
     @Autowired
-    private MsDeviceLastUpdateCache deviceLastUpdateCache;
+    private ImageThumbnailService imageThumbnailService;
 
     @Override
     public String findTelemetryImage(String deviceId, long ts, String ability, String entityType, TenantId tenantId) throws ExecutionException, InterruptedException {
@@ -149,7 +154,15 @@ public class BaseTimeseriesService implements TimeseriesService {
         if (tsKvEntries.size() == 0) {
             return "";
         }
-        return tsKvEntries.get(0).getValueAsString();
+        return imageBlobService.findBase64(tenantId, tsKvEntries.get(0).getValueAsString()).get();
+    }
+
+    @Override
+    public ListenableFuture<Optional<String>> findTelemetryImageValue(TenantId tenantId, EntityId entityId, long ts, String key) {
+        ReadTsKvQuery query = new BaseReadTsKvQuery(key, ts, ts + 1, 0L, 1, Aggregation.NONE, "ASC");
+        return Futures.transform(findAll(tenantId, entityId, List.of(query)),
+                tsKvEntries -> tsKvEntries.isEmpty() ? Optional.empty() : Optional.ofNullable(tsKvEntries.get(0).getValueAsString()),
+                MoreExecutors.directExecutor());
     }
 
     private List<String> toKeysList(String keys) {
@@ -272,9 +285,7 @@ public class BaseTimeseriesService implements TimeseriesService {
             return;
         }
         // 保存结果返回
-        String data = msg.getData();
-        ObjectNode objectNode = (ObjectNode) JacksonUtil.toJsonNode(data);
-        boolean image = objectNode.has("image");
+        boolean image = msg.getDataJson().has("image");
         if (!image) {
             return;
         }
@@ -292,9 +303,10 @@ public class BaseTimeseriesService implements TimeseriesService {
 
         TelemetryExtData telemetryExtData = TelemetryExtData.builder().deviceInfo(dataMap).telemetryRecognitionThirds(thirds).build();
         JsonNode jsonNode = JacksonUtil.valueToTree(telemetryExtData);
+        ObjectNode objectNode = (ObjectNode) msg.copyDataJson();
         objectNode.set("telemetryExtData", jsonNode);
 
-        msg.setData(objectNode.toString());
+        msg.setDataJson(objectNode);
     }
 
     private ListenableFuture<Integer> doSave(TenantId tenantId, EntityId entityId, List<TsKvEntry> tsKvEntries, long ttl, boolean saveLatest) {
@@ -309,11 +321,12 @@ public class BaseTimeseriesService implements TimeseriesService {
         List<TelemetryRecognition> imageTelemetryRecognitionList = new ArrayList<>();
         // 遥测数据表只存储 DEVICE 实体到Cassandra,感知数据到pgsql
         if (entityId.getEntityType().equals(EntityType.DEVICE)) {
-            Device deviceById = deviceService.findDeviceById(tenantId, new DeviceId(entityId.getId()));
-            log.info("Reception Msg EntityId: {} , DeviceName = {}", entityId.getId(), deviceById.getName());
-
-            StopWatch stopWatch = new StopWatch();
-            stopWatch.start("save device telemetryData all");
+            DeviceSnapshot snapshot = deviceSnapshotCache.get(tenantId, entityId.getId());
+            if (snapshot == null) {
+                throw new IncorrectParameterException("Device with id [" + entityId.getId() + "] is not found");
+            }
+            boolean trace = IngestionTrace.isEnabled(tenantId.getId(), entityId.getId());
+            long startNs = trace ? System.nanoTime() : 0L;
 
             List<String> imageAbilityList = new ArrayList<>();
             List<String> strAbilityList = new ArrayList<>();
@@ -327,6 +340,13 @@ public class BaseTimeseriesService implements TimeseriesService {
                 if (entityId.getEntityType().equals(EntityType.ENTITY_VIEW)) {
                     throw new IncorrectParameterException("Telemetry data can't be stored for entity view. Read only");
                 }
+                if (TelemetryConstants.IMAGE.equals(tsKvEntry.getKey())) {
+                    // 生成预览缩略图
+                    imageThumbnailService.onImageSaved(tenantId, entityId.getId(), tsKvEntry);
+                    imageStorageLedger.onImageSaved(tenantId, entityId.getId(), tsKvEntry.getValueAsString());
+                    // 图片原始数据保存到图片存储,遥测表只保存引用
+                    tsKvEntry = imageBlobService.save(tenantId, tsKvEntry, futures);
+                }
                 if (saveLatest) {
                     // 保存最新遥测数据
                     futures.add(Futures.transform(
@@ -341,48 +361,34 @@ public class BaseTimeseriesService implements TimeseriesService {
                     GlobalSingletonParam.getInstance().addNum();
                     // 图片数据保存到postgresql
                     imageAbilityList.add(tsKvEntry.getKey());
-                    // 通知更新图片了
-                    deviceLastUpdateCache.put(entityId.getId().toString());
                 } else {
                     strAbilityList.add(tsKvEntry.getKey());
                     strAbilityMap.put(tsKvEntry.getKey(), tsKvEntry);
                 }
             }
 
-            // 这个设备的所有能力
-            List<DeviceAbility> deviceAbilityList = deviceAbilityService.findByDeviceId(entityId.getId());
-            List<DeviceAbility> imageDeviceAbilityList = new ArrayList<>();
-            List<DeviceAbility> strDeviceAbilityList = new ArrayList<>();
-            deviceAbilityList.forEach(deviceAbility -> {
-                short abilityType = deviceAbility.getAbilityType();
-                if (AbilityTypeEnum.IMAGE.eq(abilityType)) {
-                    imageDeviceAbilityList.add(deviceAbility);
-                } else {
-                    strDeviceAbilityList.add(deviceAbility);
-                }
-            });
             // 保存图片设备能力
-            imageTelemetryRecognitionList = savePictureAbility(entityId, imageAbilityList, ts, imageDeviceAbilityList);
+            imageTelemetryRecognitionList = savePictureAbility(entityId, imageAbilityList, ts, snapshot.getImageAbilities());
             // 保存字符串设备能力
-            saveStrAbility(entityId, strAbilityList, strAbilityMap, ts, strDeviceAbilityList);
+            saveStrAbility(entityId, strAbilityList, strAbilityMap, ts, snapshot.getStrAbilities());
             // 保存设备最后活跃时间
-            saveDeviceLastActivityTime(entityId, ts);
-            stopWatch.stop();
-            log.info("{} time consuming: {}", stopWatch.getLastTaskName(), stopWatch.getLastTaskTimeMillis());
+            deviceLastActivityWriter.onActivity(entityId.getId(), ts);
+            if (trace) {
+                IngestionTrace.trace("save", tenantId.getId(), entityId.getId(), "deviceName={} entries={} images={} timeMs={}",
+                        snapshot.getDevice().getName(), tsKvEntries.size(), imageAbilityList.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs));
+            }
         }
         return imageTelemetryRecognitionList;
     }
 
     private void saveStrAbility(EntityId entityId, List<String> strAbilityList, Map<String, TsKvEntry> strAbilityMap,
-                                long ts, List<DeviceAbility> deviceAbilityList) {
+                                long ts, Map<String, DeviceAbility> deviceAbilityMap) {
         if (CollectionsUtil.isEmpty(strAbilityList)) {
             log.debug("String type telemetry capability does not exist,entityId = {} ,ts = {}", entityId, ts);
             return;
         }
 
-        Map<String, DeviceAbility> deviceAbilityMap = deviceAbilityList.stream()
-                .collect(Collectors.toMap(DeviceAbility::getAbility, value -> value, (v1, v2) -> v1));
-
         List<DeviceAbility> newDeviceAbilities = new ArrayList<>();
         strAbilityList.forEach(ability -> {
             DeviceAbility deviceAbility = deviceAbilityMap.get(ability);
@@ -412,7 +418,9 @@ public class BaseTimeseriesService implements TimeseriesService {
             jpaQueueTelemetryRecognitionDao.saveAddQueue(telemetryRecognition);
         });
 
-        deviceAbilityService.saveAllSync(newDeviceAbilities);
+        if (!newDeviceAbilities.isEmpty()) {
+            deviceAbilityService.saveAllSync(newDeviceAbilities);
+        }
     }
 
     private List<TelemetryRecognition> savePictureAbility(EntityId entityId, List<String> imageAbilityList, long ts,
@@ -449,12 +457,6 @@ public class BaseTimeseriesService implements TimeseriesService {
         return imageTelemetryRecognitionList;
     }
 
-    private void saveDeviceLastActivityTime(EntityId entityId, long ts) {
-        LongDataEntry longDataEntry = new LongDataEntry("lastActivityTime", ts);
-        BaseAttributeKvEntry lastActivityTime = new BaseAttributeKvEntry(longDataEntry, System.currentTimeMillis());
-        attributesDao.save(null, entityId, DataConstants.SERVER_SCOPE, lastActivityTime);
-    }
-
     @Override
     public ListenableFuture<List<Void>> saveLatest(TenantId tenantId, EntityId entityId, List<TsKvEntry> tsKvEntries) {
         List<ListenableFuture<Void>> futures = Lists.newArrayListWithExpectedSize(tsKvEntries.size());
@@ -109,6 +109,23 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
     @Value("${cassandra.query.set_null_values_enabled}")
     private boolean setNullValuesEnabled;
 
+    @Value("${cassandra.query.write_coalescing.enabled:false}")
+    private boolean writeCoalescingEnabled;
+
+    @Value("${cassandra.query.write_coalescing.max_batch_size:20}")
+    private int writeCoalescingMaxBatchSize;
+
+    @Value("${cassandra.query.write_coalescing.max_delay_ms:10}")
+    private long writeCoalescingMaxDelayMs;
+
+    private CassandraTsWriteBatcher writeBatcher;
+
+    @Autowired(required = false)
+    private CassandraTsRollupDao rollupDao;
+
+    @Value("${cassandra.query.rollup.read_enabled:true}")
+    private boolean rollupReadEnabled;
+
     private PreparedStatement deleteBatchStmt;
     private NoSqlTsPartitionDate tsFormat;
 
@@ -141,10 +158,16 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
             log.warn("Incorrect configuration of partitioning {}", partitioning);
             throw new RuntimeException("Failed to parse partitioning property: " + partitioning + "!");
         }
+        if (writeCoalescingEnabled) {
+            writeBatcher = new CassandraTsWriteBatcher(this::executeAsyncWrite, writeCoalescingMaxBatchSize, writeCoalescingMaxDelayMs);
+        }
     }
 
     @PreDestroy
     public void stop() {
+        if (writeBatcher != null) {
+            writeBatcher.stop();
+        }
         super.stopExecutor();
     }
 
@@ -252,7 +275,10 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
             stmtBuilder.setInt(6, (int) ttl);
         }
         BoundStatement stmt = stmtBuilder.build();
-        futures.add(getFuture(executeAsyncWrite(tenantId, stmt), rs -> null));
+        futures.add(executeTsWrite(tenantId, entityId, tsKvEntry, partition, getColumnName(type), stmt));
+        if (rollupDao != null) {
+            rollupDao.onSave(tenantId, entityId, tsKvEntry);
+        }
         return Futures.transform(Futures.allAsList(futures), result -> dataPointDays, MoreExecutors.directExecutor());
     }
 
@@ -321,12 +347,19 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
             long endPeriod = Math.max(query.getStartTs() + 1, query.getEndTs());
             long step = Math.max(query.getInterval(), MIN_AGGREGATION_STEP_MS);
             List<ListenableFuture<Optional<TsKvEntryAggWrapper>>> futures = new ArrayList<>();
+            ListenableFuture<Long> coveredSinceFuture = rollupDao != null && rollupReadEnabled
+                    ? rollupDao.getCoveredSince(tenantId, entityId, query.getKey()) : null;
             while (startPeriod < endPeriod) {
                 long startTs = startPeriod;
                 long endTs = Math.min(startPeriod + step, endPeriod);
                 long ts = endTs - startTs;
                 ReadTsKvQuery subQuery = new BaseReadTsKvQuery(query.getKey(), startTs, endTs, ts, 1, query.getAggregation(), query.getOrder());
-                futures.add(findAndAggregateAsync(tenantId, entityId, subQuery, toPartitionTs(startTs), toPartitionTs(endTs)));
+                if (coveredSinceFuture != null) {
+                    futures.add(Futures.transformAsync(coveredSinceFuture,
+                            coveredSince -> findAndAggregateWithRollupAsync(tenantId, entityId, subQuery, coveredSince), readResultsProcessingExecutor));
+                } else {
+                    futures.add(findAndAggregateAsync(tenantId, entityId, subQuery, toPartitionTs(startTs), toPartitionTs(endTs)));
+                }
                 startPeriod = endTs;
             }
             ListenableFuture<List<Optional<TsKvEntryAggWrapper>>> future = Futures.allAsList(futures);
@@ -456,6 +489,48 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
         return Futures.transformAsync(aggregationChunks, new AggregatePartitionsFunction(aggregation, key, ts, readResultsProcessingExecutor), readResultsProcessingExecutor);
     }
 
+    /**
+     * 区间中已被预聚合覆盖的对齐部分读取预聚合, 边缘部分读取 ts_kv_cf 的分区聚合结果, 合并后计算最终值.
+     * 区间不在覆盖范围内或预聚合中没有数值数据(如字符串 key)时按原方式聚合原始数据
+     */
+    private ListenableFuture<Optional<TsKvEntryAggWrapper>> findAndAggregateWithRollupAsync(TenantId tenantId, EntityId entityId, ReadTsKvQuery query, long coveredSince) {
+        final long startTs = query.getStartTs();
+        final long endTs = query.getEndTs();
+        List<TsRollupPlan.Segment> segments = TsRollupPlan.plan(startTs, endTs, coveredSince, rollupDao.getSafeEndTs(System.currentTimeMillis()));
+        if (!TsRollupPlan.hasRollup(segments)) {
+            return findAndAggregateAsync(tenantId, entityId, query, toPartitionTs(startTs), toPartitionTs(endTs));
+        }
+        final Aggregation aggregation = query.getAggregation();
+        final String key = query.getKey();
+        List<ListenableFuture<TsRollupAggregate>> futures = new ArrayList<>(segments.size());
+        for (TsRollupPlan.Segment segment : segments) {
+            if (segment.getGranularity() != null) {
+                futures.add(rollupDao.fetch(tenantId, entityId, key, segment));
+            } else {
+                ListenableFuture<List<Long>> partitionsListFuture = getPartitionsFuture(tenantId, query, entityId,
+                        toPartitionTs(segment.getStartTs()), toPartitionTs(segment.getEndTs()));
+                ListenableFuture<List<TbResultSet>> aggregationChunks = Futures.transformAsync(partitionsListFuture,
+                        getFetchChunksAsyncFunction(tenantId, entityId, key, aggregation, segment.getStartTs(), segment.getEndTs()), readResultsProcessingExecutor);
+                futures.add(Futures.transformAsync(aggregationChunks, rsList -> Futures.transform(
+                        Futures.allAsList(rsList.stream().map(rs -> rs.allRows(readResultsProcessingExecutor)).collect(Collectors.toList())),
+                        rowsList -> {
+                            TsRollupAggregate result = new TsRollupAggregate();
+                            rowsList.forEach(rows -> rows.forEach(row -> result.merge(TsRollupAggregate.fromAggregateRow(row, aggregation))));
+                            return result;
+                        }, readResultsProcessingExecutor), readResultsProcessingExecutor));
+            }
+        }
+        final long ts = startTs + (endTs - startTs) / 2;
+        return Futures.transformAsync(Futures.allAsList(futures), aggregates -> {
+            TsRollupAggregate result = new TsRollupAggregate();
+            aggregates.forEach(result::merge);
+            if (result.isEmpty()) {
+                return findAndAggregateAsync(tenantId, entityId, query, toPartitionTs(startTs), toPartitionTs(endTs));
+            }
+            return Futures.immediateFuture(result.toResult(aggregation, key, ts));
+        }, readResultsProcessingExecutor);
+    }
+
     private AsyncFunction<TbResultSet, List<Long>> getPartitionsArrayFunction() {
         return rs ->
                 Futures.transform(rs.allRows(readResultsProcessingExecutor), rows ->
@@ -576,6 +651,18 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
             stmtBuilder.setInt(6, (int) ttl);
         }
         BoundStatement stmt = stmtBuilder.build();
+        return executeTsWrite(tenantId, entityId, tsKvEntry, partition, getColumnName(type), stmt);
+    }
+
+    /**
+     * 开启写入合并时按分区合并为 UNLOGGED batch, 否则逐条写入
+     */
+    private ListenableFuture<Void> executeTsWrite(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry, long partition, String column, BoundStatement stmt) {
+        if (writeBatcher != null) {
+            CassandraTsWriteBatcher.PartitionKey partitionKey =
+                    new CassandraTsWriteBatcher.PartitionKey(entityId.getEntityType().name(), entityId.getId(), tsKvEntry.getKey(), partition);
+            return writeBatcher.add(tenantId, partitionKey, tsKvEntry.getTs(), column, stmt);
+        }
         return getFuture(executeAsyncWrite(tenantId, stmt), rs -> null);
     }
 
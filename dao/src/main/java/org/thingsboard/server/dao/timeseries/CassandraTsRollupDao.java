@@ -0,0 +1,663 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.datastax.oss.driver.api.core.cql.BoundStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.DataType;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.model.ModelConstants;
+import org.thingsboard.server.dao.nosql.CassandraAbstractAsyncDao;
+import org.thingsboard.server.dao.nosql.TbResultSet;
+import org.thingsboard.server.dao.util.NoSqlTsDao;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 时序数据的分钟/小时/天预聚合.
+ * <p>
+ * 写入时在内存中累加部分聚合, 桶结束或存活超过 flush_interval_ms 后写入 {@link ModelConstants#TS_KV_ROLLUP_CF},
+ * 每次落库都是新行(writer_id 不同), 查询时合并同一桶的所有行, 因此多节点同时写入无需读改写.
+ * {@link ModelConstants#TS_KV_ROLLUP_COVERAGE_CF} 记录每个 (实体, key) 预聚合覆盖的起始时间, 查询只对覆盖范围内的区间使用预聚合.
+ * 覆盖起点取 max(首个数据的 ts, 本次启用预聚合的时间), 并带上本次运行的 run_id; 每次启用(进程重启)后首次写入该 key 时
+ * 覆盖起点被重新登记, 停用期间未聚合的数据不会被之前运行登记的覆盖起点包含.
+ * 更早的历史数据可通过 {@link #backfill} 从 ts_kv_cf 回填.
+ * <p>
+ * 同一 ts 的重复写入只在未落库的部分聚合内去重; 部分聚合落库后再次写入同一 ts, MIN/MAX 不受影响, COUNT/SUM/AVG 会重复计入.
+ */
+@Component
+@Slf4j
+@NoSqlTsDao
+@ConditionalOnExpression("${cassandra.query.rollup.enabled:false}")
+public class CassandraTsRollupDao extends CassandraAbstractAsyncDao {
+
+    /**
+     * 回填使用固定的 writer_id, 中断后重跑会覆盖而不是重复累加
+     */
+    private static final UUID BACKFILL_WRITER_ID = Uuids.startOf(0);
+
+    @Value("${cassandra.query.rollup.ttl:0}")
+    private int ttl;
+
+    @Value("${cassandra.query.rollup.sweep_interval_ms:5000}")
+    private long sweepIntervalMs;
+
+    @Value("${cassandra.query.rollup.flush_interval_ms:300000}")
+    private long flushIntervalMs;
+
+    @Value("${cassandra.query.rollup.coverage_cache_ttl_ms:60000}")
+    private long coverageCacheTtlMs;
+
+    @Value("${cassandra.query.rollup.coverage_cache_size:100000}")
+    private long coverageCacheSize;
+
+    @Value("${cassandra.query.rollup.backfill_fetch_size:1000}")
+    private int backfillFetchSize;
+
+    @Value("${cassandra.query.ts_key_value_partitioning}")
+    private String partitioning;
+
+    private TsRollupAccumulator accumulator;
+    private ScheduledExecutorService flushExecutor;
+    private Cache<CoverageKey, Long> coverageCache;
+    private Cache<CoverageKey, Boolean> observedKeys;
+    private final ConcurrentMap<CoverageKey, PendingCoverage> pendingCoverage = new ConcurrentHashMap<>();
+    private NoSqlTsPartitionDate tsFormat;
+    private long runStartTs;
+    private UUID runId;
+
+    private PreparedStatement insertStmt;
+    private PreparedStatement fetchStmt;
+    private PreparedStatement insertCoverageStmt;
+    private PreparedStatement extendCoverageStmt;
+    private PreparedStatement fetchCoverageStmt;
+    private PreparedStatement deleteRangeStmt;
+    private PreparedStatement fetchWritersStmt;
+    private PreparedStatement deleteWriterStmt;
+    private PreparedStatement fetchRawStmt;
+    private PreparedStatement fetchRawPartitionsStmt;
+
+    @PostConstruct
+    public void init() {
+        super.startExecutor();
+        runStartTs = System.currentTimeMillis();
+        runId = Uuids.timeBased();
+        tsFormat = NoSqlTsPartitionDate.parse(partitioning)
+                .orElseThrow(() -> new RuntimeException("Failed to parse partitioning property: " + partitioning + "!"));
+        accumulator = new TsRollupAccumulator(flushIntervalMs, sweepIntervalMs);
+        coverageCache = Caffeine.newBuilder().maximumSize(coverageCacheSize).expireAfterWrite(coverageCacheTtlMs, TimeUnit.MILLISECONDS).build();
+        observedKeys = Caffeine.newBuilder().maximumSize(coverageCacheSize).build();
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("ts-rollup-flush"));
+        flushExecutor.scheduleWithFixedDelay(() -> flush(false), sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+        }
+        try {
+            Futures.allAsList(flush(true)).get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Failed to flush pending rollups on shutdown", e);
+        }
+        super.stopExecutor();
+    }
+
+    public void onSave(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry) {
+        String entityType = entityId.getEntityType().name();
+        if (!accumulator.add(tenantId, entityType, entityId.getId(), tsKvEntry.getKey(), tsKvEntry.getTs(), tsKvEntry, System.currentTimeMillis())) {
+            return;
+        }
+        CoverageKey coverageKey = new CoverageKey(entityType, entityId.getId(), tsKvEntry.getKey());
+        if (observedKeys.getIfPresent(coverageKey) == null) {
+            observedKeys.put(coverageKey, Boolean.TRUE);
+            // 本次运行之前的数据未经过累加器, 覆盖起点不早于启用时间
+            pendingCoverage.merge(coverageKey, new PendingCoverage(tenantId, Math.max(tsKvEntry.getTs(), runStartTs)),
+                    (a, b) -> a.getSinceTs() <= b.getSinceTs() ? a : b);
+        }
+    }
+
+    /**
+     * @return 预聚合覆盖的起始时间, 没有覆盖时为 {@link Long#MAX_VALUE}
+     */
+    public ListenableFuture<Long> getCoveredSince(TenantId tenantId, EntityId entityId, String key) {
+        CoverageKey coverageKey = new CoverageKey(entityId.getEntityType().name(), entityId.getId(), key);
+        Long cached = coverageCache.getIfPresent(coverageKey);
+        if (cached != null) {
+            return Futures.immediateFuture(cached);
+        }
+        return Futures.transform(fetchCoverage(tenantId, coverageKey), coverage -> {
+            long since = coverage != null ? coverage.getSinceTs() : Long.MAX_VALUE;
+            coverageCache.put(coverageKey, since);
+            return since;
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * 在该时间之前结束的桶都已由各节点落库
+     */
+    public long getSafeEndTs(long now) {
+        return now - 2 * sweepIntervalMs;
+    }
+
+    ListenableFuture<TsRollupAggregate> fetch(TenantId tenantId, EntityId entityId, String key, TsRollupPlan.Segment segment) {
+        RollupGranularity granularity = segment.getGranularity();
+        long lastPartition = granularity.toPartition(segment.getEndTs() - 1);
+        List<ListenableFuture<List<Row>>> futures = new ArrayList<>();
+        for (long partition = granularity.toPartition(segment.getStartTs()); partition <= lastPartition; partition = granularity.nextPartition(partition)) {
+            BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getFetchStmt().bind());
+            stmtBuilder.setString(0, entityId.getEntityType().name())
+                    .setUuid(1, entityId.getId())
+                    .setString(2, key)
+                    .setString(3, granularity.name())
+                    .setLong(4, partition)
+                    .setLong(5, segment.getStartTs())
+                    .setLong(6, segment.getEndTs());
+            futures.add(Futures.transformAsync(executeAsyncRead(tenantId, stmtBuilder.build()),
+                    rs -> rs.allRows(readResultsProcessingExecutor), readResultsProcessingExecutor));
+        }
+        return Futures.transform(Futures.allAsList(futures), rowsList -> {
+            TsRollupAggregate result = new TsRollupAggregate();
+            for (List<Row> rows : rowsList) {
+                for (Row row : rows) {
+                    result.merge(toAggregate(row));
+                }
+            }
+            return result;
+        }, readResultsProcessingExecutor);
+    }
+
+    /**
+     * 从 ts_kv_cf 回填 [startTs 所在天的 0 点, 当前覆盖起点) 的预聚合, 完成后把覆盖起点前移.
+     * 区间内已有的预聚合行(之前运行写入的)先删除, 避免与回填结果重复计入.
+     * 原始数据按 backfill_fetch_size 分页读取, 每跨过一天就把该天的桶落库, 内存中最多保留一天的桶.
+     * 覆盖起点只在回填期间未被重新登记时前移.
+     * 阻塞执行, 调用方应在后台线程中运行; 覆盖起点已早于 startTs 时不做任何事.
+     *
+     * @return 回填的数值型数据点数
+     */
+    public long backfill(TenantId tenantId, EntityId entityId, String key, long startTs) throws InterruptedException, ExecutionException {
+        CoverageKey coverageKey = new CoverageKey(entityId.getEntityType().name(), entityId.getId(), key);
+        Futures.successfulAsList(flush(true)).get();
+        Coverage coverage = fetchCoverage(tenantId, coverageKey).get();
+        long endTs = coverage == null ? System.currentTimeMillis() : coverage.getSinceTs();
+        long alignedStart = RollupGranularity.DAY.toBucketTs(startTs);
+        if (alignedStart >= endTs) {
+            return 0;
+        }
+        if (coverage == null) {
+            // 尚无实时预聚合: 先登记覆盖起点, 之后实时写入的数据不会与回填区间重叠
+            observedKeys.put(coverageKey, Boolean.TRUE);
+            coverage = new Coverage(endTs, runId);
+            saveCoverage(tenantId, coverageKey, coverage).get();
+        }
+        deleteStaleRollups(tenantId, coverageKey, alignedStart, endTs);
+        Map<TsRollupAccumulator.BucketKey, TsRollupAggregate> buckets = new HashMap<>();
+        long currentDay = alignedStart;
+        long points = 0;
+        for (long partition : fetchRawPartitions(tenantId, coverageKey, alignedStart, endTs)) {
+            BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getFetchRawStmt().bind());
+            stmtBuilder.setString(0, coverageKey.getEntityType())
+                    .setUuid(1, coverageKey.getEntityId())
+                    .setString(2, key)
+                    .setLong(3, partition)
+                    .setLong(4, alignedStart)
+                    .setLong(5, endTs)
+                    .setPageSize(backfillFetchSize);
+            Statement<?> stmt = stmtBuilder.build();
+            while (stmt != null) {
+                TbResultSet rs = executeAsyncRead(tenantId, stmt).get();
+                for (Row row : rs.currentPage()) {
+                    long ts = row.getLong(ModelConstants.TS_COLUMN);
+                    long day = RollupGranularity.DAY.toBucketTs(ts);
+                    if (day != currentDay) {
+                        saveBackfilled(tenantId, buckets);
+                        currentDay = day;
+                    }
+                    KvEntry entry = AbstractCassandraBaseTimeseriesDao.toKvEntry(row, key);
+                    if (entry == null || (entry.getDataType() != DataType.LONG && entry.getDataType() != DataType.DOUBLE)) {
+                        continue;
+                    }
+                    for (RollupGranularity granularity : RollupGranularity.values()) {
+                        TsRollupAccumulator.BucketKey bucketKey = new TsRollupAccumulator.BucketKey(coverageKey.getEntityType(),
+                                coverageKey.getEntityId(), key, granularity, granularity.toBucketTs(ts));
+                        buckets.computeIfAbsent(bucketKey, k -> new TsRollupAggregate()).add(ts, entry);
+                    }
+                    points++;
+                }
+                stmt = rs.hasMorePages() ? stmt.setPagingState(rs.getExecutionInfo().getPagingState()) : null;
+            }
+        }
+        saveBackfilled(tenantId, buckets);
+        coverageCache.invalidate(coverageKey);
+        if (!extendCoverage(tenantId, coverageKey, alignedStart, coverage.getRunId()).get()) {
+            log.warn("[{}][{}] Rollup coverage of key {} was restarted during backfill, keep the new coverage", coverageKey.getEntityType(),
+                    coverageKey.getEntityId(), key);
+            return points;
+        }
+        log.info("[{}][{}] Backfilled rollups for key {} from {} to {}, {} points", coverageKey.getEntityType(), coverageKey.getEntityId(),
+                key, alignedStart, endTs, points);
+        return points;
+    }
+
+    private void saveBackfilled(TenantId tenantId, Map<TsRollupAccumulator.BucketKey, TsRollupAggregate> buckets) throws InterruptedException, ExecutionException {
+        List<ListenableFuture<Void>> futures = new ArrayList<>(buckets.size());
+        buckets.forEach((bucketKey, aggregate) -> {
+            if (!aggregate.isEmpty()) {
+                futures.add(save(tenantId, bucketKey, BACKFILL_WRITER_ID, aggregate));
+            }
+        });
+        Futures.allAsList(futures).get();
+        buckets.clear();
+    }
+
+    private List<ListenableFuture<Void>> flush(boolean force) {
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        try {
+            List<TsRollupAccumulator.Drained> drained = accumulator.drain(System.currentTimeMillis(), force);
+            for (TsRollupAccumulator.Drained d : drained) {
+                futures.add(save(d.getTenantId(), d.getBucketKey(), Uuids.timeBased(), d.getAggregate()));
+            }
+            if (!drained.isEmpty()) {
+                log.trace("Flushed {} rollup buckets, {} pending", drained.size(), accumulator.size());
+            }
+            // 覆盖起点在对应的部分聚合写入之后登记
+            if (!pendingCoverage.isEmpty()) {
+                List<ListenableFuture<Void>> rowFutures = new ArrayList<>(futures);
+                for (CoverageKey coverageKey : pendingCoverage.keySet()) {
+                    PendingCoverage pending = pendingCoverage.remove(coverageKey);
+                    if (pending != null) {
+                        futures.add(Futures.transformAsync(Futures.successfulAsList(rowFutures),
+                                r -> restartCoverage(pending.getTenantId(), coverageKey, pending.getSinceTs()), MoreExecutors.directExecutor()));
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            log.warn("Failed to flush rollups", t);
+        }
+        futures.forEach(future -> Futures.addCallback(future, new FutureCallback<>() {
+            @Override
+            public void onSuccess(@Nullable Void result) {
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.warn("Failed to save rollup", t);
+            }
+        }, MoreExecutors.directExecutor()));
+        return futures;
+    }
+
+    private ListenableFuture<Void> save(TenantId tenantId, TsRollupAccumulator.BucketKey bucketKey, UUID writerId, TsRollupAggregate aggregate) {
+        RollupGranularity granularity = bucketKey.getGranularity();
+        BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getInsertStmt().bind());
+        stmtBuilder.setString(0, bucketKey.getEntityType())
+                .setUuid(1, bucketKey.getEntityId())
+                .setString(2, bucketKey.getKey())
+                .setString(3, granularity.name())
+                .setLong(4, granularity.toPartition(bucketKey.getBucketTs()))
+                .setLong(5, bucketKey.getBucketTs())
+                .setUuid(6, writerId)
+                .setLong(7, aggregate.longCnt)
+                .setLong(8, aggregate.longSum)
+                .setLong(9, aggregate.longMin)
+                .setLong(10, aggregate.longMax)
+                .setLong(11, aggregate.dblCnt)
+                .setDouble(12, aggregate.dblSum)
+                .setDouble(13, aggregate.dblMin)
+                .setDouble(14, aggregate.dblMax)
+                .setLong(15, aggregate.lastTs)
+                .setInt(16, ttl);
+        return getFuture(executeAsyncWrite(tenantId, stmtBuilder.build()), rs -> null);
+    }
+
+    /**
+     * 本次运行首次写入该 key 时重新登记覆盖起点(覆盖之前运行登记的值); 已由本次运行登记过时不变
+     */
+    private ListenableFuture<Void> restartCoverage(TenantId tenantId, CoverageKey coverageKey, long sinceTs) {
+        return Futures.transformAsync(fetchCoverage(tenantId, coverageKey), coverage -> {
+            if (coverage != null && runId.equals(coverage.getRunId())) {
+                return Futures.immediateFuture(null);
+            }
+            coverageCache.invalidate(coverageKey);
+            return saveCoverage(tenantId, coverageKey, new Coverage(sinceTs, runId));
+        }, MoreExecutors.directExecutor());
+    }
+
+    private ListenableFuture<Void> saveCoverage(TenantId tenantId, CoverageKey coverageKey, Coverage coverage) {
+        BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getInsertCoverageStmt().bind());
+        stmtBuilder.setString(0, coverageKey.getEntityType())
+                .setUuid(1, coverageKey.getEntityId())
+                .setString(2, coverageKey.getKey())
+                .setLong(3, coverage.getSinceTs())
+                .setUuid(4, coverage.getRunId());
+        return getFuture(executeAsyncWrite(tenantId, stmtBuilder.build()), rs -> null);
+    }
+
+    /**
+     * 轻量事务: 覆盖起点仍由 runId 登记时才前移到 sinceTs
+     */
+    private ListenableFuture<Boolean> extendCoverage(TenantId tenantId, CoverageKey coverageKey, long sinceTs, UUID runId) {
+        BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getExtendCoverageStmt().bind());
+        stmtBuilder.setLong(0, sinceTs)
+                .setString(1, coverageKey.getEntityType())
+                .setUuid(2, coverageKey.getEntityId())
+                .setString(3, coverageKey.getKey())
+                .setUuid(4, runId);
+        return getFuture(executeAsyncWrite(tenantId, stmtBuilder.build()), TbResultSet::wasApplied);
+    }
+
+    private ListenableFuture<Coverage> fetchCoverage(TenantId tenantId, CoverageKey coverageKey) {
+        BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getFetchCoverageStmt().bind());
+        stmtBuilder.setString(0, coverageKey.getEntityType())
+                .setUuid(1, coverageKey.getEntityId())
+                .setString(2, coverageKey.getKey());
+        return getFuture(executeAsyncRead(tenantId, stmtBuilder.build()), rs -> {
+            Row row = rs.one();
+            return row != null ? new Coverage(row.getLong(0), row.getUuid(1)) : null;
+        });
+    }
+
+    /**
+     * 删除回填区间 [startTs, endTs) 内已有的预聚合行: 完整落在区间内的桶整段删除;
+     * endTs 所在的桶只删除在 endTs 之前落库的行(writer_id 的时间早于 endTs), 保留覆盖起点之后写入的部分聚合
+     */
+    private void deleteStaleRollups(TenantId tenantId, CoverageKey coverageKey, long startTs, long endTs) throws InterruptedException, ExecutionException {
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            long fullEnd = granularity.toBucketTs(endTs);
+            if (startTs < fullEnd) {
+                long lastPartition = granularity.toPartition(fullEnd - 1);
+                for (long partition = granularity.toPartition(startTs); partition <= lastPartition; partition = granularity.nextPartition(partition)) {
+                    BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getDeleteRangeStmt().bind());
+                    bindRollupPartition(stmtBuilder, coverageKey, granularity, partition)
+                            .setLong(5, startTs)
+                            .setLong(6, fullEnd);
+                    futures.add(getFuture(executeAsyncWrite(tenantId, stmtBuilder.build()), rs -> null));
+                }
+            }
+            if (fullEnd < endTs && fullEnd >= startTs) {
+                BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getFetchWritersStmt().bind());
+                bindRollupPartition(stmtBuilder, coverageKey, granularity, granularity.toPartition(fullEnd))
+                        .setLong(5, fullEnd);
+                List<Row> rows = Futures.transformAsync(executeAsyncRead(tenantId, stmtBuilder.build()),
+                        rs -> rs.allRows(readResultsProcessingExecutor), readResultsProcessingExecutor).get();
+                for (Row row : rows) {
+                    UUID writerId = row.getUuid(0);
+                    if (writerId != null && writerId.version() == 1 && Uuids.unixTimestamp(writerId) < endTs) {
+                        BoundStatementBuilder deleteBuilder = new BoundStatementBuilder(getDeleteWriterStmt().bind());
+                        bindRollupPartition(deleteBuilder, coverageKey, granularity, granularity.toPartition(fullEnd))
+                                .setLong(5, fullEnd)
+                                .setUuid(6, writerId);
+                        futures.add(getFuture(executeAsyncWrite(tenantId, deleteBuilder.build()), rs -> null));
+                    }
+                }
+            }
+        }
+        Futures.allAsList(futures).get();
+    }
+
+    private static BoundStatementBuilder bindRollupPartition(BoundStatementBuilder stmtBuilder, CoverageKey coverageKey,
+                                                             RollupGranularity granularity, long partition) {
+        return stmtBuilder.setString(0, coverageKey.getEntityType())
+                .setUuid(1, coverageKey.getEntityId())
+                .setString(2, coverageKey.getKey())
+                .setString(3, granularity.name())
+                .setLong(4, partition);
+    }
+
+    private List<Long> fetchRawPartitions(TenantId tenantId, CoverageKey coverageKey, long startTs, long endTs) throws InterruptedException, ExecutionException {
+        if (tsFormat.getTruncateUnit().equals(ChronoUnit.FOREVER)) {
+            return List.of(0L);
+        }
+        BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getFetchRawPartitionsStmt().bind());
+        stmtBuilder.setString(0, coverageKey.getEntityType())
+                .setUuid(1, coverageKey.getEntityId())
+                .setString(2, coverageKey.getKey())
+                .setLong(3, toRawPartitionTs(startTs))
+                .setLong(4, toRawPartitionTs(endTs));
+        List<Row> rows = Futures.transformAsync(executeAsyncRead(tenantId, stmtBuilder.build()),
+                rs -> rs.allRows(readResultsProcessingExecutor), readResultsProcessingExecutor).get();
+        List<Long> partitions = new ArrayList<>(rows.size());
+        rows.forEach(row -> partitions.add(row.getLong(0)));
+        return partitions;
+    }
+
+    private long toRawPartitionTs(long ts) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(ts), ZoneOffset.UTC);
+        return tsFormat.truncatedTo(time).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static TsRollupAggregate toAggregate(Row row) {
+        TsRollupAggregate aggregate = new TsRollupAggregate();
+        aggregate.longCnt = row.getLong(0);
+        aggregate.longSum = row.getLong(1);
+        aggregate.longMin = row.getLong(2);
+        aggregate.longMax = row.getLong(3);
+        aggregate.dblCnt = row.getLong(4);
+        aggregate.dblSum = row.getDouble(5);
+        aggregate.dblMin = row.getDouble(6);
+        aggregate.dblMax = row.getDouble(7);
+        aggregate.lastTs = row.getLong(8);
+        return aggregate;
+    }
+
+    private PreparedStatement getInsertStmt() {
+        if (insertStmt == null) {
+            insertStmt = prepare(AbstractCassandraBaseTimeseriesDao.INSERT_INTO + ModelConstants.TS_KV_ROLLUP_CF +
+                    "(" + ModelConstants.ENTITY_TYPE_COLUMN +
+                    "," + ModelConstants.ENTITY_ID_COLUMN +
+                    "," + ModelConstants.KEY_COLUMN +
+                    "," + ModelConstants.ROLLUP_GRANULARITY_COLUMN +
+                    "," + ModelConstants.PARTITION_COLUMN +
+                    "," + ModelConstants.ROLLUP_BUCKET_TS_COLUMN +
+                    "," + ModelConstants.ROLLUP_WRITER_ID_COLUMN +
+                    "," + String.join(",", aggregateColumns()) + ")" +
+                    " VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) USING TTL ?");
+        }
+        return insertStmt;
+    }
+
+    private PreparedStatement getFetchStmt() {
+        if (fetchStmt == null) {
+            fetchStmt = prepare(AbstractCassandraBaseTimeseriesDao.SELECT_PREFIX + String.join(", ", aggregateColumns()) +
+                    " FROM " + ModelConstants.TS_KV_ROLLUP_CF +
+                    " WHERE " + ModelConstants.ENTITY_TYPE_COLUMN + " = ?" +
+                    " AND " + ModelConstants.ENTITY_ID_COLUMN + " = ?" +
+                    " AND " + ModelConstants.KEY_COLUMN + " = ?" +
+                    " AND " + ModelConstants.ROLLUP_GRANULARITY_COLUMN + " = ?" +
+                    " AND " + ModelConstants.PARTITION_COLUMN + " = ?" +
+                    " AND " + ModelConstants.ROLLUP_BUCKET_TS_COLUMN + " >= ?" +
+                    " AND " + ModelConstants.ROLLUP_BUCKET_TS_COLUMN + " < ?");
+        }
+        return fetchStmt;
+    }
+
+    private PreparedStatement getInsertCoverageStmt() {
+        if (insertCoverageStmt == null) {
+            insertCoverageStmt = prepare(AbstractCassandraBaseTimeseriesDao.INSERT_INTO + ModelConstants.TS_KV_ROLLUP_COVERAGE_CF +
+                    "(" + ModelConstants.ENTITY_TYPE_COLUMN +
+                    "," + ModelConstants.ENTITY_ID_COLUMN +
+                    "," + ModelConstants.KEY_COLUMN +
+                    "," + ModelConstants.ROLLUP_SINCE_TS_COLUMN +
+                    "," + ModelConstants.ROLLUP_RUN_ID_COLUMN + ")" +
+                    " VALUES(?, ?, ?, ?, ?)");
+        }
+        return insertCoverageStmt;
+    }
+
+    private PreparedStatement getExtendCoverageStmt() {
+        if (extendCoverageStmt == null) {
+            extendCoverageStmt = prepare("UPDATE " + ModelConstants.TS_KV_ROLLUP_COVERAGE_CF +
+                    " SET " + ModelConstants.ROLLUP_SINCE_TS_COLUMN + " = ?" +
+                    " WHERE " + ModelConstants.ENTITY_TYPE_COLUMN + " = ?" +
+                    " AND " + ModelConstants.ENTITY_ID_COLUMN + " = ?" +
+                    " AND " + ModelConstants.KEY_COLUMN + " = ?" +
+                    " IF " + ModelConstants.ROLLUP_RUN_ID_COLUMN + " = ?");
+        }
+        return extendCoverageStmt;
+    }
+
+    private PreparedStatement getFetchCoverageStmt() {
+        if (fetchCoverageStmt == null) {
+            fetchCoverageStmt = prepare(AbstractCassandraBaseTimeseriesDao.SELECT_PREFIX + ModelConstants.ROLLUP_SINCE_TS_COLUMN +
+                    "," + ModelConstants.ROLLUP_RUN_ID_COLUMN +
+                    " FROM " + ModelConstants.TS_KV_ROLLUP_COVERAGE_CF +
+                    " WHERE " + ModelConstants.ENTITY_TYPE_COLUMN + " = ?" +
+                    " AND " + ModelConstants.ENTITY_ID_COLUMN + " = ?" +
+                    " AND " + ModelConstants.KEY_COLUMN + " = ?");
+        }
+        return fetchCoverageStmt;
+    }
+
+    private PreparedStatement getDeleteRangeStmt() {
+        if (deleteRangeStmt == null) {
+            deleteRangeStmt = prepare("DELETE FROM " + ModelConstants.TS_KV_ROLLUP_CF +
+                    rollupPartitionWhere() +
+                    " AND " + ModelConstants.ROLLUP_BUCKET_TS_COLUMN + " >= ?" +
+                    " AND " + ModelConstants.ROLLUP_BUCKET_TS_COLUMN + " < ?");
+        }
+        return deleteRangeStmt;
+    }
+
+    private PreparedStatement getFetchWritersStmt() {
+        if (fetchWritersStmt == null) {
+            fetchWritersStmt = prepare(AbstractCassandraBaseTimeseriesDao.SELECT_PREFIX + ModelConstants.ROLLUP_WRITER_ID_COLUMN +
+                    " FROM " + ModelConstants.TS_KV_ROLLUP_CF +
+                    rollupPartitionWhere() +
+                    " AND " + ModelConstants.ROLLUP_BUCKET_TS_COLUMN + " = ?");
+        }
+        return fetchWritersStmt;
+    }
+
+    private PreparedStatement getDeleteWriterStmt() {
+        if (deleteWriterStmt == null) {
+            deleteWriterStmt = prepare("DELETE FROM " + ModelConstants.TS_KV_ROLLUP_CF +
+                    rollupPartitionWhere() +
+                    " AND " + ModelConstants.ROLLUP_BUCKET_TS_COLUMN + " = ?" +
+                    " AND " + ModelConstants.ROLLUP_WRITER_ID_COLUMN + " = ?");
+        }
+        return deleteWriterStmt;
+    }
+
+    private static String rollupPartitionWhere() {
+        return " WHERE " + ModelConstants.ENTITY_TYPE_COLUMN + " = ?" +
+                " AND " + ModelConstants.ENTITY_ID_COLUMN + " = ?" +
+                " AND " + ModelConstants.KEY_COLUMN + " = ?" +
+                " AND " + ModelConstants.ROLLUP_GRANULARITY_COLUMN + " = ?" +
+                " AND " + ModelConstants.PARTITION_COLUMN + " = ?";
+    }
+
+    private PreparedStatement getFetchRawStmt() {
+        if (fetchRawStmt == null) {
+            fetchRawStmt = prepare(AbstractCassandraBaseTimeseriesDao.SELECT_PREFIX + ModelConstants.TS_COLUMN +
+                    "," + ModelConstants.LONG_VALUE_COLUMN +
+                    "," + ModelConstants.DOUBLE_VALUE_COLUMN +
+                    "," + ModelConstants.STRING_VALUE_COLUMN +
+                    "," + ModelConstants.BOOLEAN_VALUE_COLUMN +
+                    "," + ModelConstants.JSON_VALUE_COLUMN +
+                    " FROM " + ModelConstants.TS_KV_CF +
+                    " WHERE " + ModelConstants.ENTITY_TYPE_COLUMN + " = ?" +
+                    " AND " + ModelConstants.ENTITY_ID_COLUMN + " = ?" +
+                    " AND " + ModelConstants.KEY_COLUMN + " = ?" +
+                    " AND " + ModelConstants.PARTITION_COLUMN + " = ?" +
+                    " AND " + ModelConstants.TS_COLUMN + " >= ?" +
+                    " AND " + ModelConstants.TS_COLUMN + " < ?");
+        }
+        return fetchRawStmt;
+    }
+
+    private PreparedStatement getFetchRawPartitionsStmt() {
+        if (fetchRawPartitionsStmt == null) {
+            fetchRawPartitionsStmt = prepare(AbstractCassandraBaseTimeseriesDao.SELECT_PREFIX + ModelConstants.PARTITION_COLUMN +
+                    " FROM " + ModelConstants.TS_KV_PARTITIONS_CF +
+                    " WHERE " + ModelConstants.ENTITY_TYPE_COLUMN + " = ?" +
+                    " AND " + ModelConstants.ENTITY_ID_COLUMN + " = ?" +
+                    " AND " + ModelConstants.KEY_COLUMN + " = ?" +
+                    " AND " + ModelConstants.PARTITION_COLUMN + " >= ?" +
+                    " AND " + ModelConstants.PARTITION_COLUMN + " <= ?");
+        }
+        return fetchRawPartitionsStmt;
+    }
+
+    private static String[] aggregateColumns() {
+        return new String[]{ModelConstants.ROLLUP_LONG_CNT_COLUMN, ModelConstants.ROLLUP_LONG_SUM_COLUMN,
+                ModelConstants.ROLLUP_LONG_MIN_COLUMN, ModelConstants.ROLLUP_LONG_MAX_COLUMN,
+                ModelConstants.ROLLUP_DBL_CNT_COLUMN, ModelConstants.ROLLUP_DBL_SUM_COLUMN,
+                ModelConstants.ROLLUP_DBL_MIN_COLUMN, ModelConstants.ROLLUP_DBL_MAX_COLUMN,
+                ModelConstants.ROLLUP_LAST_TS_COLUMN};
+    }
+
+    @Data
+    private static class CoverageKey {
+        private final String entityType;
+        private final UUID entityId;
+        private final String key;
+    }
+
+    @Data
+    private static class Coverage {
+        private final long sinceTs;
+        private final UUID runId;
+    }
+
+    @Data
+    private static class PendingCoverage {
+        private final TenantId tenantId;
+        private final long sinceTs;
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * 按 Cassandra 分区合并写入: 短时间窗口内写入同一分区 (entity_type, entity_id, key, partition) 的语句
+ * 合并为一个 UNLOGGED batch. 同一分区的 batch 只落在一组副本上, 驱动按首条语句的 routing key 做 token-aware 路由,
+ * 写入限流器按 batch 而不是按行计算并发.
+ * <p>
+ * batch 内所有语句共用一个写入时间戳, 写同一单元格 (ts, 列) 的语句无法再按时间戳决出先后 (值相同时 tombstone 优先),
+ * 因此同一 batch 内按单元格去重, 只保留最后一条.
+ */
+@Slf4j
+class CassandraTsWriteBatcher {
+
+    private final BiFunction<TenantId, Statement<?>, ? extends ListenableFuture<?>> executor;
+    private final int maxBatchSize;
+    private final ConcurrentMap<PartitionKey, Batch> batches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    CassandraTsWriteBatcher(BiFunction<TenantId, Statement<?>, ? extends ListenableFuture<?>> executor, int maxBatchSize, long maxDelayMs) {
+        this.executor = executor;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("cassandra-ts-write-batcher"));
+        this.scheduler.scheduleWithFixedDelay(this::flush, maxDelayMs, maxDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    ListenableFuture<Void> add(TenantId tenantId, PartitionKey key, long ts, String column, BatchableStatement<?> statement) {
+        SettableFuture<Void> future = SettableFuture.create();
+        Batch[] full = new Batch[1];
+        batches.compute(key, (k, batch) -> {
+            if (batch == null) {
+                batch = new Batch(tenantId);
+            }
+            batch.statements.put(new Cell(ts, column), statement);
+            batch.futures.add(future);
+            if (batch.statements.size() >= maxBatchSize) {
+                full[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+        if (full[0] != null) {
+            execute(full[0]);
+        }
+        return future;
+    }
+
+    void flush() {
+        try {
+            for (PartitionKey key : batches.keySet()) {
+                Batch batch = batches.remove(key);
+                if (batch != null) {
+                    execute(batch);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to flush cassandra write batches", e);
+        }
+    }
+
+    void stop() {
+        scheduler.shutdownNow();
+        flush();
+    }
+
+    int pendingPartitions() {
+        return batches.size();
+    }
+
+    private void execute(Batch batch) {
+        Statement<?> statement;
+        if (batch.statements.size() == 1) {
+            statement = batch.statements.values().iterator().next();
+        } else {
+            statement = BatchStatement.newInstance(DefaultBatchType.UNLOGGED, batch.statements.values());
+        }
+        ListenableFuture<?> result;
+        try {
+            result = executor.apply(batch.tenantId, statement);
+        } catch (Exception e) {
+            batch.futures.forEach(future -> future.setException(e));
+            return;
+        }
+        Futures.addCallback(result, new FutureCallback<Object>() {
+            @Override
+            public void onSuccess(Object rs) {
+                batch.futures.forEach(future -> future.set(null));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                batch.futures.forEach(future -> future.setException(t));
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    @Data
+    static class PartitionKey {
+        private final String entityType;
+        private final UUID entityId;
+        private final String key;
+        private final long partition;
+    }
+
+    @Data
+    private static class Cell {
+        private final long ts;
+        private final String column;
+    }
+
+    private static class Batch {
+        private final TenantId tenantId;
+        private final Map<Cell, BatchableStatement<?>> statements = new LinkedHashMap<>();
+        private final List<SettableFuture<Void>> futures = new ArrayList<>();
+
+        Batch(TenantId tenantId) {
+            this.tenantId = tenantId;
+        }
+    }
+
+}
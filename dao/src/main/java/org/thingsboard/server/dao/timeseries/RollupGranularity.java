@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预聚合粒度, 按粗到细排列. 每个粒度的行按固定宽度的分区存放, 保证单分区行数可控
+ */
+enum RollupGranularity {
+
+    DAY(TimeUnit.DAYS.toMillis(1), TimeUnit.DAYS.toMillis(365)),
+    HOUR(TimeUnit.HOURS.toMillis(1), TimeUnit.DAYS.toMillis(30)),
+    MINUTE(TimeUnit.MINUTES.toMillis(1), TimeUnit.DAYS.toMillis(1));
+
+    private final long bucketMs;
+    private final long partitionMs;
+
+    RollupGranularity(long bucketMs, long partitionMs) {
+        this.bucketMs = bucketMs;
+        this.partitionMs = partitionMs;
+    }
+
+    long getBucketMs() {
+        return bucketMs;
+    }
+
+    long toBucketTs(long ts) {
+        return Math.floorDiv(ts, bucketMs) * bucketMs;
+    }
+
+    long ceilToBucket(long ts) {
+        return -Math.floorDiv(-ts, bucketMs) * bucketMs;
+    }
+
+    long toPartition(long bucketTs) {
+        return Math.floorDiv(bucketTs, partitionMs) * partitionMs;
+    }
+
+    long nextPartition(long partition) {
+        return partition + partitionMs;
+    }
+
+}
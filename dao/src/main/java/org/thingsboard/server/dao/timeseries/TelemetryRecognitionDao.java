@@ -19,6 +19,7 @@ package org.thingsboard.server.dao.timeseries;
 
 import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.page.PageLink;
+import org.thingsboard.server.common.data.recognition.DeviceImageCount;
 import org.thingsboard.server.common.data.recognition.TelemetryRecognition;
 import org.thingsboard.server.dao.Dao;
 import org.thingsboard.server.dao.model.sql.TelemetryRecognitionEntity;
@@ -32,14 +33,29 @@ public interface TelemetryRecognitionDao extends Dao<TelemetryRecognition> {
 
     List<TelemetryRecognitionEntity> findOldTelemetryRecognitionByTs(long startTs, long endTs, int limit);
 
+    /**
+     * 指定设备中最早的图片感知数据, 按ts升序
+     */
+    List<TelemetryRecognitionEntity> findOldTelemetryRecognitionByDevices(List<UUID> deviceIds, long startTs, int limit);
+
     Long findMinTs();
 
     void deleteByTsAndDeviceId(long ts, UUID deviceId);
 
+    /**
+     * 一条语句删除一批图片 (deviceIds[i], tsList[i]) 的全部感知数据, ts 范围 [startTs, endTs] 用于走 ts 索引
+     *
+     * @return 删除的行数
+     */
+    int deleteImages(long startTs, long endTs, List<UUID> deviceIds, List<Long> tsList);
+
     PageData<TelemetryRecognition> findTelemetryRecognition(UUID device, String ability, long startTs, long endTs, PageLink pageLink);
 
     void deleteByDeviceId(UUID deviceId);
 
-    int countImageTotal();
+    /**
+     * 按设备统计图片数量, 用于初始化 {@link org.thingsboard.server.dao.image.ImageStorageLedger}
+     */
+    List<DeviceImageCount> countImagesByDevice();
 
 }
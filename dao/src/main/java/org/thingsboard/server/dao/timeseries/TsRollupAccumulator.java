@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import lombok.Data;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.KvEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 在内存中按 (实体, key, 粒度, 桶) 暂存数据点. 桶结束后或距首次写入超过 flushIntervalMs 时由 {@link #drain} 取出并聚合落库,
+ * 取出后再到达的数据会开始新的部分聚合, 读取时按行合并.
+ * <p>
+ * 同一桶内按 ts 去重, 重复写入同一 ts 时以最后一次为准, 与 ts_kv_cf 的覆盖语义一致.
+ * 已落库的 ts 再次写入无法去重, 会被重复计入 COUNT/SUM/AVG
+ */
+class TsRollupAccumulator {
+
+    private final long flushIntervalMs;
+    private final long closeGraceMs;
+    private final Map<BucketKey, Pending> pending = new ConcurrentHashMap<>();
+
+    TsRollupAccumulator(long flushIntervalMs, long closeGraceMs) {
+        this.flushIntervalMs = flushIntervalMs;
+        this.closeGraceMs = closeGraceMs;
+    }
+
+    /**
+     * @return 非数值类型不参与预聚合, 返回 false
+     */
+    boolean add(TenantId tenantId, String entityType, UUID entityId, String key, long ts, KvEntry entry, long now) {
+        switch (entry.getDataType()) {
+            case LONG:
+            case DOUBLE:
+                break;
+            default:
+                return false;
+        }
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            BucketKey bucketKey = new BucketKey(entityType, entityId, key, granularity, granularity.toBucketTs(ts));
+            pending.compute(bucketKey, (k, p) -> {
+                if (p == null) {
+                    p = new Pending(tenantId, now);
+                }
+                p.values.put(ts, entry);
+                return p;
+            });
+        }
+        return true;
+    }
+
+    /**
+     * 取出到期(或 force 时全部)的部分聚合
+     */
+    List<Drained> drain(long now, boolean force) {
+        List<Drained> result = new ArrayList<>();
+        for (BucketKey bucketKey : pending.keySet()) {
+            pending.computeIfPresent(bucketKey, (k, p) -> {
+                long bucketEnd = k.getBucketTs() + k.getGranularity().getBucketMs();
+                if (force || now >= bucketEnd + closeGraceMs || now - p.createdTime >= flushIntervalMs) {
+                    result.add(new Drained(p.tenantId, k, p.toAggregate()));
+                    return null;
+                }
+                return p;
+            });
+        }
+        return result;
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    @Data
+    static class BucketKey {
+        private final String entityType;
+        private final UUID entityId;
+        private final String key;
+        private final RollupGranularity granularity;
+        private final long bucketTs;
+    }
+
+    @Data
+    static class Drained {
+        private final TenantId tenantId;
+        private final BucketKey bucketKey;
+        private final TsRollupAggregate aggregate;
+    }
+
+    private static class Pending {
+        private final TenantId tenantId;
+        private final long createdTime;
+        private final Map<Long, KvEntry> values = new HashMap<>();
+
+        private Pending(TenantId tenantId, long createdTime) {
+            this.tenantId = tenantId;
+            this.createdTime = createdTime;
+        }
+
+        private TsRollupAggregate toAggregate() {
+            TsRollupAggregate aggregate = new TsRollupAggregate();
+            values.forEach(aggregate::add);
+            return aggregate;
+        }
+    }
+
+}
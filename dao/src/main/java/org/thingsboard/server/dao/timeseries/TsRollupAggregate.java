@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.thingsboard.server.common.data.kv.AggTsKvEntry;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntryAggWrapper;
+
+import java.util.Optional;
+
+/**
+ * 数值型遥测的可合并部分聚合(计数/求和/最小/最大, long 与 double 分开统计),
+ * 最终结果的类型与 {@link AggregatePartitionsFunction} 对原始数据的聚合保持一致
+ */
+class TsRollupAggregate {
+
+    long longCnt;
+    long longSum;
+    long longMin = Long.MAX_VALUE;
+    long longMax = Long.MIN_VALUE;
+    long dblCnt;
+    double dblSum;
+    double dblMin = Double.MAX_VALUE;
+    double dblMax = -Double.MAX_VALUE;
+    long lastTs;
+
+    /**
+     * @return 非数值类型不参与预聚合, 返回 false
+     */
+    boolean add(long ts, KvEntry entry) {
+        switch (entry.getDataType()) {
+            case LONG:
+                long l = entry.getLongValue().orElse(0L);
+                longCnt++;
+                longSum += l;
+                longMin = Math.min(longMin, l);
+                longMax = Math.max(longMax, l);
+                break;
+            case DOUBLE:
+                double d = entry.getDoubleValue().orElse(0.0);
+                dblCnt++;
+                dblSum += d;
+                dblMin = Math.min(dblMin, d);
+                dblMax = Math.max(dblMax, d);
+                break;
+            default:
+                return false;
+        }
+        lastTs = Math.max(lastTs, ts);
+        return true;
+    }
+
+    void merge(TsRollupAggregate other) {
+        if (other.longCnt > 0) {
+            longCnt += other.longCnt;
+            longSum += other.longSum;
+            longMin = Math.min(longMin, other.longMin);
+            longMax = Math.max(longMax, other.longMax);
+        }
+        if (other.dblCnt > 0) {
+            dblCnt += other.dblCnt;
+            dblSum += other.dblSum;
+            dblMin = Math.min(dblMin, other.dblMin);
+            dblMax = Math.max(dblMax, other.dblMax);
+        }
+        lastTs = Math.max(lastTs, other.lastTs);
+    }
+
+    boolean isEmpty() {
+        return longCnt == 0 && dblCnt == 0;
+    }
+
+    /**
+     * 把 ts_kv_cf 上按 {@code aggregation} 聚合的一行(列顺序见 {@link AggregatePartitionsFunction})转为部分聚合,
+     * 只填充该聚合方式需要的字段
+     */
+    static TsRollupAggregate fromAggregateRow(Row row, Aggregation aggregation) {
+        TsRollupAggregate agg = new TsRollupAggregate();
+        agg.longCnt = row.getLong(AggregatePartitionsFunction.LONG_CNT_POS);
+        agg.dblCnt = row.getLong(AggregatePartitionsFunction.DOUBLE_CNT_POS);
+        if (agg.isEmpty()) {
+            return agg;
+        }
+        agg.lastTs = row.getLong(AggregatePartitionsFunction.MAX_TS_POS);
+        boolean hasLong = agg.longCnt > 0;
+        boolean hasDouble = agg.dblCnt > 0;
+        switch (aggregation) {
+            case SUM:
+            case AVG:
+                agg.longSum = hasLong ? row.getLong(AggregatePartitionsFunction.LONG_POS) : 0L;
+                agg.dblSum = hasDouble ? row.getDouble(AggregatePartitionsFunction.DOUBLE_POS) : 0.0;
+                break;
+            case MIN:
+                agg.longMin = hasLong ? row.getLong(AggregatePartitionsFunction.LONG_POS) : agg.longMin;
+                agg.dblMin = hasDouble ? row.getDouble(AggregatePartitionsFunction.DOUBLE_POS) : agg.dblMin;
+                break;
+            case MAX:
+                agg.longMax = hasLong ? row.getLong(AggregatePartitionsFunction.LONG_POS) : agg.longMax;
+                agg.dblMax = hasDouble ? row.getDouble(AggregatePartitionsFunction.DOUBLE_POS) : agg.dblMax;
+                break;
+            default:
+                break;
+        }
+        return agg;
+    }
+
+    Optional<TsKvEntryAggWrapper> toResult(Aggregation aggregation, String key, long ts) {
+        if (isEmpty()) {
+            return Optional.empty();
+        }
+        boolean hasDouble = dblCnt > 0;
+        long count = longCnt + dblCnt;
+        TsKvEntry result;
+        switch (aggregation) {
+            case COUNT:
+                result = new BasicTsKvEntry(ts, new LongDataEntry(key, count));
+                break;
+            case SUM:
+            case AVG:
+                if (aggregation == Aggregation.AVG || hasDouble) {
+                    double sum = dblSum + longSum;
+                    DoubleDataEntry entry = new DoubleDataEntry(key, aggregation == Aggregation.SUM ? sum : (sum / count));
+                    result = aggregation == Aggregation.AVG ? new AggTsKvEntry(ts, entry, count) : new BasicTsKvEntry(ts, entry);
+                } else {
+                    result = new BasicTsKvEntry(ts, new LongDataEntry(key, longSum));
+                }
+                break;
+            case MIN:
+                result = hasDouble
+                        ? new BasicTsKvEntry(ts, new DoubleDataEntry(key, Math.min(dblMin, (double) longMin)))
+                        : new BasicTsKvEntry(ts, new LongDataEntry(key, longMin));
+                break;
+            case MAX:
+                result = hasDouble
+                        ? new BasicTsKvEntry(ts, new DoubleDataEntry(key, Math.max(dblMax, (double) longMax)))
+                        : new BasicTsKvEntry(ts, new LongDataEntry(key, longMax));
+                break;
+            default:
+                return Optional.empty();
+        }
+        return Optional.of(new TsKvEntryAggWrapper(result, lastTs));
+    }
+
+}
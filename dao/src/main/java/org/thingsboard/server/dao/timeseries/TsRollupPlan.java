@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把聚合区间拆成可由预聚合满足的对齐段(优先最粗粒度)和需要读原始数据的边缘段
+ */
+class TsRollupPlan {
+
+    private TsRollupPlan() {
+    }
+
+    /**
+     * @param coveredSince 预聚合覆盖了该时间之后的全部数据
+     * @param safeEndTs    该时间之前结束的桶都已落库
+     * @return 区间早于覆盖起点时只返回一个原始段
+     */
+    static List<Segment> plan(long startTs, long endTs, long coveredSince, long safeEndTs) {
+        List<Segment> segments = new ArrayList<>();
+        if (startTs < coveredSince || startTs >= safeEndTs) {
+            segments.add(new Segment(null, startTs, endTs));
+            return segments;
+        }
+        long rollupEnd = Math.min(endTs, safeEndTs);
+        decompose(startTs, rollupEnd, 0, segments);
+        if (rollupEnd < endTs) {
+            addRaw(segments, rollupEnd, endTs);
+        }
+        return segments;
+    }
+
+    static boolean hasRollup(List<Segment> segments) {
+        return segments.stream().anyMatch(segment -> segment.getGranularity() != null);
+    }
+
+    private static void decompose(long startTs, long endTs, int granularityIdx, List<Segment> segments) {
+        if (startTs >= endTs) {
+            return;
+        }
+        RollupGranularity[] granularities = RollupGranularity.values();
+        for (int i = granularityIdx; i < granularities.length; i++) {
+            RollupGranularity granularity = granularities[i];
+            long alignedStart = granularity.ceilToBucket(startTs);
+            long alignedEnd = granularity.toBucketTs(endTs);
+            if (alignedStart < alignedEnd) {
+                decompose(startTs, alignedStart, i + 1, segments);
+                segments.add(new Segment(granularity, alignedStart, alignedEnd));
+                decompose(alignedEnd, endTs, i + 1, segments);
+                return;
+            }
+        }
+        addRaw(segments, startTs, endTs);
+    }
+
+    private static void addRaw(List<Segment> segments, long startTs, long endTs) {
+        if (!segments.isEmpty()) {
+            Segment last = segments.get(segments.size() - 1);
+            if (last.getGranularity() == null && last.getEndTs() == startTs) {
+                segments.set(segments.size() - 1, new Segment(null, last.getStartTs(), endTs));
+                return;
+            }
+        }
+        segments.add(new Segment(null, startTs, endTs));
+    }
+
+    /**
+     * granularity 为 null 表示原始数据段
+     */
+    @Data
+    static class Segment {
+        private final RollupGranularity granularity;
+        private final long startTs;
+        private final long endTs;
+    }
+
+}
@@ -16,11 +16,13 @@
  */
 package org.thingsboard.server.dao.util;
 
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
 import com.datastax.oss.driver.api.core.ProtocolVersion;
 import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.ColumnDefinition;
 import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.servererrors.QueryConsistencyException;
 import com.datastax.oss.driver.api.core.type.DataType;
 import com.datastax.oss.driver.api.core.type.codec.TypeCodec;
 import com.datastax.oss.driver.api.core.type.codec.registry.CodecRegistry;
@@ -46,12 +48,10 @@ import javax.annotation.Nullable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -65,14 +65,18 @@ import java.util.regex.Matcher;
 public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extends ListenableFuture<V>, V> implements BufferedRateExecutor<T, F> {
 
     public static final String CONCURRENCY_LEVEL = "currBuffer";
+    public static final String CONCURRENCY_LIMIT = "currLimit";
 
     private final long maxWaitTime;
     private final long pollMs;
-    private final BlockingQueue<AsyncTaskContext<T, V>> queue;
+    private final PriorityTaskQueue<AsyncTaskContext<T, V>> queue;
     private final ExecutorService dispatcherExecutor;
     private final ExecutorService callbackExecutor;
     private final ScheduledExecutorService timeoutExecutor;
-    private final int concurrencyLimit;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final AtomicInteger concurrencyLimitGauge;
+    private final TaskPriority defaultPriority;
+    private final long driverTimeoutMs;
     private final int printQueriesFreq;
     private final ConcurrentMap<TenantId, TbRateLimits> perTenantLimits = new ConcurrentHashMap<>();
 
@@ -89,18 +93,25 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
 
     public AbstractBufferedRateExecutor(int queueLimit, int concurrencyLimit, long maxWaitTime, int dispatcherThreads,
                                         int callbackThreads, long pollMs, int printQueriesFreq, StatsFactory statsFactory,
-                                        EntityService entityService, TbTenantProfileCache tenantProfileCache, boolean printTenantNames) {
+                                        EntityService entityService, TbTenantProfileCache tenantProfileCache, boolean printTenantNames,
+                                        BufferedRateExecutorParams params) {
         this.maxWaitTime = maxWaitTime;
         this.pollMs = pollMs;
-        this.concurrencyLimit = concurrencyLimit;
+        this.concurrencyLimit = new AdaptiveConcurrencyLimit(params.isAdaptiveConcurrencyEnabled(), params.getMinConcurrencyLimit(),
+                concurrencyLimit, params.getMaxConcurrencyLimit(), params.getLatencyWindowSize(), params.getLatencyTolerance(),
+                params.getLatencyBackoffRatio(), params.getTimeoutBackoffRatio());
+        this.defaultPriority = params.getDefaultPriority();
+        this.driverTimeoutMs = params.getDriverTimeoutMs();
         this.printQueriesFreq = printQueriesFreq;
-        this.queue = new LinkedBlockingDeque<>(queueLimit);
+        this.queue = new PriorityTaskQueue<>(queueLimit, params.getInteractiveWeight(), params.getIngestionWeight(), params.getBackgroundWeight());
         this.dispatcherExecutor = Executors.newFixedThreadPool(dispatcherThreads, ThingsBoardThreadFactory.forName("nosql-" + getBufferName() + "-dispatcher"));
         this.callbackExecutor = ThingsBoardExecutors.newWorkStealingPool(callbackThreads, "nosql-" + getBufferName() + "-callback");
         this.timeoutExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("nosql-" + getBufferName() + "-timeout"));
         this.stats = new BufferedRateExecutorStats(statsFactory);
         String concurrencyLevelKey = StatsType.RATE_EXECUTOR.getName() + "." + CONCURRENCY_LEVEL + getBufferName(); //metric name may change with buffer name suffix
         this.concurrencyLevel = statsFactory.createGauge(concurrencyLevelKey, new AtomicInteger(0));
+        String concurrencyLimitKey = StatsType.RATE_EXECUTOR.getName() + "." + CONCURRENCY_LIMIT + getBufferName();
+        this.concurrencyLimitGauge = statsFactory.createGauge(concurrencyLimitKey, new AtomicInteger(concurrencyLimit));
 
         this.entityService = entityService;
         this.tenantProfileCache = tenantProfileCache;
@@ -144,7 +155,8 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
         if (!perTenantLimitReached) {
             try {
                 stats.getTotalAdded().increment();
-                queue.add(new AsyncTaskContext<>(UUID.randomUUID(), task, settableFuture, System.currentTimeMillis()));
+                TaskPriority priority = task.getPriority() != null ? task.getPriority() : defaultPriority;
+                queue.add(priority, new AsyncTaskContext<>(UUID.randomUUID(), task, settableFuture, System.currentTimeMillis()));
             } catch (IllegalStateException e) {
                 stats.getTotalRejected().increment();
                 settableFuture.setException(e);
@@ -179,7 +191,7 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
             int curLvl = concurrencyLevel.get();
             AsyncTaskContext<T, V> taskCtx = null;
             try {
-                if (curLvl <= concurrencyLimit) {
+                if (curLvl <= concurrencyLimit.getLimit()) {
                     taskCtx = queue.take();
                     final AsyncTaskContext<T, V> finalTaskCtx = taskCtx;
                     if (printQueriesFreq > 0) {
@@ -194,6 +206,7 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
                     long timeout = finalTaskCtx.getCreateTime() + maxWaitTime - System.currentTimeMillis();
                     if (timeout > 0) {
                         stats.getTotalLaunched().increment();
+                        long launchTime = System.currentTimeMillis();
                         ListenableFuture<V> result = execute(finalTaskCtx);
                         result = Futures.withTimeout(result, timeout, TimeUnit.MILLISECONDS, timeoutExecutor);
                         Futures.addCallback(result, new FutureCallback<V>() {
@@ -202,6 +215,8 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
                                 logTask("Releasing", finalTaskCtx);
                                 stats.getTotalReleased().increment();
                                 concurrencyLevel.decrementAndGet();
+                                concurrencyLimit.onSuccess(System.currentTimeMillis() - launchTime);
+                                concurrencyLimitGauge.set(concurrencyLimit.getLimit());
                                 finalTaskCtx.getFuture().set(result);
                             }
 
@@ -212,6 +227,10 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
                                 } else {
                                     logTask("Failed", finalTaskCtx);
                                 }
+                                if (isExecutionTimeout(t, System.currentTimeMillis() - launchTime, driverTimeoutMs)) {
+                                    concurrencyLimit.onTimeout();
+                                    concurrencyLimitGauge.set(concurrencyLimit.getLimit());
+                                }
                                 stats.getTotalFailed().increment();
                                 concurrencyLevel.decrementAndGet();
                                 finalTaskCtx.getFuture().setException(t);
@@ -242,6 +261,19 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
         log.info("Buffered rate executor thread stopped");
     }
 
+    /**
+     * 只有 Cassandra 执行本身超时才收缩并发: 驱动/服务端超时, 或执行耗时已达到驱动超时的本地超时.
+     * 等待预算在本地队列中耗尽导致的 {@link TimeoutException} 反映的是排队积压, 不计入
+     */
+    static boolean isExecutionTimeout(Throwable t, long executionMs, long driverTimeoutMs) {
+        Throwable cause = t.getCause() != null ? t.getCause() : t;
+        if (t instanceof DriverTimeoutException || t instanceof QueryConsistencyException
+                || cause instanceof DriverTimeoutException || cause instanceof QueryConsistencyException) {
+            return true;
+        }
+        return t instanceof TimeoutException && executionMs >= driverTimeoutMs;
+    }
+
     private void logTask(String action, AsyncTaskContext<T, V> taskCtx) {
         if (log.isTraceEnabled()) {
             if (taskCtx.getTask() instanceof CassandraStatementTask) {
@@ -313,6 +345,10 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
             });
             statsBuilder.append("totalRateLimitedTenants").append(" = [").append(rateLimitedTenantsCount).append("] ");
             statsBuilder.append(CONCURRENCY_LEVEL).append(" = [").append(concurrencyLevel.get()).append("] ");
+            statsBuilder.append(CONCURRENCY_LIMIT).append(" = [").append(concurrencyLimitGauge.get()).append("] ");
+            for (TaskPriority priority : TaskPriority.values()) {
+                statsBuilder.append("queueSize").append(priority).append(" = [").append(queue.size(priority)).append("] ");
+            }
 
             stats.getStatsCounters().forEach(StatsCounter::clear);
             log.info("Permits {}", statsBuilder);
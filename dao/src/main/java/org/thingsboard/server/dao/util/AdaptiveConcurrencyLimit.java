@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.util;
+
+import java.util.Arrays;
+
+/**
+ * AIMD 并发上限: 从 initialLimit 起步, 每个统计窗口内 p99 延迟未超过基线的 latencyTolerance 倍时上限加 1
+ * (最多到 maxLimit), 超过时按 latencyBackoffRatio 收缩, 出现超时按 timeoutBackoffRatio 收缩(每个窗口最多一次).
+ * 基线取各窗口 p99 的最小值并缓慢上浮, 以适应集群扩缩容后的延迟变化.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double BASELINE_DRIFT = 1.05;
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double latencyBackoffRatio;
+    private final double timeoutBackoffRatio;
+    private final long[] window;
+
+    private volatile int limit;
+    private int windowIdx;
+    private double baselineMs = -1;
+    private boolean timedOutInWindow;
+
+    public AdaptiveConcurrencyLimit(boolean enabled, int minLimit, int initialLimit, int maxLimit, int windowSize,
+                                    double latencyTolerance, double latencyBackoffRatio, double timeoutBackoffRatio) {
+        this.enabled = enabled;
+        this.maxLimit = enabled ? Math.max(initialLimit, maxLimit) : initialLimit;
+        this.minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+        this.latencyTolerance = latencyTolerance;
+        this.latencyBackoffRatio = latencyBackoffRatio;
+        this.timeoutBackoffRatio = timeoutBackoffRatio;
+        this.window = new long[Math.max(1, windowSize)];
+        this.limit = initialLimit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public synchronized void onSuccess(long latencyMs) {
+        if (!enabled) {
+            return;
+        }
+        window[windowIdx++] = latencyMs;
+        if (windowIdx == window.length) {
+            windowIdx = 0;
+            long p99 = percentile99();
+            if (!timedOutInWindow) {
+                if (baselineMs >= 0 && p99 > baselineMs * latencyTolerance) {
+                    limit = Math.max(minLimit, (int) (limit * latencyBackoffRatio));
+                } else {
+                    limit = Math.min(maxLimit, limit + 1);
+                }
+            }
+            baselineMs = baselineMs < 0 ? p99 : Math.min(p99, baselineMs * BASELINE_DRIFT);
+            timedOutInWindow = false;
+        }
+    }
+
+    public synchronized void onTimeout() {
+        if (!enabled || timedOutInWindow) {
+            return;
+        }
+        timedOutInWindow = true;
+        limit = Math.max(minLimit, (int) (limit * timeoutBackoffRatio));
+    }
+
+    private long percentile99() {
+        long[] sorted = Arrays.copyOf(window, window.length);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(sorted.length * 0.99) - 1];
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.util;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * 缓冲执行器的自适应并发与优先级通道配置
+ */
+@Data
+@Builder
+public class BufferedRateExecutorParams {
+
+    private final boolean adaptiveConcurrencyEnabled;
+    private final int minConcurrencyLimit;
+    private final int maxConcurrencyLimit;
+    private final int latencyWindowSize;
+    private final double latencyTolerance;
+    private final double latencyBackoffRatio;
+    private final double timeoutBackoffRatio;
+    private final long driverTimeoutMs;
+    private final TaskPriority defaultPriority;
+    private final int interactiveWeight;
+    private final int ingestionWeight;
+    private final int backgroundWeight;
+
+}
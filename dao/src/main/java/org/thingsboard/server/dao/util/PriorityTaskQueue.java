@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按 {@link TaskPriority} 分通道的有界队列, 出队时在非空通道间做平滑加权轮询,
+ * 低权重通道不会被饿死, 也不会挤占高权重通道. 总容量与原先单队列一致.
+ */
+class PriorityTaskQueue<E> {
+
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+
+    private final int capacity;
+    private final Queue<E>[] lanes;
+    private final int[] weights;
+    private final int[] currentWeights;
+    private final AtomicInteger size = new AtomicInteger();
+    private final Semaphore available = new Semaphore(0);
+
+    @SuppressWarnings("unchecked")
+    PriorityTaskQueue(int capacity, int interactiveWeight, int ingestionWeight, int backgroundWeight) {
+        this.capacity = capacity;
+        this.lanes = new Queue[PRIORITIES.length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.weights = new int[]{Math.max(1, interactiveWeight), Math.max(1, ingestionWeight), Math.max(1, backgroundWeight)};
+        this.currentWeights = new int[PRIORITIES.length];
+    }
+
+    void add(TaskPriority priority, E element) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            throw new IllegalStateException("Queue full");
+        }
+        lanes[priority.ordinal()].add(element);
+        available.release();
+    }
+
+    E take() throws InterruptedException {
+        available.acquire();
+        size.decrementAndGet();
+        return pollWeighted();
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    int size(TaskPriority priority) {
+        return lanes[priority.ordinal()].size();
+    }
+
+    private synchronized E pollWeighted() {
+        int total = 0;
+        int best = -1;
+        for (int i = 0; i < lanes.length; i++) {
+            if (!lanes[i].isEmpty()) {
+                currentWeights[i] += weights[i];
+                total += weights[i];
+                if (best < 0 || currentWeights[i] > currentWeights[best]) {
+                    best = i;
+                }
+            }
+        }
+        currentWeights[best] -= total;
+        return lanes[best].poll();
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.attributes;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class DeviceLastActivityWriterTest {
+
+    private AttributesDao attributesDao;
+    private DeviceLastActivityWriter writer;
+
+    @Before
+    public void before() {
+        attributesDao = Mockito.mock(AttributesDao.class);
+        writer = new DeviceLastActivityWriter();
+        ReflectionTestUtils.setField(writer, "attributesDao", attributesDao);
+    }
+
+    @Test
+    public void testNewestTimestampIsWrittenOncePerFlush() {
+        UUID deviceId = UUID.randomUUID();
+        writer.onActivity(deviceId, 100L);
+        writer.onActivity(deviceId, 300L);
+        writer.onActivity(deviceId, 200L);
+        assertEquals(1, writer.getPendingCount());
+
+        writer.flush();
+
+        ArgumentCaptor<AttributeKvEntry> captor = ArgumentCaptor.forClass(AttributeKvEntry.class);
+        verify(attributesDao, times(1)).save(isNull(), eq(new DeviceId(deviceId)), eq(DataConstants.SERVER_SCOPE), captor.capture());
+        assertEquals(DeviceLastActivityWriter.LAST_ACTIVITY_TIME, captor.getValue().getKey());
+        assertEquals(Long.valueOf(300L), captor.getValue().getLongValue().get());
+        assertEquals(0, writer.getPendingCount());
+
+        writer.flush();
+        verify(attributesDao, times(1)).save(any(), any(), any(), any(AttributeKvEntry.class));
+    }
+
+    @Test
+    public void testNothingWrittenWithoutActivity() {
+        writer.flush();
+        verify(attributesDao, never()).save(any(), any(), any(), any(AttributeKvEntry.class));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.dashboard;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.DashboardRuleDevices;
+import org.thingsboard.server.common.data.id.DashboardRuleDevicesId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.page.PageLink;
+import org.thingsboard.server.common.data.page.SortOrder;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DashboardRuleDevicesBufferTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+
+    private DashboardRuleDevicesBuffer buffer;
+    private long now;
+
+    @Before
+    public void before() {
+        buffer = new DashboardRuleDevicesBuffer();
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+        ReflectionTestUtils.setField(buffer, "bufferSize", 3);
+        now = System.currentTimeMillis() + 1000;
+    }
+
+    @Test
+    public void testPagesNewestFirst() {
+        buffer.add(event(now));
+        buffer.add(event(now + 1));
+        buffer.add(event(now + 2));
+
+        PageData<DashboardRuleDevices> page = buffer.find(tenantId, now + 1, new PageLink(1, 0)).orElseThrow();
+        assertEquals(2, page.getTotalElements());
+        assertEquals(2, page.getTotalPages());
+        assertTrue(page.hasNext());
+        assertEquals(now + 2, page.getData().get(0).getCreatedTime());
+
+        PageLink asc = new PageLink(10, 0, null, new SortOrder("createdTime", SortOrder.Direction.ASC));
+        assertEquals(List.of(now, now + 1, now + 2), createdTimes(buffer.find(tenantId, now, asc).orElseThrow()));
+    }
+
+    @Test
+    public void testUnobservedTenantFallsBackToDatabase() {
+        Optional<PageData<DashboardRuleDevices>> page = buffer.find(TenantId.fromUUID(UUID.randomUUID()), now, new PageLink(10, 0));
+        assertFalse(page.isPresent());
+    }
+
+    @Test
+    public void testFallbackWhenNotCovered() {
+        // 早于缓冲启动时间的数据只在数据库中
+        assertFalse(buffer.find(tenantId, 0L, new PageLink(10, 0)).isPresent());
+        assertFalse(buffer.find(tenantId, null, new PageLink(10, 0)).isPresent());
+        PageLink byType = new PageLink(10, 0, null, new SortOrder("type", SortOrder.Direction.ASC));
+        assertFalse(buffer.find(tenantId, now, byType).isPresent());
+    }
+
+    @Test
+    public void testOverwrittenEventsFallBackToDatabase() {
+        for (int i = 0; i < 5; i++) {
+            buffer.add(event(now + i));
+        }
+        assertEquals(3, buffer.size(tenantId));
+        assertFalse(buffer.find(tenantId, now + 1, new PageLink(10, 0)).isPresent());
+        assertEquals(List.of(now + 4, now + 3, now + 2), createdTimes(buffer.find(tenantId, now + 2, new PageLink(10, 0)).orElseThrow()));
+    }
+
+    private DashboardRuleDevices event(long createdTime) {
+        DashboardRuleDevices event = new DashboardRuleDevices(new DashboardRuleDevicesId(UUID.randomUUID()));
+        event.setTenantId(tenantId);
+        event.setDeviceId(new DeviceId(UUID.randomUUID()));
+        event.setCreatedTime(createdTime);
+        return event;
+    }
+
+    private static List<Long> createdTimes(PageData<DashboardRuleDevices> page) {
+        return page.getData().stream().map(DashboardRuleDevices::getCreatedTime).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.device;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.DeviceAbility;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.enume.device.AbilityTypeEnum;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DeviceSnapshotCacheTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final UUID deviceId = UUID.randomUUID();
+
+    private DeviceDao deviceDao;
+    private DeviceAbilityDao deviceAbilityDao;
+    private DeviceSnapshotCache snapshotCache;
+
+    @Before
+    public void before() {
+        deviceDao = Mockito.mock(DeviceDao.class);
+        deviceAbilityDao = Mockito.mock(DeviceAbilityDao.class);
+        snapshotCache = new DeviceSnapshotCache();
+        ReflectionTestUtils.setField(snapshotCache, "maxSize", 100L);
+        ReflectionTestUtils.setField(snapshotCache, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(snapshotCache, "deviceDao", deviceDao);
+        ReflectionTestUtils.setField(snapshotCache, "deviceAbilityDao", deviceAbilityDao);
+        snapshotCache.init();
+    }
+
+    @Test
+    public void testSnapshotIsCachedUntilEvicted() {
+        Device device = new Device();
+        device.setName("camera");
+        when(deviceDao.findById(tenantId, deviceId)).thenReturn(device);
+        when(deviceAbilityDao.findByDeviceId(deviceId)).thenReturn(List.of(
+                ability("image", AbilityTypeEnum.IMAGE.getValue()),
+                ability("temperature", (short) 1),
+                ability("temperature", (short) 1)));
+
+        DeviceSnapshot snapshot = snapshotCache.get(tenantId, deviceId);
+        assertSame(device, snapshot.getDevice());
+        assertEquals(1, snapshot.getImageAbilities().size());
+        assertEquals(1, snapshot.getStrAbilities().size());
+        assertSame(snapshot, snapshotCache.get(tenantId, deviceId));
+        verify(deviceAbilityDao, times(1)).findByDeviceId(deviceId);
+
+        snapshotCache.evict(deviceId);
+        snapshotCache.get(tenantId, deviceId);
+        verify(deviceAbilityDao, times(2)).findByDeviceId(deviceId);
+    }
+
+    @Test
+    public void testMissingDeviceIsNotCached() {
+        assertNull(snapshotCache.get(tenantId, deviceId));
+        assertNull(snapshotCache.get(tenantId, deviceId));
+        verify(deviceDao, times(2)).findById(any(), any());
+    }
+
+    private DeviceAbility ability(String name, short type) {
+        return DeviceAbility.builder().deviceId(deviceId).ability(name).abilityType(type).build();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.image;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileImageBlobDaoTest {
+
+    private Path directory;
+    private FileImageBlobDao imageBlobDao;
+
+    @Before
+    public void before() throws Exception {
+        directory = Files.createTempDirectory("image-blob");
+        imageBlobDao = new FileImageBlobDao();
+        ReflectionTestUtils.setField(imageBlobDao, "directory", directory.toString());
+        ReflectionTestUtils.setField(imageBlobDao, "ioThreads", 1);
+        imageBlobDao.init();
+    }
+
+    @After
+    public void after() throws Exception {
+        imageBlobDao.destroy();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testSaveAndFind() throws Exception {
+        byte[] data = "jpeg".getBytes(StandardCharsets.UTF_8);
+        long ts = TimeUnit.DAYS.toMillis(10) + 5;
+        ImageBlobKey key = ImageBlobKey.of(ts, data);
+        assertEquals(TimeUnit.DAYS.toMillis(10), key.getBucket());
+
+        imageBlobDao.save(TenantId.SYS_TENANT_ID, key, data).get(10, TimeUnit.SECONDS);
+        imageBlobDao.save(TenantId.SYS_TENANT_ID, key, data).get(10, TimeUnit.SECONDS);
+
+        Optional<ByteBuffer> found = imageBlobDao.find(TenantId.SYS_TENANT_ID, key).get(10, TimeUnit.SECONDS);
+        assertTrue(found.isPresent());
+        assertEquals(ByteBuffer.wrap(data), found.get());
+        assertTrue(Files.exists(imageBlobDao.toPath(key)));
+    }
+
+    @Test
+    public void testFindMissing() throws Exception {
+        ImageBlobKey key = ImageBlobKey.of(0L, new byte[]{1, 2, 3});
+        assertFalse(imageBlobDao.find(TenantId.SYS_TENANT_ID, key).get(10, TimeUnit.SECONDS).isPresent());
+    }
+
+    @Test
+    public void testShardIsDerivedFromHash() {
+        ImageBlobKey key = ImageBlobKey.of(0L, new byte[]{1, 2, 3});
+        assertEquals(Integer.parseInt(key.getHash().substring(0, 2), 16) % ImageBlobKey.SHARDS, key.getShard());
+        assertEquals(key.getShard(), ImageBlobKey.parse(key.toReference()).get().getShard());
+    }
+
+    @Test
+    public void testReference() {
+        ImageBlobKey key = ImageBlobKey.of(System.currentTimeMillis(), new byte[]{1, 2, 3});
+        assertEquals(Optional.of(key), ImageBlobKey.parse(key.toReference()));
+        assertFalse(ImageBlobKey.parse("/9j/4AAQSkZJRg").isPresent());
+        assertFalse(ImageBlobKey.parse("blob:abc").isPresent());
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.image;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.recognition.DeviceImageCount;
+import org.thingsboard.server.dao.timeseries.TelemetryRecognitionDao;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ImageStorageLedgerTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final UUID device1 = UUID.randomUUID();
+    private final UUID device2 = UUID.randomUUID();
+
+    private ImageStorageLedger ledger;
+
+    @Before
+    public void before() {
+        TelemetryRecognitionDao dao = Mockito.mock(TelemetryRecognitionDao.class);
+        Mockito.when(dao.countImagesByDevice()).thenReturn(List.of(new DeviceImageCount(tenantId.getId(), device1, 10)));
+        ledger = new ImageStorageLedger();
+        ReflectionTestUtils.setField(ledger, "telemetryRecognitionDao", dao);
+        ledger.load();
+    }
+
+    @Test
+    public void testSaveAndDeleteUpdateUsage() {
+        assertTrue(ledger.isInitialized());
+        ledger.onImageSaved(tenantId, device2, "AAAA");
+        ledger.onImageSaved(tenantId, device2, "AAAA");
+
+        assertEquals(12, ledger.getImageCount());
+        assertEquals(6, ledger.getBytes());
+        assertEquals(12, ledger.getTenantUsage(tenantId).getImages());
+        assertEquals(List.of(device1, device2), List.copyOf(ledger.getTopDevices(5).keySet()));
+
+        ledger.onImagesDeleted(device2, 1);
+        assertEquals(1, ledger.getDeviceUsage(device2).getImages());
+        assertEquals(3, ledger.getDeviceUsage(device2).getBytes());
+
+        ledger.onImagesDeleted(device1, 100);
+        assertEquals(0, ledger.getDeviceUsage(device1).getImages());
+        assertEquals(1, ledger.getTenantUsage(tenantId).getImages());
+    }
+
+    @Test
+    public void testSavesDuringSeedAreCountedOnce() {
+        TelemetryRecognitionDao dao = Mockito.mock(TelemetryRecognitionDao.class);
+        ImageStorageLedger seeding = new ImageStorageLedger();
+        ReflectionTestUtils.setField(seeding, "telemetryRecognitionDao", dao);
+        Mockito.when(dao.countImagesByDevice()).thenAnswer(invocation -> {
+            // 统计查询执行期间保存的图片不在统计结果中
+            seeding.onImageSaved(tenantId, device1, "AAAA");
+            return List.of(new DeviceImageCount(tenantId.getId(), device1, 10));
+        });
+        seeding.load();
+
+        assertEquals(11, seeding.getImageCount());
+        assertEquals(3, seeding.getBytes());
+        seeding.onImageSaved(tenantId, device1, "AAAA");
+        assertEquals(12, seeding.getDeviceUsage(device1).getImages());
+    }
+
+    @Test
+    public void testDeviceDeletion() {
+        ledger.onImageSaved(tenantId, device2, "AAAA");
+        ledger.onDeviceDeleted(device1);
+
+        assertEquals(1, ledger.getImageCount());
+        assertEquals(1, ledger.getTenantUsage(tenantId).getImages());
+        assertEquals(0, ledger.getDeviceUsage(device1).getImages());
+    }
+
+}
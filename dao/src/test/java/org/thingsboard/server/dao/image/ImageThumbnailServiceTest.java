@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.image;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ImageThumbnailServiceTest {
+
+    private ImageThumbnailService thumbnailService;
+
+    @Before
+    public void before() {
+        thumbnailService = new ImageThumbnailService();
+        ReflectionTestUtils.setField(thumbnailService, "sizesStr", "400, 200");
+        ReflectionTestUtils.setField(thumbnailService, "cacheMaxWeight", 1024 * 1024L);
+        ReflectionTestUtils.setField(thumbnailService, "cacheTtlSec", 60L);
+        ReflectionTestUtils.setField(thumbnailService, "threads", 1);
+        ReflectionTestUtils.setField(thumbnailService, "imageBlobService", new ImageBlobService());
+        thumbnailService.init();
+    }
+
+    @After
+    public void after() {
+        thumbnailService.destroy();
+    }
+
+    @Test
+    public void testToRenditionSize() {
+        assertEquals(0, thumbnailService.toRenditionSize(null));
+        assertEquals(200, thumbnailService.toRenditionSize(150));
+        assertEquals(400, thumbnailService.toRenditionSize(201));
+        assertEquals(0, thumbnailService.toRenditionSize(1000));
+    }
+
+    @Test
+    public void testGetRendition() throws Exception {
+        TsKvEntry image = new BasicTsKvEntry(42L, new StringDataEntry("image", toBase64(new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB))));
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+        TsKvEntry rendition = thumbnailService.getRendition(TenantId.SYS_TENANT_ID, deviceId, image, 180);
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(Base64.getDecoder().decode(rendition.getValueAsString())));
+        assertEquals(42L, rendition.getTs());
+        assertEquals(200, result.getWidth());
+        assertEquals(100, result.getHeight());
+
+        assertSame(image, thumbnailService.getRendition(TenantId.SYS_TENANT_ID, deviceId, image, null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPreviewedSizesExpireEvenIfImagesKeepArriving() throws Exception {
+        TsKvEntry image = new BasicTsKvEntry(42L, new StringDataEntry("image", toBase64(new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB))));
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        thumbnailService.getRendition(TenantId.SYS_TENANT_ID, deviceId, image, 180);
+        assertEquals(Set.of(200), thumbnailService.getPreviewedSizes(deviceId.getId()));
+
+        // 上次预览已超过有效期, 新图片入库时的读取不会让它重新生效
+        Cache<UUID, Map<Integer, Long>> previewedSizes = (Cache<UUID, Map<Integer, Long>>) ReflectionTestUtils.getField(thumbnailService, "previewedSizes");
+        previewedSizes.asMap().get(deviceId.getId()).put(200, 0L);
+        thumbnailService.onImageSaved(TenantId.SYS_TENANT_ID, deviceId.getId(), image);
+        assertTrue(thumbnailService.getPreviewedSizes(deviceId.getId()).isEmpty());
+    }
+
+    private static String toBase64(BufferedImage image) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+}
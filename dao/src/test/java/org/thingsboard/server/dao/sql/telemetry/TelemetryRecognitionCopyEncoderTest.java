@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.sql.telemetry;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.recognition.TelemetryRecognition;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TelemetryRecognitionCopyEncoderTest {
+
+    @Test
+    public void testEncodeBinaryCopy() throws Exception {
+        UUID id = UUID.randomUUID();
+        UUID deviceId = UUID.randomUUID();
+        TelemetryRecognition recognition = TelemetryRecognition.builder()
+                .id(id)
+                .createdTime(1L)
+                .updatedTime(2L)
+                .deviceId(deviceId)
+                .ts(3L)
+                .ability("人数")
+                .abilityType((short) 1)
+                .value("{}")
+                .extraInfo(null)
+                .build();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(TelemetryRecognitionCopyEncoder.encode(List.of(recognition))));
+
+        byte[] signature = new byte[11];
+        in.readFully(signature);
+        assertArrayEquals(new byte[]{'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0}, signature);
+        assertEquals(0, in.readInt());
+        assertEquals(0, in.readInt());
+
+        assertEquals(9, in.readShort());
+        assertEquals(16, in.readInt());
+        assertEquals(new UUID(in.readLong(), in.readLong()), id);
+        assertEquals(8, in.readInt());
+        assertEquals(1L, in.readLong());
+        assertEquals(8, in.readInt());
+        assertEquals(2L, in.readLong());
+        assertEquals(16, in.readInt());
+        assertEquals(new UUID(in.readLong(), in.readLong()), deviceId);
+        assertEquals(8, in.readInt());
+        assertEquals(3L, in.readLong());
+        byte[] ability = new byte[in.readInt()];
+        in.readFully(ability);
+        assertEquals("人数", new String(ability, StandardCharsets.UTF_8));
+        assertEquals(8, in.readInt());
+        assertEquals(1L, in.readLong());
+        assertEquals(2, in.readInt());
+        in.readFully(new byte[2]);
+        assertEquals(-1, in.readInt());
+
+        assertEquals(-1, in.readShort());
+        assertEquals(0, in.available());
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CassandraTsWriteBatcherTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final UUID entityId = UUID.randomUUID();
+    private final List<Statement<?>> executed = new CopyOnWriteArrayList<>();
+
+    private SettableFuture<Object> result;
+    private CassandraTsWriteBatcher batcher;
+
+    @Before
+    public void before() {
+        result = SettableFuture.create();
+        // 窗口足够长, 由测试手动 flush
+        batcher = new CassandraTsWriteBatcher((tenantId, statement) -> {
+            executed.add(statement);
+            return result;
+        }, 3, 60000);
+    }
+
+    @After
+    public void after() {
+        batcher.stop();
+    }
+
+    @Test
+    public void testSamePartitionIsBatched() {
+        ListenableFuture<Void> f1 = batcher.add(tenantId, key("temperature", 1L), 1, "long_v", stmt());
+        ListenableFuture<Void> f2 = batcher.add(tenantId, key("temperature", 1L), 2, "long_v", stmt());
+        assertTrue(executed.isEmpty());
+
+        batcher.flush();
+        assertEquals(1, executed.size());
+        BatchStatement batch = (BatchStatement) executed.get(0);
+        assertEquals(DefaultBatchType.UNLOGGED, batch.getBatchType());
+        assertEquals(2, batch.size());
+
+        assertFalse(f1.isDone());
+        result.set(null);
+        assertTrue(f1.isDone());
+        assertTrue(f2.isDone());
+    }
+
+    @Test
+    public void testDifferentPartitionsAreSeparate() {
+        BoundStatement single = stmt();
+        batcher.add(tenantId, key("temperature", 1L), 3, "long_v", single);
+        batcher.add(tenantId, key("temperature", 2L), 4, "long_v", stmt());
+        batcher.add(tenantId, key("humidity", 1L), 5, "long_v", stmt());
+        batcher.flush();
+
+        assertEquals(3, executed.size());
+        // 单条语句不包装为 batch
+        assertTrue(executed.contains(single));
+        assertEquals(0, batcher.pendingPartitions());
+    }
+
+    @Test
+    public void testFullBatchIsSentImmediately() {
+        for (int i = 0; i < 3; i++) {
+            batcher.add(tenantId, key("temperature", 1L), i, "long_v", stmt());
+        }
+        assertEquals(1, executed.size());
+        assertEquals(3, ((BatchStatement) executed.get(0)).size());
+        assertEquals(0, batcher.pendingPartitions());
+    }
+
+    @Test
+    public void testFailureIsPropagated() {
+        ListenableFuture<Void> f1 = batcher.add(tenantId, key("temperature", 1L), 7, "long_v", stmt());
+        ListenableFuture<Void> f2 = batcher.add(tenantId, key("temperature", 1L), 8, "long_v", stmt());
+        batcher.flush();
+        RuntimeException error = new RuntimeException("write timeout");
+        result.setException(error);
+
+        for (ListenableFuture<Void> future : List.of(f1, f2)) {
+            try {
+                Futures.getDone(future);
+            } catch (Exception e) {
+                assertSame(error, e.getCause());
+                continue;
+            }
+            throw new AssertionError("Expected failure");
+        }
+    }
+
+    @Test
+    public void testSameCellKeepsLatestStatement() {
+        BoundStatement first = stmt();
+        BoundStatement latest = stmt();
+        BoundStatement otherColumn = stmt();
+        ListenableFuture<Void> f1 = batcher.add(tenantId, key("temperature", 1L), 10, "long_v", first);
+        ListenableFuture<Void> f2 = batcher.add(tenantId, key("temperature", 1L), 10, "dbl_v", otherColumn);
+        ListenableFuture<Void> f3 = batcher.add(tenantId, key("temperature", 1L), 10, "long_v", latest);
+        batcher.flush();
+
+        BatchStatement batch = (BatchStatement) executed.get(0);
+        assertEquals(2, batch.size());
+        List<Object> statements = new ArrayList<>();
+        batch.forEach(statements::add);
+        assertFalse(statements.contains(first));
+        assertTrue(statements.contains(latest));
+        assertTrue(statements.contains(otherColumn));
+
+        result.set(null);
+        assertTrue(f1.isDone() && f2.isDone() && f3.isDone());
+    }
+
+    private CassandraTsWriteBatcher.PartitionKey key(String key, long partition) {
+        return new CassandraTsWriteBatcher.PartitionKey("DEVICE", entityId, key, partition);
+    }
+
+    private static BoundStatement stmt() {
+        return Mockito.mock(BoundStatement.class);
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.AggTsKvEntry;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.DataType;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TsRollupAggregateTest {
+
+    private static final String KEY = "temperature";
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Test
+    public void testLongOnlyKeepsLongType() {
+        TsRollupAggregate first = new TsRollupAggregate();
+        first.add(1, new LongDataEntry(KEY, 5L));
+        first.add(2, new LongDataEntry(KEY, 1L));
+        TsRollupAggregate second = new TsRollupAggregate();
+        second.add(7, new LongDataEntry(KEY, 9L));
+        first.merge(second);
+
+        assertEquals(15L, result(first, Aggregation.SUM).getLongValue().get().longValue());
+        assertEquals(1L, result(first, Aggregation.MIN).getLongValue().get().longValue());
+        assertEquals(9L, result(first, Aggregation.MAX).getLongValue().get().longValue());
+        assertEquals(3L, result(first, Aggregation.COUNT).getLongValue().get().longValue());
+        TsKvEntry avg = result(first, Aggregation.AVG);
+        assertTrue(avg instanceof AggTsKvEntry);
+        assertEquals(5.0, avg.getDoubleValue().get(), 0.0);
+        assertEquals(7L, first.toResult(Aggregation.AVG, KEY, 0).get().getLastEntryTs());
+    }
+
+    @Test
+    public void testMixedLongAndDoubleIsDouble() {
+        TsRollupAggregate aggregate = new TsRollupAggregate();
+        aggregate.add(1, new LongDataEntry(KEY, 4L));
+        aggregate.add(2, new DoubleDataEntry(KEY, 1.5));
+
+        assertEquals(DataType.DOUBLE, result(aggregate, Aggregation.SUM).getDataType());
+        assertEquals(5.5, result(aggregate, Aggregation.SUM).getDoubleValue().get(), 0.0);
+        assertEquals(1.5, result(aggregate, Aggregation.MIN).getDoubleValue().get(), 0.0);
+        assertEquals(4.0, result(aggregate, Aggregation.MAX).getDoubleValue().get(), 0.0);
+    }
+
+    @Test
+    public void testNonNumericValuesAreSkipped() {
+        TsRollupAggregate aggregate = new TsRollupAggregate();
+        assertFalse(aggregate.add(1, new StringDataEntry(KEY, "on")));
+        assertTrue(aggregate.isEmpty());
+        assertFalse(aggregate.toResult(Aggregation.AVG, KEY, 0).isPresent());
+    }
+
+    @Test
+    public void testAccumulatorDrainsClosedAndStaleBuckets() {
+        TsRollupAccumulator accumulator = new TsRollupAccumulator(TimeUnit.MINUTES.toMillis(5), 1000);
+        TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+        UUID entityId = UUID.randomUUID();
+        long ts = 1_700_000_000_000L / TimeUnit.DAYS.toMillis(1) * TimeUnit.DAYS.toMillis(1) + 10 * MINUTE + 5;
+        accumulator.add(tenantId, "DEVICE", entityId, KEY, ts, new LongDataEntry(KEY, 1L), ts);
+        accumulator.add(tenantId, "DEVICE", entityId, KEY, ts + 10, new LongDataEntry(KEY, 2L), ts);
+        assertEquals(3, accumulator.size());
+
+        assertTrue(accumulator.drain(ts + 1000, false).isEmpty());
+
+        List<TsRollupAccumulator.Drained> closedMinute = accumulator.drain(ts + MINUTE + 1000, false);
+        assertEquals(1, closedMinute.size());
+        assertEquals(RollupGranularity.MINUTE, closedMinute.get(0).getBucketKey().getGranularity());
+        assertEquals(2, closedMinute.get(0).getAggregate().longCnt);
+
+        List<TsRollupAccumulator.Drained> stale = accumulator.drain(ts + TimeUnit.MINUTES.toMillis(5), false);
+        assertEquals(2, stale.size());
+        assertEquals(0, accumulator.size());
+    }
+
+    @Test
+    public void testAccumulatorKeepsLatestValuePerTs() {
+        TsRollupAccumulator accumulator = new TsRollupAccumulator(TimeUnit.MINUTES.toMillis(5), 1000);
+        TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+        UUID entityId = UUID.randomUUID();
+        long ts = 1_700_000_000_000L / TimeUnit.DAYS.toMillis(1) * TimeUnit.DAYS.toMillis(1) + 10 * MINUTE + 5;
+        accumulator.add(tenantId, "DEVICE", entityId, KEY, ts, new LongDataEntry(KEY, 1L), ts);
+        accumulator.add(tenantId, "DEVICE", entityId, KEY, ts, new LongDataEntry(KEY, 7L), ts);
+        accumulator.add(tenantId, "DEVICE", entityId, KEY, ts + 10, new LongDataEntry(KEY, 2L), ts);
+
+        for (TsRollupAccumulator.Drained drained : accumulator.drain(ts, true)) {
+            assertEquals(2, drained.getAggregate().longCnt);
+            assertEquals(9L, drained.getAggregate().longSum);
+            assertEquals(2L, drained.getAggregate().longMin);
+        }
+    }
+
+    private static TsKvEntry result(TsRollupAggregate aggregate, Aggregation aggregation) {
+        return aggregate.toResult(aggregation, KEY, 0).get().getEntry();
+    }
+
+}
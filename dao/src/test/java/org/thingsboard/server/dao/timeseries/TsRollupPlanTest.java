@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TsRollupPlanTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long BASE = 1_700_000_000_000L / DAY * DAY;
+
+    @Test
+    public void testAlignedIntervalUsesCoarsestGranularity() {
+        List<TsRollupPlan.Segment> segments = TsRollupPlan.plan(BASE, BASE + 30 * DAY, BASE, BASE + 60 * DAY);
+        assertEquals(1, segments.size());
+        assertEquals(new TsRollupPlan.Segment(RollupGranularity.DAY, BASE, BASE + 30 * DAY), segments.get(0));
+    }
+
+    @Test
+    public void testUnalignedEdgesFallBackToFinerGranularityAndRaw() {
+        long start = BASE + 2 * HOUR + 5 * MINUTE + 1234;
+        long end = BASE + 2 * DAY + 3 * HOUR + 7 * MINUTE + 500;
+        List<TsRollupPlan.Segment> segments = TsRollupPlan.plan(start, end, BASE, BASE + 60 * DAY);
+
+        assertEquals(List.of(
+                new TsRollupPlan.Segment(null, start, BASE + 2 * HOUR + 6 * MINUTE),
+                new TsRollupPlan.Segment(RollupGranularity.MINUTE, BASE + 2 * HOUR + 6 * MINUTE, BASE + 3 * HOUR),
+                new TsRollupPlan.Segment(RollupGranularity.HOUR, BASE + 3 * HOUR, BASE + DAY),
+                new TsRollupPlan.Segment(RollupGranularity.DAY, BASE + DAY, BASE + 2 * DAY),
+                new TsRollupPlan.Segment(RollupGranularity.HOUR, BASE + 2 * DAY, BASE + 2 * DAY + 3 * HOUR),
+                new TsRollupPlan.Segment(RollupGranularity.MINUTE, BASE + 2 * DAY + 3 * HOUR, BASE + 2 * DAY + 3 * HOUR + 7 * MINUTE),
+                new TsRollupPlan.Segment(null, BASE + 2 * DAY + 3 * HOUR + 7 * MINUTE, end)
+        ), segments);
+    }
+
+    @Test
+    public void testIntervalBeforeCoverageIsRaw() {
+        List<TsRollupPlan.Segment> segments = TsRollupPlan.plan(BASE, BASE + DAY, BASE + HOUR, BASE + 60 * DAY);
+        assertFalse(TsRollupPlan.hasRollup(segments));
+        assertEquals(List.of(new TsRollupPlan.Segment(null, BASE, BASE + DAY)), segments);
+    }
+
+    @Test
+    public void testRecentTailIsRaw() {
+        long safeEnd = BASE + 5 * HOUR + 30 * MINUTE + 10;
+        List<TsRollupPlan.Segment> segments = TsRollupPlan.plan(BASE, BASE + DAY, BASE, safeEnd);
+        assertTrue(TsRollupPlan.hasRollup(segments));
+        assertEquals(new TsRollupPlan.Segment(RollupGranularity.HOUR, BASE, BASE + 5 * HOUR), segments.get(0));
+        assertEquals(new TsRollupPlan.Segment(RollupGranularity.MINUTE, BASE + 5 * HOUR, BASE + 5 * HOUR + 30 * MINUTE), segments.get(1));
+        TsRollupPlan.Segment tail = segments.get(2);
+        assertNull(tail.getGranularity());
+        assertEquals(BASE + 5 * HOUR + 30 * MINUTE, tail.getStartTs());
+        assertEquals(BASE + DAY, tail.getEndTs());
+        assertEquals(3, segments.size());
+    }
+
+}
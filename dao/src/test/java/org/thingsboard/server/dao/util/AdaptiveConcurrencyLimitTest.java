@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.util;
+
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import org.junit.Test;
+
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    private static final int WINDOW = 10;
+
+    @Test
+    public void testIncreasesWhileLatencyStable() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(true, 4, 100, 100, WINDOW, 2.0, 0.9, 0.5);
+        limit.onTimeout();
+        assertEquals(50, limit.getLimit());
+        completeWindow(limit, 10);
+        completeWindow(limit, 10);
+        completeWindow(limit, 12);
+        assertEquals(52, limit.getLimit());
+    }
+
+    @Test
+    public void testGrowsAboveInitialLimitUpToMax() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(true, 4, 100, 102, WINDOW, 2.0, 0.9, 0.5);
+        assertEquals(100, limit.getLimit());
+        completeWindow(limit, 10);
+        completeWindow(limit, 10);
+        assertEquals(102, limit.getLimit());
+        completeWindow(limit, 10);
+        assertEquals(102, limit.getLimit());
+    }
+
+    @Test
+    public void testBacksOffWhenP99Rises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(true, 4, 100, 100, WINDOW, 2.0, 0.9, 0.5);
+        completeWindow(limit, 10);
+        assertEquals(100, limit.getLimit());
+        completeWindow(limit, 50);
+        assertEquals(90, limit.getLimit());
+    }
+
+    @Test
+    public void testTimeoutBacksOffOncePerWindowAndRespectsMin() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(true, 30, 100, 100, WINDOW, 2.0, 0.9, 0.5);
+        limit.onTimeout();
+        limit.onTimeout();
+        assertEquals(50, limit.getLimit());
+        completeWindow(limit, 10);
+        assertEquals(50, limit.getLimit());
+        limit.onTimeout();
+        assertEquals(30, limit.getLimit());
+    }
+
+    @Test
+    public void testDisabledKeepsStaticLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(false, 4, 100, 200, WINDOW, 2.0, 0.9, 0.5);
+        limit.onTimeout();
+        completeWindow(limit, 1000);
+        assertEquals(100, limit.getLimit());
+    }
+
+    @Test
+    public void testOnlyExecutionTimeoutsCount() {
+        assertFalse(AbstractBufferedRateExecutor.isExecutionTimeout(new TimeoutException(), 50, 20000));
+        assertTrue(AbstractBufferedRateExecutor.isExecutionTimeout(new TimeoutException(), 20000, 20000));
+        assertTrue(AbstractBufferedRateExecutor.isExecutionTimeout(new DriverTimeoutException("timeout"), 50, 20000));
+        assertFalse(AbstractBufferedRateExecutor.isExecutionTimeout(new IllegalStateException(), 30000, 20000));
+    }
+
+    private static void completeWindow(AdaptiveConcurrencyLimit limit, long latencyMs) {
+        for (int i = 0; i < WINDOW; i++) {
+            limit.onSuccess(latencyMs);
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.server.dao.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class PriorityTaskQueueTest {
+
+    @Test
+    public void testInteractiveNotStarvedByBackground() throws InterruptedException {
+        PriorityTaskQueue<String> queue = new PriorityTaskQueue<>(1000, 8, 4, 1);
+        for (int i = 0; i < 500; i++) {
+            queue.add(TaskPriority.BACKGROUND, "b");
+        }
+        for (int i = 0; i < 8; i++) {
+            queue.add(TaskPriority.INTERACTIVE, "i");
+        }
+        List<String> taken = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            taken.add(queue.take());
+        }
+        assertEquals(8, taken.stream().filter("i"::equals).count());
+        assertEquals(1, taken.stream().filter("b"::equals).count());
+        assertEquals(499, queue.size());
+    }
+
+    @Test
+    public void testWeightedShareAcrossLanes() throws InterruptedException {
+        PriorityTaskQueue<TaskPriority> queue = new PriorityTaskQueue<>(1000, 8, 4, 1);
+        for (TaskPriority priority : TaskPriority.values()) {
+            for (int i = 0; i < 100; i++) {
+                queue.add(priority, priority);
+            }
+        }
+        int[] counts = new int[TaskPriority.values().length];
+        for (int i = 0; i < 130; i++) {
+            counts[queue.take().ordinal()]++;
+        }
+        assertEquals(80, counts[TaskPriority.INTERACTIVE.ordinal()]);
+        assertEquals(40, counts[TaskPriority.INGESTION.ordinal()]);
+        assertEquals(10, counts[TaskPriority.BACKGROUND.ordinal()]);
+    }
+
+    @Test
+    public void testCapacityIsSharedByAllLanes() {
+        PriorityTaskQueue<String> queue = new PriorityTaskQueue<>(2, 8, 4, 1);
+        queue.add(TaskPriority.INTERACTIVE, "i");
+        queue.add(TaskPriority.BACKGROUND, "b");
+        assertThrows(IllegalStateException.class, () -> queue.add(TaskPriority.INGESTION, "w"));
+        assertEquals(2, queue.size());
+    }
+
+}
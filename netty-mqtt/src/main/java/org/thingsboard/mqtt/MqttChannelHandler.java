@@ -233,13 +233,12 @@ final class MqttChannelHandler extends SimpleChannelInboundHandler<MqttMessage>
     }
 
     private void handlePuback(MqttPubAckMessage message) {
-        MqttPendingPublish pendingPublish = this.client.getPendingPublishes().get(message.variableHeader().messageId());
+        MqttPendingPublish pendingPublish = this.client.getPendingPublishes().remove(message.variableHeader().messageId());
         if (pendingPublish == null) {
             return;
         }
-        pendingPublish.getFuture().setSuccess(null);
+        pendingPublish.getFuture().trySuccess(null);
         pendingPublish.onPubackReceived();
-        this.client.getPendingPublishes().remove(message.variableHeader().messageId());
         pendingPublish.getPayload().release();
     }
 
@@ -163,7 +163,8 @@ public interface MqttClient {
      * @param payload The payload to send
      * @param qos The qos to use while publishing
      * @param retain true if you want to retain the message on the server, false otherwise
-     * @return A future which will be completed when the message is delivered to the server
+     * @return A future which will be completed when the message is delivered to the server.
+     * Cancelling the future stops the retransmission of a message which is not acknowledged yet
      */
     Future<Void> publish(String topic, ByteBuf payload, MqttQoS qos, boolean retain);
 
@@ -379,6 +379,15 @@ final class MqttClientImpl implements MqttClient {
         MqttPendingPublish pendingPublish = new MqttPendingPublish(variableHeader.packetId(), future,
                 payload.retain(), message, qos, () -> !pendingPublishes.containsKey(variableHeader.packetId()));
         this.pendingPublishes.put(pendingPublish.getMessageId(), pendingPublish);
+        future.addListener(f -> {
+            if (f.isCancelled()) {
+                // The caller gave up waiting for the ack, stop retransmitting so that its retry is not a duplicate
+                MqttPendingPublish cancelled = pendingPublishes.remove(pendingPublish.getMessageId());
+                if (cancelled != null) {
+                    cancelled.onChannelClosed();
+                }
+            }
+        });
         ChannelFuture channelFuture = this.sendAndFlushPacket(message);
 
         if (channelFuture != null) {
@@ -386,12 +395,12 @@ final class MqttClientImpl implements MqttClient {
                 pendingPublish.setSent(true);
                 if (result.cause() != null) {
                     pendingPublishes.remove(pendingPublish.getMessageId());
-                    future.setFailure(result.cause());
+                    future.tryFailure(result.cause());
                 } else {
                     if (pendingPublish.isSent() && pendingPublish.getQos() == MqttQoS.AT_MOST_ONCE) {
                         pendingPublishes.remove(pendingPublish.getMessageId());
-                        pendingPublish.getFuture().setSuccess(null); //We don't get an ACK for QOS 0
-                    } else if (pendingPublish.isSent()) {
+                        pendingPublish.getFuture().trySuccess(null); //We don't get an ACK for QOS 0
+                    } else if (pendingPublish.isSent() && pendingPublishes.containsKey(pendingPublish.getMessageId())) {
                         pendingPublish.startPublishRetransmissionTimer(eventLoop.next(), MqttClientImpl.this::sendAndFlushPacket);
                     } else {
                         pendingPublishes.remove(pendingPublish.getMessageId());
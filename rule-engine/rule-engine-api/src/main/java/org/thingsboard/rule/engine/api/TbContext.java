@@ -192,6 +192,12 @@ public interface TbContext {
 
     TbMsg transformMsg(TbMsg origMsg, String type, EntityId originator, TbMsgMetaData metaData, String data);
 
+    /**
+     * Replaces offloaded payload references in msg data with the payloads.
+     * Used by nodes that accept payload references and need the bytes only when sending the msg out.
+     */
+    String inlinePayloads(String data);
+
     TbMsg customerCreatedMsg(Customer customer, RuleNodeId ruleNodeId);
 
     TbMsg deviceCreatedMsg(Device device, RuleNodeId ruleNodeId);
@@ -16,6 +16,7 @@
  */
 package org.thingsboard.rule.engine.api;
 
+import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
 
@@ -32,4 +33,14 @@ public interface TbNode {
 
     default void onPartitionChangeMsg(TbContext ctx, PartitionChangeMsg msg) {}
 
+    /**
+     * Whether the node handles offloaded payload references in msg data itself.
+     * Otherwise the references are replaced with the payloads before the msg reaches the node, and stay replaced downstream.
+     * By default only filter and flow nodes, which route the msg without reading the payloads, accept references.
+     */
+    default boolean acceptsPayloadRefs() {
+        RuleNode annotation = getClass().getAnnotation(RuleNode.class);
+        return annotation != null && (annotation.type() == ComponentType.FILTER || annotation.type() == ComponentType.FLOW);
+    }
+
 }
@@ -36,7 +36,7 @@ public class PerDataProcessUtil {
 
     public static ObjectNode process(TbMsg msg, EntityId originator) {
         ObjectNode objectNode = JacksonUtil.newObjectNode();
-        JsonNode jsonNode = JacksonUtil.toJsonNode(msg.getData());
+        JsonNode jsonNode = msg.getDataJson();
         TelemetryExtData telemetryExtData = JacksonUtil.FAIL_ON_UNKNOWN_PROPERTIES_MAPPER.convertValue(jsonNode.get("telemetryExtData"), TelemetryExtData.class);
         if (telemetryExtData == null) {
             Map<String, Object> dataMap = new HashMap<>(msg.getMetaData().getData());
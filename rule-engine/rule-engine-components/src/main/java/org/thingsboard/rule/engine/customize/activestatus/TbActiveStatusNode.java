@@ -19,6 +19,7 @@ package org.thingsboard.rule.engine.customize.activestatus;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.DonAsynchron;
 import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.rule.engine.api.RuleNode;
 import org.thingsboard.rule.engine.api.TbContext;
@@ -90,12 +91,15 @@ public class TbActiveStatusNode implements TbNode {
             return;
         }
         String deviceIds = config.getDeviceIds();
-        // 这个节点是否选择设备
-        if (StringUtils.isBlank(deviceIds)
-                // 是否在这个规则
-                || !deviceIds.contains(originator.getId().toString())
-                // 校验设备是否存在
-                || ctx.getDeviceService().findDeviceById(ctx.getTenantId(), new DeviceId(originator.getId())) == null) {
+        // 这个节点是否选择设备, 是否在这个规则
+        if (StringUtils.isBlank(deviceIds) || !deviceIds.contains(originator.getId().toString())) {
+            log.debug("Devices become inactive contains False! deviceIds = {}, originator = {}", deviceIds, originator);
+            ctx.tellNext(msg, "False");
+            return;
+        }
+        // 校验设备是否存在, 设备名称用于仪表板展示
+        Device device = ctx.getDeviceService().findDeviceById(ctx.getTenantId(), new DeviceId(originator.getId()));
+        if (device == null) {
             log.debug("Devices become inactive contains False! deviceIds = {}, originator = {}", deviceIds, originator);
             ctx.tellNext(msg, "False");
             return;
@@ -108,11 +112,11 @@ public class TbActiveStatusNode implements TbNode {
 
         ctx.tellNext(msg, "True");
         // 保存仪表板数据
-        showOnDashboard(ctx, msg);
+        showOnDashboard(ctx, device);
     }
 
 
-    private void showOnDashboard(TbContext ctx, TbMsg msg) throws IOException {
+    private void showOnDashboard(TbContext ctx, Device device) throws IOException {
         if (!config.isShowOnWidget()) {
             return;
         }
@@ -127,12 +131,10 @@ public class TbActiveStatusNode implements TbNode {
         dashboardRuleDevices.setValue(value);
 
         dashboardRuleDevices.setTenantId(ctx.getTenantId());
-        DeviceId deviceId = new DeviceId(msg.getOriginator().getId());
-        dashboardRuleDevices.setDeviceId(deviceId);
-        Device deviceById = ctx.getDeviceService().findDeviceById(ctx.getTenantId(), deviceId);
-        if (deviceById != null) {
-            dashboardRuleDevices.setSource(deviceById.getName());
-        }
-        ctx.getDashboardRuleDevicesService().saveDashboardRuleDevices(dashboardRuleDevices);
+        dashboardRuleDevices.setDeviceId(device.getId());
+        dashboardRuleDevices.setSource(device.getName());
+        DonAsynchron.withCallback(ctx.getDashboardRuleDevicesService().saveDashboardRuleDevicesAsync(dashboardRuleDevices), r -> {},
+                t -> log.warn("[{}][{}] ActiveStatus Action, Failed to save dashboard rule devices", ctx.getTenantId(), device.getId(), t),
+                ctx.getDbCallbackExecutor());
     }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.thingsboard.rule.engine.customize.http;
+
+import lombok.Data;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.thingsboard.rule.engine.rest.TbHttpClient;
+import org.thingsboard.rule.engine.rest.TbRestApiCallNodeConfiguration;
+import org.thingsboard.server.common.data.recipients.Recipients;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * ROI 第三方 HTTP 推送的客户端注册表.
+ * <p>
+ * 进程内所有接收方共用一个带连接池的 HTTP 客户端(keep-alive 复用连接, 每个 host:port 的并发连接数有上限),
+ * 注册表按接收方缓存 {@link TbHttpClient}; 接收方配置更新(updateTime/地址/账号变化)后下一条消息自动替换,
+ * 接收方修改/删除时会刷新引用它的规则链, 节点 destroy 时 {@link #clear()} 整体失效.
+ */
+@Slf4j
+@SuppressWarnings("deprecation")
+public class RoiHttpClientRegistry {
+
+    /**
+     * 单个接收方地址(host:port)的最大并发连接数, 超出的请求在连接池中排队
+     */
+    private static final int MAX_CONNECTIONS_PER_ENDPOINT = 20;
+    private static final int MAX_CONNECTIONS_TOTAL = 200;
+    private static final int CONNECT_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(10);
+    private static final int READ_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(30);
+
+    private static volatile AsyncRestTemplate sharedRestTemplate;
+
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final Supplier<AsyncRestTemplate> restTemplateSupplier;
+
+    public RoiHttpClientRegistry() {
+        this(RoiHttpClientRegistry::getSharedRestTemplate);
+    }
+
+    RoiHttpClientRegistry(Supplier<AsyncRestTemplate> restTemplateSupplier) {
+        this.restTemplateSupplier = restTemplateSupplier;
+    }
+
+    /**
+     * 获取接收方对应的客户端, 配置未变化时复用缓存, 否则用 configFactory 重新构建
+     */
+    public TbHttpClient getClient(Recipients recipients, Supplier<TbRestApiCallNodeConfiguration> configFactory) {
+        EndpointKey key = new EndpointKey(recipients.getUpdateTime(), recipients.getJsonData(), recipients.getUsername(), recipients.getPassword());
+        String id = recipients.getRecipientsId() != null ? recipients.getRecipientsId().toString() : String.valueOf(recipients.getJsonData());
+        Endpoint endpoint = endpoints.get(id);
+        if (endpoint != null && endpoint.key.equals(key)) {
+            return endpoint.client;
+        }
+        return endpoints.compute(id, (k, old) -> {
+            if (old != null && old.key.equals(key)) {
+                return old;
+            }
+            if (old != null) {
+                log.debug("[{}] Recipients configuration changed, rebuilding HTTP client", id);
+            }
+            return new Endpoint(key, new TbHttpClient(configFactory.get(), restTemplateSupplier.get()));
+        }).client;
+    }
+
+    public void clear() {
+        endpoints.clear();
+    }
+
+    int size() {
+        return endpoints.size();
+    }
+
+    private static AsyncRestTemplate getSharedRestTemplate() {
+        AsyncRestTemplate template = sharedRestTemplate;
+        if (template == null) {
+            synchronized (RoiHttpClientRegistry.class) {
+                template = sharedRestTemplate;
+                if (template == null) {
+                    template = sharedRestTemplate = createRestTemplate();
+                }
+            }
+        }
+        return template;
+    }
+
+    private static AsyncRestTemplate createRestTemplate() {
+        CloseableHttpAsyncClient asyncClient = HttpAsyncClientBuilder.create()
+                .useSystemProperties()
+                .setMaxConnPerRoute(MAX_CONNECTIONS_PER_ENDPOINT)
+                .setMaxConnTotal(MAX_CONNECTIONS_TOTAL)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(CONNECT_TIMEOUT_MS)
+                        .setSocketTimeout(READ_TIMEOUT_MS)
+                        .build())
+                .build();
+        HttpComponentsAsyncClientHttpRequestFactory requestFactory = new HttpComponentsAsyncClientHttpRequestFactory(asyncClient);
+        requestFactory.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        requestFactory.setReadTimeout(READ_TIMEOUT_MS);
+        return new AsyncRestTemplate(requestFactory);
+    }
+
+    @Data
+    private static class EndpointKey {
+        private final long updateTime;
+        private final Object jsonData;
+        private final String username;
+        @ToString.Exclude
+        private final String password;
+    }
+
+    private static class Endpoint {
+        private final EndpointKey key;
+        private final TbHttpClient client;
+
+        private Endpoint(EndpointKey key, TbHttpClient client) {
+            this.key = Objects.requireNonNull(key);
+            this.client = client;
+        }
+    }
+}
@@ -20,18 +20,18 @@ package org.thingsboard.rule.engine.customize.http;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.mqtt.MqttQoS;
-import io.netty.util.concurrent.Future;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.common.util.JacksonUtil;
-import org.thingsboard.mqtt.MqttClient;
 import org.thingsboard.mqtt.MqttClientConfig;
-import org.thingsboard.mqtt.MqttConnectResult;
 import org.thingsboard.rule.engine.api.RuleNode;
 import org.thingsboard.rule.engine.api.TbContext;
 import org.thingsboard.rule.engine.api.TbNode;
 import org.thingsboard.rule.engine.api.TbNodeConfiguration;
 import org.thingsboard.rule.engine.api.TbNodeException;
 import org.thingsboard.rule.engine.api.util.TbNodeUtils;
+import org.thingsboard.rule.engine.mqtt.MqttClientPool;
+import org.thingsboard.rule.engine.mqtt.MqttConnectionKey;
+import org.thingsboard.rule.engine.mqtt.PooledMqttConnection;
 import org.thingsboard.rule.engine.mqtt.TbMqttNodeConfiguration;
 import org.thingsboard.server.common.data.StringUtils;
 import org.thingsboard.server.common.data.plugin.ComponentType;
@@ -40,9 +40,7 @@ import org.thingsboard.server.common.data.recipients.jsondata.MqttTransportJsonD
 import org.thingsboard.server.common.msg.TbMsg;
 
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 /**
  * MQTT 发送ROI结果给第三方
@@ -60,6 +58,8 @@ import java.util.concurrent.TimeoutException;
 )
 public class RoiMqttNode implements TbNode {
 
+    private static final String ROI_CONNECTION_OPTIONS = "roi";
+
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
     }
@@ -67,34 +67,46 @@ public class RoiMqttNode implements TbNode {
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) throws Exception {
         TbMqttNodeConfiguration mqttNodeConfiguration = new TbMqttNodeConfiguration().defaultConfiguration();
-        MqttClient mqttClient;
+        PooledMqttConnection connection;
         try {
-            mqttClient = initClient(ctx, msg, mqttNodeConfiguration);
+            connection = acquireConnection(ctx, msg, mqttNodeConfiguration);
         } catch (Exception e) {
             String hostPort = mqttNodeConfiguration.getHost() + ":" + mqttNodeConfiguration.getPort();
             log.error(hostPort + "failed sending message: ", e.getMessage());
             ctx.tellFailure(msg, new TbNodeException(e.getMessage()));
             return;
         }
-        // 发送MQTT请求
+        // 发送MQTT请求, 连接由连接池复用, 不再每条消息建连/断开
         String topic = TbNodeUtils.processPattern(mqttNodeConfiguration.getTopicPattern(), msg);
-        mqttClient.publish(topic, Unpooled.wrappedBuffer(msg.getData().getBytes(StandardCharsets.UTF_8)),
-                        MqttQoS.AT_LEAST_ONCE, mqttNodeConfiguration.isRetainedMessage())
-                .addListener(future ->
-                        {
-                            if (future.isSuccess()) {
-                                ctx.tellSuccess(msg);
-                            } else {
-                                String hostPort = mqttNodeConfiguration.getHost() + ":" + mqttNodeConfiguration.getPort();
-                                log.error(hostPort + " failed sending message back!");
-                                ctx.tellFailure(msg, future.cause());
+        try {
+            String data = ctx.inlinePayloads(msg.getData());
+            connection.publish(topic, Unpooled.wrappedBuffer(data.getBytes(StandardCharsets.UTF_8)),
+                            MqttQoS.AT_LEAST_ONCE, mqttNodeConfiguration.isRetainedMessage(), TimeUnit.SECONDS.toMillis(mqttNodeConfiguration.getConnectTimeoutSec()))
+                    .addListener(future ->
+                            {
+                                if (future.isSuccess()) {
+                                    ctx.tellSuccess(msg);
+                                } else {
+                                    String hostPort = mqttNodeConfiguration.getHost() + ":" + mqttNodeConfiguration.getPort();
+                                    log.error(hostPort + " failed sending message back!");
+                                    ctx.tellFailure(msg, future.cause());
+                                }
                             }
-                            mqttClient.disconnect();
-                        }
-                );
+                    );
+        } finally {
+            connection.release();
+        }
+    }
+
+    /**
+     * 图片引用只在发送时取出, 向下游传递的仍是带引用的消息
+     */
+    @Override
+    public boolean acceptsPayloadRefs() {
+        return true;
     }
 
-    private MqttClient initClient(TbContext ctx, TbMsg msg, TbMqttNodeConfiguration mqttNodeConfiguration) throws JsonProcessingException {
+    private PooledMqttConnection acquireConnection(TbContext ctx, TbMsg msg, TbMqttNodeConfiguration mqttNodeConfiguration) throws JsonProcessingException {
         String recipientsInfo = msg.getMetaData().getValue("recipientsInfo");
         Recipients recipients = JacksonUtil.OBJECT_MAPPER.readValue(recipientsInfo, Recipients.class);
         MqttTransportJsonData transportJsonData = JacksonUtil.OBJECT_MAPPER.convertValue(recipients.getJsonData(), MqttTransportJsonData.class);
@@ -104,41 +116,12 @@ public class RoiMqttNode implements TbNode {
         mqttNodeConfiguration.setTopicPattern(transportJsonData.getTopic());
 
         MqttClientConfig config = new MqttClientConfig(null);
-        if (!StringUtils.isEmpty(mqttNodeConfiguration.getClientId())) {
-            config.setClientId(mqttNodeConfiguration.isAppendClientIdSuffix() ?
-                    mqttNodeConfiguration.getClientId() + "_" + ctx.getServiceId() : mqttNodeConfiguration.getClientId());
-        }
         config.setCleanSession(false);
-
         prepareMqttClientConfig(config, recipients);
-        MqttClient client = MqttClient.create(config, null);
-        client.setEventLoop(ctx.getSharedEventLoop());
 
-        log.info("init tb mqtt client node configuration transportJsonData = {},username = {},password={}", recipients.getJsonData(),
-                recipients.getUsername(), recipients.getPassword());
-
-        Future<MqttConnectResult> connectFuture = client.connect(mqttNodeConfiguration.getHost(), mqttNodeConfiguration.getPort());
-        MqttConnectResult result;
-        try {
-            result = connectFuture.get(mqttNodeConfiguration.getConnectTimeoutSec(), TimeUnit.SECONDS);
-        } catch (TimeoutException | InterruptedException | ExecutionException ex) {
-            connectFuture.cancel(true);
-            client.disconnect();
-            String hostPort = mqttNodeConfiguration.getHost() + ":" + mqttNodeConfiguration.getPort();
-            String format = String.format("Failed to connect to MQTT broker at %s.", hostPort);
-            log.error(format);
-            throw new RuntimeException(format);
-        }
-
-        if (!result.isSuccess()) {
-            connectFuture.cancel(true);
-            client.disconnect();
-            String hostPort = mqttNodeConfiguration.getHost() + ":" + mqttNodeConfiguration.getPort();
-            String format = String.format("Failed to connect to MQTT broker at %s. Result code is: %s", hostPort, result.getReturnCode());
-            log.error(format);
-            throw new RuntimeException(format);
-        }
-        return client;
+        MqttConnectionKey key = new MqttConnectionKey(mqttNodeConfiguration.getHost(), mqttNodeConfiguration.getPort(),
+                null, config.getUsername(), config.getPassword(), ROI_CONNECTION_OPTIONS);
+        return MqttClientPool.shared().acquire(key, config, ctx.getSharedEventLoop());
     }
 
     private void prepareMqttClientConfig(MqttClientConfig config, Recipients recipients) {
@@ -50,6 +50,8 @@ import org.thingsboard.server.common.msg.TbMsg;
 )
 public class RoiRestCallNode implements TbNode {
 
+    private final RoiHttpClientRegistry clientRegistry = new RoiHttpClientRegistry();
+
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
 
@@ -57,35 +59,45 @@ public class RoiRestCallNode implements TbNode {
 
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) throws TbNodeException {
-        TbRestApiCallNodeConfiguration config = new TbRestApiCallNodeConfiguration().defaultConfiguration();
+        Recipients recipients;
         try {
-            initTbRestApiCallNodeConfiguration(config, msg);
+            recipients = JacksonUtil.OBJECT_MAPPER.readValue(msg.getMetaData().getValue("recipientsInfo"), Recipients.class);
         } catch (JsonProcessingException e) {
-            log.error("init tb rest api call node configuration url = {} failed:", config.getRestEndpointUrlPattern(), e);
+            log.error("parse recipients info failed:", e);
             ctx.tellFailure(msg, new TbNodeException("JsonProcessingException recipients."));
             return;
         }
-        TbHttpClient httpClient = new TbHttpClient(config, ctx.getSharedEventLoop());
-        // 发送HTTP请求
-        httpClient.processMessage(ctx, msg);
-        httpClient.destroy();
+        // 按接收方复用 HTTP 客户端及其连接
+        TbHttpClient httpClient = clientRegistry.getClient(recipients, () -> buildConfiguration(recipients));
+        // 图片引用只在发送时取出, 向下游传递的仍是带引用的消息
+        httpClient.processMessage(ctx, msg, ctx.inlinePayloads(msg.getData()));
+    }
+
+    @Override
+    public boolean acceptsPayloadRefs() {
+        return true;
     }
 
-    private void initTbRestApiCallNodeConfiguration(TbRestApiCallNodeConfiguration config, TbMsg msg) throws JsonProcessingException {
-        String recipientsInfo = msg.getMetaData().getValue("recipientsInfo");
-        Recipients recipients = JacksonUtil.OBJECT_MAPPER.readValue(recipientsInfo, Recipients.class);
+    @Override
+    public void destroy() {
+        clientRegistry.clear();
+    }
+
+    private TbRestApiCallNodeConfiguration buildConfiguration(Recipients recipients) {
+        TbRestApiCallNodeConfiguration config = new TbRestApiCallNodeConfiguration().defaultConfiguration();
         HttpTransportJsonData transportJsonData = JacksonUtil.OBJECT_MAPPER.convertValue(recipients.getJsonData(), HttpTransportJsonData.class);
 
         String url = transportJsonData.getUrl();
         config.setRestEndpointUrlPattern(url);
         String username = recipients.getUsername();
         String password = recipients.getPassword();
-        log.info("init tb rest api call node configuration url = {},username = {},password={}", url, username, password);
+        log.debug("init tb rest api call node configuration url = {},username = {}", url, username);
         if (StringUtils.isNotBlank(username)) {
             BasicCredentials basicCredentials = new BasicCredentials();
             basicCredentials.setUsername(username);
             basicCredentials.setPassword(password);
             config.setCredentials(basicCredentials);
         }
+        return config;
     }
 }
@@ -16,6 +16,9 @@
  */
 package org.thingsboard.rule.engine.customize.http;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.rule.engine.api.EmptyNodeConfiguration;
@@ -25,11 +28,21 @@ import org.thingsboard.rule.engine.api.TbNode;
 import org.thingsboard.rule.engine.api.TbNodeConfiguration;
 import org.thingsboard.rule.engine.api.TbNodeException;
 import org.thingsboard.rule.engine.api.util.TbNodeUtils;
+import org.thingsboard.rule.engine.transform.MultipleTbMsgsCallbackWrapper;
+import org.thingsboard.rule.engine.transform.TbMsgCallbackWrapper;
+import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.exception.ThingsboardException;
 import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.data.recipients.Recipients;
 import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.RuleEngineException;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -57,17 +70,19 @@ public class TbRoiTypeSwitchNode implements TbNode {
 
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) {
+        JsonNode data = msg.getDataJson();
+        if (data != null && data.path(DataConstants.ROI_RECOGNITIONS).isArray()) {
+            splitRecognitions(ctx, msg);
+            return;
+        }
         String recipientsId = msg.getMetaData().getValue("recipientsId");
         if (recipientsId == null) {
             log.error("Recipients is not find id = {}", recipientsId);
             ctx.tellFailure(msg, new TbNodeException("No such recipientsId found."));
             return;
         }
-        Recipients recipientsById;
-        try {
-            recipientsById = ctx.getRecipientsService().getRecipientsById(ctx.getTenantId(), UUID.fromString(recipientsId));
-        } catch (ThingsboardException e) {
-            log.error("Recipients is not find id = {}", recipientsId);
+        Recipients recipientsById = findRecipients(ctx, recipientsId);
+        if (recipientsById == null) {
             ctx.tellFailure(msg, new TbNodeException("No such recipientsId found."));
             return;
         }
@@ -76,4 +91,71 @@ public class TbRoiTypeSwitchNode implements TbNode {
         ctx.tellNext(msg, transmissionType);
     }
 
+    /**
+     * 将一帧的识别结果信封展开成每个识别结果、每个接收方一条消息, 消息体与单条推送的格式一致
+     */
+    private void splitRecognitions(TbContext ctx, TbMsg msg) {
+        ObjectNode common = (ObjectNode) msg.copyDataJson();
+        ArrayNode recognitions = (ArrayNode) common.remove(DataConstants.ROI_RECOGNITIONS);
+        Map<String, Recipients> recipientsMap = new HashMap<>();
+        List<TbMsg> outMsgs = new ArrayList<>();
+        List<String> relationTypes = new ArrayList<>();
+        for (JsonNode recognition : recognitions) {
+            ObjectNode data = common.deepCopy();
+            recognition.fields().forEachRemaining(field -> {
+                if (!DataConstants.ROI_RECIPIENTS_IDS.equals(field.getKey())) {
+                    data.set(field.getKey(), field.getValue());
+                }
+            });
+            String dataStr = JacksonUtil.toString(data);
+            for (JsonNode recipientsIdNode : recognition.path(DataConstants.ROI_RECIPIENTS_IDS)) {
+                String recipientsId = recipientsIdNode.asText();
+                Recipients recipients = recipientsMap.computeIfAbsent(recipientsId, id -> findRecipients(ctx, id));
+                if (recipients == null) {
+                    continue;
+                }
+                TbMsgMetaData metaData = msg.getMetaData().copy();
+                metaData.putValue("recipientsId", recipientsId);
+                metaData.putValue("recipientsInfo", JacksonUtil.toString(recipients));
+                outMsgs.add(TbMsg.newMsg(msg.getQueueName(), msg.getType(), msg.getOriginator(), metaData, dataStr));
+                relationTypes.add(recipients.getTransmissionType());
+            }
+        }
+        if (outMsgs.isEmpty()) {
+            ctx.ack(msg);
+            return;
+        }
+        TbMsgCallbackWrapper wrapper = new MultipleTbMsgsCallbackWrapper(outMsgs.size(), new TbMsgCallback() {
+            @Override
+            public void onSuccess() {
+                ctx.ack(msg);
+            }
+
+            @Override
+            public void onFailure(RuleEngineException e) {
+                ctx.tellFailure(msg, e);
+            }
+        });
+        for (int i = 0; i < outMsgs.size(); i++) {
+            ctx.enqueueForTellNext(outMsgs.get(i), relationTypes.get(i), wrapper::onSuccess, wrapper::onFailure);
+        }
+    }
+
+    /**
+     * 展开后的每条消息只带图片引用, 图片在推送节点发送时才取出
+     */
+    @Override
+    public boolean acceptsPayloadRefs() {
+        return true;
+    }
+
+    private Recipients findRecipients(TbContext ctx, String recipientsId) {
+        try {
+            return ctx.getRecipientsService().getRecipientsById(ctx.getTenantId(), UUID.fromString(recipientsId));
+        } catch (ThingsboardException e) {
+            log.error("Recipients is not find id = {}", recipientsId);
+            return null;
+        }
+    }
+
 }
@@ -20,6 +20,8 @@ package org.thingsboard.rule.engine.customize.lowbattery;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.DonAsynchron;
+import org.thingsboard.common.util.IngestionTrace;
 import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.rule.engine.api.RuleNode;
 import org.thingsboard.rule.engine.api.TbContext;
@@ -91,23 +93,26 @@ public class TbLowBatteryNode implements TbNode {
             EntityId originator = msg.getOriginator();
             // 是否设备属性
             if (!originator.getEntityType().equals(EntityType.DEVICE)) {
-                log.info("Low battery Not DEVICE type!ts = {}, entityId = {}", msg.getTs(), originator);
+                log.debug("Low battery Not DEVICE type!ts = {}, entityId = {}", msg.getTs(), originator);
                 ctx.tellNext(msg, "False");
                 return;
             }
             String deviceIds = config.getDeviceIds();
-            // 这个节点是否选择设备
-            if (StringUtils.isBlank(deviceIds)
-                    // 是否在这个规则
-                    || !deviceIds.contains(originator.getId().toString())
-                    // 校验设备是否存在
-                    || ctx.getDeviceService().findDeviceById(ctx.getTenantId(), new DeviceId(originator.getId())) == null) {
+            // 这个节点是否选择设备, 是否在这个规则
+            if (StringUtils.isBlank(deviceIds) || !deviceIds.contains(originator.getId().toString())) {
+                log.debug("Low battery contains False!");
+                ctx.tellNext(msg, "False");
+                return;
+            }
+            // 校验设备是否存在, 设备名称用于仪表板展示
+            Device device = ctx.getDeviceService().findDeviceById(ctx.getTenantId(), new DeviceId(originator.getId()));
+            if (device == null) {
                 log.debug("Low battery contains False!");
                 ctx.tellNext(msg, "False");
                 return;
             }
             // 获取电量
-            JsonNode jsonNode = JacksonUtil.toJsonNode(msg.getData());
+            JsonNode jsonNode = msg.getDataJson();
             JsonNode batteryJsonNode = jsonNode.get("battery");
             if (batteryJsonNode == null) {
                 log.debug("Low battery not has battery!");
@@ -115,25 +120,27 @@ public class TbLowBatteryNode implements TbNode {
                 return;
             }
             int battery = batteryJsonNode.intValue();
-            log.info("LowBattery Action Info:[{}]The alert threshold is {} and the current threshold is {}", originator, alarmThreshold, battery);
+            if (IngestionTrace.isEnabled(ctx.getTenantId().getId(), originator.getId())) {
+                IngestionTrace.trace("lowBattery", ctx.getTenantId().getId(), originator.getId(), "alarmThreshold={} battery={}", alarmThreshold, battery);
+            }
             // 判断下一个节点关系
             boolean next = (battery == 0 && Objects.nonNull(alarmThreshold)) || battery <= alarmThreshold;
             ObjectNode process = PerDataProcessUtil.process(msg, originator);
             // 插入电量
             process.set("battery", batteryJsonNode);
             process.put("alarmThreshold", alarmThreshold);
-            msg.setData(process.toString());
+            msg.setDataJson(process);
 
             ctx.tellNext(msg, next ? "True" : "False");
             // 保存仪表板数据
-            showOnDashboard(ctx, msg, alarmThreshold, battery, next);
+            showOnDashboard(ctx, device, alarmThreshold, battery, next);
         } catch (Exception e) {
             log.warn("[{}] LowBattery Action, Failed to parse message: {}, error message:", ctx.getTenantId(), msg.getData(), e);
             ctx.tellFailure(msg, e);
         }
     }
 
-    private void showOnDashboard(TbContext ctx, TbMsg msg, Integer alarmThreshold, int battery, boolean next) throws IOException {
+    private void showOnDashboard(TbContext ctx, Device device, Integer alarmThreshold, int battery, boolean next) throws IOException {
         if (next && config.isShowOnWidget()) {
             DashboardRuleDevices dashboardRuleDevices = new DashboardRuleDevices();
             dashboardRuleDevices.setType(RuleTriggerEnum.LOW_BATTERY.getValue());
@@ -147,13 +154,11 @@ public class TbLowBatteryNode implements TbNode {
             dashboardRuleDevices.setValue(value);
 
             dashboardRuleDevices.setTenantId(ctx.getTenantId());
-            DeviceId deviceId = new DeviceId(msg.getOriginator().getId());
-            dashboardRuleDevices.setDeviceId(deviceId);
-            Device deviceById = ctx.getDeviceService().findDeviceById(ctx.getTenantId(), deviceId);
-            if (deviceById != null) {
-                dashboardRuleDevices.setSource(deviceById.getName());
-            }
-            ctx.getDashboardRuleDevicesService().saveDashboardRuleDevices(dashboardRuleDevices);
+            dashboardRuleDevices.setDeviceId(device.getId());
+            dashboardRuleDevices.setSource(device.getName());
+            DonAsynchron.withCallback(ctx.getDashboardRuleDevicesService().saveDashboardRuleDevicesAsync(dashboardRuleDevices), r -> {},
+                    t -> log.warn("[{}][{}] LowBattery Action, Failed to save dashboard rule devices", ctx.getTenantId(), device.getId(), t),
+                    ctx.getDbCallbackExecutor());
         }
     }
 }
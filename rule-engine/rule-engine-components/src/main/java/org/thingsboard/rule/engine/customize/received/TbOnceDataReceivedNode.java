@@ -23,6 +23,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.nimbusds.oauth2.sdk.util.CollectionUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.Nullable;
+import org.thingsboard.common.util.IngestionTrace;
 import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.rule.engine.api.RuleNode;
 import org.thingsboard.rule.engine.api.TbContext;
@@ -91,7 +92,7 @@ public class TbOnceDataReceivedNode implements TbNode {
         // 包含有关消息来源和目标的元数据信息,例如设备ID、客户端ID、时间戳等
         EntityId originator = msg.getOriginator();
         if (!originator.getEntityType().equals(EntityType.DEVICE)) {
-            log.info("Once data received Not DEVICE type!ts = {}, entityId = {}", msg.getTs(), originator);
+            log.debug("Once data received Not DEVICE type!ts = {}, entityId = {}", msg.getTs(), originator);
             ctx.tellNext(msg, "False");
             return;
         }
@@ -99,7 +100,7 @@ public class TbOnceDataReceivedNode implements TbNode {
         String sensingObjectIds = config.getSensingObjectIds();
         if (StringUtils.isBlank(sensingObjectIds)) {
             // 没有感知对象的时候
-            log.info("sensing object ids is null ,to False !ts = {}, metaData = {} ", msg.getTs(),  msg.getMetaData());
+            log.debug("sensing object ids is null ,to False !ts = {}, entityId = {}", msg.getTs(), originator);
             ctx.tellNext(msg, "False");
             return;
         }
@@ -107,7 +108,7 @@ public class TbOnceDataReceivedNode implements TbNode {
         List<SensingObject> cacheSensingObjectByIds = ctx.getSensingObjectService().findCacheByIds(sensingObjectIdList);
         if (CollectionUtils.isEmpty(cacheSensingObjectByIds)) {
             // 查找不到感知对象说明被删除了
-            log.info("sensing object ids is delete ,to False !ts = {}, metaData = {} ", msg.getTs(),  msg.getMetaData());
+            log.debug("sensing object ids is delete ,to False !ts = {}, entityId = {}", msg.getTs(), originator);
             ctx.tellNext(msg, "False");
             return;
         }
@@ -123,13 +124,15 @@ public class TbOnceDataReceivedNode implements TbNode {
         boolean isPerceive = isPerceiveAndDataProcessing(msg, abilityList, originator);
         // 去到下一个节点
         String relationType = isPerceive ? "True" : "False";
-        log.info("once data received node process is perceive : {} , metaData = {}", relationType, msg.getMetaData());
+        if (IngestionTrace.isEnabled(ctx.getTenantId().getId(), originator.getId())) {
+            IngestionTrace.trace("onceDataReceived", ctx.getTenantId().getId(), originator.getId(), "perceive={} metaData={}", relationType, msg.getMetaData());
+        }
         ctx.tellNext(msg, relationType);
     }
 
     private static boolean isPerceiveAndDataProcessing(TbMsg msg, List<String> abilityList, EntityId originator) {
         boolean isPerceive = false;
-        JsonNode jsonNode = JacksonUtil.toJsonNode(msg.getData());
+        JsonNode jsonNode = msg.getDataJson();
         TelemetryExtData telemetryExtData
                 = JacksonUtil.FAIL_ON_UNKNOWN_PROPERTIES_MAPPER.convertValue(jsonNode.get("telemetryExtData"), TelemetryExtData.class);
         // 过滤遥测数据
@@ -165,7 +168,7 @@ public class TbOnceDataReceivedNode implements TbNode {
             }
         }
         newObjectNode.set("telemetryExtData", JacksonUtil.valueToTree(telemetryExtData));
-        msg.setData(newObjectNode.toString());
+        msg.setDataJson(newObjectNode);
         return isPerceive;
     }
 
@@ -16,7 +16,7 @@
  */
 package org.thingsboard.rule.engine.filter;
 
-import com.google.gson.Gson;
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.rule.engine.api.RuleNode;
 import org.thingsboard.rule.engine.api.TbContext;
@@ -28,7 +28,7 @@ import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.msg.TbMsg;
 
 import java.util.List;
-import java.util.Map;
+import java.util.function.Predicate;
 
 @Slf4j
 @RuleNode(
@@ -44,8 +44,6 @@ import java.util.Map;
         configDirective = "tbFilterNodeCheckMessageConfig")
 public class TbCheckMessageNode implements TbNode {
 
-    private static final Gson gson = new Gson();
-
     private TbCheckMessageNodeConfiguration config;
     private List<String> messageNamesList;
     private List<String> metadataNamesList;
@@ -72,61 +70,56 @@ public class TbCheckMessageNode implements TbNode {
 
     private boolean allKeysData(TbMsg msg) {
         if (!messageNamesList.isEmpty()) {
-            Map<String, String> dataMap = dataToMap(msg);
-            return processAllKeys(messageNamesList, dataMap);
+            return processAllKeys(messageNamesList, dataContainsKey(msg));
         }
         return true;
     }
 
     private boolean allKeysMetadata(TbMsg msg) {
         if (!metadataNamesList.isEmpty()) {
-            Map<String, String> metadataMap = metadataToMap(msg);
-            return processAllKeys(metadataNamesList, metadataMap);
+            return processAllKeys(metadataNamesList, msg.getMetaData().getData()::containsKey);
         }
         return true;
     }
 
     private boolean atLeastOneData(TbMsg msg) {
         if (!messageNamesList.isEmpty()) {
-            Map<String, String> dataMap = dataToMap(msg);
-            return processAtLeastOne(messageNamesList, dataMap);
+            return processAtLeastOne(messageNamesList, dataContainsKey(msg));
         }
         return false;
     }
 
     private boolean atLeastOneMetadata(TbMsg msg) {
         if (!metadataNamesList.isEmpty()) {
-            Map<String, String> metadataMap = metadataToMap(msg);
-            return processAtLeastOne(metadataNamesList, metadataMap);
+            return processAtLeastOne(metadataNamesList, msg.getMetaData().getData()::containsKey);
         }
         return false;
     }
 
-    private boolean processAllKeys(List<String> data, Map<String, String> map) {
+    private boolean processAllKeys(List<String> data, Predicate<String> containsKey) {
         for (String field : data) {
-            if (!map.containsKey(field)) {
+            if (!containsKey.test(field)) {
                 return false;
             }
         }
         return true;
     }
 
-    private boolean processAtLeastOne(List<String> data, Map<String, String> map) {
+    private boolean processAtLeastOne(List<String> data, Predicate<String> containsKey) {
         for (String field : data) {
-            if (map.containsKey(field)) {
+            if (containsKey.test(field)) {
                 return true;
             }
         }
         return false;
     }
 
-    private Map<String, String> metadataToMap(TbMsg msg) {
-        return msg.getMetaData().getData();
-    }
-
-    @SuppressWarnings("unchecked")
-    private Map<String, String> dataToMap(TbMsg msg) {
-        return (Map<String, String>) gson.fromJson(msg.getData(), Map.class);
+    private Predicate<String> dataContainsKey(TbMsg msg) {
+        JsonNode data = msg.getDataJson();
+        if (data == null || !data.isObject()) {
+            throw new IllegalArgumentException("Msg data is not a JSON Object!");
+        }
+        return data::has;
     }
 
 }
\ No newline at end of file
@@ -71,6 +71,14 @@ public class TbJsFilterNode implements TbNode {
                 }, ctx.getDbCallbackExecutor());
     }
 
+    /**
+     * 脚本可能读取图片等大数据, 需要原始数据
+     */
+    @Override
+    public boolean acceptsPayloadRefs() {
+        return false;
+    }
+
     @Override
     public void destroy() {
         if (scriptEngine != null) {
@@ -82,6 +82,14 @@ public class TbJsSwitchNode implements TbNode {
         ctx.tellNext(msg, nextRelations);
     }
 
+    /**
+     * 脚本可能读取图片等大数据, 需要原始数据
+     */
+    @Override
+    public boolean acceptsPayloadRefs() {
+        return false;
+    }
+
     @Override
     public void destroy() {
         if (scriptEngine != null) {
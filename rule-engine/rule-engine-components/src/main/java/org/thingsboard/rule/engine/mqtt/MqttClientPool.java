@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.rule.engine.mqtt;
+
+import io.netty.channel.EventLoopGroup;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.mqtt.MqttClient;
+import org.thingsboard.mqtt.MqttClientConfig;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 规则节点共享的 MQTT 长连接池. 连接按 {@link MqttConnectionKey} 复用, 断线由 netty-mqtt 客户端在后台重连,
+ * 空闲且无人持有的连接在 idle timeout 后断开.
+ * <p>
+ * 用法: {@link #acquire} 得到连接并发布, 用完后 {@link PooledMqttConnection#release()}; 已提交的发布不受 release 影响.
+ */
+@Slf4j
+public class MqttClientPool {
+
+    private static final long DEFAULT_IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final int DEFAULT_MAX_IN_FLIGHT = 100;
+
+    private static final MqttClientPool SHARED = new MqttClientPool(DEFAULT_IDLE_TIMEOUT_MS, DEFAULT_MAX_IN_FLIGHT, config -> MqttClient.create(config, null));
+
+    private final ConcurrentMap<MqttConnectionKey, PooledMqttConnection> connections = new ConcurrentHashMap<>();
+    private final long idleTimeoutMs;
+    private final int maxInFlight;
+    private final Function<MqttClientConfig, MqttClient> clientFactory;
+
+    MqttClientPool(long idleTimeoutMs, int maxInFlight, Function<MqttClientConfig, MqttClient> clientFactory) {
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.maxInFlight = maxInFlight;
+        this.clientFactory = clientFactory;
+    }
+
+    public static MqttClientPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * 获取(必要时异步建立)连接, 不会阻塞等待 CONNACK
+     */
+    public PooledMqttConnection acquire(MqttConnectionKey key, MqttClientConfig config, EventLoopGroup eventLoop) {
+        while (true) {
+            PooledMqttConnection connection = connections.computeIfAbsent(key, k -> {
+                log.debug("[{}] Creating pooled MQTT connection", k);
+                config.setClientId(k.getClientId());
+                config.setReconnect(true);
+                MqttClient client = clientFactory.apply(config);
+                client.setEventLoop(eventLoop);
+                return new PooledMqttConnection(this, k, client, maxInFlight, idleTimeoutMs);
+            });
+            if (connection.retain()) {
+                return connection;
+            }
+            connections.remove(key, connection);
+        }
+    }
+
+    void evict(PooledMqttConnection connection) {
+        if (connections.remove(connection.getKey(), connection)) {
+            log.debug("[{}] Pooled MQTT connection closed", connection.getKey());
+        }
+    }
+
+    int size() {
+        return connections.size();
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.rule.engine.mqtt;
+
+import lombok.Data;
+import lombok.ToString;
+
+/**
+ * 连接池的 key: 相同 broker、客户端 ID 和认证信息的发送方共用一条 MQTT 连接
+ */
+@Data
+public class MqttConnectionKey {
+
+    private final String host;
+    private final int port;
+    private final String clientId;
+    private final String username;
+    @ToString.Exclude
+    private final String password;
+    /**
+     * 其它影响连接的参数(clean session、协议版本、TLS 证书等)
+     */
+    @ToString.Exclude
+    private final String options;
+
+}
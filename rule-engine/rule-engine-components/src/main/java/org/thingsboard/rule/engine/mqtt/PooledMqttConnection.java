@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.rule.engine.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.mqtt.ChannelClosedException;
+import org.thingsboard.mqtt.MqttClient;
+import org.thingsboard.mqtt.MqttClientCallback;
+import org.thingsboard.mqtt.MqttConnectResult;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接池中的一条 MQTT 连接. 未连上时发布先排队(超时失败), 连上后按 in-flight 窗口发送,
+ * 已发出的发布在同样的超时内未收到确认也以失败结束, 释放 in-flight 名额.
+ * 以失败结束的发布都会取消 netty-mqtt 的发布 future, 使其停止重传, 由规则引擎按确认策略重试而不会重复投递.
+ */
+@Slf4j
+public class PooledMqttConnection implements MqttClientCallback {
+
+    private static final int CLOSED = -1;
+
+    private final MqttClientPool pool;
+    @Getter
+    private final MqttConnectionKey key;
+    private final MqttClient client;
+    private final EventLoop eventLoop;
+    private final int maxInFlight;
+    private final long idleTimeoutMs;
+    @Getter
+    private final Future<MqttConnectResult> connectFuture;
+
+    private final AtomicInteger holders = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<PendingPublish> waiting = new ConcurrentLinkedQueue<>();
+    private final Set<PendingPublish> sent = ConcurrentHashMap.newKeySet();
+    private volatile long lastActivityTs = System.currentTimeMillis();
+    private volatile Throwable closeCause;
+
+    PooledMqttConnection(MqttClientPool pool, MqttConnectionKey key, MqttClient client, int maxInFlight, long idleTimeoutMs) {
+        this.pool = pool;
+        this.key = key;
+        this.client = client;
+        this.eventLoop = client.getEventLoop().next();
+        this.maxInFlight = maxInFlight;
+        this.idleTimeoutMs = idleTimeoutMs;
+        client.setCallback(this);
+        this.connectFuture = client.connect(key.getHost(), key.getPort());
+        this.connectFuture.addListener(future -> {
+            if (future.isSuccess()) {
+                MqttConnectResult result = connectFuture.getNow();
+                if (result.isSuccess()) {
+                    drain();
+                } else {
+                    // broker 拒绝(认证失败等)不会自动重连, 关闭后下次 acquire 重新建立
+                    close(new RuntimeException(String.format("Failed to connect to MQTT broker at %s:%s. Result code is: %s",
+                            key.getHost(), key.getPort(), result.getReturnCode())));
+                }
+            }
+        });
+        scheduleIdleCheck();
+    }
+
+    boolean retain() {
+        while (true) {
+            int current = holders.get();
+            if (current == CLOSED) {
+                return false;
+            }
+            if (holders.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        holders.updateAndGet(current -> current > 0 ? current - 1 : current);
+    }
+
+    public boolean isConnected() {
+        return client.isConnected();
+    }
+
+    /**
+     * 异步发布, payload 的所有权转交给连接
+     *
+     * @param timeoutMs 连接不可用时排队等待的最长时间, 也是发出后等待确认的最长时间
+     */
+    public Future<Void> publish(String topic, ByteBuf payload, MqttQoS qos, boolean retain, long timeoutMs) {
+        Promise<Void> promise = eventLoop.newPromise();
+        if (holders.get() == CLOSED) {
+            payload.release();
+            promise.setFailure(closeCause != null ? closeCause : new ChannelClosedException("Connection is closed!"));
+            return promise;
+        }
+        lastActivityTs = System.currentTimeMillis();
+        PendingPublish pending = new PendingPublish(topic, payload, qos, retain, timeoutMs, promise);
+        pending.timeout = eventLoop.schedule(() -> {
+            if (waiting.remove(pending)) {
+                pending.payload.release();
+                promise.tryFailure(new TimeoutException(String.format("MQTT broker at %s:%s is not available.", key.getHost(), key.getPort())));
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        waiting.add(pending);
+        drain();
+        return promise;
+    }
+
+    private void drain() {
+        while (client.isConnected() && !waiting.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            PendingPublish pending = waiting.poll();
+            if (pending == null) {
+                inFlight.decrementAndGet();
+                return;
+            }
+            pending.timeout.cancel(false);
+            // clientFuture 先赋值再放入 sent, 断线或关闭时 complete 才能取消它
+            pending.clientFuture = client.publish(pending.topic, pending.payload, pending.qos, pending.retain);
+            sent.add(pending);
+            pending.timeout = eventLoop.schedule(() -> complete(pending, new TimeoutException(String.format("MQTT broker at %s:%s did not acknowledge the publish in %s ms.",
+                    key.getHost(), key.getPort(), pending.timeoutMs))), pending.timeoutMs, TimeUnit.MILLISECONDS);
+            pending.clientFuture.addListener(future -> complete(pending, future.isSuccess() ? null : future.cause()));
+        }
+    }
+
+    private void complete(PendingPublish pending, Throwable cause) {
+        if (!sent.remove(pending)) {
+            return;
+        }
+        pending.timeout.cancel(false);
+        if (cause != null && pending.clientFuture != null) {
+            // 停止 netty-mqtt 的重传, 规则引擎重试时不会重复投递
+            pending.clientFuture.cancel(false);
+        }
+        inFlight.decrementAndGet();
+        lastActivityTs = System.currentTimeMillis();
+        if (cause == null) {
+            pending.promise.trySuccess(null);
+        } else {
+            pending.promise.tryFailure(cause);
+        }
+        drain();
+    }
+
+    @Override
+    public void connectionLost(Throwable cause) {
+        log.debug("[{}] Pooled MQTT connection lost, reconnecting", key, cause);
+        // netty-mqtt 断线时不会结束已发出未确认的发布, 也不会在重连后重发
+        for (PendingPublish pending : sent) {
+            complete(pending, cause);
+        }
+    }
+
+    @Override
+    public void onSuccessfulReconnect() {
+        log.debug("[{}] Pooled MQTT connection reconnected", key);
+        drain();
+    }
+
+    private void scheduleIdleCheck() {
+        eventLoop.schedule(this::checkIdle, idleTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void checkIdle() {
+        if (holders.get() == CLOSED) {
+            return;
+        }
+        boolean idle = inFlight.get() == 0 && waiting.isEmpty() && System.currentTimeMillis() - lastActivityTs >= idleTimeoutMs;
+        if (idle && holders.compareAndSet(0, CLOSED)) {
+            shutdown(null);
+        } else {
+            scheduleIdleCheck();
+        }
+    }
+
+    private void close(Throwable cause) {
+        if (holders.getAndSet(CLOSED) != CLOSED) {
+            shutdown(cause);
+        }
+    }
+
+    private void shutdown(Throwable cause) {
+        closeCause = cause;
+        pool.evict(this);
+        client.disconnect();
+        Throwable failure = cause != null ? cause : new ChannelClosedException("Connection is closed!");
+        PendingPublish pending;
+        while ((pending = waiting.poll()) != null) {
+            pending.timeout.cancel(false);
+            pending.payload.release();
+            pending.promise.tryFailure(failure);
+        }
+        for (PendingPublish inFlightPublish : sent) {
+            complete(inFlightPublish, failure);
+        }
+    }
+
+    private static class PendingPublish {
+        private final String topic;
+        private final ByteBuf payload;
+        private final MqttQoS qos;
+        private final boolean retain;
+        private final long timeoutMs;
+        private final Promise<Void> promise;
+        private volatile ScheduledFuture<?> timeout;
+        private volatile Future<Void> clientFuture;
+
+        PendingPublish(String topic, ByteBuf payload, MqttQoS qos, boolean retain, long timeoutMs, Promise<Void> promise) {
+            this.topic = topic;
+            this.payload = payload;
+            this.qos = qos;
+            this.retain = retain;
+            this.timeoutMs = timeoutMs;
+            this.promise = promise;
+        }
+    }
+
+}
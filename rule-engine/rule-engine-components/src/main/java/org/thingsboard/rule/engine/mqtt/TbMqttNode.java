@@ -21,7 +21,7 @@ import io.netty.handler.codec.mqtt.MqttQoS;
 import io.netty.handler.ssl.SslContext;
 import io.netty.util.concurrent.Future;
 import lombok.extern.slf4j.Slf4j;
-import org.thingsboard.mqtt.MqttClient;
+import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.mqtt.MqttClientConfig;
 import org.thingsboard.mqtt.MqttConnectResult;
 import org.thingsboard.rule.engine.api.RuleNode;
@@ -65,13 +65,15 @@ public class TbMqttNode implements TbNode {
 
     protected TbMqttNodeConfiguration mqttNodeConfiguration;
 
-    protected MqttClient mqttClient;
+    protected MqttConnectionKey connectionKey;
+
+    protected MqttClientConfig clientConfig;
 
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         try {
             this.mqttNodeConfiguration = TbNodeUtils.convert(configuration, TbMqttNodeConfiguration.class);
-            this.mqttClient = initClient(ctx);
+            initClient(ctx);
         } catch (Exception e) {
             throw new TbNodeException(e);
         }
@@ -80,16 +82,22 @@ public class TbMqttNode implements TbNode {
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) throws Exception {
         String topic = TbNodeUtils.processPattern(this.mqttNodeConfiguration.getTopicPattern(), msg);
-        this.mqttClient.publish(topic, Unpooled.wrappedBuffer(msg.getData().getBytes(UTF8)), MqttQoS.AT_LEAST_ONCE, mqttNodeConfiguration.isRetainedMessage())
-                .addListener(future -> {
-                            if (future.isSuccess()) {
-                                ctx.tellSuccess(msg);
-                            } else {
-                                TbMsg next = processException(ctx, msg, future.cause());
-                                ctx.tellFailure(next, future.cause());
+        PooledMqttConnection connection = MqttClientPool.shared().acquire(connectionKey, clientConfig, ctx.getSharedEventLoop());
+        try {
+            connection.publish(topic, Unpooled.wrappedBuffer(msg.getData().getBytes(UTF8)), MqttQoS.AT_LEAST_ONCE,
+                            mqttNodeConfiguration.isRetainedMessage(), TimeUnit.SECONDS.toMillis(mqttNodeConfiguration.getConnectTimeoutSec()))
+                    .addListener(future -> {
+                                if (future.isSuccess()) {
+                                    ctx.tellSuccess(msg);
+                                } else {
+                                    TbMsg next = processException(ctx, msg, future.cause());
+                                    ctx.tellFailure(next, future.cause());
+                                }
                             }
-                        }
-                );
+                    );
+        } finally {
+            connection.release();
+        }
     }
 
     private TbMsg processException(TbContext ctx, TbMsg origMsg, Throwable e) {
@@ -98,14 +106,17 @@ public class TbMqttNode implements TbNode {
         return ctx.transformMsg(origMsg, origMsg.getType(), origMsg.getOriginator(), metaData, origMsg.getData());
     }
 
+    /**
+     * 连接由共享连接池持有, 节点销毁后空闲超时再断开, 重新部署的节点可直接复用
+     */
     @Override
     public void destroy() {
-        if (this.mqttClient != null) {
-            this.mqttClient.disconnect();
-        }
     }
 
-    protected MqttClient initClient(TbContext ctx) throws Exception {
+    /**
+     * 建立(或复用)池中的连接并等待连上, 保持节点初始化时连接失败即报错的行为
+     */
+    protected void initClient(TbContext ctx) throws Exception {
         MqttClientConfig config = new MqttClientConfig(getSslContext());
         if (!StringUtils.isEmpty(this.mqttNodeConfiguration.getClientId())) {
             config.setClientId(this.mqttNodeConfiguration.isAppendClientIdSuffix() ?
@@ -114,25 +125,38 @@ public class TbMqttNode implements TbNode {
         config.setCleanSession(this.mqttNodeConfiguration.isCleanSession());
 
         prepareMqttClientConfig(config);
-        MqttClient client = MqttClient.create(config, null);
-        client.setEventLoop(ctx.getSharedEventLoop());
-        Future<MqttConnectResult> connectFuture = client.connect(this.mqttNodeConfiguration.getHost(), this.mqttNodeConfiguration.getPort());
-        MqttConnectResult result;
+        this.clientConfig = config;
+        this.connectionKey = new MqttConnectionKey(this.mqttNodeConfiguration.getHost(), this.mqttNodeConfiguration.getPort(),
+                StringUtils.isEmpty(this.mqttNodeConfiguration.getClientId()) ? null : config.getClientId(),
+                config.getUsername(), config.getPassword(), getConnectionOptions(config));
+        PooledMqttConnection connection = MqttClientPool.shared().acquire(connectionKey, config, ctx.getSharedEventLoop());
         try {
-            result = connectFuture.get(this.mqttNodeConfiguration.getConnectTimeoutSec(), TimeUnit.SECONDS);
-        } catch (TimeoutException ex) {
-            connectFuture.cancel(true);
-            client.disconnect();
-            String hostPort = this.mqttNodeConfiguration.getHost() + ":" + this.mqttNodeConfiguration.getPort();
-            throw new RuntimeException(String.format("Failed to connect to MQTT broker at %s.", hostPort));
+            if (connection.isConnected()) {
+                return;
+            }
+            Future<MqttConnectResult> connectFuture = connection.getConnectFuture();
+            MqttConnectResult result;
+            try {
+                result = connectFuture.get(this.mqttNodeConfiguration.getConnectTimeoutSec(), TimeUnit.SECONDS);
+            } catch (TimeoutException ex) {
+                String hostPort = this.mqttNodeConfiguration.getHost() + ":" + this.mqttNodeConfiguration.getPort();
+                throw new RuntimeException(String.format("Failed to connect to MQTT broker at %s.", hostPort));
+            }
+            if (!result.isSuccess()) {
+                String hostPort = this.mqttNodeConfiguration.getHost() + ":" + this.mqttNodeConfiguration.getPort();
+                throw new RuntimeException(String.format("Failed to connect to MQTT broker at %s. Result code is: %s", hostPort, result.getReturnCode()));
+            }
+        } finally {
+            connection.release();
         }
-        if (!result.isSuccess()) {
-            connectFuture.cancel(true);
-            client.disconnect();
-            String hostPort = this.mqttNodeConfiguration.getHost() + ":" + this.mqttNodeConfiguration.getPort();
-            throw new RuntimeException(String.format("Failed to connect to MQTT broker at %s. Result code is: %s", hostPort, result.getReturnCode()));
+    }
+
+    private String getConnectionOptions(MqttClientConfig config) {
+        String options = config.isCleanSession() + ":" + config.getProtocolVersion();
+        if (this.mqttNodeConfiguration.isSsl()) {
+            options += ":" + JacksonUtil.toString(this.mqttNodeConfiguration.getCredentials());
         }
-        return client;
+        return options;
     }
 
     protected void prepareMqttClientConfig(MqttClientConfig config) throws SSLException {
@@ -151,6 +151,14 @@ public class TbDeviceProfileNode implements TbNode {
         deviceStates.entrySet().removeIf(entry -> !ctx.isLocalEntity(entry.getKey()));
     }
 
+    /**
+     * 告警规则只比较数值等小字段, 图片引用原样向下游传递
+     */
+    @Override
+    public boolean acceptsPayloadRefs() {
+        return true;
+    }
+
     @Override
     public void destroy() {
         ctx.removeListeners();
@@ -157,6 +157,17 @@ public class TbHttpClient {
         }
     }
 
+    /**
+     * 复用外部共享的 AsyncRestTemplate, 其底层连接池的生命周期由调用方管理
+     */
+    public TbHttpClient(TbRestApiCallNodeConfiguration config, AsyncRestTemplate httpClient) {
+        this.config = config;
+        this.httpClient = httpClient;
+        if (config.getMaxParallelRequestsCount() > 0) {
+            pendingFutures = new ConcurrentLinkedDeque<>();
+        }
+    }
+
     EventLoopGroup getSharedOrCreateEventLoopGroup(EventLoopGroup eventLoopGroupShared) {
         return Objects.requireNonNullElseGet(eventLoopGroupShared, () -> this.eventLoopGroup = new NioEventLoopGroup());
     }
@@ -182,6 +193,13 @@ public class TbHttpClient {
     }
 
     public void processMessage(TbContext ctx, TbMsg msg) {
+        processMessage(ctx, msg, msg.getData());
+    }
+
+    /**
+     * @param body request body, the msg data with offloaded payloads inlined, while the msg passed on keeps its own data
+     */
+    public void processMessage(TbContext ctx, TbMsg msg, String body) {
         String endpointUrl = TbNodeUtils.processPattern(config.getRestEndpointUrlPattern(), msg);
         HttpHeaders headers = prepareHeaders(msg);
         HttpMethod method = HttpMethod.valueOf(config.getRequestMethod());
@@ -191,7 +209,7 @@ public class TbHttpClient {
                 config.isIgnoreRequestBody()) {
             entity = new HttpEntity<>(headers);
         } else {
-            entity = new HttpEntity<>(getData(msg), headers);
+            entity = new HttpEntity<>(getData(body), headers);
         }
 
         URI uri = buildEncodedUri(endpointUrl);
@@ -242,8 +260,7 @@ public class TbHttpClient {
         return uri;
     }
 
-    private String getData(TbMsg msg) {
-        String data = msg.getData();
+    private String getData(String data) {
 
         if (config.isTrimDoubleQuotes()) {
             final String dataBefore = data;
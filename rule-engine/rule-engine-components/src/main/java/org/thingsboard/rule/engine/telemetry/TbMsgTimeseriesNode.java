@@ -126,6 +126,14 @@ public class TbMsgTimeseriesNode implements TbNode {
         }
     }
 
+    /**
+     * 图片等大数据以引用形式入库, 由遥测保存服务换回原始数据
+     */
+    @Override
+    public boolean acceptsPayloadRefs() {
+        return true;
+    }
+
     private void removeTelemetryExtData(TbMsg msg) {
         String data = msg.getData();
         ObjectNode objectNode = (ObjectNode) JacksonUtil.toJsonNode(data);
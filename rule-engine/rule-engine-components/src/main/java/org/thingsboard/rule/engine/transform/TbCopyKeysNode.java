@@ -68,21 +68,22 @@ public class TbCopyKeysNode implements TbNode {
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException, TbNodeException {
         TbMsgMetaData metaData = msg.getMetaData();
-        String msgData = msg.getData();
+        ObjectNode msgDataNode = null;
         boolean msgChanged = false;
-        JsonNode dataNode = JacksonUtil.toJsonNode(msgData);
+        JsonNode dataNode = msg.getDataJson();
         if (dataNode.isObject()) {
             if (fromMetadata) {
-                ObjectNode msgDataNode = (ObjectNode) dataNode;
                 Map<String, String> metaDataMap = metaData.getData();
                 for (Map.Entry<String, String> entry : metaDataMap.entrySet()) {
                     String keyData = entry.getKey();
                     if (checkKey(keyData)) {
+                        if (msgDataNode == null) {
+                            msgDataNode = (ObjectNode) msg.copyDataJson();
+                        }
                         msgChanged = true;
                         msgDataNode.put(keyData, entry.getValue());
                     }
                 }
-                msgData = JacksonUtil.toString(msgDataNode);
             } else {
                 Iterator<Map.Entry<String, JsonNode>> iteratorNode = dataNode.fields();
                 while (iteratorNode.hasNext()) {
@@ -95,8 +96,10 @@ public class TbCopyKeysNode implements TbNode {
                 }
             }
         }
-        if (msgChanged) {
-            ctx.tellSuccess(TbMsg.transformMsg(msg, msg.getType(), msg.getOriginator(), metaData, msgData));
+        if (msgDataNode != null) {
+            ctx.tellSuccess(TbMsg.transformMsg(msg, msg.getType(), msg.getOriginator(), metaData, msgDataNode));
+        } else if (msgChanged) {
+            ctx.tellSuccess(TbMsg.transformMsg(msg, msg.getType(), msg.getOriginator(), metaData, msg.getData()));
         } else {
             ctx.tellSuccess(msg);
         }
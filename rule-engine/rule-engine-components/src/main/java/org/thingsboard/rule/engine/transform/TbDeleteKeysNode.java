@@ -19,7 +19,6 @@ package org.thingsboard.rule.engine.transform;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
-import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.rule.engine.api.RuleNode;
 import org.thingsboard.rule.engine.api.TbContext;
 import org.thingsboard.rule.engine.api.TbNode;
@@ -67,7 +66,7 @@ public class TbDeleteKeysNode implements TbNode {
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException, TbNodeException {
         TbMsgMetaData metaData = msg.getMetaData();
-        String msgData = msg.getData();
+        ObjectNode msgDataObject = null;
         List<String> keysToDelete = new ArrayList<>();
         if (fromMetadata) {
             Map<String, String> metaDataMap = metaData.getData();
@@ -79,23 +78,26 @@ public class TbDeleteKeysNode implements TbNode {
             keysToDelete.forEach(key -> metaDataMap.remove(key));
             metaData = new TbMsgMetaData(metaDataMap);
         } else {
-            JsonNode dataNode = JacksonUtil.toJsonNode(msgData);
+            JsonNode dataNode = msg.getDataJson();
             if (dataNode.isObject()) {
-                ObjectNode msgDataObject = (ObjectNode) dataNode;
                 dataNode.fields().forEachRemaining(entry -> {
                     String keyData = entry.getKey();
                     if (checkKey(keyData)) {
                         keysToDelete.add(keyData);
                     }
                 });
-                msgDataObject.remove(keysToDelete);
-                msgData = JacksonUtil.toString(msgDataObject);
+                if (!keysToDelete.isEmpty()) {
+                    msgDataObject = (ObjectNode) msg.copyDataJson();
+                    msgDataObject.remove(keysToDelete);
+                }
             }
         }
         if (keysToDelete.isEmpty()) {
             ctx.tellSuccess(msg);
+        } else if (msgDataObject != null) {
+            ctx.tellSuccess(TbMsg.transformMsg(msg, msg.getType(), msg.getOriginator(), metaData, msgDataObject));
         } else {
-            ctx.tellSuccess(TbMsg.transformMsg(msg, msg.getType(), msg.getOriginator(), metaData, msgData));
+            ctx.tellSuccess(TbMsg.transformMsg(msg, msg.getType(), msg.getOriginator(), metaData, msg.getData()));
         }
     }
 
@@ -19,7 +19,6 @@ package org.thingsboard.rule.engine.transform;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
-import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.rule.engine.api.RuleNode;
 import org.thingsboard.rule.engine.api.TbContext;
 import org.thingsboard.rule.engine.api.TbNode;
@@ -61,7 +60,7 @@ public class TbRenameKeysNode implements TbNode {
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException, TbNodeException {
         TbMsgMetaData metaData = msg.getMetaData();
-        String data = msg.getData();
+        ObjectNode msgData = null;
         boolean msgChanged = false;
         if (fromMetadata) {
             Map<String, String> metaDataMap = metaData.getData();
@@ -75,22 +74,25 @@ public class TbRenameKeysNode implements TbNode {
             }
             metaData = new TbMsgMetaData(metaDataMap);
         } else {
-            JsonNode dataNode = JacksonUtil.toJsonNode(msg.getData());
+            JsonNode dataNode = msg.getDataJson();
             if (dataNode.isObject()) {
-                ObjectNode msgData = (ObjectNode) dataNode;
                 for (Map.Entry<String, String> entry : renameKeysMapping.entrySet()) {
                     String nameKey = entry.getKey();
-                    if (msgData.has(nameKey)) {
+                    if ((msgData != null ? msgData : dataNode).has(nameKey)) {
+                        if (msgData == null) {
+                            msgData = (ObjectNode) msg.copyDataJson();
+                        }
                         msgChanged = true;
                         msgData.set(entry.getValue(), msgData.get(nameKey));
                         msgData.remove(nameKey);
                     }
                 }
-                data = JacksonUtil.toString(msgData);
             }
         }
-        if (msgChanged) {
-            ctx.tellSuccess(TbMsg.transformMsg(msg, msg.getType(), msg.getOriginator(), metaData, data));
+        if (msgData != null) {
+            ctx.tellSuccess(TbMsg.transformMsg(msg, msg.getType(), msg.getOriginator(), metaData, msgData));
+        } else if (msgChanged) {
+            ctx.tellSuccess(TbMsg.transformMsg(msg, msg.getType(), msg.getOriginator(), metaData, msg.getData()));
         } else {
             ctx.tellSuccess(msg);
         }
@@ -59,7 +59,7 @@ public class TbSplitArrayMsgNode implements TbNode {
 
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException, TbNodeException {
-        JsonNode jsonNode = JacksonUtil.toJsonNode(msg.getData());
+        JsonNode jsonNode = msg.getDataJson();
         if (jsonNode.isArray()) {
             ArrayNode data = (ArrayNode) jsonNode;
             if (data.isEmpty()) {
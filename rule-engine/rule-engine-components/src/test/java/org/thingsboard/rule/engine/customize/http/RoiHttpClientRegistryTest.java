@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.rule.engine.customize.http;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.thingsboard.rule.engine.rest.TbHttpClient;
+import org.thingsboard.rule.engine.rest.TbRestApiCallNodeConfiguration;
+import org.thingsboard.server.common.data.id.RecipientsId;
+import org.thingsboard.server.common.data.recipients.Recipients;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+@SuppressWarnings("deprecation")
+public class RoiHttpClientRegistryTest {
+
+    private final AsyncRestTemplate restTemplate = mock(AsyncRestTemplate.class);
+    private final AtomicInteger configsBuilt = new AtomicInteger();
+    private RoiHttpClientRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new RoiHttpClientRegistry(() -> restTemplate);
+    }
+
+    @Test
+    public void testClientIsReusedForUnchangedRecipients() {
+        Recipients recipients = newRecipients(UUID.randomUUID(), "http://localhost:8080/a", 1L);
+
+        TbHttpClient first = getClient(recipients);
+        TbHttpClient second = getClient(newRecipients(recipients.getRecipientsId().getId(), "http://localhost:8080/a", 1L));
+
+        assertSame(first, second);
+        assertSame(restTemplate, first.getHttpClient());
+        assertEquals(1, configsBuilt.get());
+    }
+
+    @Test
+    public void testClientIsRebuiltWhenRecipientsChange() {
+        UUID id = UUID.randomUUID();
+        TbHttpClient first = getClient(newRecipients(id, "http://localhost:8080/a", 1L));
+        TbHttpClient updated = getClient(newRecipients(id, "http://localhost:8080/b", 2L));
+
+        assertNotSame(first, updated);
+        assertEquals("http://localhost:8080/b", updated.getConfig().getRestEndpointUrlPattern());
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void testClearDropsCachedClients() {
+        Recipients recipients = newRecipients(UUID.randomUUID(), "http://localhost:8080/a", 1L);
+        TbHttpClient first = getClient(recipients);
+        getClient(newRecipients(UUID.randomUUID(), "http://localhost:8080/a", 1L));
+        assertEquals(2, registry.size());
+
+        registry.clear();
+
+        assertEquals(0, registry.size());
+        assertNotSame(first, getClient(recipients));
+    }
+
+    private TbHttpClient getClient(Recipients recipients) {
+        return registry.getClient(recipients, () -> {
+            configsBuilt.incrementAndGet();
+            TbRestApiCallNodeConfiguration config = new TbRestApiCallNodeConfiguration().defaultConfiguration();
+            config.setRestEndpointUrlPattern(((Map<?, ?>) recipients.getJsonData()).get("url").toString());
+            return config;
+        });
+    }
+
+    private static Recipients newRecipients(UUID id, String url, long updateTime) {
+        Recipients recipients = new Recipients();
+        recipients.setRecipientsId(new RecipientsId(id));
+        recipients.setJsonData(Collections.singletonMap("url", url));
+        recipients.setUpdateTime(updateTime);
+        return recipients;
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.rule.engine.customize.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.rule.engine.api.TbContext;
+import org.thingsboard.rule.engine.api.TbNodeConfiguration;
+import org.thingsboard.server.cache.payload.TbMsgPayloadStore;
+import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.exception.ThingsboardErrorCode;
+import org.thingsboard.server.common.data.exception.ThingsboardException;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.recipients.Recipients;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.dao.recipients.RecipientsService;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TbRoiTypeSwitchNodeTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final UUID httpRecipientsId = UUID.randomUUID();
+    private final UUID mqttRecipientsId = UUID.randomUUID();
+
+    private TbContext ctx;
+    private RecipientsService recipientsService;
+    private TbRoiTypeSwitchNode node;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ctx = mock(TbContext.class);
+        recipientsService = mock(RecipientsService.class);
+        when(ctx.getTenantId()).thenReturn(tenantId);
+        when(ctx.getRecipientsService()).thenReturn(recipientsService);
+        when(recipientsService.getRecipientsById(tenantId, httpRecipientsId)).thenReturn(newRecipients("HTTP Post"));
+        when(recipientsService.getRecipientsById(tenantId, mqttRecipientsId)).thenReturn(newRecipients("MQTT"));
+        node = new TbRoiTypeSwitchNode();
+        node.init(ctx, new TbNodeConfiguration(JacksonUtil.newObjectNode()));
+    }
+
+    @Test
+    void givenEnvelope_whenOnMsg_thenSplitPerRecognitionAndRecipients() throws Exception {
+        UUID unknownRecipientsId = UUID.randomUUID();
+        when(recipientsService.getRecipientsById(tenantId, unknownRecipientsId))
+                .thenThrow(new ThingsboardException("not found", ThingsboardErrorCode.ITEM_NOT_FOUND));
+        ObjectNode data = JacksonUtil.newObjectNode();
+        data.put("image", "ref");
+        data.put("deviceName", "camera");
+        data.putArray(DataConstants.ROI_RECOGNITIONS)
+                .add(newRecognition("roi1", httpRecipientsId, mqttRecipientsId))
+                .add(newRecognition("roi2", httpRecipientsId, unknownRecipientsId));
+        TbMsg msg = TbMsg.newMsg("MS_ROI_PASSAGE", new DeviceId(UUID.randomUUID()), new TbMsgMetaData(), data.toString());
+
+        node.onMsg(ctx, msg);
+
+        ArgumentCaptor<TbMsg> msgCaptor = ArgumentCaptor.forClass(TbMsg.class);
+        ArgumentCaptor<String> relationCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Runnable> successCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(ctx, times(3)).enqueueForTellNext(msgCaptor.capture(), relationCaptor.capture(), successCaptor.capture(), any());
+        assertThat(relationCaptor.getAllValues()).containsExactly("HTTP Post", "MQTT", "HTTP Post");
+        verify(recipientsService, times(1)).getRecipientsById(tenantId, httpRecipientsId);
+
+        List<TbMsg> outMsgs = msgCaptor.getAllValues();
+        JsonNode first = JacksonUtil.toJsonNode(outMsgs.get(0).getData());
+        assertThat(first.get("roiId").asText()).isEqualTo("roi1");
+        assertThat(first.get("image").asText()).isEqualTo("ref");
+        assertThat(first.has(DataConstants.ROI_RECOGNITIONS)).isFalse();
+        assertThat(first.has(DataConstants.ROI_RECIPIENTS_IDS)).isFalse();
+        assertThat(outMsgs.get(1).getMetaData().getValue("recipientsId")).isEqualTo(mqttRecipientsId.toString());
+        assertThat(outMsgs.get(1).getMetaData().getValue("recipientsInfo")).isNotNull();
+        assertThat(JacksonUtil.toJsonNode(outMsgs.get(2).getData()).get("roiId").asText()).isEqualTo("roi2");
+
+        successCaptor.getAllValues().forEach(Runnable::run);
+        verify(ctx, times(1)).ack(msg);
+        verify(ctx, never()).tellFailure(any(), any());
+    }
+
+    @Test
+    void givenImageRef_whenOnMsg_thenOutgoingMsgsCarryRefOnly() throws Exception {
+        String image = "A".repeat(1024);
+        String imageRef = TbMsgPayloadStore.REF_PREFIX + UUID.randomUUID();
+        ObjectNode data = JacksonUtil.newObjectNode();
+        data.put("image", imageRef);
+        data.putArray(DataConstants.ROI_RECOGNITIONS)
+                .add(newRecognition("roi1", httpRecipientsId, mqttRecipientsId))
+                .add(newRecognition("roi2", httpRecipientsId, mqttRecipientsId));
+        TbMsg msg = TbMsg.newMsg("MS_ROI_PASSAGE", new DeviceId(UUID.randomUUID()), new TbMsgMetaData(), data.toString());
+
+        assertThat(node.acceptsPayloadRefs()).isTrue();
+        node.onMsg(ctx, msg);
+
+        ArgumentCaptor<TbMsg> msgCaptor = ArgumentCaptor.forClass(TbMsg.class);
+        verify(ctx, times(4)).enqueueForTellNext(msgCaptor.capture(), anyString(), any(Runnable.class), any());
+        verify(ctx, never()).inlinePayloads(anyString());
+        assertThat(msgCaptor.getAllValues()).allSatisfy(outMsg -> {
+            assertThat(JacksonUtil.toJsonNode(outMsg.getData()).get("image").asText()).isEqualTo(imageRef);
+            assertThat(outMsg.getData()).doesNotContain(image);
+        });
+    }
+
+    @Test
+    void givenSingleRecipientMsg_whenOnMsg_thenTellNextByTransmissionType() {
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("recipientsId", mqttRecipientsId.toString());
+        TbMsg msg = TbMsg.newMsg("MS_ROI_PASSAGE", new DeviceId(UUID.randomUUID()), metaData, "{\"roiId\":\"roi1\"}");
+
+        node.onMsg(ctx, msg);
+
+        verify(ctx).tellNext(eq(msg), eq("MQTT"));
+        verify(ctx, never()).enqueueForTellNext(any(), anyString(), any(Runnable.class), any());
+    }
+
+    private static ObjectNode newRecognition(String roiId, UUID... recipientsIds) {
+        ObjectNode recognition = JacksonUtil.newObjectNode();
+        recognition.put("roiId", roiId);
+        recognition.put("value", "1");
+        for (UUID recipientsId : recipientsIds) {
+            recognition.withArray(DataConstants.ROI_RECIPIENTS_IDS).add(recipientsId.toString());
+        }
+        return recognition;
+    }
+
+    private static Recipients newRecipients(String transmissionType) {
+        Recipients recipients = new Recipients();
+        recipients.setTransmissionType(transmissionType);
+        return recipients;
+    }
+
+}
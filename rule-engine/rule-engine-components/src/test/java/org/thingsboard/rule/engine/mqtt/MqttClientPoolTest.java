@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.thingsboard.rule.engine.mqtt;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.mqtt.ChannelClosedException;
+import org.thingsboard.mqtt.MqttClient;
+import org.thingsboard.mqtt.MqttClientConfig;
+import org.thingsboard.mqtt.MqttConnectResult;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MqttClientPoolTest {
+
+    private static final MqttConnectionKey KEY = new MqttConnectionKey("localhost", 1883, null, "user", "pass", "");
+
+    private EventLoopGroup eventLoop;
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicBoolean connected = new AtomicBoolean();
+    private final List<Promise<Void>> published = new CopyOnWriteArrayList<>();
+    private Promise<MqttConnectResult> connectPromise;
+    private MqttClient client;
+
+    @Before
+    public void setUp() {
+        eventLoop = new DefaultEventLoopGroup(1);
+        connectPromise = eventLoop.next().newPromise();
+        client = mock(MqttClient.class);
+        when(client.getEventLoop()).thenReturn(eventLoop);
+        when(client.isConnected()).thenAnswer(inv -> connected.get());
+        when(client.connect(anyString(), anyInt())).thenReturn(connectPromise);
+        when(client.publish(anyString(), any(), any(), anyBoolean())).thenAnswer(inv -> {
+            Promise<Void> promise = eventLoop.next().newPromise();
+            published.add(promise);
+            return promise;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        eventLoop.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testConnectionIsReusedPerKey() {
+        MqttClientPool pool = newPool(60000, 10);
+        PooledMqttConnection first = pool.acquire(KEY, new MqttClientConfig(), eventLoop);
+        PooledMqttConnection second = pool.acquire(KEY, new MqttClientConfig(), eventLoop);
+        PooledMqttConnection other = pool.acquire(new MqttConnectionKey("localhost", 1883, null, "user2", "pass", ""), new MqttClientConfig(), eventLoop);
+
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(2, created.get());
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void testPublishWaitsForConnectAndRespectsInFlightWindow() throws Exception {
+        MqttClientPool pool = newPool(60000, 1);
+        PooledMqttConnection connection = pool.acquire(KEY, new MqttClientConfig(), eventLoop);
+        Future<Void> first = publish(connection, 5000);
+        Future<Void> second = publish(connection, 5000);
+        assertTrue(published.isEmpty());
+
+        connected.set(true);
+        connectPromise.setSuccess(acceptedResult());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> published.size() == 1);
+
+        published.get(0).setSuccess(null);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> first.isSuccess() && published.size() == 2);
+        published.get(1).setSuccess(null);
+        await().atMost(5, TimeUnit.SECONDS).until(second::isSuccess);
+    }
+
+    @Test
+    public void testPublishTimesOutWhileDisconnected() {
+        MqttClientPool pool = newPool(60000, 10);
+        PooledMqttConnection connection = pool.acquire(KEY, new MqttClientConfig(), eventLoop);
+        Future<Void> future = publish(connection, 50);
+
+        await().atMost(5, TimeUnit.SECONDS).until(future::isDone);
+        assertTrue(future.cause() instanceof TimeoutException);
+        assertTrue(published.isEmpty());
+    }
+
+    @Test
+    public void testConnectionLostFailsInFlightPublishes() {
+        MqttClientPool pool = newPool(60000, 10);
+        PooledMqttConnection connection = pool.acquire(KEY, new MqttClientConfig(), eventLoop);
+        connected.set(true);
+        Future<Void> future = publish(connection, 5000);
+        assertEquals(1, published.size());
+
+        connection.connectionLost(new ChannelClosedException("Channel is closed!"));
+        assertTrue(future.cause() instanceof ChannelClosedException);
+        // netty-mqtt 不再重传
+        assertTrue(published.get(0).isCancelled());
+    }
+
+    @Test
+    public void testUnacknowledgedPublishTimesOutAndFreesSlot() {
+        MqttClientPool pool = newPool(60000, 1);
+        PooledMqttConnection connection = pool.acquire(KEY, new MqttClientConfig(), eventLoop);
+        connected.set(true);
+        Future<Void> first = publish(connection, 50);
+        Future<Void> second = publish(connection, 5000);
+
+        await().atMost(5, TimeUnit.SECONDS).until(first::isDone);
+        assertTrue(first.cause() instanceof TimeoutException);
+        assertTrue(published.get(0).isCancelled());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> published.size() == 2);
+        published.get(1).setSuccess(null);
+        await().atMost(5, TimeUnit.SECONDS).until(second::isSuccess);
+    }
+
+    @Test
+    public void testIdleConnectionIsEvicted() {
+        MqttClientPool pool = newPool(50, 10);
+        PooledMqttConnection connection = pool.acquire(KEY, new MqttClientConfig(), eventLoop);
+        connection.release();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> pool.size() == 0);
+        verify(client).disconnect();
+        assertFalse(connection.retain());
+        assertNotSame(connection, pool.acquire(KEY, new MqttClientConfig(), eventLoop));
+    }
+
+    private MqttClientPool newPool(long idleTimeoutMs, int maxInFlight) {
+        return new MqttClientPool(idleTimeoutMs, maxInFlight, config -> {
+            created.incrementAndGet();
+            return client;
+        });
+    }
+
+    private static MqttConnectResult acceptedResult() throws Exception {
+        Constructor<MqttConnectResult> constructor =
+                MqttConnectResult.class.getDeclaredConstructor(boolean.class, MqttConnectReturnCode.class, ChannelFuture.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(true, MqttConnectReturnCode.CONNECTION_ACCEPTED, null);
+    }
+
+    private Future<Void> publish(PooledMqttConnection connection, long timeoutMs) {
+        return connection.publish("topic", Unpooled.wrappedBuffer(new byte[]{1}), MqttQoS.AT_LEAST_ONCE, false, timeoutMs);
+    }
+
+}